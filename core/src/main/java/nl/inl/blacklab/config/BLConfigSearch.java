@@ -1,7 +1,8 @@
 package nl.inl.blacklab.config;
 
+import nl.inl.blacklab.contentstore.BlockCache;
 import nl.inl.blacklab.search.BlackLabIndex;
-import nl.inl.blacklab.search.lucene.optimize.ClauseCombinerNfa;
+import nl.inl.blacklab.search.lucene.optimize.NfaCostModel;
 import nl.inl.blacklab.search.results.ContextSize;
 import nl.inl.blacklab.search.results.SearchSettings;
 
@@ -14,7 +15,13 @@ public class BLConfigSearch {
     
     int maxHitsToCount = 10_000_000;
     
-    long fiMatchFactor = ClauseCombinerNfa.DEFAULT_NFA_THRESHOLD;
+    long fiMatchFactor = NfaCostModel.DEFAULT_NFA_THRESHOLD;
+
+    long fiMatchTermFreqDivider = NfaCostModel.DEFAULT_TERM_FREQ_DIVIDER;
+
+    long fiMatchCostRatioFactor = NfaCostModel.DEFAULT_COST_RATIO_CONSTANT_FACTOR;
+
+    int contentStoreBlockCacheMegs = (int) (BlockCache.DEFAULT_MAX_SIZE_BYTES / 1024 / 1024);
 
     public BLConfigCollator getCollator() {
         return collator;
@@ -56,13 +63,38 @@ public class BLConfigSearch {
         this.fiMatchFactor = fiMatchFactor;
     }
 
+    public long getFiMatchTermFreqDivider() {
+        return fiMatchTermFreqDivider;
+    }
+
+    public void setFiMatchTermFreqDivider(long fiMatchTermFreqDivider) {
+        this.fiMatchTermFreqDivider = fiMatchTermFreqDivider;
+    }
+
+    public long getFiMatchCostRatioFactor() {
+        return fiMatchCostRatioFactor;
+    }
+
+    public void setFiMatchCostRatioFactor(long fiMatchCostRatioFactor) {
+        this.fiMatchCostRatioFactor = fiMatchCostRatioFactor;
+    }
+
+    public int getContentStoreBlockCacheMegs() {
+        return contentStoreBlockCacheMegs;
+    }
+
+    public void setContentStoreBlockCacheMegs(int contentStoreBlockCacheMegs) {
+        this.contentStoreBlockCacheMegs = contentStoreBlockCacheMegs;
+    }
+
     public void apply(BlackLabIndex index) {
         index.setCollator(getCollator().get());
         index.setDefaultContextSize(ContextSize.get(getContextSize()));
         int maxHitsToProcess = getMaxHitsToRetrieve();
         int maxHitsToCount = getMaxHitsToCount();
-        long fiMatchFactor = getFiMatchFactor();
-        SearchSettings sett = SearchSettings.get(maxHitsToProcess, maxHitsToCount, fiMatchFactor);
+        SearchSettings sett = SearchSettings.get(maxHitsToProcess, maxHitsToCount);
         index.setSearchSettings(sett);
+        // (an index may override this in its metadata)
+        index.setNfaCostModel(NfaCostModel.get(getFiMatchFactor(), getFiMatchTermFreqDivider(), getFiMatchCostRatioFactor()));
     }
 }
\ No newline at end of file
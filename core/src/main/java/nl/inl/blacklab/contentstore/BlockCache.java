@@ -0,0 +1,241 @@
+package nl.inl.blacklab.contentstore;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of decoded content store blocks, shared by all content stores.
+ *
+ * Decompressing blocks is the main CPU cost of retrieving original content
+ * (e.g. for concordances and document snippets), and the same blocks are often
+ * requested repeatedly, e.g. when paging through the hits in a popular
+ * document.
+ *
+ * The cache is divided into a number of segments, each of which is an LRU cache
+ * with its own lock and its own share of the maximum size, so threads working
+ * on different blocks rarely have to wait for each other. Size is measured as
+ * the number of characters in the cached blocks (2 bytes each).
+ *
+ * Thread-safe.
+ */
+public final class BlockCache {
+
+    /** Default maximum size of the cache in bytes */
+    public static final long DEFAULT_MAX_SIZE_BYTES = 64L * 1024 * 1024;
+
+    /** How many bytes a cached char takes, approximately */
+    private static final int BYTES_PER_CHAR = 2;
+
+    /** Number of independently locked segments (must be a power of two) */
+    private static final int NUMBER_OF_SEGMENTS = 16;
+
+    /** The cache shared by all content stores */
+    private static final BlockCache instance = new BlockCache(DEFAULT_MAX_SIZE_BYTES);
+
+    /**
+     * Get the cache shared by all content stores.
+     *
+     * @return the shared cache
+     */
+    public static BlockCache get() {
+        return instance;
+    }
+
+    /** One LRU segment of the cache */
+    private static final class Segment {
+
+        private final Map<Long, String> blocks = new LinkedHashMap<>(16, 0.75f, true);
+
+        private long sizeChars = 0;
+
+        synchronized String get(long key) {
+            return blocks.get(key);
+        }
+
+        synchronized void put(long key, String block, long maxSizeChars) {
+            if (block.length() > maxSizeChars)
+                return; // would never fit
+            String prev = blocks.put(key, block);
+            if (prev != null)
+                sizeChars -= prev.length();
+            sizeChars += block.length();
+
+            // Evict least recently used blocks until we're within our budget
+            Iterator<String> it = blocks.values().iterator();
+            while (sizeChars > maxSizeChars && it.hasNext()) {
+                sizeChars -= it.next().length();
+                it.remove();
+            }
+        }
+
+        synchronized long sizeChars() {
+            return sizeChars;
+        }
+
+        synchronized void clear() {
+            blocks.clear();
+            sizeChars = 0;
+        }
+
+        synchronized void removeContentStore(int contentStoreId) {
+            Iterator<Map.Entry<Long, String>> it = blocks.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Long, String> entry = it.next();
+                if (contentStoreId(entry.getKey()) == contentStoreId) {
+                    sizeChars -= entry.getValue().length();
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    private final Segment[] segments;
+
+    /** Maximum size per segment, in chars. 0 means caching is disabled. */
+    private volatile long maxSizeCharsPerSegment;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Create a cache.
+     *
+     * Content stores should use the shared cache (see {@link #get()}); this is
+     * used for testing.
+     *
+     * @param maxSizeBytes maximum size in bytes, or 0 to disable the cache
+     */
+    BlockCache(long maxSizeBytes) {
+        segments = new Segment[NUMBER_OF_SEGMENTS];
+        for (int i = 0; i < NUMBER_OF_SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+        setMaxSizeBytes(maxSizeBytes);
+    }
+
+    private static long key(int contentStoreId, int blockNumber) {
+        return ((long) contentStoreId << 32) | (blockNumber & 0xFFFFFFFFL);
+    }
+
+    private static int contentStoreId(long key) {
+        return (int) (key >>> 32);
+    }
+
+    private Segment segment(long key) {
+        int h = Long.hashCode(key);
+        h ^= (h >>> 16);
+        return segments[h & (NUMBER_OF_SEGMENTS - 1)];
+    }
+
+    /**
+     * Get a decoded block from the cache.
+     *
+     * @param contentStoreId unique id of the content store
+     * @param blockNumber block number in the contents file
+     * @return the decoded block, or null if not in the cache
+     */
+    public String get(int contentStoreId, int blockNumber) {
+        if (maxSizeCharsPerSegment == 0)
+            return null;
+        long key = key(contentStoreId, blockNumber);
+        String block = segment(key).get(key);
+        if (block == null)
+            misses.increment();
+        else
+            hits.increment();
+        return block;
+    }
+
+    /**
+     * Add a decoded block to the cache.
+     *
+     * @param contentStoreId unique id of the content store
+     * @param blockNumber block number in the contents file
+     * @param block the decoded block
+     */
+    public void put(int contentStoreId, int blockNumber, String block) {
+        long maxSize = maxSizeCharsPerSegment;
+        if (maxSize == 0)
+            return;
+        long key = key(contentStoreId, blockNumber);
+        segment(key).put(key, block, maxSize);
+    }
+
+    /**
+     * Set the maximum size of the cache.
+     *
+     * @param maxSizeBytes maximum size in bytes, or 0 to disable the cache
+     */
+    public void setMaxSizeBytes(long maxSizeBytes) {
+        maxSizeCharsPerSegment = Math.max(0, maxSizeBytes / BYTES_PER_CHAR / NUMBER_OF_SEGMENTS);
+        if (maxSizeCharsPerSegment == 0)
+            clear();
+    }
+
+    /**
+     * Get the maximum size of the cache.
+     *
+     * @return maximum size in bytes
+     */
+    public long maxSizeBytes() {
+        return maxSizeCharsPerSegment * NUMBER_OF_SEGMENTS * BYTES_PER_CHAR;
+    }
+
+    /**
+     * Get the current (approximate) size of the cache.
+     *
+     * @return size in bytes
+     */
+    public long sizeBytes() {
+        long sizeChars = 0;
+        for (Segment segment: segments) {
+            sizeChars += segment.sizeChars();
+        }
+        return sizeChars * BYTES_PER_CHAR;
+    }
+
+    /**
+     * How many times was a requested block found in the cache?
+     *
+     * @return number of cache hits
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * How many times was a requested block not found in the cache?
+     *
+     * @return number of cache misses
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * Remove all blocks of a content store from the cache.
+     *
+     * Called when the content store is closed, so its blocks don't take up space
+     * anymore.
+     *
+     * @param contentStoreId unique id of the content store
+     */
+    public void removeContentStore(int contentStoreId) {
+        for (Segment segment: segments) {
+            segment.removeContentStore(contentStoreId);
+        }
+    }
+
+    /**
+     * Remove all blocks from the cache.
+     */
+    public void clear() {
+        for (Segment segment: segments) {
+            segment.clear();
+        }
+    }
+
+}
@@ -6,6 +6,7 @@ import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
 import java.nio.channels.FileChannel;
+import java.util.Arrays;
 import java.util.Set;
 
 import org.eclipse.collections.api.map.primitive.MutableIntObjectMap;
@@ -94,7 +95,7 @@ public abstract class ContentStoreFixedBlock extends ContentStoreDirAbstract {
         /** blocks this document is stored in */
         int[] blockIndices;
 
-        /** first character stored in each block */
+        /** first character stored in each block (ascending, so it can be binary searched) */
         int[] blockCharOffsets;
 
         /** was this entry deleted? (can be removed in next compacting run) */
@@ -160,6 +161,20 @@ public abstract class ContentStoreFixedBlock extends ContentStoreDirAbstract {
             return blockIndices[blockNumber];
         }
 
+        /**
+         * Find the block containing the specified character.
+         *
+         * Uses binary search on the block character offsets, so this is fast even for
+         * very long documents.
+         *
+         * @param charPosition character position in the document
+         * @return index of the last block starting at or before charPosition
+         */
+        public int blockIndexForChar(int charPosition) {
+            int i = Arrays.binarySearch(blockCharOffsets, charPosition);
+            return i >= 0 ? i : -i - 2;
+        }
+
         /**
          * Size of this entry serialized
          *
@@ -209,7 +224,14 @@ public abstract class ContentStoreFixedBlock extends ContentStoreDirAbstract {
 
     protected SimpleResourcePool<byte[]> zipbufPool;
     
-    protected boolean initialized = false;
+    /**
+     * Have we been initialized?
+     *
+     * Volatile because readers check it without locking: everything written
+     * by performInitialization() (e.g. the TOC) is visible to a thread that
+     * sees this set to true.
+     */
+    protected volatile boolean initialized = false;
 
     protected ContentStoreFixedBlock(File dir) {
         super(dir);
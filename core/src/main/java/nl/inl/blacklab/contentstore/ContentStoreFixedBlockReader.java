@@ -16,12 +16,12 @@
 package nl.inl.blacklab.contentstore;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.DataFormatException;
 import java.util.zip.Inflater;
 
@@ -39,14 +39,38 @@ import nl.inl.util.SimpleResourcePool;
  * character offset associated with each block so we can quickly access the
  * data. Free blocks will be re-used to save space.
  * 
- * Thread-safety: not thread-safe in index mode, but thread-safe while searching
+ * Thread-safety: not thread-safe in index mode, but thread-safe while searching.
+ * The contents file is memory-mapped once when initializing, so blocks can be
+ * read by many threads at the same time without locking.
  */
 @NotThreadSafe // in index mode
 public class ContentStoreFixedBlockReader extends ContentStoreFixedBlock {
     //private static final Logger logger = LogManager.getLogger(ContentStoreDirFixedBlock.class);
 
+    /**
+     * How many blocks to map into memory per mapping (Java limits a single
+     * mapping to 2GB). Must divide evenly into blocks, so a block never straddles
+     * two mappings.
+     */
+    private static final int BLOCKS_PER_MAPPING = (1 << 30) / BLOCK_SIZE_BYTES;
+
+    /** Used to give each content store a unique id, so we can share the block cache */
+    private static final AtomicInteger nextContentStoreId = new AtomicInteger(0);
+
     SimpleResourcePool<Inflater> decompresserPool;
 
+    /** Our unique id in the decoded block cache */
+    private final int contentStoreId = nextContentStoreId.getAndIncrement();
+
+    /** Cache of decoded blocks (shared by all content stores) */
+    private final BlockCache blockCache = BlockCache.get();
+
+    /** Memory mappings of the contents file, BLOCKS_PER_MAPPING blocks each */
+    private volatile ByteBuffer[] contentsFileMappings = new ByteBuffer[0];
+
+    /** Per-thread buffer to copy a compressed block into before decoding it */
+    private ThreadLocal<byte[]> blockBuffer = ThreadLocal.withInitial(() -> new byte[BLOCK_SIZE_BYTES]);
+
     /**
      * @param dir content store dir
      * @throws ErrorOpeningIndex 
@@ -74,6 +98,54 @@ public class ContentStoreFixedBlockReader extends ContentStoreFixedBlock {
     @Override
     protected void performInitialization() {
         readToc();
+        mapContentsFile();
+    }
+
+    /**
+     * Map the contents file into memory, so we can read blocks from it without
+     * opening the file or locking.
+     */
+    private void mapContentsFile() {
+        if (!contentsFile.exists())
+            return; // empty content store
+        try (RandomAccessFile raf = new RandomAccessFile(contentsFile, "r");
+                FileChannel fc = raf.getChannel()) {
+            long fileSize = fc.size();
+            long bytesPerMapping = (long) BLOCKS_PER_MAPPING * BLOCK_SIZE_BYTES;
+            int numberOfMappings = (int) ((fileSize + bytesPerMapping - 1) / bytesPerMapping);
+            ByteBuffer[] mappings = new ByteBuffer[numberOfMappings];
+            for (int i = 0; i < numberOfMappings; i++) {
+                long mappingStart = i * bytesPerMapping;
+                long mappingSize = Math.min(bytesPerMapping, fileSize - mappingStart);
+                mappings[i] = fc.map(MapMode.READ_ONLY, mappingStart, mappingSize);
+            }
+            contentsFileMappings = mappings;
+        } catch (IOException e) {
+            throw BlackLabRuntimeException.wrap(e);
+        }
+    }
+
+    /**
+     * Read a block from the (memory-mapped) contents file.
+     *
+     * @param blockNum number of the block to read
+     * @param buffer where to copy the block's bytes
+     */
+    private void readBlock(int blockNum, byte[] buffer) {
+        int mappingIndex = blockNum / BLOCKS_PER_MAPPING;
+        int offsetInMapping = (blockNum % BLOCKS_PER_MAPPING) * BLOCK_SIZE_BYTES;
+        ByteBuffer[] mappings = contentsFileMappings;
+        if (mappingIndex >= mappings.length)
+            throw new BlackLabRuntimeException("Block " + blockNum + " out of range for contents file " + contentsFile);
+        // duplicate() gives us our own position, so we don't interfere with other threads
+        ByteBuffer mapping = mappings[mappingIndex].duplicate();
+        if (offsetInMapping + BLOCK_SIZE_BYTES > mapping.limit()) {
+            // Apparently, something went wrong.
+            throw new BlackLabRuntimeException("Not enough bytes read, " + (mapping.limit() - offsetInMapping)
+                    + " < " + BLOCK_SIZE_BYTES);
+        }
+        mapping.position(offsetInMapping);
+        mapping.get(buffer, 0, BLOCK_SIZE_BYTES);
     }
 
     @Override
@@ -95,6 +167,8 @@ public class ContentStoreFixedBlockReader extends ContentStoreFixedBlock {
             initialize();
         decompresserPool.close();
         closeMappedToc();
+        contentsFileMappings = new ByteBuffer[0];
+        blockCache.removeContentStore(contentStoreId);
         super.close();
     }
 
@@ -113,7 +187,7 @@ public class ContentStoreFixedBlockReader extends ContentStoreFixedBlock {
     }
 
     @Override
-    public synchronized String[] retrieveParts(int contentId, int[] start, int[] end) {
+    public String[] retrieveParts(int contentId, int[] start, int[] end) {
         if (!initialized)
             initialize();
         try {
@@ -130,73 +204,54 @@ public class ContentStoreFixedBlockReader extends ContentStoreFixedBlock {
             // Create array for results
             String[] result = new String[n];
 
-            // Open the file
-            try (FileInputStream fileInputStream = new FileInputStream(contentsFile)) {
-                try (FileChannel fileChannel = fileInputStream.getChannel()) {
-                    // Retrieve the strings requested
-                    for (int i = 0; i < n; i++) {
-                        int a = start[i];
-                        int b = end[i];
-
-                        if (a == -1)
-                            a = 0;
-                        if (b == -1)
-                            b = e.entryLengthCharacters;
-
-                        // Check values
-                        if (a < 0 || b < 0) {
-                            throw new IllegalArgumentException("Illegal values, start = " + a + ", end = " + b);
-                        }
-                        if (a > e.entryLengthCharacters || b > e.entryLengthCharacters) {
-                            throw new IllegalArgumentException("Value(s) out of range, start = " + a
-                                    + ", end = " + b + ", content length = " + e.entryLengthCharacters);
-                        }
-                        if (b <= a) {
-                            throw new IllegalArgumentException(
-                                    "Tried to read empty or negative length snippet (from " + a
-                                            + " to " + b + ")");
-                        }
-
-                        // 1 - determine what blocks to read
-                        int firstBlock = -1, lastBlock = -1;
-                        int bl = 0;
-                        int charOffset = -1;
-                        for (int offs : e.blockCharOffsets) {
-                            if (offs <= a) {
-                                firstBlock = bl; // last block that starts before a
-                                charOffset = offs;
-                            }
-                            if (offs > b && lastBlock == -1) {
-                                lastBlock = bl - 1; // first block that ends after b
-                                break;
-                            }
-                            bl++;
-                        }
-                        if (lastBlock == -1)
-                            lastBlock = bl - 1; // last available block
-
-                        // 2 - read and decode blocks
-                        StringBuilder decoded = new StringBuilder();
-                        for (int j = firstBlock; j <= lastBlock; j++) {
-                            long blockNum = e.getBlockNumber(j);
-                            long readStartOffset = blockNum * BLOCK_SIZE_BYTES;
-                            int bytesToRead = BLOCK_SIZE_BYTES;
-                            ByteBuffer buffer = ByteBuffer.allocate(bytesToRead);
-                            int bytesRead = fileChannel.read(buffer, readStartOffset);
-                            if (bytesRead < bytesToRead) {
-                                // Apparently, something went wrong.
-                                throw new BlackLabRuntimeException("Not enough bytes read, " + bytesRead
-                                        + " < " + bytesToRead);
-                            }
-                            String decodedBlock = decodeBlock(buffer.array(), 0, bytesRead);
-                            decoded.append(decodedBlock);
-                        }
-
-                        // 3 - take just what we need
-                        int firstChar = a - charOffset;
-                        result[i] = decoded.substring(firstChar, firstChar + b - a);
+            // Retrieve the strings requested
+            byte[] buffer = blockBuffer.get();
+            String[] decodedBlocks = n > 1 ? new String[e.blockIndices.length] : null;
+            for (int i = 0; i < n; i++) {
+                int a = start[i];
+                int b = end[i];
+
+                if (a == -1)
+                    a = 0;
+                if (b == -1)
+                    b = e.entryLengthCharacters;
+
+                // Check values
+                if (a < 0 || b < 0) {
+                    throw new IllegalArgumentException("Illegal values, start = " + a + ", end = " + b);
+                }
+                if (a > e.entryLengthCharacters || b > e.entryLengthCharacters) {
+                    throw new IllegalArgumentException("Value(s) out of range, start = " + a
+                            + ", end = " + b + ", content length = " + e.entryLengthCharacters);
+                }
+                if (b <= a) {
+                    throw new IllegalArgumentException(
+                            "Tried to read empty or negative length snippet (from " + a
+                                    + " to " + b + ")");
+                }
+
+                // 1 - determine what blocks to read
+                int firstBlock = e.blockIndexForChar(a);
+                int lastBlock = e.blockIndexForChar(b - 1);
+                int charOffset = e.blockCharOffsets[firstBlock];
+
+                // 2 - read and decode blocks
+                // (if we're retrieving several parts, remember decoded blocks so we decode each
+                //  block at most once, e.g. when making concordances for many hits in a document)
+                StringBuilder decoded = new StringBuilder();
+                for (int j = firstBlock; j <= lastBlock; j++) {
+                    String decodedBlock = decodedBlocks == null ? null : decodedBlocks[j];
+                    if (decodedBlock == null) {
+                        decodedBlock = retrieveBlock(e.getBlockNumber(j), buffer);
+                        if (decodedBlocks != null)
+                            decodedBlocks[j] = decodedBlock;
                     }
+                    decoded.append(decodedBlock);
                 }
+
+                // 3 - take just what we need
+                int firstChar = a - charOffset;
+                result[i] = decoded.substring(firstChar, firstChar + b - a);
             }
             return result;
         } catch (IOException e) {
@@ -204,6 +259,24 @@ public class ContentStoreFixedBlockReader extends ContentStoreFixedBlock {
         }
     }
 
+    /**
+     * Get a decoded block, from the block cache if possible.
+     *
+     * @param blockNum block number in the contents file
+     * @param buffer buffer to use for reading the block if it's not cached
+     * @return the decoded block
+     * @throws IOException on error
+     */
+    private String retrieveBlock(int blockNum, byte[] buffer) throws IOException {
+        String decodedBlock = blockCache.get(contentStoreId, blockNum);
+        if (decodedBlock == null) {
+            readBlock(blockNum, buffer);
+            decodedBlock = decodeBlock(buffer, 0, BLOCK_SIZE_BYTES);
+            blockCache.put(contentStoreId, blockNum, decodedBlock);
+        }
+        return decodedBlock;
+    }
+
     protected String decodeBlock(byte[] buf, int offset, int length) throws IOException {
         if (!initialized)
             initialize();
@@ -0,0 +1,11 @@
+package nl.inl.blacklab.exceptions;
+
+/**
+ * Too many searches are waiting to be executed; try again later.
+ */
+public class TooManySearches extends BlackLabRuntimeException {
+
+    public TooManySearches(String msg) {
+        super(msg);
+    }
+}
@@ -1,6 +1,7 @@
 package nl.inl.blacklab.forwardindex;
 
 import java.io.File;
+import java.nio.IntBuffer;
 import java.text.Collator;
 import java.util.List;
 import java.util.Set;
@@ -202,6 +203,15 @@ public abstract class AnnotationForwardIndex {
         // NOP, subclasses may override
         initialized = true;
     }
+
+    /**
+     * Initialize the forward index and load its files into memory, so the first
+     * searches don't have to read them from disk.
+     */
+    public void prefetch() {
+        // Subclasses that memory-map files may override this to load them
+        initialize();
+    }
     
     /**
      * Close the forward index. Writes the table of contents to disk if modified.
@@ -268,6 +278,62 @@ public abstract class AnnotationForwardIndex {
      */
     public abstract List<int[]> retrievePartsInt(int fiid, int[] start, int[] end);
 
+    /**
+     * Retrieve a part of a document into a caller-supplied array.
+     *
+     * Unlike {@link #retrievePartsInt(int, int[], int[])}, this doesn't allocate a
+     * new array for each part, so callers that read many small parts (e.g. when
+     * matching or building contexts) can reuse the same buffer.
+     *
+     * @param fiid forward index document id
+     * @param start first token to retrieve
+     * @param end first token not to retrieve (if beyond the end of the
+     *            document, the document length is used)
+     * @param buffer where to store the tokens; must have room for end - start tokens
+     * @return number of tokens retrieved, or -1 if the document was deleted
+     */
+    public int retrievePart(int fiid, int start, int end, int[] buffer) {
+        return retrievePart(fiid, start, end, buffer, 0);
+    }
+
+    /**
+     * Retrieve a part of a document into a caller-supplied array.
+     *
+     * @param fiid forward index document id
+     * @param start first token to retrieve
+     * @param end first token not to retrieve (if beyond the end of the
+     *            document, the document length is used)
+     * @param buffer where to store the tokens; must have room for end - start tokens
+     *            from offset
+     * @param offset where in the buffer to store the first token
+     * @return number of tokens retrieved, or -1 if the document was deleted
+     */
+    public int retrievePart(int fiid, int start, int end, int[] buffer, int offset) {
+        // Slow/naive implementation, subclasses should override
+        List<int[]> parts = retrievePartsInt(fiid, new int[] { start }, new int[] { end });
+        if (parts == null)
+            return -1;
+        int[] part = parts.get(0);
+        System.arraycopy(part, 0, buffer, offset, part.length);
+        return part.length;
+    }
+
+    /**
+     * Get read-only access to all tokens in a document.
+     *
+     * If the forward index is memory-mapped, this returns a view of the mapped file,
+     * so no tokens are copied. The returned buffer is positioned at the first token
+     * and its limit is the document length. It should not be shared between threads.
+     *
+     * @param fiid forward index document id
+     * @return the document's tokens, or null if the document was deleted
+     */
+    public IntBuffer tokens(int fiid) {
+        // Slow/naive implementation, subclasses should override
+        List<int[]> parts = retrievePartsInt(fiid, new int[] { -1 }, new int[] { -1 });
+        return parts == null ? null : IntBuffer.wrap(parts.get(0)).asReadOnlyBuffer();
+    }
+
     /**
      * Get the Terms object in order to translate ids to token strings
      * 
@@ -330,6 +396,13 @@ public abstract class AnnotationForwardIndex {
         }
     }
 
+    /**
+     * Get a single token from a document.
+     *
+     * @param fiid forward index document id
+     * @param pos position of the token
+     * @return the token id
+     */
     public int getToken(int fiid, int pos) {
         // Slow/naive implementation, subclasses should override
         return retrievePartsInt(fiid, new int[] { pos }, new int[] { pos + 1 }).get(0)[0];
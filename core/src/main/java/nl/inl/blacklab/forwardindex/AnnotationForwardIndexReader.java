@@ -27,6 +27,7 @@ import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
 import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -49,10 +50,10 @@ class AnnotationForwardIndexReader extends AnnotationForwardIndex {
     protected static final Logger logger = LogManager.getLogger(AnnotationForwardIndexReader.class);
 
     /** Mapping into the tokens file */
-    private List<ByteBuffer> tokensFileChunks = null;
+    private ByteBuffer[] tokensFileChunks = null;
 
-    /** Offsets of the mappings into the token file */
-    private List<Long> tokensFileChunkOffsetBytes = null;
+    /** Offsets of the mappings into the token file (ascending) */
+    private long[] tokensFileChunkOffsetBytes = null;
     
     /** Collators to use for terms file */
     private Collators collators;
@@ -112,33 +113,31 @@ class AnnotationForwardIndexReader extends AnnotationForwardIndex {
             // document start, documents of up to 2G tokens can be processed. We could get around
             // this limitation by reading from multiple chunks, but this would make the code
             // more complex.
-            tokensFileChunks = new ArrayList<>();
-            tokensFileChunkOffsetBytes = new ArrayList<>();
+            List<ByteBuffer> chunks = new ArrayList<>();
+            List<Long> chunkOffsets = new ArrayList<>();
             long mappedBytes = 0;
             long tokenFileEndBytes = tokenFileEndPosition * SIZEOF_INT;
+            // (entries may not be in file order because deleted entries are reused,
+            //  so sort the start points once, so we can binary search them for each chunk)
+            long[] sortedOffset = offset.clone();
+            Arrays.sort(sortedOffset);
             while (mappedBytes < tokenFileEndBytes) {
                 // Find the last TOC entry start point that's also in the previous mapping
                 // (or right the first byte after the previous mapping).
 
                 // Look for the largest entryOffset that's no larger than mappedBytes.
-                int mapNextChunkFrom = -1;
-                for (int i = 0; i < offset.length; i++) {
-                    if (offset[i] <= mappedBytes && (mapNextChunkFrom < 0 || offset[i] > offset[mapNextChunkFrom]))
-                        mapNextChunkFrom = i;
-                }
-
                 // Uses binary search.
-                int min = 0, max = offset.length;
+                int min = 0, max = sortedOffset.length;
                 while (max - min > 1) {
                     int middle = (min + max) / 2;
-                    long middleVal = offset[middle] * SIZEOF_INT;
+                    long middleVal = sortedOffset[middle] * SIZEOF_INT;
                     if (middleVal <= mappedBytes) {
                         min = middle;
                     } else {
                         max = middle;
                     }
                 }
-                long startOfNextMappingBytes = offset[min] * SIZEOF_INT;
+                long startOfNextMappingBytes = sortedOffset[min] * SIZEOF_INT;
 
                 // Map this chunk
                 long sizeBytes = tokenFileEndBytes - startOfNextMappingBytes;
@@ -147,10 +146,15 @@ class AnnotationForwardIndexReader extends AnnotationForwardIndex {
 
                 ByteBuffer mapping = tokensFileChannel.map(FileChannel.MapMode.READ_ONLY, startOfNextMappingBytes,
                         sizeBytes);
-                tokensFileChunks.add(mapping);
-                tokensFileChunkOffsetBytes.add(startOfNextMappingBytes);
+                chunks.add(mapping);
+                chunkOffsets.add(startOfNextMappingBytes);
                 mappedBytes = startOfNextMappingBytes + sizeBytes;
             }
+            tokensFileChunks = chunks.toArray(new ByteBuffer[0]);
+            tokensFileChunkOffsetBytes = new long[chunkOffsets.size()];
+            for (int i = 0; i < tokensFileChunkOffsetBytes.length; i++) {
+                tokensFileChunkOffsetBytes[i] = chunkOffsets.get(i);
+            }
         } catch (FileNotFoundException e1) {
             throw BlackLabRuntimeException.wrap(e1);
         } catch (IOException e1) {
@@ -162,6 +166,21 @@ class AnnotationForwardIndexReader extends AnnotationForwardIndex {
         initialized = true;
     }
     
+    /**
+     * Initialize and load the memory-mapped tokens and terms files into memory.
+     *
+     * The table of contents is read into memory by initialize() already.
+     */
+    @Override
+    public void prefetch() {
+        initialize();
+        for (ByteBuffer chunk: tokensFileChunks) {
+            if (chunk instanceof MappedByteBuffer)
+                ((MappedByteBuffer) chunk).load();
+        }
+        terms().prefetch();
+    }
+
     @Override
     public void close() {
         // NOP
@@ -223,6 +242,7 @@ class AnnotationForwardIndexReader extends AnnotationForwardIndex {
         if (n != end.length)
             throw new IllegalArgumentException("start and end must be of equal length");
         List<int[]> result = new ArrayList<>(n);
+        IntBuffer ib = n == 0 ? null : docTokens(fiid);
 
         for (int i = 0; i < n; i++) {
             if (start[i] == -1)
@@ -246,40 +266,8 @@ class AnnotationForwardIndexReader extends AnnotationForwardIndex {
                                 + " to " + end[i] + ")");
             }
 
-            // Get an IntBuffer to read the desired content
-            IntBuffer ib = null;
-            
-            // The tokens file has has been mapped to memory.
-            // Get an int buffer into the file.
-
-            // Figure out which chunk to access.
-            ByteBuffer whichChunk = null;
-            long chunkOffsetBytes = -1;
-            long entryOffsetBytes = offset[fiid] * SIZEOF_INT;
-            for (int j = 0; j < tokensFileChunkOffsetBytes.size(); j++) {
-                long offsetBytes = tokensFileChunkOffsetBytes.get(j);
-                ByteBuffer buffer = tokensFileChunks.get(j);
-                if (offsetBytes <= entryOffsetBytes + start[i] * SIZEOF_INT
-                        && offsetBytes + buffer.capacity() >= entryOffsetBytes + end[i]
-                                * SIZEOF_INT) {
-                    // This one!
-                    whichChunk = buffer;
-                    chunkOffsetBytes = offsetBytes;
-                    break;
-                }
-            }
-
-            if (whichChunk == null) {
-                throw new BlackLabRuntimeException("Tokens file chunk containing document not found. fiid = " + fiid);
-            }
-            whichChunk.position((int) (offset[fiid] * SIZEOF_INT - chunkOffsetBytes));
-            ib = whichChunk.asIntBuffer();
-
             int snippetLength = end[i] - start[i];
             int[] snippet = new int[snippetLength];
-            
-            // The file is mem-mapped (search mode).
-            // Position us at the correct place in the file.
             ib.position(start[i]);
             ib.get(snippet);
             result.add(snippet);
@@ -288,6 +276,91 @@ class AnnotationForwardIndexReader extends AnnotationForwardIndex {
         return result;
     }
 
+    @Override
+    public int retrievePart(int fiid, int start, int end, int[] buffer, int offset) {
+        if (!initialized)
+            initialize();
+        if (deleted[fiid] != 0)
+            return -1;
+        int docLength = length[fiid];
+        if (end > docLength)
+            end = docLength;
+        if (start < 0 || start > end)
+            throw new IllegalArgumentException("Illegal values, start = " + start + ", end = " + end);
+        IntBuffer ib = docTokens(fiid);
+        ib.position(start);
+        ib.get(buffer, offset, end - start);
+        return end - start;
+    }
+
+    @Override
+    public IntBuffer tokens(int fiid) {
+        if (!initialized)
+            initialize();
+        if (deleted[fiid] != 0)
+            return null;
+        return docTokens(fiid);
+    }
+
+    @Override
+    public int getToken(int fiid, int pos) {
+        if (!initialized)
+            initialize();
+        if (pos < 0 || pos >= length[fiid])
+            throw new IllegalArgumentException("Position out of range: " + pos + " (document length " + length[fiid] + ")");
+        int chunk = chunkIndex(fiid);
+        long posBytes = (offset[fiid] + pos) * SIZEOF_INT;
+        // (absolute get doesn't change the buffer's position, so is safe to use from multiple threads)
+        return tokensFileChunks[chunk].getInt((int) (posBytes - tokensFileChunkOffsetBytes[chunk]));
+    }
+
+    /**
+     * Find the chunk of the tokens file containing a document.
+     *
+     * Each chunk starts at a document start, and each document is completely
+     * contained in the last chunk that starts at or before it.
+     *
+     * @param fiid forward index id
+     * @return index of the chunk
+     */
+    private int chunkIndex(int fiid) {
+        long entryOffsetBytes = offset[fiid] * SIZEOF_INT;
+        int min = 0, max = tokensFileChunkOffsetBytes.length;
+        while (max - min > 1) {
+            int middle = (min + max) / 2;
+            if (tokensFileChunkOffsetBytes[middle] <= entryOffsetBytes) {
+                min = middle;
+            } else {
+                max = middle;
+            }
+        }
+        if (max == 0 || entryOffsetBytes + (long) length[fiid] * SIZEOF_INT > tokensFileChunkOffsetBytes[min]
+                + tokensFileChunks[min].capacity()) {
+            throw new BlackLabRuntimeException("Tokens file chunk containing document not found. fiid = " + fiid);
+        }
+        return min;
+    }
+
+    /**
+     * Get a view of a document's tokens in the mapped tokens file.
+     *
+     * The view has its own position, so it may be used without synchronization,
+     * but it should not be shared between threads.
+     *
+     * @param fiid forward index id
+     * @return view of the document's tokens, with its limit at the document length
+     */
+    private IntBuffer docTokens(int fiid) {
+        if (length[fiid] == 0)
+            return IntBuffer.allocate(0);
+        int chunk = chunkIndex(fiid);
+        ByteBuffer buf = tokensFileChunks[chunk].duplicate();
+        buf.position((int) (offset[fiid] * SIZEOF_INT - tokensFileChunkOffsetBytes[chunk]));
+        IntBuffer ib = buf.asIntBuffer();
+        ib.limit(length[fiid]);
+        return ib;
+    }
+
     @Override
     public void deleteDocument(int fiid) {
         throw new UnsupportedOperationException("Not supported in search mode");
@@ -0,0 +1,100 @@
+package nl.inl.blacklab.forwardindex;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.uninverting.UninvertingReader;
+
+import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+import nl.inl.blacklab.search.indexmetadata.Annotation;
+
+/**
+ * Caches the forward index ids (fiids) of each segment in an int array.
+ *
+ * Looking up a fiid is then a direct array load instead of a DocValues lookup.
+ * Arrays are kept per segment core, so when the index reader is reopened, only
+ * new segments have to be read; a segment's arrays are discarded when the
+ * segment is closed.
+ */
+public final class FiidCache {
+
+    /** Stored in the cache if a segment has no DocValues for a field */
+    private static final int[] NO_FIIDS = new int[0];
+
+    /** Fiid arrays per fiid field name, per segment core */
+    private static final Map<Object, Map<String, int[]>> cache = new ConcurrentHashMap<>();
+
+    private FiidCache() {
+    }
+
+    /**
+     * Get the fiids for a segment.
+     *
+     * @param reader segment reader
+     * @param fiidFieldName fiid field name in the Lucene index
+     * @return fiids indexed by segment doc id, or null if the field has no (simulated) DocValues
+     */
+    public static int[] get(LeafReader reader, String fiidFieldName) {
+        Map<String, int[]> segmentFiids = cache.computeIfAbsent(reader.getCoreCacheKey(), key -> {
+            reader.addCoreClosedListener(cache::remove);
+            return new ConcurrentHashMap<>();
+        });
+        int[] fiids = segmentFiids.computeIfAbsent(fiidFieldName, field -> read(reader, field));
+        return fiids == NO_FIIDS ? null : fiids;
+    }
+
+    /**
+     * Read the fiids of all segments of an index into the cache.
+     *
+     * Used to warm up an index, so the first searches don't have to do this.
+     *
+     * @param reader index reader
+     * @param annotation annotation whose fiids to read
+     */
+    public static void warmUp(IndexReader reader, Annotation annotation) {
+        String fiidFieldName = annotation.forwardIndexIdField();
+        for (LeafReaderContext rc: reader.leaves()) {
+            get(rc.reader(), fiidFieldName);
+        }
+    }
+
+    /**
+     * Are the fiids of a segment currently cached?
+     *
+     * @param coreCacheKey segment core cache key
+     * @return true if the cache has an entry for this segment
+     */
+    static boolean isCached(Object coreCacheKey) {
+        return cache.containsKey(coreCacheKey);
+    }
+
+    private static int[] read(LeafReader reader, String fiidFieldName) {
+        try {
+            NumericDocValues numericDocValues = reader.getNumericDocValues(fiidFieldName);
+            if (numericDocValues == null) {
+                // Use UninvertingReader to simulate DocValues (slower)
+                Map<String, UninvertingReader.Type> fields = new TreeMap<>();
+                fields.put(fiidFieldName, UninvertingReader.Type.INTEGER);
+                @SuppressWarnings("resource")
+                UninvertingReader uninv = new UninvertingReader(reader, fields);
+                numericDocValues = uninv.getNumericDocValues(fiidFieldName);
+            }
+            if (numericDocValues == null)
+                return NO_FIIDS;
+            int[] fiids = new int[reader.maxDoc()];
+            for (int i = 0; i < fiids.length; i++) {
+                fiids[i] = (int) numericDocValues.get(i);
+            }
+            return fiids;
+        } catch (IOException e) {
+            throw BlackLabRuntimeException.wrap(e);
+        }
+    }
+
+}
@@ -3,21 +3,19 @@ package nl.inl.blacklab.forwardindex;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.TreeMap;
 
 import org.apache.lucene.index.IndexReader;
-import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
-import org.apache.lucene.index.NumericDocValues;
-import org.apache.lucene.uninverting.UninvertingReader;
+import org.apache.lucene.index.ReaderUtil;
 
 import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
 import nl.inl.blacklab.search.indexmetadata.Annotation;
 
 /**
  * Class for looking up forward index id, using DocValues or stored fields.
+ *
+ * DocValues are read into int arrays per segment (see {@link FiidCache}), so
+ * instances are cheap to create and safe to use from multiple threads.
  */
 public class FiidLookup {
 
@@ -33,62 +31,43 @@ public class FiidLookup {
      */
     private String fiidFieldName;
 
-    /** The DocValues per segment (keyed by docBase) */
-    private Map<Integer, NumericDocValues> cachedFiids;
+    /** The fiids per segment, or null if we don't have DocValues */
+    private int[][] cachedFiids;
+
+    /** The docBase of each segment */
+    private int[] docBases;
 
     public FiidLookup(IndexReader reader, Annotation annotation) {
         this.fiidFieldName = annotation.forwardIndexIdField();
         this.reader = reader;
-        cachedFiids = new TreeMap<>();
-        try {
-            for (LeafReaderContext rc : reader.leaves()) {
-                LeafReader r = rc.reader();
-                NumericDocValues numericDocValues = r.getNumericDocValues(fiidFieldName);
-                if (numericDocValues == null) {
-                    // Use UninvertingReader to simulate DocValues (slower)
-                    Map<String, UninvertingReader.Type> fields = new TreeMap<>();
-                    fields.put(fiidFieldName, UninvertingReader.Type.INTEGER);
-                    @SuppressWarnings("resource")
-                    UninvertingReader uninv = new UninvertingReader(r, fields);
-                    numericDocValues = uninv.getNumericDocValues(fiidFieldName);
-                }
-                if (numericDocValues != null) {
-                    cachedFiids.put(rc.docBase, numericDocValues);
-                }
-            }
-            if (cachedFiids.isEmpty()) {
+        List<LeafReaderContext> leaves = reader.leaves();
+        cachedFiids = new int[leaves.size()][];
+        docBases = new int[leaves.size()];
+        for (int i = 0; i < leaves.size(); i++) {
+            LeafReaderContext rc = leaves.get(i);
+            int[] fiids = FiidCache.get(rc.reader(), fiidFieldName);
+            if (fiids == null) {
                 // We don't actually have DocValues.
                 cachedFiids = null;
-            } else {
-                // See if there are actual values stored
-                // [this check was introduced when we used the old FieldCache, no longer necessary?]
-                int numToCheck = Math.min(AnnotationForwardIndex.NUMBER_OF_CACHE_ENTRIES_TO_CHECK, reader.maxDoc());
-                if (!hasFiids(numToCheck))
-                    cachedFiids = null;
+                break;
             }
-        } catch (IOException e) {
-            BlackLabRuntimeException.wrap(e);
+            cachedFiids[i] = fiids;
+            docBases[i] = rc.docBase;
+        }
+        if (cachedFiids != null) {
+            // See if there are actual values stored
+            // [this check was introduced when we used the old FieldCache, no longer necessary?]
+            int numToCheck = Math.min(AnnotationForwardIndex.NUMBER_OF_CACHE_ENTRIES_TO_CHECK, reader.maxDoc());
+            if (!hasFiids(numToCheck))
+                cachedFiids = null;
         }
     }
 
     public int get(int docId) {
         if (cachedFiids != null) {
             // Find the fiid in the correct segment
-            Entry<Integer, NumericDocValues> prev = null;
-            for (Entry<Integer, NumericDocValues> e : cachedFiids.entrySet()) {
-                Integer docBase = e.getKey();
-                if (docBase > docId) {
-                    // Previous segment (the highest docBase lower than docId) is the right one
-                    Integer prevDocBase = prev.getKey();
-                    NumericDocValues prevDocValues = prev.getValue();
-                    return (int)prevDocValues.get(docId - prevDocBase);
-                }
-                prev = e;
-            }
-            // Last segment is the right one
-            Integer prevDocBase = prev.getKey();
-            NumericDocValues prevDocValues = prev.getValue();
-            return (int)prevDocValues.get(docId - prevDocBase);
+            int segment = ReaderUtil.subIndex(docId, docBases);
+            return cachedFiids[segment][docId - docBases[segment]];
         }
 
         // Not cached; find fiid by reading stored value from Document now
@@ -8,6 +8,8 @@ import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
 import java.nio.charset.Charset;
 import java.text.Collator;
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
 
 import org.eclipse.collections.api.set.primitive.MutableIntSet;
 
@@ -33,10 +35,25 @@ public abstract class Terms {
     /** Number of bytes per int */
     protected static final int BYTES_PER_INT = Integer.SIZE / Byte.SIZE;
 
+    /**
+     * Marks the term hash table section that follows the sort arrays in the terms
+     * file. Older terms files end after the sort arrays.
+     */
+    protected static final int TERM_HASH_TABLE_MAGIC = 0x54484153;
+
+    /** Maximum number of terms we can hash (so the hash table size fits in an int) */
+    protected static final int MAX_HASHED_TERMS = 1 << 28;
+
+    /**
+     * Term hash table slots per mapping. The hash table may be larger than 2 GB,
+     * so it is mapped in parts of this many ints (1 GB).
+     */
+    protected static final int HASH_TABLE_SLOTS_PER_MAPPING = 1 << 28;
+
     /** How many terms total are there? (always valid) */
     int numberOfTerms = 0;
 
-    /** Search mode only: the terms, by index number. */
+    /** Index mode only: the terms, by index number (used while reading/writing the terms file). */
     String[] terms;
 
     /**
@@ -64,16 +81,22 @@ public abstract class Terms {
         // NOP
     }
 
+    /**
+     * Initialize and load the terms into memory, so the first searches don't
+     * have to read them from disk.
+     */
+    public void prefetch() {
+        // Subclasses that memory-map files may override this to load them
+        initialize();
+    }
+
     /**
      * Get the existing index number of a term, or add it to the term list and
      * assign it a new index number.
      *
-     * In index mode, this is fast. In search mode, this is slower, because we have
-     * to do a binary search through the memory-mapped terms file. However, this is
-     * only done rarely.
-     *
-     * If you care about this being fast, call buildTermIndex() at the start of your
-     * application.
+     * In index mode, this uses an in-memory map. In search mode, this uses the
+     * term hash table stored in the terms file (for older terms files, the hash
+     * table is built on the heap when first needed).
      *
      * @param term the term to get the index number for
      * @return the term's index number
@@ -232,6 +255,63 @@ public abstract class Terms {
         return idToSortPosition(termId1, sensitivity) - idToSortPosition(termId2, sensitivity);
     }
 
+    /**
+     * Hash a term's UTF-8 bytes.
+     *
+     * @param termBytes the bytes to hash
+     * @return hash code
+     */
+    protected static int termHash(byte[] termBytes) {
+        int h = 0;
+        for (byte b: termBytes)
+            h = 31 * h + b;
+        return mixTermHash(h);
+    }
+
+    /**
+     * Spread the bits of a term hash, because we use the lowest bits to pick a
+     * hash table slot.
+     *
+     * @param h hash code of the term's UTF-8 bytes
+     * @return the hash code to use
+     */
+    protected static int mixTermHash(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Determine the number of slots in the term hash table.
+     *
+     * This is a power of two, at least twice the number of terms.
+     *
+     * @param numberOfTerms number of terms
+     * @return number of slots
+     */
+    protected static int termHashTableSize(int numberOfTerms) {
+        return Math.max(2, Integer.highestOneBit(Math.max(numberOfTerms, 1)) * 4);
+    }
+
+    /**
+     * Build an open addressing hash table of term ids (NO_TERM for empty slots).
+     *
+     * @param numberOfTerms number of terms to add
+     * @param termHash hash code for each term id, see termHash()
+     * @return the hash table
+     */
+    protected static int[] buildTermHashTable(int numberOfTerms, IntUnaryOperator termHash) {
+        int[] table = new int[termHashTableSize(numberOfTerms)];
+        Arrays.fill(table, NO_TERM);
+        int mask = table.length - 1;
+        for (int id = 0; id < numberOfTerms; id++) {
+            int slot = termHash.applyAsInt(id) & mask;
+            while (table[slot] != NO_TERM)
+                slot = (slot + 1) & mask;
+            table[slot] = id;
+        }
+        return table;
+    }
+
     protected abstract void setBlockBasedFile(boolean useBlockBasedTermsFile);
 
     public static Terms openForReading(Collators collators, File termsFile, boolean useBlockBasedTermsFile, boolean buildTermIndexesOnInit) {
@@ -18,20 +18,20 @@ package nl.inl.blacklab.forwardindex;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
-import java.text.CollationKey;
+import java.nio.channels.FileChannel.MapMode;
 import java.text.Collator;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.eclipse.collections.api.set.primitive.MutableIntSet;
 
-import it.unimi.dsi.fastutil.objects.Object2IntMap;
-import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
-import it.unimi.dsi.fastutil.objects.Object2LongMap;
-import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
 import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
 import nl.inl.blacklab.search.indexmetadata.MatchSensitivity;
 
@@ -43,6 +43,19 @@ import nl.inl.blacklab.search.indexmetadata.MatchSensitivity;
  * This version of the class stores the terms in a more efficient way so it
  * saves and loads faster, and includes the case-insensitive sorting order.
  * 
+ * The term strings, sort position arrays and term hash table are not read into
+ * the Java heap, but accessed through memory mappings of the terms file, so
+ * opening a large index is fast and terms don't take up heap space. Looking up
+ * the id for a term is done using the hash table of term ids, comparing the
+ * term's UTF-8 bytes directly; finding case-insensitive matches is done by
+ * binary searching the terms in sort order.
+ *
+ * Older terms files don't contain the inverted sort arrays and/or the term hash
+ * table. For those, we build them on the heap when first needed (or on
+ * initialization, if buildTermIndexesOnInit is set). If such a file has too
+ * many terms to hash, we look up term ids by binary searching the terms in
+ * sort order instead.
+ *
  * This implementation is thread-safe.
  */
 class TermsReader extends Terms {
@@ -50,59 +63,87 @@ class TermsReader extends Terms {
     protected static final Logger logger = LogManager.getLogger(TermsReader.class);
 
     /**
-     * Mapping from term to its unique index number.
+     * First term id in each block of term strings, plus one extra element
+     * containing the total number of terms.
      */
-    Object2IntMap<String> termIndex;
+    private int[] blockFirstTerm;
 
     /**
-     * The first index in the sortPositionPerIdInsensitive[] array that matches each
-     * term, and the number of matching terms that follow. Used while building NFAs
-     * to quickly fetch all indices matching a term case-insensitively.
-     * 
-     * The most significant 4 bytes of the long are the first term; the least significant
-     * 4 bytes are the number of terms.
+     * For each block of term strings: the byte offset of each term in the data
+     * block, plus one extra offset for the end of the last term.
      */
-    Object2LongMap<CollationKey> termIndexInsensitive;
+    private IntBuffer[] blockTermOffsets;
+
+    /** For each block of term strings: the UTF-8 bytes for the terms. */
+    private ByteBuffer[] blockTermData;
 
     /**
-     * The index number of each sorting position. Inverse of sortPositionPerId[]
+     * The sorting position for each index number. Inverse of idPerSortPosition[]
      * array.
      */
-    int[] idPerSortPosition;
+    private IntBuffer sortPositionPerId;
 
     /**
-     * The index number of each case-insensitive sorting position. Inverse of
-     * sortPositionPerIdInsensitive[] array.
+     * The case-insensitive sorting position for each index number.
      */
-    int[] idPerSortPositionInsensitive;
+    private IntBuffer sortPositionPerIdInsensitive;
 
     /**
-     * The sorting position for each index number. Inverse of idPerSortPosition[]
-     * array.
+     * The index number of each sorting position. Inverse of sortPositionPerId[]
+     * array. Mapped from the terms file, or (for older terms files) built when
+     * first needed.
      */
-    int[] sortPositionPerId;
+    private IntBuffer idPerSortPosition;
 
     /**
-     * The case-insensitive sorting position for each index number.
+     * The index number of each case-insensitive sorting position. Inverse of
+     * sortPositionPerIdInsensitive[] array. Mapped from the terms file, or (for
+     * older terms files) built when first needed.
+     *
+     * Terms that are equal case-insensitively are adjacent in this array, so
+     * we can find all of them by binary searching for one of them.
      */
-    int[] sortPositionPerIdInsensitive;
+    private IntBuffer idPerSortPositionInsensitive;
 
-    /** If true, termIndex is a valid mapping from term to term id. */
-    private boolean initialized;
+    /**
+     * Open addressing hash table of term ids (NO_TERM for empty slots), by hash of
+     * the term's UTF-8 bytes, in parts of HASH_TABLE_SLOTS_PER_MAPPING slots.
+     * Mapped from the terms file, or (for older terms files) built when first
+     * needed. Null if we don't have one (older terms files with too many terms
+     * to hash).
+     */
+    private IntBuffer[] termIdsByHash;
+
+    /** Number of slots in the term hash table minus one (the table size is a power of two) */
+    private int termHashMask;
+
+    /** All mappings of the terms file (term strings, offsets, sort arrays and hash table), for prefetching. */
+    private MappedByteBuffer[] mappings;
+
+    /** If true, the terms file has been mapped. */
+    private volatile boolean initialized;
+
+    /** If true, the inverted sort arrays and term hash table are available (mapped or built). */
+    private volatile boolean termIndexesBuilt;
 
     private File termsFile;
 
     /** If true, build the term indexes right away. If false, don't build them until required. */
     private boolean buildTermIndexesOnInit;
 
+    /**
+     * Maximum number of terms to build a hash table for (older terms files only).
+     * Usually MAX_HASHED_TERMS, but for testing, we can set this to a lower value.
+     */
+    private int maxHashedTerms = MAX_HASHED_TERMS;
+
+    /** Buffer for decoding a term's UTF-8 bytes, so get() doesn't need to allocate one each time */
+    private static final ThreadLocal<byte[]> decodeBuffer = ThreadLocal.withInitial(() -> new byte[64]);
+
     TermsReader(Collators collators, File termsFile, boolean useBlockBasedTermsFile, boolean buildTermIndexesOnInit) {
         this.collator = collators.get(MatchSensitivity.SENSITIVE);
         this.collatorInsensitive = collators.get(MatchSensitivity.INSENSITIVE);
 
-        // We already have the sort order, so TreeMap is not necessary here.
-        this.termIndex = null;
-        this.termIndexInsensitive = null;
-
         initialized = false;
         setBlockBasedFile(useBlockBasedTermsFile);
         
@@ -115,57 +156,128 @@ class TermsReader extends Terms {
     @Override
     public int indexOf(String term) {
 
-        // If we havent' filled termIndex based on terms[] yet, do so now.
-        // (for commonly used AFIs, this is done automatically on open in background thread, so this shouldn't normally block)
+        // Make sure the hash table is available
+        // (it is normally mapped from the terms file; only for older terms files do we have to build it)
         buildTermIndexes();
-        
-        int index = termIndex.getInt(term);
-        if (index == -1)
-            return NO_TERM; // term not found
-        return index;
+        IntBuffer[] table = termIdsByHash;
+        if (table == null)
+            return indexOfBySortOrder(term); // older terms file with too many terms to hash
+
+        // Look up the term by its UTF-8 bytes, so we don't need to decode and collate any terms
+        byte[] termBytes = term.getBytes(DEFAULT_CHARSET);
+        int mask = termHashMask;
+        for (int slot = termHash(termBytes) & mask; ; slot = (slot + 1) & mask) {
+            int id = table[slot / HASH_TABLE_SLOTS_PER_MAPPING].get(slot % HASH_TABLE_SLOTS_PER_MAPPING);
+            if (id == NO_TERM)
+                return NO_TERM; // term not found
+            if (termBytesEqual(id, termBytes))
+                return id;
+        }
+    }
+
+    /**
+     * Find a term's id by binary searching the terms in (case-sensitive) sort order.
+     *
+     * Slower than using the hash table, because we have to decode and collate
+     * terms, but doesn't require one. Only used for older terms files with too
+     * many terms to hash.
+     *
+     * @param term the term
+     * @return the term's id, or NO_TERM if not found
+     */
+    private int indexOfBySortOrder(String term) {
+        int lo = 0, hi = numberOfTerms - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int id = idPerSortPosition.get(mid);
+            int cmp = collator.compare(get(id), term);
+            if (cmp < 0)
+                lo = mid + 1;
+            else if (cmp > 0)
+                hi = mid - 1;
+            else
+                return id;
+        }
+        return NO_TERM; // term not found
     }
 
     @Override
     public void indexOf(MutableIntSet results, String term, MatchSensitivity sensitivity) {
-        // Make sure termIndex[Insensitive] and idPerSortPosition[Insensitive] are initialized
-        // (we do this lazily for some AFIs because we rarely or never need this for those, and it takes up a significant amount of memory)
+        // Make sure idPerSortPosition[Insensitive] are initialized
+        // (we do this lazily for some AFIs because we rarely or never need this)
         buildTermIndexes();
         
         // NOTE: we don't do diacritics and case-sensitivity separately, but could in the future.
         //  right now, diacSensitive is ignored and caseSensitive is used for both.
         boolean caseSensitive = sensitivity.isCaseSensitive();
 
-        // Yes, use the available term index.
-        // NOTE: insensitive index is only available in search mode.
         if (caseSensitive) {
             // Case-/accent-sensitive. Look up the term's id.
-            results.add(termIndex.getInt(term));
-        } else if (termIndexInsensitive != null) {
-            // Case-/accent-insensitive. Find the relevant stretch of sort positions and look up the corresponding ids.
-            int[] idLookup = caseSensitive ? idPerSortPosition : idPerSortPositionInsensitive;
-            Collator coll = caseSensitive ? collator : collatorInsensitive;
-            CollationKey key = coll.getCollationKey(term);
-            long firstAndNumber = termIndexInsensitive.getLong(key);            
-            if (firstAndNumber != -1) {
-                int start = (int)(firstAndNumber >>> 32);
-                int end = start + (int)firstAndNumber;
-                for (int i = start; i < end; i++) {
-                    results.add(idLookup[i]);
-                }
+            results.add(indexOf(term));
+        } else {
+            // Case-/accent-insensitive. Find one matching term; all matching terms have the same
+            // insensitive sort position, and are stored from that position on in idPerSortPositionInsensitive.
+            int id = insensitiveMatch(term);
+            if (id == NO_TERM)
+                return;
+            int sortPos = sortPositionPerIdInsensitive.get(id);
+            for (int i = sortPos; i < numberOfTerms; i++) {
+                id = idPerSortPositionInsensitive.get(i);
+                if (sortPositionPerIdInsensitive.get(id) != sortPos)
+                    break;
+                results.add(id);
             }
         }
     }
 
+    /**
+     * Find a term that is equal to the specified term case- and
+     * accent-insensitively.
+     *
+     * Usually, the term itself or its desensitized (lowercase, unaccented) version
+     * is one of our terms, so we can use the hash table without decoding terms.
+     * Otherwise, we binary search the terms in insensitive sort order.
+     *
+     * @param term the term
+     * @return id of a matching term, or NO_TERM if there is none
+     */
+    private int insensitiveMatch(String term) {
+        int id = indexOf(term);
+        if (id != NO_TERM)
+            return id;
+        String desensitized = MatchSensitivity.INSENSITIVE.desensitize(term);
+        if (!desensitized.equals(term)) {
+            id = indexOf(desensitized);
+            if (id != NO_TERM && collatorInsensitive.compare(get(id), term) == 0)
+                return id;
+        }
+        Collator coll = collatorInsensitive;
+        int lo = 0, hi = numberOfTerms - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            id = idPerSortPositionInsensitive.get(mid);
+            int cmp = coll.compare(get(id), term);
+            if (cmp < 0)
+                lo = mid + 1;
+            else if (cmp > 0)
+                hi = mid - 1;
+            else
+                return id;
+        }
+        return NO_TERM; // no matching term
+    }
+
     @Override
     public boolean termsEqual(int[] termId, MatchSensitivity sensitivity) {
-        buildTermIndexes();
+        if (!initialized)
+            initialize();
         
         // NOTE: we don't do diacritics and case-sensitivity separately, but could in the future.
         //  right now, diacSensitive is ignored and caseSensitive is used for both.
-        int[] idLookup = sensitivity.isCaseSensitive() ? sortPositionPerId : sortPositionPerIdInsensitive;
-        int id0 = idLookup[termId[0]];
+        IntBuffer idLookup = sensitivity.isCaseSensitive() ? sortPositionPerId : sortPositionPerIdInsensitive;
+        int id0 = idLookup.get(termId[0]);
         for (int i = 1; i < termId.length; i++) {
-            if (termId[i] == -1 || id0 != idLookup[termId[i]])
+            if (termId[i] == -1 || id0 != idLookup.get(termId[i]))
                 return false;
         }
         return true;
@@ -176,10 +288,11 @@ class TermsReader extends Terms {
         if (initialized)
             return;
         
-        // Read the terms file
-        //logger.debug("    START read terms file: " + termsFile);
+        // Map the terms file
+        //logger.debug("    START map terms file: " + termsFile);
         read(termsFile);
-        //logger.debug("    END   read terms file: " + termsFile);
+        //logger.debug("    END   map terms file: " + termsFile);
+        initialized = true;
 
         if (buildTermIndexesOnInit) {
             //logger.debug("    START build term indexes: " + termsFile);
@@ -188,64 +301,46 @@ class TermsReader extends Terms {
         } else {
             //logger.debug("    SKIP  build term indexes: " + termsFile);
         }
-
-        initialized = true;
     }
 
-    private synchronized void buildTermIndexes() {
-        if (terms == null)
-            initialize();
-        if (termIndex == null) {
-            termIndex = new Object2IntOpenHashMap<>(terms.length);
-            termIndex.defaultReturnValue(-1);
-            termIndexInsensitive = new Object2LongOpenHashMap<>(terms.length);
-            termIndexInsensitive.defaultReturnValue(-1);
-            
-            // Build the case-sensitive term index.
-            for (int i = 0; i < numberOfTerms; i++) {
-                termIndex.put(terms[i], i);
-            }
-    
-            if (termIndexInsensitive != null) {
-                // Now, store the first index in the sortPositionPerIdInsensitive[] array
-                // that matches each term, and the number of matching terms that follow.
-                // This can be used while building NFAs to quickly fetch all indices matching
-                // a term case-insensitively.
-                CollationKey prevTermKey = collatorInsensitive.getCollationKey("");
-                int currentFirst = -1;
-                int currentNumber = -1;
-                buildIdPerSortPosition();
-                for (int i = 0; i < numberOfTerms; i++) {
-                    String term = terms[idPerSortPositionInsensitive[i]];
-                    CollationKey termKey = collatorInsensitive.getCollationKey(term);
-                    if (!termKey.equals(prevTermKey)) {
-                        if (currentFirst >= 0) {
-                            currentNumber = i - currentFirst;
-                            termIndexInsensitive.put(prevTermKey, ((long)currentFirst << 32) | currentNumber );
-                        }
-                        currentFirst = i;
-                        currentNumber = 0;
-                        prevTermKey = termKey;
-                    }
-                }
-                if (currentFirst >= 0) {
-                    currentNumber = numberOfTerms - currentFirst;
-                    termIndexInsensitive.put(prevTermKey, ((long)currentFirst << 32) | currentNumber );
-                }
-            }
+    /**
+     * Map the terms file, build the term indexes if necessary (older terms files
+     * only), and load the mapped parts of the terms file into memory.
+     */
+    @Override
+    public void prefetch() {
+        buildTermIndexes(); // (also initializes)
+        for (MappedByteBuffer mapping: mappings) {
+            mapping.load();
         }
     }
 
-    private synchronized void buildIdPerSortPosition() {
+    private void buildTermIndexes() {
+        if (!termIndexesBuilt)
+            buildTermIndexesSync();
+    }
+
+    /**
+     * Make sure the inverted sort arrays and term hash table are available.
+     *
+     * If they were mapped from the terms file, there's nothing to do. For older
+     * terms files, we build the missing ones on the heap.
+     */
+    private synchronized void buildTermIndexesSync() {
+        if (!initialized)
+            initialize();
+        if (termIndexesBuilt)
+            return;
         if (idPerSortPosition == null) {
-            // Invert sortPositionPerId[] array, so we can later do a binary search through our
-            // terms to find a specific one. (only needed to deserialize sort/group criteria from URL)
-            idPerSortPosition = new int[numberOfTerms];
-            idPerSortPositionInsensitive = new int[numberOfTerms];
+            // Older terms file without the inverted arrays.
+            // Invert sortPositionPerId[] arrays, so we can do a binary search through our
+            // terms to find a specific one.
+            int[] idPerSortPosition = new int[numberOfTerms];
+            int[] idPerSortPositionInsensitive = new int[numberOfTerms];
             Arrays.fill(idPerSortPositionInsensitive, -1);
             for (int i = 0; i < numberOfTerms; i++) {
-                idPerSortPosition[sortPositionPerId[i]] = i;
-                int x = sortPositionPerIdInsensitive[i];
+                idPerSortPosition[sortPositionPerId.get(i)] = i;
+                int x = sortPositionPerIdInsensitive.get(i);
                 // Multiple terms can have the same (case-insensitive)
                 // sort position. Skip over previous terms so each term is
                 // in the array and we can look at adjacent terms to recover all
@@ -254,7 +349,81 @@ class TermsReader extends Terms {
                     x++;
                 idPerSortPositionInsensitive[x] = i;
             }
+            this.idPerSortPositionInsensitive = IntBuffer.wrap(idPerSortPositionInsensitive);
+            this.idPerSortPosition = IntBuffer.wrap(idPerSortPosition);
+        }
+        if (termIdsByHash == null && numberOfTerms > maxHashedTerms) {
+            // Older terms file without the hash table, and too many terms to build one.
+            // indexOf() will binary search the terms in sort order instead.
+            logger.warn("Too many terms to hash (" + numberOfTerms + "), looking up terms by sort order: " + termsFile);
+        } else if (termIdsByHash == null) {
+            // Older terms file without the hash table.
+            // Hash all terms, so we can look up term ids without decoding and collating terms.
+            int[] table = buildTermHashTable(numberOfTerms, this::hash);
+            IntBuffer[] parts = new IntBuffer[(table.length + HASH_TABLE_SLOTS_PER_MAPPING - 1) / HASH_TABLE_SLOTS_PER_MAPPING];
+            for (int i = 0; i < parts.length; i++) {
+                int start = i * HASH_TABLE_SLOTS_PER_MAPPING;
+                parts[i] = IntBuffer.wrap(table, start, Math.min(HASH_TABLE_SLOTS_PER_MAPPING, table.length - start)).slice();
+            }
+            termHashMask = table.length - 1;
+            termIdsByHash = parts;
+        }
+        termIndexesBuilt = true; // (volatile write last, so the term indexes are visible to other threads)
+    }
+
+    /**
+     * Find the block containing a term.
+     *
+     * @param index term id
+     * @return the block number
+     */
+    private int blockOf(int index) {
+        if (blockTermData.length == 1)
+            return 0;
+        int block = Arrays.binarySearch(blockFirstTerm, index);
+        return block < 0 ? -block - 2 : block;
+    }
+
+    /**
+     * Hash a term's UTF-8 bytes in the terms file.
+     *
+     * Yields the same value as termHash(byte[]) for the same bytes.
+     *
+     * @param index term id
+     * @return hash code
+     */
+    private int hash(int index) {
+        int block = blockOf(index);
+        int indexInBlock = index - blockFirstTerm[block];
+        IntBuffer offsets = blockTermOffsets[block];
+        int end = offsets.get(indexInBlock + 1);
+        ByteBuffer data = blockTermData[block];
+        int h = 0;
+        for (int i = offsets.get(indexInBlock); i < end; i++)
+            h = 31 * h + data.get(i);
+        return mixTermHash(h);
+    }
+
+    /**
+     * Check if a term in the terms file has the specified UTF-8 bytes.
+     *
+     * @param index term id
+     * @param termBytes bytes to compare with
+     * @return true if the bytes are equal
+     */
+    private boolean termBytesEqual(int index, byte[] termBytes) {
+        int block = blockOf(index);
+        int indexInBlock = index - blockFirstTerm[block];
+        IntBuffer offsets = blockTermOffsets[block];
+        int offset = offsets.get(indexInBlock);
+        if (offsets.get(indexInBlock + 1) - offset != termBytes.length)
+            return false;
+        ByteBuffer data = blockTermData[block];
+        for (int i = 0; i < termBytes.length; i++) {
+            if (data.get(offset + i) != termBytes[i])
+                return false;
         }
+        return true;
     }
 
     @Override
@@ -262,22 +431,124 @@ class TermsReader extends Terms {
         throw new BlackLabRuntimeException("Cannot clear, not in index mode");
     }
 
+    private static int readInt(FileChannel fc, long position) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(BYTES_PER_INT);
+        while (buf.hasRemaining()) {
+            if (fc.read(buf, position + buf.position()) < 0)
+                throw new IOException("Unexpected end of terms file at position " + position);
+        }
+        buf.flip();
+        return buf.getInt();
+    }
+
+    private static MappedByteBuffer map(FileChannel fc, long position, long size, List<MappedByteBuffer> mappings) throws IOException {
+        MappedByteBuffer mapping = fc.map(MapMode.READ_ONLY, position, size);
+        mappings.add(mapping);
+        return mapping;
+    }
+
+    private static IntBuffer mapInts(FileChannel fc, long position, int numberOfInts, List<MappedByteBuffer> mappings) throws IOException {
+        return map(fc, position, (long) numberOfInts * BYTES_PER_INT, mappings).asIntBuffer();
+    }
+
+    /**
+     * Check if an inverted sort array was actually stored in the terms file.
+     *
+     * Older terms files contain zeroes instead of the inverted arrays. Because the
+     * array is a permutation, the first two elements can only both be zero if it's
+     * an older file. (for 0 or 1 terms we just rebuild the array, which is trivial)
+     *
+     * @param inverted inverted array from the terms file
+     * @return true if the array is valid
+     */
+    private static boolean isPermutation(IntBuffer inverted) {
+        return inverted.limit() > 1 && inverted.get(0) != inverted.get(1);
+    }
+
     private synchronized void read(File termsFile) {
-        try {
-            try (RandomAccessFile raf = new RandomAccessFile(termsFile, "r")) {
-                try (FileChannel fc = raf.getChannel()) {
-                    long fileLength = termsFile.length();
-                    IntBuffer ib = readFromFileChannel(fc, fileLength);
-                    
-                    // Read the sort order arrays
-                    sortPositionPerId = new int[numberOfTerms];
-                    sortPositionPerIdInsensitive = new int[numberOfTerms];
-                    ib.position(ib.position() + numberOfTerms); // Advance past unused sortPos -> id array (left in there for file compatibility)
-                    ib.get(sortPositionPerId);
-                    ib.position(ib.position() + numberOfTerms); // Advance past unused sortPos -> id array (left in there for file compatibility)
-                    ib.get(sortPositionPerIdInsensitive);
+        try (RandomAccessFile raf = new RandomAccessFile(termsFile, "r");
+                FileChannel fc = raf.getChannel()) {
+            int n = readInt(fc, 0);
+            long position = BYTES_PER_INT;
+            List<Integer> firstTerms = new ArrayList<>();
+            List<IntBuffer> offsets = new ArrayList<>();
+            List<ByteBuffer> data = new ArrayList<>();
+            List<MappedByteBuffer> mapped = new ArrayList<>();
+            if (useBlockBasedTermsFile) {
+                // New format, multiple blocks of term strings if necessary,
+                // so term strings may total over 2 GB.
+                // Each block: number of terms, term string offsets, data block size, term string data
+                int currentTerm = 0;
+                while (currentTerm < n) {
+                    int numTermsThisBlock = readInt(fc, position);
+                    position += BYTES_PER_INT;
+                    // (the data block size directly follows the offsets, so it doubles as the end offset
+                    //  of the last term)
+                    IntBuffer blockOffsets = mapInts(fc, position, numTermsThisBlock + 1, mapped);
+                    int dataBlockSize = blockOffsets.get(numTermsThisBlock);
+                    position += (long) (numTermsThisBlock + 1) * BYTES_PER_INT;
+                    firstTerms.add(currentTerm);
+                    offsets.add(blockOffsets);
+                    data.add(map(fc, position, dataBlockSize, mapped));
+                    position += dataBlockSize;
+                    currentTerm += numTermsThisBlock;
                 }
+            } else {
+                // Old format, single term strings block: term string offsets (n + 1), data block size, data
+                IntBuffer termOffsets = mapInts(fc, position, n + 1, mapped);
+                position += (long) (n + 1) * BYTES_PER_INT;
+                int termStringsByteSize = readInt(fc, position);
+                position += BYTES_PER_INT;
+                firstTerms.add(0);
+                offsets.add(termOffsets);
+                data.add(map(fc, position, termStringsByteSize, mapped));
+                position += termStringsByteSize;
             }
+            blockFirstTerm = new int[firstTerms.size() + 1];
+            for (int i = 0; i < firstTerms.size(); i++) {
+                blockFirstTerm[i] = firstTerms.get(i);
+            }
+            blockFirstTerm[firstTerms.size()] = n;
+            blockTermOffsets = offsets.toArray(new IntBuffer[0]);
+            blockTermData = data.toArray(new ByteBuffer[0]);
+
+            // Map the sort order arrays
+            // (each is preceded by the inverted sortPos -> id array; older files have zeroes there)
+            long arrayBytes = (long) n * BYTES_PER_INT;
+            IntBuffer inverted = mapInts(fc, position, n, mapped);
+            sortPositionPerId = mapInts(fc, position + arrayBytes, n, mapped);
+            IntBuffer invertedInsensitive = mapInts(fc, position + 2 * arrayBytes, n, mapped);
+            sortPositionPerIdInsensitive = mapInts(fc, position + 3 * arrayBytes, n, mapped);
+            if (isPermutation(inverted) && isPermutation(invertedInsensitive)) {
+                idPerSortPosition = inverted;
+                idPerSortPositionInsensitive = invertedInsensitive;
+            }
+            position += 4 * arrayBytes;
+
+            // Map the term hash table, if present (older files end after the sort arrays)
+            IntBuffer[] hashTable = null;
+            long fileSize = fc.size();
+            if (fileSize >= position + 2 * BYTES_PER_INT && readInt(fc, position) == TERM_HASH_TABLE_MAGIC) {
+                int tableSize = readInt(fc, position + BYTES_PER_INT);
+                position += 2 * BYTES_PER_INT;
+                if (tableSize != termHashTableSize(n) || fileSize < position + (long) tableSize * BYTES_PER_INT)
+                    throw new BlackLabRuntimeException("Invalid term hash table in terms file " + termsFile);
+                IntBuffer[] parts = new IntBuffer[(tableSize + HASH_TABLE_SLOTS_PER_MAPPING - 1) / HASH_TABLE_SLOTS_PER_MAPPING];
+                for (int i = 0; i < parts.length; i++) {
+                    int length = Math.min(HASH_TABLE_SLOTS_PER_MAPPING, tableSize - i * HASH_TABLE_SLOTS_PER_MAPPING);
+                    parts[i] = mapInts(fc, position, length, mapped);
+                    position += (long) length * BYTES_PER_INT;
+                }
+                termHashMask = tableSize - 1;
+                hashTable = parts;
+            }
+            mappings = mapped.toArray(new MappedByteBuffer[0]);
+            numberOfTerms = n;
+
+            // If we have all the term indexes, we don't need to build any.
+            // (the inverted sort arrays may still need to be built for older files, or 0 or 1 terms)
+            termIdsByHash = hashTable;
+            termIndexesBuilt = hashTable != null && idPerSortPosition != null;
         } catch (IOException e) {
             throw BlackLabRuntimeException.wrap(e);
         }
@@ -294,7 +565,20 @@ class TermsReader extends Terms {
             initialize();
         assert index >= 0 && index < numberOfTerms : "Term index out of range (" + index + ", numterms = "
                 + numberOfTerms + ")";
-        return terms[index];
+        int block = blockOf(index);
+        int indexInBlock = index - blockFirstTerm[block];
+        IntBuffer offsets = blockTermOffsets[block];
+        int offset = offsets.get(indexInBlock);
+        int length = offsets.get(indexInBlock + 1) - offset;
+        byte[] termBytes = decodeBuffer.get();
+        if (termBytes.length < length) {
+            termBytes = new byte[Math.max(length, termBytes.length * 2)];
+            decodeBuffer.set(termBytes);
+        }
+        ByteBuffer data = blockTermData[block];
+        for (int i = 0; i < length; i++)
+            termBytes[i] = data.get(offset + i); // (absolute get, so we're thread-safe)
+        return new String(termBytes, 0, length, DEFAULT_CHARSET);
     }
 
     @Override
@@ -308,20 +592,12 @@ class TermsReader extends Terms {
     public void toSortOrder(int[] tokenId, int[] sortOrder, MatchSensitivity sensitivity) {
         if (!initialized)
             initialize();
-        if (sensitivity.isCaseSensitive()) {
-            for (int i = 0; i < tokenId.length; i++) {
-                if (tokenId[i] == NO_TERM)
-                    sortOrder[i] = NO_TERM;
-                else
-                    sortOrder[i] = sortPositionPerId[tokenId[i]];
-            }
-        } else {
-            for (int i = 0; i < tokenId.length; i++) {
-                if (tokenId[i] == NO_TERM)
-                    sortOrder[i] = NO_TERM;
-                else
-                    sortOrder[i] = sortPositionPerIdInsensitive[tokenId[i]];
-            }
+        IntBuffer sortPositions = sensitivity.isCaseSensitive() ? sortPositionPerId : sortPositionPerIdInsensitive;
+        for (int i = 0; i < tokenId.length; i++) {
+            if (tokenId[i] == NO_TERM)
+                sortOrder[i] = NO_TERM;
+            else
+                sortOrder[i] = sortPositions.get(tokenId[i]);
         }
     }
 
@@ -330,16 +606,22 @@ class TermsReader extends Terms {
         if (!initialized)
             initialize();
         if (sensitivity.isCaseSensitive()) {
-            return sortPositionPerId[tokenId1] - sortPositionPerId[tokenId2];
+            return sortPositionPerId.get(tokenId1) - sortPositionPerId.get(tokenId2);
         }
-        return sortPositionPerIdInsensitive[tokenId1] - sortPositionPerIdInsensitive[tokenId2];
+        return sortPositionPerIdInsensitive.get(tokenId1) - sortPositionPerIdInsensitive.get(tokenId2);
     }
 
     @Override
     public int idToSortPosition(int id, MatchSensitivity sensitivity) {
         if (!initialized)
             initialize();
-        return sensitivity.isCaseSensitive() ? sortPositionPerId[id] : sortPositionPerIdInsensitive[id];
+        return sensitivity.isCaseSensitive() ? sortPositionPerId.get(id) : sortPositionPerIdInsensitive.get(id);
+    }
+
+    void setMaxHashedTerms(int maxHashedTerms) {
+        if (maxHashedTerms > MAX_HASHED_TERMS)
+            throw new BlackLabRuntimeException("Max. hashed terms too large, max. " + MAX_HASHED_TERMS);
+        this.maxHashedTerms = maxHashedTerms;
     }
 
     @Override
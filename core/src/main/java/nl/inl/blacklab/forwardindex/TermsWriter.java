@@ -56,7 +56,8 @@ class TermsWriter extends Terms {
 
     /**
      * Number of sort buffers we store in the terms file (case-sensitive/insensitive
-     * and inverted buffers for both as well)
+     * and inverted buffers for both as well; the inverted buffers are written for
+     * each sort buffer, right before it)
      */
     private static final int NUM_SORT_BUFFERS = 4;
 
@@ -155,10 +156,12 @@ class TermsWriter extends Terms {
                     // Calculate the file length and map the file
                     MappedByteBuffer buf;
                     IntBuffer ib;
+                    long termHashTablePosition; // where the term hash table goes (after the sort buffers)
                     if (!useBlockBasedTermsFile) {
                         long fileLength = 2 * BYTES_PER_INT + (n + 1) * BYTES_PER_INT + termStringsByteSize
                                 + NUM_SORT_BUFFERS * BYTES_PER_INT * n;
-                        fc.truncate(fileLength); // truncate if necessary
+                        termHashTablePosition = fileLength;
+                        fc.truncate(fileLength + termHashTableByteSize(n)); // truncate if necessary
                         buf = fc.map(MapMode.READ_WRITE, 0, fileLength);
                         buf.putInt(n); // Start with the number of terms
                         ib = buf.asIntBuffer();
@@ -243,6 +246,8 @@ class TermsWriter extends Terms {
                         // (we can do this now, even though we still have to write the sort buffers,
                         // because we know how large the file will eventually be)
                         fileLength += NUM_SORT_BUFFERS * BYTES_PER_INT * n;
+                        termHashTablePosition = fileLength;
+                        fileLength += termHashTableByteSize(n);
                         if (File.separatorChar != '\\') // causes problems on Windows
                             fc.truncate(fileLength);
                     }
@@ -253,13 +258,18 @@ class TermsWriter extends Terms {
                     // for 'aardvark' comes before the id for 'ape', etc.
                     int i = 0;
                     int[] sortPositionPerId = new int[n];
+                    int[] idPerSortPosition = new int[n];
                     Integer[] insensitive = new Integer[n];
                     for (int id : termIndex.values()) {
                         sortPositionPerId[id] = i;
+                        idPerSortPosition[i] = id;
                         insensitive[i] = id; // fill this so we can re-sort later, faster b/c already partially sorted
                         i++;
                     }
-                    ib.put(new int[n]); // NOT USED ANYMORE, JUST FOR FILE COMPATIBILITY
+                    // (the inverted arrays were unused for a while, so older versions ignore them;
+                    //  TermsReader uses them if they're present, so it doesn't have to invert the sort arrays
+                    //  when opening the index)
+                    ib.put(idPerSortPosition);
                     ib.put(sortPositionPerId);
 
                     // Now, sort case-insensitively and write those arrays as well
@@ -271,7 +281,10 @@ class TermsWriter extends Terms {
                     });
                     // Copy into the sortPositionPerIdInsensitive array, making sure that
                     // identical values get identical sort positions!
+                    // (the first sort position of each group of identical values, and the group's size,
+                    //  can be determined from these arrays, so we don't need to store those separately)
                     int[] sortPositionPerIdInsensitive = new int[n];
+                    int[] idPerSortPositionInsensitive = new int[n];
                     int sortPos = 0;
                     for (i = 0; i < n; i++) {
                         if (i == 0
@@ -281,9 +294,14 @@ class TermsWriter extends Terms {
                             sortPos = i;
                         }
                         sortPositionPerIdInsensitive[insensitive[i]] = sortPos;
+                        idPerSortPositionInsensitive[i] = insensitive[i];
                     }
-                    ib.put(new int[n]); // NOT USED ANYMORE, JUST FOR FILE COMPATIBILITY
+                    ib.put(idPerSortPositionInsensitive);
                     ib.put(sortPositionPerIdInsensitive);
+
+                    // Finally, write the term hash table, so TermsReader can look up term ids
+                    // without building it when opening the index
+                    writeTermHashTable(fc, termHashTablePosition);
                 }
             }
         } catch (IOException e) {
@@ -291,6 +309,44 @@ class TermsWriter extends Terms {
         }
     }
 
+    /**
+     * Determine the size of the term hash table section of the terms file.
+     *
+     * @param n number of terms
+     * @return size in bytes (0 if there are too many terms to hash)
+     */
+    private static long termHashTableByteSize(int n) {
+        if (n > MAX_HASHED_TERMS)
+            return 0;
+        return 2 * BYTES_PER_INT + (long) termHashTableSize(n) * BYTES_PER_INT;
+    }
+
+    /**
+     * Write the term hash table section: a marker, the number of slots, and the
+     * open addressing hash table of term ids by hash of their UTF-8 bytes.
+     *
+     * If there are too many terms to hash, we don't write the section, and
+     * TermsReader will have to do without it.
+     *
+     * @param fc terms file channel
+     * @param position where to write the section
+     * @throws IOException on error
+     */
+    private void writeTermHashTable(FileChannel fc, long position) throws IOException {
+        if (terms.length > MAX_HASHED_TERMS)
+            return;
+        int[] table = buildTermHashTable(terms.length, id -> termHash(terms[id].getBytes(DEFAULT_CHARSET)));
+        MappedByteBuffer buf = fc.map(MapMode.READ_WRITE, position, 2 * BYTES_PER_INT);
+        buf.putInt(TERM_HASH_TABLE_MAGIC);
+        buf.putInt(table.length);
+        position += 2 * BYTES_PER_INT;
+        for (int start = 0; start < table.length; start += HASH_TABLE_SLOTS_PER_MAPPING) {
+            int length = Math.min(HASH_TABLE_SLOTS_PER_MAPPING, table.length - start);
+            fc.map(MapMode.READ_WRITE, position, (long) length * BYTES_PER_INT).asIntBuffer().put(table, start, length);
+            position += (long) length * BYTES_PER_INT;
+        }
+    }
+
     @Override
     public String get(int index) {
         assert index >= 0 && index < numberOfTerms : "Term index out of range (" + index + ", numterms = "
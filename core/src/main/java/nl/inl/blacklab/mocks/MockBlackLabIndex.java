@@ -34,9 +34,11 @@ import nl.inl.blacklab.search.indexmetadata.Field;
 import nl.inl.blacklab.search.indexmetadata.IndexMetadata;
 import nl.inl.blacklab.search.indexmetadata.MatchSensitivity;
 import nl.inl.blacklab.search.lucene.BLSpanQuery;
+import nl.inl.blacklab.search.lucene.optimize.NfaCostModel;
 import nl.inl.blacklab.search.results.ContextSize;
 import nl.inl.blacklab.search.results.DocResults;
 import nl.inl.blacklab.search.results.Hits;
+import nl.inl.blacklab.search.results.HitsCountFromQuery;
 import nl.inl.blacklab.search.results.QueryInfo;
 import nl.inl.blacklab.search.results.SearchSettings;
 import nl.inl.blacklab.search.textpattern.TextPattern;
@@ -51,6 +53,8 @@ public class MockBlackLabIndex implements BlackLabIndex {
 
     private SearchSettings searchSettings;
 
+    private NfaCostModel nfaCostModel = NfaCostModel.DEFAULT;
+
     private Map<Annotation, AnnotationForwardIndex> forwardIndices = new HashMap<>();
 
     private Analyzer analyzer;
@@ -77,6 +81,11 @@ public class MockBlackLabIndex implements BlackLabIndex {
         return QueryInfo.create(this, mainAnnotatedField());
     }
 
+    @Override
+    public void warmUp(boolean prefetch) {
+        // NOP
+    }
+
     @Override
     public void close() {
         blackLab.removeSearcher(this);
@@ -140,6 +149,16 @@ public class MockBlackLabIndex implements BlackLabIndex {
         return searchSettings;
     }
 
+    @Override
+    public NfaCostModel nfaCostModel() {
+        return nfaCostModel;
+    }
+
+    @Override
+    public void setNfaCostModel(NfaCostModel nfaCostModel) {
+        this.nfaCostModel = nfaCostModel;
+    }
+
     @Override
     public UnbalancedTagsStrategy defaultUnbalancedTagsStrategy() {
         throw new UnsupportedOperationException();
@@ -176,6 +195,11 @@ public class MockBlackLabIndex implements BlackLabIndex {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public HitsCountFromQuery countHits(BLSpanQuery query, SearchSettings settings, SearchLogger searchLogger) throws TooManyClauses {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public QueryExplanation explain(BLSpanQuery query, SearchLogger searchLogger) throws TooManyClauses {
         throw new UnsupportedOperationException();
@@ -104,9 +104,14 @@ public class MockSpanQuery extends BLSpanQuery {
         };
     }
 
+    @Override
+    public String getNodeName() {
+        return "MockSpanQuery";
+    }
+
     @Override
     public String toString(String field) {
-        return "MockSpanQuery()";
+        return getNodeName() + "()";
     }
 
     @Override
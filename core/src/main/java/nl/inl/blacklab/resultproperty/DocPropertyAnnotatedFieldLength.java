@@ -45,8 +45,12 @@ public class DocPropertyAnnotatedFieldLength extends DocProperty {
     
     private String friendlyName;
 
-    /** The DocValues per segment (keyed by docBase), or null if we don't have docValues */
-    private Map<Integer, NumericDocValues> docValues = null;
+    /**
+     * The DocValues per segment (keyed by docBase), or null if we don't have docValues.
+     *
+     * Per thread, because DocValues instances aren't guaranteed to be thread-safe.
+     */
+    private ThreadLocal<Map<Integer, NumericDocValues>> docValues = null;
     
     private BlackLabIndex index;
 
@@ -55,13 +59,30 @@ public class DocPropertyAnnotatedFieldLength extends DocProperty {
         index = prop.index;
         fieldName = prop.fieldName;
         friendlyName = prop.friendlyName;
+        docValues = prop.docValues;
     }
 
     public DocPropertyAnnotatedFieldLength(BlackLabIndex index, String fieldName, String friendlyName) {
         this.index = index;
         this.fieldName = AnnotatedFieldNameUtil.lengthTokensField(fieldName);
         this.friendlyName = friendlyName;
-        docValues = new TreeMap<>();
+        if (!getDocValues(fieldName).isEmpty()) {
+            docValues = ThreadLocal.withInitial(() -> getDocValues(fieldName));
+        }
+        // (else we don't actually have DocValues)
+    }
+
+    /**
+     * Get the DocValues for our field for each segment.
+     *
+     * Lucene gives each thread its own DocValues instances, so this should be
+     * called from the thread that will use them.
+     *
+     * @param fieldName field to get the DocValues for
+     * @return DocValues per segment (keyed by docBase)
+     */
+    private Map<Integer, NumericDocValues> getDocValues(String fieldName) {
+        Map<Integer, NumericDocValues> result = new TreeMap<>();
         try {
             for (LeafReaderContext rc : index.reader().leaves()) {
                 LeafReader r = rc.reader();
@@ -75,28 +96,33 @@ public class DocPropertyAnnotatedFieldLength extends DocProperty {
                     numericDocValues = uninv.getNumericDocValues(fieldName);
                 }
                 if (numericDocValues != null) {
-                    docValues.put(rc.docBase, numericDocValues);
+                    result.put(rc.docBase, numericDocValues);
                 }
             }
-            if (docValues.isEmpty()) {
-                // We don't actually have DocValues.
-                docValues = null;
-            }
         } catch (IOException e) {
-            BlackLabRuntimeException.wrap(e);
+            throw BlackLabRuntimeException.wrap(e);
         }
+        return result;
     }
 
     public DocPropertyAnnotatedFieldLength(BlackLabIndex index, String fieldName) {
         this(index, fieldName, fieldName + " length");
     }
 
+    /**
+     * Get the length of the annotated field for a document.
+     *
+     * Thread-safe, so (parallel) sorts may call this from several threads.
+     *
+     * @param docId Lucene document id
+     * @return length in tokens (excluding the extra closing token)
+     */
     public long get(int docId) {
         long subtractClosingToken = 1;
         if (docValues != null) {
             // Find the fiid in the correct segment
             Entry<Integer, NumericDocValues> prev = null;
-            for (Entry<Integer, NumericDocValues> e : docValues.entrySet()) {
+            for (Entry<Integer, NumericDocValues> e : docValues.get().entrySet()) {
                 Integer docBase = e.getKey();
                 if (docBase > docId) {
                     // Previous segment (the highest docBase lower than docId) is the right one
@@ -53,8 +53,13 @@ public class DocPropertyStoredField extends DocProperty {
     /** Display name for the field */
     private String friendlyName;
 
-    /** The DocValues per segment (keyed by docBase), or null if we don't have docValues */
-    private Map<Integer, SortedSetDocValues> docValues = null;
+    /**
+     * The DocValues per segment (keyed by docBase), or null if we don't have docValues.
+     *
+     * Per thread, because DocValues instances keep state between calls, while
+     * (parallel) sorts may call {@link #get(int)} from several threads.
+     */
+    private ThreadLocal<Map<Integer, SortedSetDocValues>> docValues = null;
 
     /** Our index */
     private BlackLabIndex index;
@@ -64,6 +69,7 @@ public class DocPropertyStoredField extends DocProperty {
         this.index = prop.index;
         this.fieldName = prop.fieldName;
         this.friendlyName = prop.friendlyName;
+        this.docValues = prop.docValues;
     }
 
     public DocPropertyStoredField(BlackLabIndex index, String fieldName) {
@@ -76,32 +82,50 @@ public class DocPropertyStoredField extends DocProperty {
         this.friendlyName = friendlyName;
 
         if (!fieldName.endsWith("Numeric")) { // TODO: use actual data from IndexMetadata
-            docValues = new TreeMap<>();
-            try {
-                if (index.reader() != null) { // skip for MockIndex (testing)
-                    for (LeafReaderContext rc : index.reader().leaves()) {
-                        LeafReader r = rc.reader();
-                        SortedSetDocValues sortedDocValues = r.getSortedSetDocValues(fieldName);
-                        if (sortedDocValues != null) {
-                            docValues.put(rc.docBase, sortedDocValues);
-                        }
-                    }
-                }
-                if (docValues.isEmpty()) {
-                    // We don't actually have DocValues.
-                    docValues = null;
+            if (index.reader() != null && !getDocValues().isEmpty()) { // skip for MockIndex (testing)
+                docValues = ThreadLocal.withInitial(this::getDocValues);
+            }
+            // (else we don't actually have DocValues)
+        }
+    }
+
+    /**
+     * Get the DocValues for our field for each segment.
+     *
+     * Lucene gives each thread its own DocValues instances, so this should be
+     * called from the thread that will use them.
+     *
+     * @return DocValues per segment (keyed by docBase)
+     */
+    private Map<Integer, SortedSetDocValues> getDocValues() {
+        Map<Integer, SortedSetDocValues> result = new TreeMap<>();
+        try {
+            for (LeafReaderContext rc : index.reader().leaves()) {
+                LeafReader r = rc.reader();
+                SortedSetDocValues sortedDocValues = r.getSortedSetDocValues(fieldName);
+                if (sortedDocValues != null) {
+                    result.put(rc.docBase, sortedDocValues);
                 }
-            } catch (IOException e) {
-                BlackLabRuntimeException.wrap(e);
             }
+        } catch (IOException e) {
+            throw BlackLabRuntimeException.wrap(e);
         }
+        return result;
     }
 
+    /**
+     * Get the value of this property for a document.
+     *
+     * Thread-safe, so (parallel) sorts may call this from several threads.
+     *
+     * @param docId Lucene document id
+     * @return the stored value, or the empty string if there is none
+     */
     public String get(int docId) {
         if  (docValues != null) {
             // Find the fiid in the correct segment
             Entry<Integer, SortedSetDocValues> prev = null;
-            for (Entry<Integer, SortedSetDocValues> e : docValues.entrySet()) {
+            for (Entry<Integer, SortedSetDocValues> e : docValues.get().entrySet()) {
                 Integer docBase = e.getKey();
                 if (docBase > docId) {
                     // Previous segment (the highest docBase lower than docId) is the right one
@@ -160,8 +184,17 @@ public class DocPropertyStoredField extends DocProperty {
      * @return 0 if equal, negative if a < b, positive if a > b.
      */
     public int compare(int docId1, int docId2) {
-        String sa = get(docId1);
-        String sb = get(docId2);
+        return compareValues(get(docId1), get(docId2));
+    }
+
+    /**
+     * Compares two values of this property
+     *
+     * @param sa first value
+     * @param sb second value
+     * @return 0 if equal, negative if a < b, positive if a > b.
+     */
+    public int compareValues(String sa, String sb) {
         if (sa.isEmpty()) { // sort empty string at the end
             if (sb.isEmpty())
                 return 0;
@@ -31,6 +31,7 @@ import nl.inl.blacklab.search.results.ContextSize;
 import nl.inl.blacklab.search.results.Contexts;
 import nl.inl.blacklab.search.results.Hit;
 import nl.inl.blacklab.search.results.Hits;
+import nl.inl.blacklab.search.results.HitsArrays;
 import nl.inl.blacklab.search.results.Results;
 
 /**
@@ -129,6 +130,12 @@ public abstract class HitProperty implements ResultProperty<Hit> {
     /** The Hits object we're looking at */
     protected Results<Hit> hits;
 
+    /**
+     * Our hits in columnar form, if available (for fast access by index while
+     * sorting or grouping), or null if not.
+     */
+    protected HitsArrays hitsArrays;
+
     /** Reverse comparison result or not? */
     protected boolean reverse;
 
@@ -157,6 +164,7 @@ public abstract class HitProperty implements ResultProperty<Hit> {
      */
     HitProperty(HitProperty prop, Results<Hit> hits, Contexts contexts, boolean invert) {
         this.hits = hits == null ? prop.hits : hits;
+        this.hitsArrays = this.hits instanceof Hits ? ((Hits) this.hits).hitsArrays() : null;
         this.reverse = prop.reverse;
         if (invert)
             this.reverse = !this.reverse;
@@ -189,7 +197,7 @@ public abstract class HitProperty implements ResultProperty<Hit> {
     
             // Unless the client sets different context indices, assume we got the ones we wanted in the correct order
             if (contexts != null)
-                this.contextIndices = IntStream.range(0, contexts.size()).boxed().collect(Collectors.toList());
+                this.contextIndices = IntStream.range(0, contexts.annotations().size()).boxed().collect(Collectors.toList());
         }
         return this;
     }
@@ -224,6 +232,60 @@ public abstract class HitProperty implements ResultProperty<Hit> {
         return hitPropValueA.compareTo(hitPropValueB);
     }
 
+    /**
+     * Get the property value for a hit, by its index in our hits.
+     *
+     * This is the preferred way of getting property values if you know the hit
+     * index, because some properties (e.g. those using contexts) can find the
+     * hit's information more efficiently this way.
+     *
+     * @param hitIndex index of the hit in our hits object
+     * @return property value
+     */
+    public PropertyValue get(int hitIndex) {
+        return get(hit(hitIndex));
+    }
+
+    /**
+     * Compares two hits on this property, by their index in our hits.
+     *
+     * This is used for sorting. The built-in properties implement this without
+     * creating any objects, either by comparing the hits' information directly
+     * or by using sort keys computed once before the first comparison.
+     *
+     * Large sorts call this from several threads simultaneously, so it must be
+     * thread-safe.
+     *
+     * @param indexA index of the first hit in our hits object
+     * @param indexB index of the second hit in our hits object
+     * @return 0 if equal, negative if a < b, positive if a > b.
+     */
+    public int compare(int indexA, int indexB) {
+        return compare(hit(indexA), hit(indexB));
+    }
+
+    /**
+     * Get a hit by its index in our hits.
+     *
+     * @param hitIndex index of the hit
+     * @return the hit
+     */
+    protected Hit hit(int hitIndex) {
+        return hitsArrays != null && hitIndex < hitsArrays.size() ? hitsArrays.get(hitIndex) : hits.get(hitIndex);
+    }
+
+    /**
+     * Exception for properties that use contexts when asked about a Hit object.
+     *
+     * Contexts are stored by hit index only, so these properties must be used
+     * through {@link #get(int)} and {@link #compare(int, int)}.
+     *
+     * @return the exception to throw
+     */
+    protected UnsupportedOperationException contextsNeedHitIndex() {
+        return new UnsupportedOperationException(getClass().getSimpleName() + " can only look up contexts by hit index");
+    }
+
     /**
      * Retrieve context from which field(s) prior to sorting/grouping on this
      * property?
@@ -197,16 +197,22 @@ public class HitPropertyContextWords extends HitProperty {
 
     int totalWords;
 
+    /** Sort positions of the context words (totalWords per hit), or null if not determined yet */
+    private volatile int[] sortKeys;
+
+    /** Were there too many hits to determine the sort keys? */
+    private volatile boolean tooManyForSortKeys;
+
     HitPropertyContextWords(HitPropertyContextWords prop, Results<Hit> hits, Contexts contexts, boolean invert) {
         super(prop, hits, contexts, invert);
         this.annotation = prop.annotation;
-        if (!hits.field().equals(this.annotation.field())) {
+        if (hits != null && !hits.field().equals(this.annotation.field())) {
             throw new IllegalArgumentException(
                     "Hits passed to HitProperty must be in the field it was declared with! (declared with "
                             + this.annotation.field().name() + ", hits has " + hits.field().name() + "; class=" + getClass().getName() + ")");
         }
         this.sensitivity = prop.sensitivity;
-        this.index = hits.index();
+        this.index = hits == null ? prop.index : hits.index();
         this.words = prop.words;
         this.totalWords = prop.totalWords;
     }
@@ -273,13 +279,31 @@ public class HitPropertyContextWords extends HitProperty {
 
     @Override
     public PropertyValueContextWords get(Hit hit) {
-        int[] context = contexts.get(hit);
-        int contextHitStart = context[Contexts.HIT_START_INDEX];
-        int contextRightStart = context[Contexts.RIGHT_START_INDEX];
-        int contextLength = context[Contexts.LENGTH_INDEX];
+        throw contextsNeedHitIndex();
+    }
 
+    @Override
+    public PropertyValueContextWords get(int hitIndex) {
         int[] dest = new int[totalWords];
-        int destIndex = 0;
+        boolean allPartsReversed = getContextWords(hitIndex, dest, 0);
+        return new PropertyValueContextWords(index, annotation, sensitivity, dest, allPartsReversed);
+    }
+
+    /**
+     * Copy the term ids of the context words we're interested in to an array.
+     *
+     * @param hitIndex index of the hit
+     * @param dest where to copy the term ids to (totalWords will be copied)
+     * @param destIndex where in dest to start copying
+     * @return true if all parts are in reverse direction (i.e. should be reversed on display)
+     */
+    private boolean getContextWords(int hitIndex, int[] dest, int destIndex) {
+        int[] context = contexts.buffer(hitIndex);
+        int contextOffset = contexts.offset(hitIndex);
+        int contextHitStart = context[contextOffset + Contexts.HIT_START_INDEX];
+        int contextRightStart = context[contextOffset + Contexts.RIGHT_START_INDEX];
+        int contextLength = context[contextOffset + Contexts.LENGTH_INDEX];
+
         boolean allPartsReversed = true;
         for (ContextPart ctxPart : words) {
             // Determine anchor position, direction to move in, and edge of part (left/hit/right)
@@ -328,7 +352,7 @@ public class HitPropertyContextWords extends HitProperty {
             int contextStartIndex = contextLength * contextIndices.get(0) + Contexts.NUMBER_OF_BOOKKEEPING_INTS;
             if (valuesToCopy) {
                 for (int srcIndex = firstWordSrcIndex; srcIndex != firstInvalidSrcIndex; srcIndex += srcDirection) {
-                    dest[destIndex] = context[contextStartIndex + srcIndex];
+                    dest[destIndex] = context[contextOffset + contextStartIndex + srcIndex];
                     destIndex++;
                     valuesCopied++;
                 }
@@ -339,10 +363,59 @@ public class HitPropertyContextWords extends HitProperty {
                 destIndex++;
             }
         }
-        return new PropertyValueContextWords(index, annotation, sensitivity, dest, allPartsReversed);
+        return allPartsReversed;
+    }
+
+    @Override
+    public int compare(int indexA, int indexB) {
+        int[] keys = sortKeys();
+        if (keys == null) {
+            // Too many hits to store all sort keys in one array
+            int result = get(indexA).compareTo(get(indexB));
+            return reverse ? -result : result;
+        }
+        int a = indexA * totalWords, b = indexB * totalWords;
+        for (int i = 0; i < totalWords; i++) {
+            if (keys[a + i] != keys[b + i])
+                return reverse ? keys[b + i] - keys[a + i] : keys[a + i] - keys[b + i];
+        }
+        return 0;
     }
 
-    // OPT: provide specific compare() method that compares contexts in-place
+    /**
+     * Get the sort positions of the context words for all hits.
+     *
+     * Determined when first needed, so comparing two hits doesn't have to look up
+     * the sort positions or allocate anything.
+     *
+     * @return sort positions (totalWords per hit), or null if there are too many
+     *         hits to store them in one array
+     */
+    private int[] sortKeys() {
+        int[] result = sortKeys;
+        if (result == null && !tooManyForSortKeys) {
+            synchronized (this) {
+                result = sortKeys;
+                if (result == null && !tooManyForSortKeys) {
+                    long size = (long) contexts.size() * totalWords;
+                    if (size > Integer.MAX_VALUE - 8) {
+                        tooManyForSortKeys = true;
+                        return null;
+                    }
+                    Terms terms = index.annotationForwardIndex(annotation).terms();
+                    result = new int[(int) size];
+                    for (int i = 0; i < contexts.size(); i++) {
+                        getContextWords(i, result, i * totalWords);
+                    }
+                    for (int i = 0; i < result.length; i++) {
+                        result[i] = result[i] == Terms.NO_TERM ? -1 : terms.idToSortPosition(result[i], sensitivity);
+                    }
+                    sortKeys = result;
+                }
+            }
+        }
+        return result;
+    }
 
     @Override
     public List<Annotation> needsContext() {
@@ -61,6 +61,14 @@ public class HitPropertyDoc extends HitProperty {
         return reverse ? b.doc() - a.doc() : a.doc() - b.doc();
     }
 
+    @Override
+    public int compare(int indexA, int indexB) {
+        if (hitsArrays == null)
+            return super.compare(indexA, indexB);
+        int a = hitsArrays.doc(indexA), b = hitsArrays.doc(indexB);
+        return reverse ? b - a : a - b;
+    }
+
     @Override
     public String serialize() {
         return serializeReverse() + "doc";
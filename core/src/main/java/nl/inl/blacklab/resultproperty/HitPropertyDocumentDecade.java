@@ -17,6 +17,9 @@ package nl.inl.blacklab.resultproperty;
 
 import org.apache.lucene.index.IndexReader;
 
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+
 import nl.inl.blacklab.search.BlackLabIndex;
 import nl.inl.blacklab.search.indexmetadata.MetadataField;
 import nl.inl.blacklab.search.results.Contexts;
@@ -44,6 +47,9 @@ public class HitPropertyDocumentDecade extends HitProperty {
 
     private DocPropertyDecade docPropertyDocumentDecade;
 
+    /** Decade per document, or null if not determined yet */
+    private volatile Int2IntMap docDecades;
+
     HitPropertyDocumentDecade(HitPropertyDocumentDecade prop, Results<Hit> hits, boolean invert) {
         super(prop, hits, null, invert);
         this.index = prop.index;
@@ -77,6 +83,43 @@ public class HitPropertyDocumentDecade extends HitProperty {
         return reverse ? bDecade - aDecade : aDecade - bDecade;
     }
 
+    @Override
+    public int compare(int indexA, int indexB) {
+        if (hitsArrays == null)
+            return super.compare(indexA, indexB);
+        Int2IntMap decades = docDecades();
+        int aDecade = decades.get(hitsArrays.doc(indexA));
+        int bDecade = decades.get(hitsArrays.doc(indexB));
+        return reverse ? bDecade - aDecade : aDecade - bDecade;
+    }
+
+    /**
+     * Get the decade for each document.
+     *
+     * Determined when first needed, so we only look up each document's value once
+     * instead of twice for every comparison.
+     *
+     * @return decade per document id
+     */
+    private Int2IntMap docDecades() {
+        Int2IntMap result = docDecades;
+        if (result == null) {
+            synchronized (this) {
+                result = docDecades;
+                if (result == null) {
+                    result = new Int2IntOpenHashMap();
+                    for (int i = 0; i < hitsArrays.size(); i++) {
+                        int doc = hitsArrays.doc(i);
+                        if (!result.containsKey(doc))
+                            result.put(doc, docPropertyDocumentDecade.get(doc));
+                    }
+                    docDecades = result;
+                }
+            }
+        }
+        return result;
+    }
+
     @Override
     public String name() {
         return "document: " + docPropertyDocumentDecade.name();
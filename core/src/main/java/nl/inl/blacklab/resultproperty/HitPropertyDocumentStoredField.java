@@ -17,6 +17,12 @@ package nl.inl.blacklab.resultproperty;
 
 import org.apache.lucene.index.IndexReader;
 
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+
 import nl.inl.blacklab.search.BlackLabIndex;
 import nl.inl.blacklab.search.results.Contexts;
 import nl.inl.blacklab.search.results.Hit;
@@ -40,6 +46,9 @@ public class HitPropertyDocumentStoredField extends HitProperty {
 
     private DocPropertyStoredField docPropStoredField;
 
+    /** Sort rank of each document's value, or null if not determined yet */
+    private volatile Int2IntMap docSortRanks;
+
     HitPropertyDocumentStoredField(HitPropertyDocumentStoredField prop, Results<Hit> hits, boolean invert) {
         super(prop, hits, null, invert);
         this.index = hits == null ? null : hits.index();
@@ -74,6 +83,51 @@ public class HitPropertyDocumentStoredField extends HitProperty {
         return reverse ? -result : result;
     }
 
+    @Override
+    public int compare(int indexA, int indexB) {
+        if (hitsArrays == null)
+            return super.compare(indexA, indexB);
+        Int2IntMap ranks = docSortRanks();
+        int result = ranks.get(hitsArrays.doc(indexA)) - ranks.get(hitsArrays.doc(indexB));
+        return reverse ? -result : result;
+    }
+
+    /**
+     * Get the sort rank of each document's value.
+     *
+     * Determined when first needed, so we only look up each document's value once
+     * instead of twice for every comparison.
+     *
+     * @return sort rank per document id
+     */
+    private Int2IntMap docSortRanks() {
+        Int2IntMap result = docSortRanks;
+        if (result == null) {
+            synchronized (this) {
+                result = docSortRanks;
+                if (result == null) {
+                    Int2ObjectMap<String> values = new Int2ObjectOpenHashMap<>();
+                    for (int i = 0; i < hitsArrays.size(); i++) {
+                        int doc = hitsArrays.doc(i);
+                        if (!values.containsKey(doc))
+                            values.put(doc, docPropStoredField.get(doc));
+                    }
+                    int[] docs = values.keySet().toIntArray();
+                    IntArrays.quickSort(docs, (a, b) -> docPropStoredField.compareValues(values.get(a), values.get(b)));
+                    result = new Int2IntOpenHashMap(docs.length);
+                    int rank = 0;
+                    for (int i = 0; i < docs.length; i++) {
+                        if (i > 0 && docPropStoredField.compareValues(values.get(docs[i - 1]), values.get(docs[i])) != 0)
+                            rank++;
+                        result.put(docs[i], rank);
+                    }
+                    docSortRanks = result;
+                }
+            }
+        }
+        return result;
+    }
+
     @Override
     public String name() {
         return "document: " + docPropStoredField.name();
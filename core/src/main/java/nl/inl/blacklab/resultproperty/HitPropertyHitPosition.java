@@ -59,6 +59,18 @@ public class HitPropertyHitPosition extends HitProperty {
         return reverse ? b.start() - a.start() : a.start() - b.start();
     }
 
+    @Override
+    public int compare(int indexA, int indexB) {
+        if (hitsArrays == null)
+            return super.compare(indexA, indexB);
+        int aStart = hitsArrays.start(indexA), bStart = hitsArrays.start(indexB);
+        if (aStart == bStart) {
+            int aEnd = hitsArrays.end(indexA), bEnd = hitsArrays.end(indexB);
+            return reverse ? bEnd - aEnd : aEnd - bEnd;
+        }
+        return reverse ? bStart - aStart : aStart - bStart;
+    }
+
     @Override
     public String serialize() {
         return serializeReverse() + "hitposition";
@@ -65,10 +65,16 @@ public class HitPropertyHitText extends HitPropertyContextBase {
 
     @Override
     public PropertyValueContextWords get(Hit result) {
-        int[] context = contexts.get(result);
-        int contextHitStart = context[Contexts.HIT_START_INDEX];
-        int contextRightStart = context[Contexts.RIGHT_START_INDEX];
-        int contextLength = context[Contexts.LENGTH_INDEX];
+        throw contextsNeedHitIndex();
+    }
+
+    @Override
+    public PropertyValueContextWords get(int hitIndex) {
+        int[] context = contexts.buffer(hitIndex);
+        int contextOffset = contexts.offset(hitIndex);
+        int contextHitStart = context[contextOffset + Contexts.HIT_START_INDEX];
+        int contextRightStart = context[contextOffset + Contexts.RIGHT_START_INDEX];
+        int contextLength = context[contextOffset + Contexts.LENGTH_INDEX];
 
         // Copy the desired part of the context
         int n = contextRightStart - contextHitStart;
@@ -76,20 +82,22 @@ public class HitPropertyHitText extends HitPropertyContextBase {
             return new PropertyValueContextWords(index, annotation, sensitivity, new int[0], false);
         int[] dest = new int[n];
         int contextStart = contextLength * contextIndices.get(0) + Contexts.NUMBER_OF_BOOKKEEPING_INTS;
-        System.arraycopy(context, contextStart + contextHitStart, dest, 0, n);
+        System.arraycopy(context, contextOffset + contextStart + contextHitStart, dest, 0, n);
         return new PropertyValueContextWords(index, annotation, sensitivity, dest, false);
     }
 
     @Override
-    public int compare(Hit a, Hit b) {
-        int[] ca = contexts.get(a);
-        int caHitStart = ca[Contexts.HIT_START_INDEX];
-        int caRightStart = ca[Contexts.RIGHT_START_INDEX];
-        int caLength = ca[Contexts.LENGTH_INDEX];
-        int[] cb = contexts.get(b);
-        int cbHitStart = cb[Contexts.HIT_START_INDEX];
-        int cbRightStart = cb[Contexts.RIGHT_START_INDEX];
-        int cbLength = cb[Contexts.LENGTH_INDEX];
+    public int compare(int indexA, int indexB) {
+        int[] ca = contexts.buffer(indexA);
+        int caOffset = contexts.offset(indexA);
+        int caHitStart = ca[caOffset + Contexts.HIT_START_INDEX];
+        int caRightStart = ca[caOffset + Contexts.RIGHT_START_INDEX];
+        int caLength = ca[caOffset + Contexts.LENGTH_INDEX];
+        int[] cb = contexts.buffer(indexB);
+        int cbOffset = contexts.offset(indexB);
+        int cbHitStart = cb[cbOffset + Contexts.HIT_START_INDEX];
+        int cbRightStart = cb[cbOffset + Contexts.RIGHT_START_INDEX];
+        int cbLength = cb[cbOffset + Contexts.LENGTH_INDEX];
 
         // Compare the hit context for these two hits
         int contextIndex = contextIndices.get(0);
@@ -97,8 +105,8 @@ public class HitPropertyHitText extends HitPropertyContextBase {
         int bi = cbHitStart;
         while (ai < caRightStart && bi < cbRightStart) {
             int cmp = terms.compareSortPosition(
-                    ca[contextIndex * caLength + ai + Contexts.NUMBER_OF_BOOKKEEPING_INTS],
-                    cb[contextIndex * cbLength + bi + Contexts.NUMBER_OF_BOOKKEEPING_INTS], sensitivity);
+                    ca[caOffset + contextIndex * caLength + ai + Contexts.NUMBER_OF_BOOKKEEPING_INTS],
+                    cb[cbOffset + contextIndex * cbLength + bi + Contexts.NUMBER_OF_BOOKKEEPING_INTS], sensitivity);
             if (cmp != 0)
                 return reverse ? -cmp : cmp;
             ai++;
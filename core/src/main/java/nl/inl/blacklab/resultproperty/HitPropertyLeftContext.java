@@ -61,10 +61,16 @@ public class HitPropertyLeftContext extends HitPropertyContextBase {
 
     @Override
     public PropertyValueContextWords get(Hit result) {
-        int[] context = contexts.get(result);
-        int contextHitStart = context[Contexts.HIT_START_INDEX];
-        //int contextRightStart = context[Contexts.CONTEXTS_RIGHT_START_INDEX];
-        int contextLength = context[Contexts.LENGTH_INDEX];
+        throw contextsNeedHitIndex();
+    }
+
+    @Override
+    public PropertyValueContextWords get(int hitIndex) {
+        int[] context = contexts.buffer(hitIndex);
+        int contextOffset = contexts.offset(hitIndex);
+        int contextHitStart = context[contextOffset + Contexts.HIT_START_INDEX];
+        //int contextRightStart = context[contextOffset + Contexts.CONTEXTS_RIGHT_START_INDEX];
+        int contextLength = context[contextOffset + Contexts.LENGTH_INDEX];
 
         // Copy the desired part of the context
         int n = contextHitStart;
@@ -72,7 +78,7 @@ public class HitPropertyLeftContext extends HitPropertyContextBase {
             return new PropertyValueContextWords(index, annotation, sensitivity, new int[0], true);
         int[] dest = new int[n];
         int contextStart = contextLength * contextIndices.get(0) + Contexts.NUMBER_OF_BOOKKEEPING_INTS;
-        System.arraycopy(context, contextStart, dest, 0, n);
+        System.arraycopy(context, contextOffset + contextStart, dest, 0, n);
 
         // Reverse the order of the array, because we want to sort from right to left
         for (int i = 0; i < n / 2; i++) {
@@ -86,13 +92,15 @@ public class HitPropertyLeftContext extends HitPropertyContextBase {
     }
 
     @Override
-    public int compare(Hit a, Hit b) {
-        int[] ca = contexts.get(a);
-        int caHitStart = ca[Contexts.HIT_START_INDEX];
-        int caLength = ca[Contexts.LENGTH_INDEX];
-        int[] cb = contexts.get(b);
-        int cbHitStart = cb[Contexts.HIT_START_INDEX];
-        int cbLength = cb[Contexts.LENGTH_INDEX];
+    public int compare(int indexA, int indexB) {
+        int[] ca = contexts.buffer(indexA);
+        int caOffset = contexts.offset(indexA);
+        int caHitStart = ca[caOffset + Contexts.HIT_START_INDEX];
+        int caLength = ca[caOffset + Contexts.LENGTH_INDEX];
+        int[] cb = contexts.buffer(indexB);
+        int cbOffset = contexts.offset(indexB);
+        int cbHitStart = cb[cbOffset + Contexts.HIT_START_INDEX];
+        int cbLength = cb[cbOffset + Contexts.LENGTH_INDEX];
 
         // Compare the left context for these two hits, starting at the end
         int contextIndex = contextIndices.get(0);
@@ -100,8 +108,8 @@ public class HitPropertyLeftContext extends HitPropertyContextBase {
         int bi = cbHitStart - 1;
         while (ai >= 0 && bi >= 0) {
             int cmp = terms.compareSortPosition(
-                    ca[contextIndex * caLength + ai + Contexts.NUMBER_OF_BOOKKEEPING_INTS],
-                    cb[contextIndex * cbLength + bi + Contexts.NUMBER_OF_BOOKKEEPING_INTS], sensitivity);
+                    ca[caOffset + contextIndex * caLength + ai + Contexts.NUMBER_OF_BOOKKEEPING_INTS],
+                    cb[cbOffset + contextIndex * cbLength + bi + Contexts.NUMBER_OF_BOOKKEEPING_INTS], sensitivity);
             if (cmp != 0)
                 return reverse ? -cmp : cmp;
             ai--;
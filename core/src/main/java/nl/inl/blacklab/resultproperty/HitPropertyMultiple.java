@@ -208,6 +208,27 @@ public class HitPropertyMultiple extends HitProperty implements Iterable<HitProp
         return 0;
     }
 
+    @Override
+    public PropertyValueMultiple get(int hitIndex) {
+        PropertyValue[] rv = new PropertyValue[properties.size()];
+        int i = 0;
+        for (HitProperty crit: properties) {
+            rv[i] = crit.get(hitIndex);
+            i++;
+        }
+        return new PropertyValueMultiple(rv);
+    }
+
+    @Override
+    public int compare(int indexA, int indexB) {
+        for (HitProperty crit: properties) {
+            int cmp = reverse ? crit.compare(indexB, indexA) : crit.compare(indexA, indexB);
+            if (cmp != 0)
+                return cmp;
+        }
+        return 0;
+    }
+
     @Override
     public String name() {
         StringBuilder b = new StringBuilder();
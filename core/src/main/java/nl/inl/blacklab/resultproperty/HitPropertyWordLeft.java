@@ -62,26 +62,34 @@ public class HitPropertyWordLeft extends HitPropertyContextBase {
 
     @Override
     public PropertyValueContextWord get(Hit result) {
-        int[] context = contexts.get(result);
-        int contextHitStart = context[Contexts.HIT_START_INDEX];
-        //int contextRightStart = context[Contexts.CONTEXTS_RIGHT_START_INDEX];
-        int contextLength = context[Contexts.LENGTH_INDEX];
+        throw contextsNeedHitIndex();
+    }
+
+    @Override
+    public PropertyValueContextWord get(int hitIndex) {
+        int[] context = contexts.buffer(hitIndex);
+        int contextOffset = contexts.offset(hitIndex);
+        int contextHitStart = context[contextOffset + Contexts.HIT_START_INDEX];
+        //int contextRightStart = context[contextOffset + Contexts.CONTEXTS_RIGHT_START_INDEX];
+        int contextLength = context[contextOffset + Contexts.LENGTH_INDEX];
 
         if (contextHitStart <= 0)
             return new PropertyValueContextWord(index, annotation, sensitivity, Terms.NO_TERM);
         int contextStart = contextLength * contextIndices.get(0) + Contexts.NUMBER_OF_BOOKKEEPING_INTS;
-        return new PropertyValueContextWord(index, annotation, sensitivity, context[contextStart
+        return new PropertyValueContextWord(index, annotation, sensitivity, context[contextOffset + contextStart
                         + contextHitStart - 1]);
     }
 
     @Override
-    public int compare(Hit a, Hit b) {
-        int[] ca = contexts.get(a);
-        int caHitStart = ca[Contexts.HIT_START_INDEX];
-        int caLength = ca[Contexts.LENGTH_INDEX];
-        int[] cb = contexts.get(b);
-        int cbHitStart = cb[Contexts.HIT_START_INDEX];
-        int cbLength = cb[Contexts.LENGTH_INDEX];
+    public int compare(int indexA, int indexB) {
+        int[] ca = contexts.buffer(indexA);
+        int caOffset = contexts.offset(indexA);
+        int caHitStart = ca[caOffset + Contexts.HIT_START_INDEX];
+        int caLength = ca[caOffset + Contexts.LENGTH_INDEX];
+        int[] cb = contexts.buffer(indexB);
+        int cbOffset = contexts.offset(indexB);
+        int cbHitStart = cb[cbOffset + Contexts.HIT_START_INDEX];
+        int cbLength = cb[cbOffset + Contexts.LENGTH_INDEX];
 
         if (caHitStart <= 0)
             return cbHitStart <= 0 ? 0 : (reverse ? 1 : -1);
@@ -91,8 +99,8 @@ public class HitPropertyWordLeft extends HitPropertyContextBase {
         int contextIndex = contextIndices.get(0);
 
         int cmp = terms.compareSortPosition(
-                ca[contextIndex * caLength + caHitStart - 1 + Contexts.NUMBER_OF_BOOKKEEPING_INTS],
-                cb[contextIndex * cbLength + cbHitStart - 1 + Contexts.NUMBER_OF_BOOKKEEPING_INTS],
+                ca[caOffset + contextIndex * caLength + caHitStart - 1 + Contexts.NUMBER_OF_BOOKKEEPING_INTS],
+                cb[cbOffset + contextIndex * cbLength + cbHitStart - 1 + Contexts.NUMBER_OF_BOOKKEEPING_INTS],
                 sensitivity);
         return reverse ? -cmp : cmp;
     }
@@ -62,24 +62,32 @@ public class HitPropertyWordRight extends HitPropertyContextBase {
 
     @Override
     public PropertyValueContextWord get(Hit result) {
-        int[] context = contexts.get(result);
-        int contextRightStart = context[Contexts.RIGHT_START_INDEX];
-        int contextLength = context[Contexts.LENGTH_INDEX];
+        throw contextsNeedHitIndex();
+    }
+
+    @Override
+    public PropertyValueContextWord get(int hitIndex) {
+        int[] context = contexts.buffer(hitIndex);
+        int contextOffset = contexts.offset(hitIndex);
+        int contextRightStart = context[contextOffset + Contexts.RIGHT_START_INDEX];
+        int contextLength = context[contextOffset + Contexts.LENGTH_INDEX];
 
         if (contextLength <= contextRightStart)
             return new PropertyValueContextWord(index, annotation, sensitivity, Terms.NO_TERM);
         int contextStart = contextLength * contextIndices.get(0) + Contexts.NUMBER_OF_BOOKKEEPING_INTS;
-        return new PropertyValueContextWord(index, annotation, sensitivity, context[contextStart + contextRightStart]);
+        return new PropertyValueContextWord(index, annotation, sensitivity, context[contextOffset + contextStart + contextRightStart]);
     }
 
     @Override
-    public int compare(Hit a, Hit b) {
-        int[] ca = contexts.get(a);
-        int caRightStart = ca[Contexts.RIGHT_START_INDEX];
-        int caLength = ca[Contexts.LENGTH_INDEX];
-        int[] cb = contexts.get(b);
-        int cbRightStart = cb[Contexts.RIGHT_START_INDEX];
-        int cbLength = cb[Contexts.LENGTH_INDEX];
+    public int compare(int indexA, int indexB) {
+        int[] ca = contexts.buffer(indexA);
+        int caOffset = contexts.offset(indexA);
+        int caRightStart = ca[caOffset + Contexts.RIGHT_START_INDEX];
+        int caLength = ca[caOffset + Contexts.LENGTH_INDEX];
+        int[] cb = contexts.buffer(indexB);
+        int cbOffset = contexts.offset(indexB);
+        int cbRightStart = cb[cbOffset + Contexts.RIGHT_START_INDEX];
+        int cbLength = cb[cbOffset + Contexts.LENGTH_INDEX];
 
         if (caLength <= caRightStart)
             return cbLength <= cbRightStart ? 0 : (reverse ? 1 : -1);
@@ -88,8 +96,8 @@ public class HitPropertyWordRight extends HitPropertyContextBase {
         // Compare one word to the right of the hit
         int contextIndex = contextIndices.get(0);
         int cmp = terms.compareSortPosition(
-                ca[contextIndex * caLength + caRightStart + Contexts.NUMBER_OF_BOOKKEEPING_INTS],
-                cb[contextIndex * cbLength + cbRightStart + Contexts.NUMBER_OF_BOOKKEEPING_INTS],
+                ca[caOffset + contextIndex * caLength + caRightStart + Contexts.NUMBER_OF_BOOKKEEPING_INTS],
+                cb[cbOffset + contextIndex * cbLength + cbRightStart + Contexts.NUMBER_OF_BOOKKEEPING_INTS],
                 sensitivity);
         return reverse ? -cmp : cmp;
     }
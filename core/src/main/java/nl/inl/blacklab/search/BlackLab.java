@@ -15,6 +15,7 @@ import org.apache.lucene.index.IndexReader;
 import nl.inl.blacklab.config.BLConfigIndexing;
 import nl.inl.blacklab.config.BLConfigLog;
 import nl.inl.blacklab.config.BlackLabConfig;
+import nl.inl.blacklab.contentstore.BlockCache;
 import nl.inl.blacklab.exceptions.ErrorOpeningIndex;
 import nl.inl.blacklab.index.DownloadCache;
 import nl.inl.blacklab.index.PluginManager;
@@ -276,6 +277,9 @@ public final class BlackLab {
                     DownloadCache.setDir(new File(indexing.getDownloadCacheDir()));
             ZipHandleManager.setMaxOpen(indexing.getZipFilesMaxOpen());
             
+            // Search settings that apply to all indexes
+            BlockCache.get().setMaxSizeBytes(blackLabConfig.getSearch().getContentStoreBlockCacheMegs() * 1024L * 1024L);
+            
             // Plugins settings
             PluginManager.initPlugins(blackLabConfig.getPlugins());
             
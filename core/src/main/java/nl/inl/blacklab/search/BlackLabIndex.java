@@ -29,9 +29,11 @@ import nl.inl.blacklab.search.indexmetadata.MetadataField;
 import nl.inl.blacklab.search.indexmetadata.MetadataFields;
 import nl.inl.blacklab.search.lucene.BLSpanQuery;
 import nl.inl.blacklab.search.lucene.SpanQueryFiltered;
+import nl.inl.blacklab.search.lucene.optimize.NfaCostModel;
 import nl.inl.blacklab.search.results.ContextSize;
 import nl.inl.blacklab.search.results.DocResults;
 import nl.inl.blacklab.search.results.Hits;
+import nl.inl.blacklab.search.results.HitsCountFromQuery;
 import nl.inl.blacklab.search.results.QueryInfo;
 import nl.inl.blacklab.search.results.SearchSettings;
 import nl.inl.blacklab.search.textpattern.TextPattern;
@@ -109,6 +111,18 @@ public interface BlackLabIndex extends Closeable {
     @Override
     void close();
 
+    /**
+     * Initialize the forward indexes and content stores and read the forward index
+     * ids, so the first searches don't have to wait for this.
+     *
+     * After opening an index, forward indexes and content stores are initialized
+     * in the background, one at a time. This method does it right away, in the
+     * calling thread. It is safe to call it more than once.
+     *
+     * @param prefetch also load the forward index files into memory
+     */
+    void warmUp(boolean prefetch);
+
     /**
      * Is this a newly created, empty index?
      * 
@@ -227,6 +241,35 @@ public interface BlackLabIndex extends Closeable {
         return find(QueryInfo.create(this), pattern, filter, searchSettings());
     }
 
+    /**
+     * Count hits for a pattern in a field, without storing them.
+     *
+     * Use this if you only need the number of hits and documents; it uses much
+     * less memory than {@link #find(BLSpanQuery, SearchSettings)}.
+     *
+     * @param query the pattern to count hits for
+     * @param settings search settings, or null for default
+     * @param searchLogger where to log details about query execution
+     * @return the (running) count
+     * @throws WildcardTermTooBroad if a wildcard or regular expression term
+     *             is overly broad
+     */
+    HitsCountFromQuery countHits(BLSpanQuery query, SearchSettings settings, SearchLogger searchLogger) throws WildcardTermTooBroad;
+
+    /**
+     * Count hits for a pattern in a field, without storing them.
+     *
+     * @param queryInfo information about the query: field, logger
+     * @param pattern the pattern to count hits for
+     * @param filter determines which documents to search
+     * @param settings search settings, or null for default
+     * @return the (running) count
+     * @throws InvalidQuery if the query is invalid
+     */
+    default HitsCountFromQuery countHits(QueryInfo queryInfo, TextPattern pattern, Query filter, SearchSettings settings) throws InvalidQuery {
+        return countHits(createSpanQuery(queryInfo, pattern, filter), settings, queryInfo.searchLogger());
+    }
+
     /**
      * Perform a document query only (no hits)
      * 
@@ -456,6 +499,16 @@ public interface BlackLabIndex extends Closeable {
      */
     SearchSettings searchSettings();
 
+    /**
+     * How eagerly to use forward index (NFA) matching for queries on this index.
+     *
+     * Queries may override the threshold using {@link SearchSettings}; the other
+     * constants always come from here.
+     *
+     * @return cost model for this index
+     */
+    NfaCostModel nfaCostModel();
+
     /**
      * How do we fix well-formedness for snippets of XML?
      * 
@@ -530,6 +583,12 @@ public interface BlackLabIndex extends Closeable {
      * @param settings desired settings
      */
     void setSearchSettings(SearchSettings settings);
+
+    /**
+     * Set how eagerly to use forward index (NFA) matching for queries on this index.
+     * @param nfaCostModel cost model for this index
+     */
+    void setNfaCostModel(NfaCostModel nfaCostModel);
     
     /**
      * Set the default context size.
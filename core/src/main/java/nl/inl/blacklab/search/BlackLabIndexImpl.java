@@ -51,6 +51,7 @@ import nl.inl.blacklab.exceptions.InvalidConfiguration;
 import nl.inl.blacklab.exceptions.InvalidQuery;
 import nl.inl.blacklab.exceptions.WildcardTermTooBroad;
 import nl.inl.blacklab.forwardindex.AnnotationForwardIndex;
+import nl.inl.blacklab.forwardindex.FiidCache;
 import nl.inl.blacklab.forwardindex.ForwardIndex;
 import nl.inl.blacklab.indexers.config.ConfigInputFormat;
 import nl.inl.blacklab.requestlogging.SearchLogger;
@@ -67,9 +68,11 @@ import nl.inl.blacklab.search.indexmetadata.MatchSensitivity;
 import nl.inl.blacklab.search.indexmetadata.MetadataField;
 import nl.inl.blacklab.search.lucene.BLSpanQuery;
 import nl.inl.blacklab.search.lucene.SpanQueryFiltered;
+import nl.inl.blacklab.search.lucene.optimize.NfaCostModel;
 import nl.inl.blacklab.search.results.ContextSize;
 import nl.inl.blacklab.search.results.DocResults;
 import nl.inl.blacklab.search.results.Hits;
+import nl.inl.blacklab.search.results.HitsCountFromQuery;
 import nl.inl.blacklab.search.results.QueryInfo;
 import nl.inl.blacklab.search.results.SearchSettings;
 import nl.inl.blacklab.search.textpattern.TextPattern;
@@ -291,6 +294,9 @@ public class BlackLabIndexImpl implements BlackLabIndex, BlackLabIndexWriter {
 
     protected SearchSettings searchSettings;
 
+    /** How eagerly to use forward index (NFA) matching for this index */
+    protected NfaCostModel nfaCostModel = NfaCostModel.DEFAULT;
+
     /** Should we default to case-/diacritics-sensitive searching? [default: both insensitive] */
     protected MatchSensitivity defaultMatchSensitivity = MatchSensitivity.INSENSITIVE;
 
@@ -431,6 +437,16 @@ public class BlackLabIndexImpl implements BlackLabIndex, BlackLabIndexWriter {
         this.searchSettings = searchSettings;
     }
 
+    @Override
+    public NfaCostModel nfaCostModel() {
+        return nfaCostModel;
+    }
+
+    @Override
+    public void setNfaCostModel(NfaCostModel nfaCostModel) {
+        this.nfaCostModel = nfaCostModel;
+    }
+
     @Override
     public UnbalancedTagsStrategy defaultUnbalancedTagsStrategy() {
         return defaultUnbalancedTagsStrategy;
@@ -487,12 +503,21 @@ public class BlackLabIndexImpl implements BlackLabIndex, BlackLabIndexWriter {
         return Hits.fromSpanQuery(queryInfo, query, settings == null ? searchSettings() : settings);
     }
 
+    @Override
+    public HitsCountFromQuery countHits(BLSpanQuery query, SearchSettings settings, SearchLogger logger) throws WildcardTermTooBroad {
+        QueryInfo queryInfo = QueryInfo.create(this, fieldFromQuery(query), true, logger);
+        return new HitsCountFromQuery(queryInfo, query, settings == null ? searchSettings() : settings);
+    }
+
     @Override
     public QueryExplanation explain(BLSpanQuery query, SearchLogger searchLogger) throws WildcardTermTooBroad {
         try {
             IndexReader indexReader = reader();
-            query.setQueryInfo(QueryInfo.create(this, fieldFromQuery(query), true, searchLogger));
-            return new QueryExplanation(query, query.optimize(indexReader).rewrite(indexReader));
+            QueryInfo queryInfo = QueryInfo.create(this, fieldFromQuery(query), true, searchLogger);
+            query.setQueryInfo(queryInfo);
+            BLSpanQuery optimized = query.optimize(indexReader);
+            optimized.setQueryInfo(queryInfo); // (optimize() may have created new query objects)
+            return new QueryExplanation(query, optimized.rewrite(indexReader), indexReader);
         } catch (IOException e) {
             throw BlackLabRuntimeException.wrap(e);
         }
@@ -640,6 +665,11 @@ public class BlackLabIndexImpl implements BlackLabIndex, BlackLabIndexWriter {
             throws IOException, CorruptIndexException, LockObtainFailedException, ErrorOpeningIndex {
         isEmptyIndex = indexMetadata.isNewIndex();
 
+        // A cost model in the index metadata (e.g. determined by CalibrateNfa) overrides
+        // the one from the BlackLab configuration.
+        if (indexMetadata.nfaCostModel() != null)
+            nfaCostModel = indexMetadata.nfaCostModel();
+
         // TODO: we need to create the analyzer before opening the index, because
         //   we can't change the analyzer attached to the IndexWriter (and passing a different
         //   analyzer in addDocument() went away in Lucene 5.x).
@@ -746,6 +776,28 @@ public class BlackLabIndexImpl implements BlackLabIndex, BlackLabIndexWriter {
         analyzer = new PerFieldAnalyzerWrapper(baseAnalyzer, fieldAnalyzers);
     }
 
+    @Override
+    public void warmUp(boolean prefetch) {
+        for (AnnotatedField field: annotatedFields()) {
+            for (Annotation annotation: field.annotations()) {
+                if (!annotation.hasForwardIndex())
+                    continue;
+                AnnotationForwardIndex afi = annotationForwardIndex(annotation);
+                if (prefetch)
+                    afi.prefetch();
+                else
+                    afi.initialize();
+                FiidCache.warmUp(reader(), annotation);
+            }
+            ContentStore contentStore;
+            synchronized (contentStores) {
+                contentStore = contentStores.contentStore(field);
+            }
+            if (contentStore != null)
+                contentStore.initialize();
+        }
+    }
+
     @Override
     public void close() {
         try {
@@ -1002,6 +1054,10 @@ public class BlackLabIndexImpl implements BlackLabIndex, BlackLabIndexWriter {
 
     @Override
     public TermFrequencyList termFrequencies(AnnotationSensitivity annotSensitivity, Query filterQuery, Set<String> terms) {
+        if (filterQuery != null && annotSensitivity.annotation().hasForwardIndex()) {
+            // Count terms in the forward index; much faster than reading each document's term vector
+            return TermFrequencyList.termFrequencies(this, annotSensitivity, filterQuery, terms);
+        }
         Map<String, Integer> freq = LuceneUtil.termFrequencies(searcher(), filterQuery, annotSensitivity, terms);
         return new TermFrequencyList(QueryInfo.create(this, annotSensitivity.annotation().field()), freq, true);
     }
@@ -1,20 +1,118 @@
 package nl.inl.blacklab.search;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.lucene.index.IndexReader;
+
 import nl.inl.blacklab.search.lucene.BLSpanQuery;
+import nl.inl.blacklab.search.lucene.SpanQuerySequence;
 
 /**
  * Object used to explain how a SpanQuery is rewritten.
+ *
+ * If an IndexReader is given, also includes the execution plan: the tree of
+ * rewritten clauses with the cost estimates the optimizer used to decide on
+ * matching strategy and the order in which sequence clauses are combined.
  */
 public class QueryExplanation {
 
+    /**
+     * One node in the execution plan, with the optimizer's estimates.
+     */
+    public static class PlanNode {
+
+        private String description;
+
+        private long estimatedHits;
+
+        private int forwardMatchingCost;
+
+        private boolean canMakeNfa;
+
+        private List<PlanNode> children;
+
+        private List<String> joinOrder;
+
+        PlanNode(BLSpanQuery query, IndexReader reader) {
+            List<BLSpanQuery> childClauses = query.getChildClauses();
+            // Only show the node type if there are children; they will follow
+            description = childClauses.isEmpty() ? query.toString() : query.getNodeName();
+            estimatedHits = query.reverseMatchingCost(reader);
+            forwardMatchingCost = query.forwardMatchingCost();
+            canMakeNfa = query.canMakeNfa();
+            joinOrder = query instanceof SpanQuerySequence ? ((SpanQuerySequence) query).simpleJoinOrder(reader)
+                    : Collections.emptyList();
+            children = new ArrayList<>();
+            for (BLSpanQuery child: childClauses) {
+                children.add(new PlanNode(child, reader));
+            }
+        }
+
+        /** @return description of this node (full query for leaf nodes, type otherwise) */
+        public String description() {
+            return description;
+        }
+
+        /** @return estimated number of hits, used for reverse index matching cost */
+        public long estimatedHits() {
+            return estimatedHits;
+        }
+
+        /** @return estimated cost of matching this node using the forward index */
+        public int forwardMatchingCost() {
+            return forwardMatchingCost;
+        }
+
+        /** @return can this node be matched using the forward index (NFA)? */
+        public boolean canMakeNfa() {
+            return canMakeNfa;
+        }
+
+        public List<PlanNode> children() {
+            return Collections.unmodifiableList(children);
+        }
+
+        /**
+         * For sequences: the order in which adjacent clauses are joined.
+         *
+         * See {@link SpanQuerySequence#simpleJoinOrder(IndexReader)}.
+         *
+         * @return the joins in execution order, e.g. ["1+2", "0+1-2"], or an empty list
+         */
+        public List<String> joinOrder() {
+            return Collections.unmodifiableList(joinOrder);
+        }
+
+        @Override
+        public String toString() {
+            return description + " (est. " + estimatedHits + " hits)";
+        }
+    }
+
     private BLSpanQuery spanQuery;
 
     private BLSpanQuery rewrittenQuery;
 
+    private PlanNode plan;
+
     public QueryExplanation(BLSpanQuery spanQuery, BLSpanQuery rewrittenQuery) {
+        this(spanQuery, rewrittenQuery, null);
+    }
+
+    /**
+     * Construct a query explanation, including the execution plan.
+     *
+     * @param spanQuery original query
+     * @param rewrittenQuery rewritten query
+     * @param reader index reader to estimate costs with, or null for no plan
+     */
+    public QueryExplanation(BLSpanQuery spanQuery, BLSpanQuery rewrittenQuery, IndexReader reader) {
         super();
         this.spanQuery = spanQuery;
         this.rewrittenQuery = rewrittenQuery;
+        this.plan = reader == null ? null : new PlanNode(rewrittenQuery, reader);
     }
 
     public BLSpanQuery originalQuery() {
@@ -24,4 +122,22 @@ public class QueryExplanation {
     public BLSpanQuery rewrittenQuery() {
         return rewrittenQuery;
     }
+
+    /**
+     * Get the execution plan with the optimizer's estimates.
+     *
+     * @return root of the plan, or null if not available
+     */
+    public PlanNode plan() {
+        return plan;
+    }
+
+    /**
+     * Get the estimated number of hits for the rewritten query.
+     *
+     * @return estimated number of hits, or -1 if not available
+     */
+    public long estimatedHits() {
+        return plan == null ? -1 : plan.estimatedHits();
+    }
 }
@@ -1,31 +1,44 @@
 package nl.inl.blacklab.search;
 
+import java.io.IOException;
+import java.nio.IntBuffer;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.IntFunction;
 
-import org.eclipse.collections.api.map.primitive.MutableIntIntMap;
-import org.eclipse.collections.api.tuple.primitive.IntIntPair;
-import org.eclipse.collections.impl.factory.primitive.IntIntMaps;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.Bits;
 
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+import nl.inl.blacklab.exceptions.InterruptedSearch;
+import nl.inl.blacklab.forwardindex.AnnotationForwardIndex;
 import nl.inl.blacklab.forwardindex.FiidLookup;
 import nl.inl.blacklab.forwardindex.Terms;
 import nl.inl.blacklab.resultproperty.PropertyValue;
 import nl.inl.blacklab.resultproperty.ResultProperty;
 import nl.inl.blacklab.search.indexmetadata.Annotation;
+import nl.inl.blacklab.search.indexmetadata.AnnotationSensitivity;
 import nl.inl.blacklab.search.indexmetadata.MatchSensitivity;
 import nl.inl.blacklab.search.results.ContextSize;
-import nl.inl.blacklab.search.results.Contexts;
 import nl.inl.blacklab.search.results.Hits;
+import nl.inl.blacklab.search.results.HitsArrays;
 import nl.inl.blacklab.search.results.QueryInfo;
 import nl.inl.blacklab.search.results.ResultGroups;
 import nl.inl.blacklab.search.results.Results;
 import nl.inl.blacklab.search.results.SampleParameters;
-import nl.inl.util.StringUtil;
+import nl.inl.util.ThreadPauser;
 
 /**
  * A collection of tokens and their (absolute) frequencies.
@@ -36,8 +49,19 @@ import nl.inl.util.StringUtil;
  */
 public class TermFrequencyList extends Results<TermFrequency> {
     
+    /** Only use a separate thread if it can process at least this many hits */
+    private static final int MIN_HITS_PER_THREAD = 10000;
+
+    /** Only use a separate thread if it can process at least this many documents */
+    private static final int MIN_DOCS_PER_THREAD = 100;
+
     /**
      * Count occurrences of context words around hit.
+     *
+     * Reads the context words directly from the forward index and counts them by
+     * term id, dividing the documents between several threads if there are many
+     * hits. Each thread counts into its own array, so no locking is needed.
+     *
      * @param hits hits to get collocations for 
      * @param annotation annotation to use for the collocations, or null if default
      * @param contextSize how many words around hits to use 
@@ -46,7 +70,7 @@ public class TermFrequencyList extends Results<TermFrequency> {
      * 
      * @return the frequency of each occurring token
      */
-    public synchronized static TermFrequencyList collocations(Hits hits, Annotation annotation, ContextSize contextSize, MatchSensitivity sensitivity, boolean sort) {
+    public static TermFrequencyList collocations(Hits hits, Annotation annotation, ContextSize contextSize, MatchSensitivity sensitivity, boolean sort) {
         BlackLabIndex index = hits.index();
         if (annotation == null)
             annotation = index.mainAnnotatedField().mainAnnotation();
@@ -54,55 +78,268 @@ public class TermFrequencyList extends Results<TermFrequency> {
             contextSize = index.defaultContextSize();
         if (sensitivity == null)
             sensitivity = annotation.sensitivity(index.defaultMatchSensitivity()).sensitivity();
-        
-        List<Annotation> annotations = Arrays.asList(annotation);
-        List<FiidLookup> fiidLookups = FiidLookup.getList(annotations, hits.queryInfo().index().reader());
-        Contexts contexts = new Contexts(hits, annotations, contextSize, fiidLookups);
-        MutableIntIntMap coll = IntIntMaps.mutable.empty();
-        for (int[] context: contexts) {
-            // Count words
-            int contextHitStart = context[Contexts.HIT_START_INDEX];
-            int contextRightStart = context[Contexts.RIGHT_START_INDEX];
-            int contextLength = context[Contexts.LENGTH_INDEX];
-            int indexInContent = Contexts.NUMBER_OF_BOOKKEEPING_INTS;
-            for (int i = 0; i < contextLength; i++, indexInContent++) {
-                if (i >= contextHitStart && i < contextRightStart)
-                    continue; // don't count words in hit itself, just around [option..?]
-                int w = context[indexInContent];
-                int n;
-                if (!coll.contains(w))
-                    n = 1;
-                else
-                    n = coll.get(w) + 1;
-                coll.put(w, n);
+        AnnotationForwardIndex forwardIndex = index.annotationForwardIndex(annotation);
+        Terms terms = forwardIndex.terms();
+
+        // Find the runs of hits in the same document and look up their forward index ids
+        // (we do this here because FiidLookup shouldn't be shared between threads)
+        int n = hits.size(); // (also makes sure all hits have been read)
+        HitsArrays hitsArrays = hits.hitsArrays();
+        FiidLookup fiidLookup = new FiidLookup(index.reader(), annotation);
+        IntArrayList runStarts = new IntArrayList();
+        IntArrayList fiids = new IntArrayList();
+        int currentDoc = -1;
+        for (int i = 0; i < n; i++) {
+            int doc = hitsArrays.doc(i);
+            if (doc != currentDoc) {
+                runStarts.add(i);
+                fiids.add(fiidLookup.get(doc));
+                currentDoc = doc;
             }
         }
+        runStarts.add(n);
 
-        // Get the actual words from the sort positions
-        Terms terms = index.annotationForwardIndex(contexts.annotations().get(0)).terms();
-        Map<String, Integer> wordFreq = new HashMap<>();
-        for (IntIntPair e : coll.keyValuesView()) {
-            int key = e.getOne();
-            int value = e.getTwo();
-            String word = terms.get(key);
-            if (!sensitivity.isDiacriticsSensitive()) {
-                word = StringUtil.stripAccents(word);
+        // Count the context words, splitting the documents between a number of threads
+        int contextSz = contextSize.left();
+        int numberOfTerms = terms.numberOfTerms();
+        int numberOfRuns = fiids.size();
+        int numberOfTasks = numberOfTasks(index, numberOfRuns, n / MIN_HITS_PER_THREAD);
+        int runsPerTask = (numberOfRuns + numberOfTasks - 1) / numberOfTasks;
+        int[] counts = countInParallel(index, numberOfTasks, numberOfTerms, task -> {
+            int from = Math.min(numberOfRuns, task * runsPerTask), to = Math.min(numberOfRuns, from + runsPerTask);
+            return countContextWords(hits.threadPauser(), forwardIndex, hitsArrays, runStarts, fiids, contextSz,
+                    numberOfTerms, from, to);
+        });
+
+        // Transfer from map to list
+        return new TermFrequencyList(hits.queryInfo(), termFrequencies(terms, counts, sensitivity), sort);
+    }
+
+    /**
+     * Count occurrences of terms in a set of documents, using the forward index.
+     *
+     * Used for term frequencies in a subcorpus, which would otherwise require
+     * reading the term vector of each document. The documents are divided between
+     * several threads if there are many, each counting term ids into its own array.
+     *
+     * @param index our index
+     * @param annotSensitivity annotation (which must have a forward index) and sensitivity to count terms for
+     * @param filterQuery document filter query
+     * @param searchTerms terms to get frequencies for, or null/empty for all terms
+     * @return the frequency of each term
+     */
+    public static TermFrequencyList termFrequencies(BlackLabIndex index, AnnotationSensitivity annotSensitivity,
+            Query filterQuery, Set<String> searchTerms) {
+        Annotation annotation = annotSensitivity.annotation();
+        AnnotationForwardIndex forwardIndex = index.annotationForwardIndex(annotation);
+        Terms terms = forwardIndex.terms();
+
+        // Find the forward index ids for the matching documents
+        // (we do this here because FiidLookup shouldn't be shared between threads)
+        IntArrayList fiids = new IntArrayList();
+        FiidLookup fiidLookup = new FiidLookup(index.reader(), annotation);
+        try {
+            Weight weight = index.searcher().createNormalizedWeight(filterQuery, false);
+            for (LeafReaderContext leaf: index.reader().leaves()) {
+                Scorer scorer = weight.scorer(leaf);
+                if (scorer == null)
+                    continue; // no matching documents in this segment
+                DocIdSetIterator it = scorer.iterator();
+                Bits liveDocs = leaf.reader().getLiveDocs();
+                for (int doc = it.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = it.nextDoc()) {
+                    if (liveDocs == null || liveDocs.get(doc))
+                        fiids.add(fiidLookup.get(leaf.docBase + doc));
+                }
             }
-            if (!sensitivity.isCaseSensitive()) {
-                word = word.toLowerCase();
+        } catch (IOException e) {
+            throw BlackLabRuntimeException.wrap(e);
+        }
+
+        // Count the terms, splitting the documents between a number of threads
+        int numberOfTerms = terms.numberOfTerms();
+        int numberOfDocs = fiids.size();
+        int numberOfTasks = numberOfTasks(index, numberOfDocs, numberOfDocs / MIN_DOCS_PER_THREAD);
+        int docsPerTask = (numberOfDocs + numberOfTasks - 1) / numberOfTasks;
+        int[] counts = countInParallel(index, numberOfTasks, numberOfTerms, task -> {
+            int from = Math.min(numberOfDocs, task * docsPerTask), to = Math.min(numberOfDocs, from + docsPerTask);
+            return countTerms(forwardIndex, fiids, numberOfTerms, from, to);
+        });
+
+        Map<String, Integer> freq = termFrequencies(terms, counts, annotSensitivity.sensitivity());
+        if (searchTerms != null && !searchTerms.isEmpty()) {
+            // Only keep the terms we were asked for (with frequency 0 if they don't occur)
+            Map<String, Integer> selected = new HashMap<>();
+            for (String term: searchTerms) {
+                selected.put(term, freq.getOrDefault(term, 0));
             }
+            freq = selected;
+        }
+        return new TermFrequencyList(QueryInfo.create(index, annotation.field()), freq, true);
+    }
+
+    /**
+     * Determine how many threads to use for counting.
+     *
+     * @param index our index
+     * @param numberOfUnits number of units of work that can be divided between threads
+     * @param maxTasks maximum number of threads that would be useful
+     * @return number of threads to use
+     */
+    private static int numberOfTasks(BlackLabIndex index, int numberOfUnits, int maxTasks) {
+        int maxThreads = index.blackLab() == null ? 1 : Math.max(1, index.blackLab().maxThreadsPerSearch());
+        return Math.max(1, Math.min(maxThreads, Math.min(numberOfUnits, maxTasks)));
+    }
+
+    /**
+     * Run a number of counting tasks, and add up the counts they return.
+     *
+     * The last task is run on the calling thread, the others on the search
+     * executor.
+     *
+     * @param index our index
+     * @param numberOfTasks number of tasks
+     * @param numberOfTerms number of terms (length of the counts arrays)
+     * @param countTask returns the counts per term id for a task number
+     * @return total counts per term id
+     */
+    private static int[] countInParallel(BlackLabIndex index, int numberOfTasks, int numberOfTerms, IntFunction<int[]> countTask) {
+        int[][] counts = new int[numberOfTasks][];
+        List<FutureTask<Void>> futures = new ArrayList<>();
+        for (int task = 0; task < numberOfTasks; task++) {
+            int taskIndex = task;
+            Runnable count = () -> counts[taskIndex] = countTask.apply(taskIndex);
+            if (task == numberOfTasks - 1) {
+                // Last task; perform it in this thread
+                count.run();
+            } else {
+                FutureTask<Void> future = new FutureTask<>(count, null);
+                futures.add(future);
+                index.blackLab().searchExecutorService().execute(future);
+            }
+        }
+        try {
+            for (FutureTask<Void> future: futures) {
+                future.run(); // (does nothing if already started; avoids waiting for a busy executor)
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            for (FutureTask<Void> future: futures) {
+                future.cancel(true);
+            }
+            throw new InterruptedSearch(e);
+        } catch (ExecutionException e) {
+            for (FutureTask<Void> future: futures) {
+                future.cancel(true);
+            }
+            throw BlackLabRuntimeException.wrap(e.getCause());
+        }
+        int[] total = counts[0];
+        for (int task = 1; task < numberOfTasks; task++) {
+            for (int i = 0; i < numberOfTerms; i++) {
+                total[i] += counts[task][i];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Convert counts per term id to frequencies per term string.
+     *
+     * Counts for terms that are equal according to the sensitivity settings are
+     * merged. Each term that occurred is desensitized once; we key on the
+     * desensitized string rather than the collator's sort position, because the
+     * collator may consider terms equal that desensitize differently (e.g. ß/ss).
+     *
+     * @param terms terms object
+     * @param counts number of occurrences per term id
+     * @param sensitivity sensitivity to use
+     * @return frequency per (desensitized) term
+     */
+    private static Map<String, Integer> termFrequencies(Terms terms, int[] counts, MatchSensitivity sensitivity) {
+        Map<String, Integer> wordFreq = new HashMap<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0)
+                continue;
+            String word = sensitivity.desensitize(terms.get(i));
             // Note that multiple ids may map to the same word (because of sensitivity settings)
             // Here, those groups are merged.
-            Integer n = wordFreq.get(word);
-            if (n == null) {
-                n = 0;
+            wordFreq.merge(word, counts[i], Integer::sum);
+        }
+        return wordFreq;
+    }
+
+    /**
+     * Count the context words around the hits in a range of runs of hits in the
+     * same document.
+     *
+     * @param threadPauser pauser to check between documents
+     * @param forwardIndex forward index to get context from
+     * @param hits hits to count context words for
+     * @param runStarts index of the first hit in each run (and one past the last hit)
+     * @param fiids forward index id per run
+     * @param contextSz number of words of context around each hit
+     * @param numberOfTerms number of terms in the forward index
+     * @param firstRun first run to process
+     * @param lastRun one past the last run to process
+     * @return number of occurrences per term id
+     */
+    private static int[] countContextWords(ThreadPauser threadPauser, AnnotationForwardIndex forwardIndex,
+            HitsArrays hits, IntArrayList runStarts, IntArrayList fiids, int contextSz, int numberOfTerms,
+            int firstRun, int lastRun) {
+        int[] counts = new int[numberOfTerms];
+        for (int r = firstRun; r < lastRun; r++) {
+            try {
+                threadPauser.waitIfPaused();
+            } catch (InterruptedException e) {
+                throw new InterruptedSearch(e);
+            }
+            IntBuffer tokens = forwardIndex.tokens(fiids.getInt(r));
+            if (tokens == null)
+                throw new BlackLabRuntimeException("Cannot get context from deleted document, fiid = " + fiids.getInt(r));
+            int docLength = tokens.limit();
+            for (int i = runStarts.getInt(r); i < runStarts.getInt(r + 1); i++) {
+                int hitStart = hits.start(i);
+                int hitEnd = hits.end(i);
+                int snippetStart = contextSz >= hitStart ? 0 : hitStart - contextSz;
+                int snippetEnd = Math.min(docLength, hitEnd + contextSz);
+                // Don't count words in the hit itself, just around it
+                for (int j = snippetStart; j < Math.min(hitStart, snippetEnd); j++) {
+                    counts[tokens.get(j)]++;
+                }
+                for (int j = Math.max(hitEnd, snippetStart); j < snippetEnd; j++) {
+                    counts[tokens.get(j)]++;
+                }
             }
-            n += value;
-            wordFreq.put(word, n);
         }
+        return counts;
+    }
 
-        // Transfer from map to list
-        return new TermFrequencyList(hits.queryInfo(), wordFreq, sort);
+    /**
+     * Count the terms in a range of documents.
+     *
+     * @param forwardIndex forward index to count terms in
+     * @param fiids forward index ids of the documents
+     * @param numberOfTerms number of terms in the forward index
+     * @param from first document to process
+     * @param to one past the last document to process
+     * @return number of occurrences per term id
+     */
+    private static int[] countTerms(AnnotationForwardIndex forwardIndex, IntArrayList fiids, int numberOfTerms,
+            int from, int to) {
+        int[] counts = new int[numberOfTerms];
+        for (int d = from; d < to; d++) {
+            if (Thread.currentThread().isInterrupted())
+                throw new InterruptedSearch();
+            IntBuffer tokens = forwardIndex.tokens(fiids.getInt(d));
+            if (tokens == null)
+                continue; // deleted document
+            // (includes the extra closing token, like the terms in the Lucene index)
+            int docLength = tokens.limit();
+            for (int i = 0; i < docLength; i++) {
+                counts[tokens.get(i)]++;
+            }
+        }
+        return counts;
     }
 
     List<TermFrequency> list;
@@ -93,9 +93,10 @@ public abstract class ForwardIndexAccessor {
          * @param docId Lucene document id
          * @param start first token to get
          * @param end one more than the last token to get
-         * @return document length in tokens
+         * @param buffer where to store the tokens
+         * @param offset where in the buffer to store the first token
          */
-        abstract int[] getChunk(int annotIndex, int docId, int start, int end);
+        abstract void getChunk(int annotIndex, int docId, int start, int end, int[] buffer, int offset);
 
         /**
          * Get the forward index id for the specified annotation and document.
@@ -1,6 +1,7 @@
 package nl.inl.blacklab.search.fimatch;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -9,6 +10,7 @@ import org.apache.lucene.index.LeafReader;
 import org.eclipse.collections.api.set.primitive.MutableIntSet;
 
 import nl.inl.blacklab.forwardindex.AnnotationForwardIndex;
+import nl.inl.blacklab.forwardindex.FiidCache;
 import nl.inl.blacklab.forwardindex.Terms;
 import nl.inl.blacklab.search.BlackLabIndex;
 import nl.inl.blacklab.search.indexmetadata.AnnotatedField;
@@ -103,23 +105,32 @@ class ForwardIndexAccessorImpl extends ForwardIndexAccessor {
 
     class ForwardIndexAccessorLeafReaderImpl extends ForwardIndexAccessorLeafReader {
 
-        private List<DocIntFieldGetter> fiidGetters;
+        /** Fiids per annotation (from FiidCache), or null if not looked up yet */
+        private int[][] fiids;
+
+        /** Fallback if there are no DocValues for an annotation's fiid field */
+        private DocIntFieldGetter[] fiidGetters;
 
         ForwardIndexAccessorLeafReaderImpl(LeafReader reader) {
             super(reader);
-            fiidGetters = new ArrayList<>();
-            for (int i = 0; i < getNumberOfAnnotations(); i++)
-                fiidGetters.add(null);
+            fiids = new int[getNumberOfAnnotations()][];
+            fiidGetters = new DocIntFieldGetter[getNumberOfAnnotations()];
         }
 
-        DocIntFieldGetter fiidGetter(int annotIndex) {
-            DocIntFieldGetter g = fiidGetters.get(annotIndex);
-            if (g == null) {
+        private int fiid(int annotIndex, int docId) {
+            int[] f = fiids[annotIndex];
+            if (f == null) {
+                if (fiidGetters[annotIndex] != null)
+                    return fiidGetters[annotIndex].getFieldValue(docId);
                 Annotation annotation = annotationNames.get(annotIndex);
-                g = new DocIntFieldGetter(reader, annotation.forwardIndexIdField());
-                fiidGetters.set(annotIndex, g);
+                f = FiidCache.get(reader, annotation.forwardIndexIdField());
+                if (f == null) {
+                    fiidGetters[annotIndex] = new DocIntFieldGetter(reader, annotation.forwardIndexIdField());
+                    return fiidGetters[annotIndex].getFieldValue(docId);
+                }
+                fiids[annotIndex] = f;
             }
-            return g;
+            return f[docId];
         }
 
         /**
@@ -141,20 +152,18 @@ class ForwardIndexAccessorImpl extends ForwardIndexAccessor {
             return fis.get(0).docLength(getFiid(0, docId)) - 1;
         }
 
-        int[] starts = { 0 };
-        int[] ends = { 0 };
-
         @Override
-        public int[] getChunk(int annotIndex, int docId, int start, int end) {
-            starts[0] = start;
-            ends[0] = end;
-            int fiid = fiidGetter(annotIndex).getFieldValue(docId);
-            return fis.get(annotIndex).retrievePartsInt(fiid, starts, ends).get(0);
+        public void getChunk(int annotIndex, int docId, int start, int end, int[] buffer, int offset) {
+            int fiid = fiid(annotIndex, docId);
+            if (fis.get(annotIndex).retrievePart(fiid, start, end, buffer, offset) < 0) {
+                // Deleted document; it has no tokens we can match
+                Arrays.fill(buffer, offset, offset + end - start, Terms.NO_TERM);
+            }
         }
 
         @Override
         public int getFiid(int annotIndex, int docId) {
-            return fiidGetter(annotIndex).getFieldValue(docId);
+            return fiid(annotIndex, docId);
         }
 
         @Override
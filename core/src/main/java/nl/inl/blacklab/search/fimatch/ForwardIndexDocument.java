@@ -1,10 +1,22 @@
 package nl.inl.blacklab.search.fimatch;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import nl.inl.blacklab.search.indexmetadata.MatchSensitivity;
 
 /** Source of tokens for the forward index matching process. */
 public abstract class ForwardIndexDocument {
 
+    /**
+     * Buffers for intermediate match ends, reused while matching NFAs against this
+     * document (created lazily).
+     */
+    private List<NfaMatchEnds> matchEndsBuffers;
+
+    /** Number of buffers currently claimed. */
+    private int matchEndsBuffersClaimed = 0;
+
     /**
      * Return token at specified position.
      *
@@ -40,4 +52,33 @@ public abstract class ForwardIndexDocument {
      * @return true if valid, false if not
      */
     public abstract boolean validPos(int pos);
+
+    /**
+     * Claim an empty buffer for intermediate match ends.
+     *
+     * Buffers are used as a stack: every NFA state must release the buffers it
+     * claimed before returning. Matching is done by one thread at a time per
+     * document, so this needs no synchronization.
+     *
+     * @return empty buffer
+     */
+    NfaMatchEnds claimMatchEndsBuffer() {
+        if (matchEndsBuffers == null)
+            matchEndsBuffers = new ArrayList<>();
+        if (matchEndsBuffersClaimed == matchEndsBuffers.size())
+            matchEndsBuffers.add(new NfaMatchEnds());
+        NfaMatchEnds buffer = matchEndsBuffers.get(matchEndsBuffersClaimed);
+        matchEndsBuffersClaimed++;
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Release buffers claimed using {@link #claimMatchEndsBuffer()}.
+     *
+     * @param number number of buffers to release
+     */
+    void releaseMatchEndsBuffers(int number) {
+        matchEndsBuffersClaimed -= number;
+    }
 }
@@ -1,8 +1,5 @@
 package nl.inl.blacklab.search.fimatch;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import nl.inl.blacklab.forwardindex.Terms;
 import nl.inl.blacklab.search.fimatch.ForwardIndexAccessor.ForwardIndexAccessorLeafReader;
 import nl.inl.blacklab.search.indexmetadata.MatchSensitivity;
@@ -23,19 +20,23 @@ class ForwardIndexDocumentImpl extends ForwardIndexDocument {
     private int docLengthTokens;
 
     /**
-     * Chunks of the document from the forward index, for each of the annotations.
+     * The document's tokens from the forward index, for each of the annotations
+     * (null if we haven't needed any tokens for that annotation yet). Tokens are
+     * fetched into this buffer a chunk at a time, when first needed.
      */
-    private List<List<int[]>> allAnnotChunks = new ArrayList<>();
+    private int[][] allAnnotTokens;
+
+    /** For each of the annotations: which chunks have been fetched? */
+    private boolean[][] allAnnotChunkFetched;
 
     public ForwardIndexDocumentImpl(ForwardIndexAccessorLeafReader fiAccessor, int docId) {
         this.fiAccessor = fiAccessor;
         this.docId = docId;
         this.docLengthTokens = fiAccessor.getDocLength(docId);
 
-        // Create empty lists of chunks for each annotation
-        for (int i = 0; i < fiAccessor.getNumberOfAnnotations(); i++) {
-            allAnnotChunks.add(new ArrayList<int[]>());
-        }
+        // Token buffers for each annotation are created when first needed
+        allAnnotTokens = new int[fiAccessor.getNumberOfAnnotations()][];
+        allAnnotChunkFetched = new boolean[fiAccessor.getNumberOfAnnotations()][];
     }
 
     @Override
@@ -43,27 +44,24 @@ class ForwardIndexDocumentImpl extends ForwardIndexDocument {
         if (pos < 0 || pos >= docLengthTokens)
             return Terms.NO_TERM;
 
-        // Get the list of chunks for the annotation we're interested in,
-        // and the forward index object to get more.
-        List<int[]> chunks = allAnnotChunks.get(annotIndex);
+        // Get the tokens for the annotation we're interested in
+        int[] tokens = allAnnotTokens[annotIndex];
+        boolean[] chunkFetched = allAnnotChunkFetched[annotIndex];
+        if (tokens == null) {
+            tokens = new int[docLengthTokens];
+            allAnnotTokens[annotIndex] = tokens;
+            chunkFetched = new boolean[(docLengthTokens + CHUNK_SIZE - 1) / CHUNK_SIZE];
+            allAnnotChunkFetched[annotIndex] = chunkFetched;
+        }
 
-        // Where can our token be found?
+        // See if we have the chunk containing our token, and fetch it if not
         int whichChunk = pos / CHUNK_SIZE;
-        int posWithinChunk = pos % CHUNK_SIZE;
-
-        // Make sure we have the chunk we need:
-        // First, make sure the list is long enough.
-        // (we fill with nulls to avoid fetching chunks we don't need)
-        while (chunks.size() <= whichChunk)
-            chunks.add(null);
-        // Now, see if we have the chunk we want, and fetch it if not
-        int[] chunk = chunks.get(whichChunk);
-        if (chunk == null) {
-            chunk = fetchChunk(annotIndex, whichChunk);
-            chunks.set(whichChunk, chunk);
+        if (!chunkFetched[whichChunk]) {
+            fetchChunk(annotIndex, whichChunk, tokens);
+            chunkFetched[whichChunk] = true;
         }
 
-        return chunk[posWithinChunk];
+        return tokens[pos];
 
     }
 
@@ -72,15 +70,15 @@ class ForwardIndexDocumentImpl extends ForwardIndexDocument {
      * 
      * @param annotIndex which annotation we want a forward index chunk for
      * @param number the chunk number to fetch
-     * @return the chunk
+     * @param tokens the document's token buffer for this annotation, to store the chunk in
      */
-    protected int[] fetchChunk(int annotIndex, int number) {
+    protected void fetchChunk(int annotIndex, int number, int[] tokens) {
         int start = number * CHUNK_SIZE;
         int end = start + CHUNK_SIZE;
         if (end > docLengthTokens) {
             end = docLengthTokens;
         }
-        return fiAccessor.getChunk(annotIndex, docId, start, end);
+        fiAccessor.getChunk(annotIndex, docId, start, end, tokens, start);
     }
 
     @Override
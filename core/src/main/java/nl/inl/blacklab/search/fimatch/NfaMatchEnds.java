@@ -0,0 +1,156 @@
+package nl.inl.blacklab.search.fimatch;
+
+import java.util.Arrays;
+
+/**
+ * A set of positions where NFA matches end, kept in ascending order.
+ *
+ * Used instead of a Set&lt;Integer&gt; so matching doesn't box positions or
+ * create new sets for each position tried; instances are cleared and reused.
+ * The number of match ends for a single starting position is usually very
+ * small, so a sorted array is both compact and fast.
+ *
+ * Match ends are usually found in order: ascending when matching forward,
+ * descending when matching backward. Both are simply appended; a descending
+ * array is reversed once when the match ends are read.
+ */
+public class NfaMatchEnds {
+
+    /** Initial capacity if none was specified */
+    private static final int DEFAULT_INITIAL_CAPACITY = 8;
+
+    /** The match ends, in ascending order (or descending, if the descending flag is set) */
+    private int[] ends;
+
+    /** Are the match ends currently in descending order? */
+    private boolean descending;
+
+    /** Number of match ends stored */
+    private int size;
+
+    public NfaMatchEnds() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    public NfaMatchEnds(int initialCapacity) {
+        ends = new int[Math.max(1, initialCapacity)];
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > ends.length)
+            ends = Arrays.copyOf(ends, Math.max(capacity, ends.length * 2));
+    }
+
+    /**
+     * Add a match end.
+     *
+     * @param pos match end position
+     * @return true if it was added, false if it was already present
+     */
+    public boolean add(int pos) {
+        int n = size;
+        if (n == 0 || (descending ? pos < ends[n - 1] : pos > ends[n - 1])) {
+            // Most common case: match ends are usually found in order
+            ensureCapacity(n + 1);
+            ends[n] = pos;
+            size = n + 1;
+            return true;
+        }
+        if (n == 1 && pos < ends[0]) {
+            // Second match end is lower; assume we're matching backward
+            descending = true;
+            return add(pos);
+        }
+        ensureAscending();
+        int i = Arrays.binarySearch(ends, 0, n, pos);
+        if (i >= 0)
+            return false;
+        i = -i - 1;
+        ensureCapacity(n + 1);
+        System.arraycopy(ends, i, ends, i + 1, n - i);
+        ends[i] = pos;
+        size = n + 1;
+        return true;
+    }
+
+    /**
+     * Make sure the match ends are in ascending order.
+     */
+    private void ensureAscending() {
+        if (descending) {
+            for (int i = 0, j = size - 1; i < j; i++, j--) {
+                int temp = ends[i];
+                ends[i] = ends[j];
+                ends[j] = temp;
+            }
+            descending = false;
+        }
+    }
+
+    /**
+     * Add all match ends from another set.
+     *
+     * @param other match ends to add
+     */
+    public void addAll(NfaMatchEnds other) {
+        other.ensureAscending();
+        for (int i = 0; i < other.size; i++) {
+            add(other.ends[i]);
+        }
+    }
+
+    /**
+     * Only keep the match ends that also occur in another set.
+     *
+     * @param other match ends to intersect with
+     */
+    public void retainAll(NfaMatchEnds other) {
+        ensureAscending();
+        other.ensureAscending();
+        int i = 0, j = 0, k = 0;
+        while (i < size && j < other.size) {
+            int a = ends[i], b = other.ends[j];
+            if (a < b) {
+                i++;
+            } else if (a > b) {
+                j++;
+            } else {
+                ends[k++] = a;
+                i++;
+                j++;
+            }
+        }
+        size = k;
+    }
+
+    /**
+     * Get a match end.
+     *
+     * @param index index in the set (match ends are in ascending order)
+     * @return match end position
+     */
+    public int get(int index) {
+        ensureAscending();
+        return ends[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+        descending = false;
+    }
+
+    @Override
+    public String toString() {
+        ensureAscending();
+        return Arrays.toString(Arrays.copyOf(ends, size));
+    }
+
+}
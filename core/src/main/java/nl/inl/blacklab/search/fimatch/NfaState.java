@@ -5,9 +5,7 @@ import java.util.Collections;
 import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.NavigableSet;
 import java.util.Set;
-import java.util.TreeSet;
 
 /**
  * Represents both a state in an NFA, and a complete NFA with this as the
@@ -94,7 +92,7 @@ public abstract class NfaState {
      *            to collect them
      * @return true if any (new) matches were found, false if not
      */
-    abstract boolean findMatchesInternal(ForwardIndexDocument fiDoc, int pos, int direction, Set<Integer> matchEnds);
+    abstract boolean findMatchesInternal(ForwardIndexDocument fiDoc, int pos, int direction, NfaMatchEnds matchEnds);
 
     /**
      * Find all matches for this NFA in the token source.
@@ -102,12 +100,13 @@ public abstract class NfaState {
      * @param fiDoc where to read tokens from
      * @param pos current matching position
      * @param direction matching direction
-     * @return the matches found, if any
+     * @param matchEnds where to collect the matches found (cleared first, so it
+     *            can be reused between calls)
+     * @return true if any matches were found, false if not
      */
-    public NavigableSet<Integer> findMatches(ForwardIndexDocument fiDoc, int pos, int direction) {
-        NavigableSet<Integer> results = new TreeSet<>();
-        findMatchesInternal(fiDoc, pos, direction, results);
-        return results;
+    public boolean findMatches(ForwardIndexDocument fiDoc, int pos, int direction, NfaMatchEnds matchEnds) {
+        matchEnds.clear();
+        return findMatchesInternal(fiDoc, pos, direction, matchEnds);
     }
 
     /**
@@ -2,7 +2,6 @@ package nl.inl.blacklab.search.fimatch;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -20,25 +19,31 @@ public class NfaStateAnd extends NfaState {
     }
 
     @Override
-    public boolean findMatchesInternal(ForwardIndexDocument fiDoc, int pos, int direction, Set<Integer> matchEnds) {
+    public boolean findMatchesInternal(ForwardIndexDocument fiDoc, int pos, int direction, NfaMatchEnds matchEnds) {
         // Split state. Find matches for all alternatives.
-        Set<Integer> newHitsFound = null;
-        for (NfaState nextState : nextStates) {
-            Set<Integer> matchesForClause = new HashSet<>();
-            if (!nextState.findMatchesInternal(fiDoc, pos, direction, matchesForClause))
-                return false; // short-circuit
-            if (newHitsFound == null) {
-                newHitsFound = matchesForClause;
-            } else {
-                // Calculate intersection
-                newHitsFound.retainAll(matchesForClause);
-                if (newHitsFound.isEmpty())
-                    return false; // no hits left; short-circuit
+        NfaMatchEnds newHitsFound = fiDoc.claimMatchEndsBuffer();
+        NfaMatchEnds matchesForClause = fiDoc.claimMatchEndsBuffer();
+        try {
+            boolean first = true;
+            for (NfaState nextState : nextStates) {
+                NfaMatchEnds dest = first ? newHitsFound : matchesForClause;
+                dest.clear();
+                if (!nextState.findMatchesInternal(fiDoc, pos, direction, dest))
+                    return false; // short-circuit
+                if (!first) {
+                    // Calculate intersection
+                    newHitsFound.retainAll(matchesForClause);
+                    if (newHitsFound.isEmpty())
+                        return false; // no hits left; short-circuit
+                }
+                first = false;
             }
+            if (matchEnds != null)
+                matchEnds.addAll(newHitsFound);
+            return true;
+        } finally {
+            fiDoc.releaseMatchEndsBuffers(2);
         }
-        if (matchEnds != null)
-            matchEnds.addAll(newHitsFound);
-        return true;
     }
 
     @Override
@@ -32,33 +32,34 @@ public class NfaStateAndAcyclic extends NfaState {
     }
 
     @Override
-    public boolean findMatchesInternal(ForwardIndexDocument fiDoc, int pos, int direction, Set<Integer> matchEnds) {
+    public boolean findMatchesInternal(ForwardIndexDocument fiDoc, int pos, int direction, NfaMatchEnds matchEnds) {
         // AND state. Find matches for all alternatives.
-        Set<Integer> clausesMatchEnds = null;
-        Set<Integer> matchEndsThisClause = new HashSet<>();
-        for (NfaState clause : clauses) {
-            matchEndsThisClause.clear();
-            if (!clause.findMatchesInternal(fiDoc, pos, direction, matchEndsThisClause))
-                return false; // this clause had no hits; short circuit AND
-            if (clausesMatchEnds == null) {
-                // First matches found
-                clausesMatchEnds = matchEndsThisClause;
-                matchEndsThisClause = new HashSet<>();
-            } else {
-                // Determine intersection with previous matches
-                clausesMatchEnds.retainAll(matchEndsThisClause);
-                if (clausesMatchEnds.isEmpty())
-                    return false; // there are no hits left; short circuit AND
+        NfaMatchEnds clausesMatchEnds = fiDoc.claimMatchEndsBuffer();
+        NfaMatchEnds matchEndsThisClause = fiDoc.claimMatchEndsBuffer();
+        try {
+            boolean first = true;
+            for (NfaState clause : clauses) {
+                NfaMatchEnds dest = first ? clausesMatchEnds : matchEndsThisClause;
+                dest.clear();
+                if (!clause.findMatchesInternal(fiDoc, pos, direction, dest))
+                    return false; // this clause had no hits; short circuit AND
+                if (!first) {
+                    // Determine intersection with previous matches
+                    clausesMatchEnds.retainAll(matchEndsThisClause);
+                    if (clausesMatchEnds.isEmpty())
+                        return false; // there are no hits left; short circuit AND
+                }
+                first = false;
             }
-        }
-        boolean foundMatch = false;
-        if (!clausesMatchEnds.isEmpty()) {
+            boolean foundMatch = false;
             // Continue matching from the matches to our OR clauses
-            for (Integer clauseMatchEnd : clausesMatchEnds) {
-                foundMatch |= nextState.findMatchesInternal(fiDoc, clauseMatchEnd, direction, matchEnds);
+            for (int i = 0; i < clausesMatchEnds.size(); i++) {
+                foundMatch |= nextState.findMatchesInternal(fiDoc, clausesMatchEnds.get(i), direction, matchEnds);
             }
+            return foundMatch;
+        } finally {
+            fiDoc.releaseMatchEndsBuffers(2);
         }
-        return foundMatch;
     }
 
     @Override
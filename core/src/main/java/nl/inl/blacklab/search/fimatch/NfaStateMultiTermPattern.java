@@ -49,7 +49,7 @@ public abstract class NfaStateMultiTermPattern extends NfaState {
      * @return true if any (new) matches were found, false if not
      */
     @Override
-    public boolean findMatchesInternal(ForwardIndexDocument fiDoc, int pos, int direction, Set<Integer> matchEnds) {
+    public boolean findMatchesInternal(ForwardIndexDocument fiDoc, int pos, int direction, NfaMatchEnds matchEnds) {
         // Token state. Check if it matches token from token source, and if so, continue.
         int actualToken = fiDoc.getToken(propertyNumber, pos);
         if (actualToken >= 0) {
@@ -22,7 +22,7 @@ public class NfaStateNot extends NfaState {
     }
 
     @Override
-    boolean findMatchesInternal(ForwardIndexDocument fiDoc, int pos, int direction, Set<Integer> matchEnds) {
+    boolean findMatchesInternal(ForwardIndexDocument fiDoc, int pos, int direction, NfaMatchEnds matchEnds) {
         // Is this a valid position? If not, no match.
         if (!fiDoc.validPos(pos))
             return false;
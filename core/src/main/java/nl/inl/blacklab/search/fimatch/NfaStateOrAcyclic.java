@@ -39,37 +39,41 @@ public class NfaStateOrAcyclic extends NfaState {
     }
 
     @Override
-    public boolean findMatchesInternal(ForwardIndexDocument fiDoc, int pos, int direction, Set<Integer> matchEnds) {
+    public boolean findMatchesInternal(ForwardIndexDocument fiDoc, int pos, int direction, NfaMatchEnds matchEnds) {
         // OR/Split state. Find matches for all alternatives.
         boolean clauseMatched = false;
-        Set<Integer> clauseMatchEnds = new HashSet<>();
-        if (clausesAllSameLength) {
-            // We can short-circuit as soon as we find a single clause hit, because there can only be one match end.
-            for (NfaState clause : clauses) {
-                boolean matchesFound = false;
-                matchesFound = clause.findMatchesInternal(fiDoc, pos, direction, clauseMatchEnds);
-                clauseMatched |= matchesFound;
-                if (clauseMatched)
-                    break; // short-circuit OR
+        NfaMatchEnds clauseMatchEnds = fiDoc.claimMatchEndsBuffer();
+        try {
+            if (clausesAllSameLength) {
+                // We can short-circuit as soon as we find a single clause hit, because there can only be one match end.
+                for (NfaState clause : clauses) {
+                    boolean matchesFound = false;
+                    matchesFound = clause.findMatchesInternal(fiDoc, pos, direction, clauseMatchEnds);
+                    clauseMatched |= matchesFound;
+                    if (clauseMatched)
+                        break; // short-circuit OR
+                }
+            } else {
+                // We have to process all clauses because we need all match ends for the next phase.
+                for (NfaState clause : clauses) {
+                    boolean matchesFound = false;
+                    matchesFound = clause.findMatchesInternal(fiDoc, pos, direction, clauseMatchEnds);
+                    clauseMatched |= matchesFound;
+                }
             }
-        } else {
-            // We have to process all clauses because we need all match ends for the next phase.
-            for (NfaState clause : clauses) {
-                boolean matchesFound = false;
-                matchesFound = clause.findMatchesInternal(fiDoc, pos, direction, clauseMatchEnds);
-                clauseMatched |= matchesFound;
+            boolean foundMatch = false;
+            if (clauseMatched) {
+                // Continue matching from the matches to our OR clauses
+                for (int i = 0; i < clauseMatchEnds.size(); i++) {
+                    foundMatch |= nextState.findMatchesInternal(fiDoc, clauseMatchEnds.get(i), direction, matchEnds);
+                    if (foundMatch && matchEnds == null)
+                        break; // we don't care about the match ends, just that there are matches
+                }
             }
+            return foundMatch;
+        } finally {
+            fiDoc.releaseMatchEndsBuffers(1);
         }
-        boolean foundMatch = false;
-        if (clauseMatched) {
-            // Continue matching from the matches to our OR clauses
-            for (Integer clauseMatchEnd : clauseMatchEnds) {
-                foundMatch |= nextState.findMatchesInternal(fiDoc, clauseMatchEnd, direction, matchEnds);
-                if (foundMatch && matchEnds == null)
-                    break; // we don't care about the match ends, just that there are matches
-            }
-        }
-        return foundMatch;
     }
 
     @Override
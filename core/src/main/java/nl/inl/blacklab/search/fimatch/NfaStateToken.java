@@ -21,6 +21,9 @@ public class NfaStateToken extends NfaState {
 
     static final String ANY_TOKEN = null;
 
+    /** Value of singleInputToken if we don't accept exactly one token. */
+    private static final int NO_SINGLE_TOKEN = Integer.MIN_VALUE;
+
     /** What annotation we're trying to match */
     protected String luceneField;
 
@@ -38,6 +41,12 @@ public class NfaStateToken extends NfaState {
      */
     private MutableIntSet inputTokens = null;
 
+    /**
+     * If we accept exactly one token, its term id (so we can just compare ints);
+     * otherwise NO_SINGLE_TOKEN. Only valid after lookupPropertNumber() called.
+     */
+    private int singleInputToken = NO_SINGLE_TOKEN;
+
     /** Do we accept any token? */
     private boolean acceptAnyToken = false;
 
@@ -70,10 +79,17 @@ public class NfaStateToken extends NfaState {
      * @return true if any (new) matches were found, false if not
      */
     @Override
-    public boolean findMatchesInternal(ForwardIndexDocument fiDoc, int pos, int direction, Set<Integer> matchEnds) {
+    public boolean findMatchesInternal(ForwardIndexDocument fiDoc, int pos, int direction, NfaMatchEnds matchEnds) {
         // Token state. Check if it matches token from token source, and if so, continue.
         int actualToken = fiDoc.getToken(propertyNumber, pos);
-        if (acceptAnyToken && actualToken >= 0 || inputTokens.contains(actualToken)) {
+        boolean tokenMatches;
+        if (acceptAnyToken)
+            tokenMatches = actualToken >= 0;
+        else if (singleInputToken != NO_SINGLE_TOKEN)
+            tokenMatches = actualToken == singleInputToken;
+        else
+            tokenMatches = inputTokens.contains(actualToken);
+        if (tokenMatches) {
             if (nextState == null) {
                 // null stands for the match state
                 if (matchEnds != null)
@@ -148,6 +164,7 @@ public class NfaStateToken extends NfaState {
         for (String token : inputTokenStrings) {
             fiAccessor.getTermNumbers(inputTokens, propertyNumber, token, sensitivity);
         }
+        singleInputToken = inputTokens.size() == 1 ? inputTokens.intIterator().next() : NO_SINGLE_TOKEN;
         if (nextState != null)
             nextState.lookupPropertyNumbers(fiAccessor, statesVisited);
     }
@@ -1,6 +1,7 @@
 package nl.inl.blacklab.search.indexmetadata;
 
 import nl.inl.blacklab.indexers.config.TextDirection;
+import nl.inl.blacklab.search.lucene.optimize.NfaCostModel;
 
 /** Information about a BlackLab index, including its fields structure. */
 public interface IndexMetadata extends Freezable<IndexMetadata> {
@@ -105,6 +106,18 @@ public interface IndexMetadata extends Freezable<IndexMetadata> {
 	 */
 	boolean isNewIndex();
 
+	/**
+	 * How eagerly should we use forward index (NFA) matching for this index?
+	 *
+	 * The best values depend on the corpus; they may be determined using
+	 * {@link nl.inl.blacklab.tools.CalibrateNfa}.
+	 *
+	 * @return cost model for this index, or null if not specified
+	 */
+	default NfaCostModel nfaCostModel() {
+	    return null;
+	}
+
     default boolean subannotationsStoredWithParent() {
         return false;
     }
@@ -52,6 +52,7 @@ import nl.inl.blacklab.indexers.config.ConfigMetadataFieldGroup;
 import nl.inl.blacklab.indexers.config.ConfigStandoffAnnotations;
 import nl.inl.blacklab.indexers.config.TextDirection;
 import nl.inl.blacklab.search.BlackLabIndexImpl;
+import nl.inl.blacklab.search.lucene.optimize.NfaCostModel;
 import nl.inl.util.FileUtil;
 import nl.inl.util.Json;
 
@@ -76,7 +77,11 @@ public class IndexMetadataImpl implements IndexMetadata, IndexMetadataWriter {
     /** What keys may occur at top level? */
     private static final Set<String> KEYS_TOP_LEVEL = new HashSet<>(Arrays.asList(
             "displayName", "description", "contentViewable", "textDirection",
-            "documentFormat", "tokenCount", "versionInfo", "fieldInfo"));
+            "documentFormat", "tokenCount", "versionInfo", "fieldInfo", "nfaCostModel"));
+
+    /** What keys may occur under nfaCostModel? */
+    private static final Set<String> KEYS_NFA_COST_MODEL = new HashSet<>(Arrays.asList(
+            "fiMatchFactor", "fiMatchTermFreqDivider", "fiMatchCostRatioFactor"));
 
     /** What keys may occur under versionInfo? */
     private static final Set<String> KEYS_VERSION_INFO = new HashSet<>(Arrays.asList(
@@ -152,6 +157,9 @@ public class IndexMetadataImpl implements IndexMetadata, IndexMetadataWriter {
 
     private long tokenCount = 0;
 
+    /** How eagerly to use forward index (NFA) matching for this index, or null if not specified */
+    private NfaCostModel nfaCostModel;
+
     /** When we save this file, should we write it as json or yaml? */
     private boolean saveAsJson = true;
 
@@ -341,6 +349,12 @@ public class IndexMetadataImpl implements IndexMetadata, IndexMetadataWriter {
         jsonRoot.put("textDirection", textDirection.getCode());
         jsonRoot.put("documentFormat", documentFormat);
         jsonRoot.put("tokenCount", tokenCount);
+        if (nfaCostModel != null) {
+            ObjectNode nfaCostModelNode = jsonRoot.putObject("nfaCostModel");
+            nfaCostModelNode.put("fiMatchFactor", nfaCostModel.nfaThreshold());
+            nfaCostModelNode.put("fiMatchTermFreqDivider", nfaCostModel.termFreqDivider());
+            nfaCostModelNode.put("fiMatchCostRatioFactor", nfaCostModel.costRatioConstantFactor());
+        }
         ObjectNode versionInfo = jsonRoot.putObject("versionInfo");
         versionInfo.put("blackLabBuildTime", blackLabBuildTime);
         versionInfo.put("blackLabVersion", blackLabVersion);
@@ -601,6 +615,11 @@ public class IndexMetadataImpl implements IndexMetadata, IndexMetadataWriter {
         return documentFormat;
     }
 
+    @Override
+    public NfaCostModel nfaCostModel() {
+        return nfaCostModel;
+    }
+
     /**
      * What version of the index format is this?
      *
@@ -715,6 +734,15 @@ public class IndexMetadataImpl implements IndexMetadata, IndexMetadataWriter {
         textDirection = TextDirection.fromCode(Json.getString(jsonRoot, "textDirection", "ltr"));
         documentFormat = Json.getString(jsonRoot, "documentFormat", "");
         tokenCount = Json.getLong(jsonRoot, "tokenCount", 0);
+        nfaCostModel = null;
+        if (jsonRoot.has("nfaCostModel")) {
+            ObjectNode nfaCostModelNode = Json.getObject(jsonRoot, "nfaCostModel");
+            warnUnknownKeys("in nfaCostModel", nfaCostModelNode, KEYS_NFA_COST_MODEL);
+            nfaCostModel = NfaCostModel.get(
+                    Json.getLong(nfaCostModelNode, "fiMatchFactor", NfaCostModel.DEFAULT_NFA_THRESHOLD),
+                    Json.getLong(nfaCostModelNode, "fiMatchTermFreqDivider", NfaCostModel.DEFAULT_TERM_FREQ_DIVIDER),
+                    Json.getLong(nfaCostModelNode, "fiMatchCostRatioFactor", NfaCostModel.DEFAULT_COST_RATIO_CONSTANT_FACTOR));
+        }
 
         ObjectNode versionInfo = Json.getObject(jsonRoot, "versionInfo");
         warnUnknownKeys("in versionInfo", versionInfo, KEYS_VERSION_INFO);
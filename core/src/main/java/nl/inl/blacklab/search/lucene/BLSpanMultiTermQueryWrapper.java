@@ -49,9 +49,14 @@ public class BLSpanMultiTermQueryWrapper<Q extends MultiTermQuery>
         this.query = new SpanMultiTermQueryWrapper<>(query);
     }
 
+    @Override
+    public String getNodeName() {
+        return "SPANWRAP";
+    }
+
     @Override
     public String toString(String field) {
-        return "SPANWRAP(" + query.getWrappedQuery() + ")";
+        return getNodeName() + "(" + query.getWrappedQuery() + ")";
     }
 
     @Override
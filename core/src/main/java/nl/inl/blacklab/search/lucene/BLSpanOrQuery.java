@@ -134,6 +134,15 @@ public final class BLSpanOrQuery extends BLSpanQuery {
         return field;
     }
 
+    @Override
+    public List<BLSpanQuery> getChildClauses() {
+        List<BLSpanQuery> result = new ArrayList<>();
+        for (SpanQuery clause : getClauses()) {
+            result.add((BLSpanQuery) clause);
+        }
+        return result;
+    }
+
     @Override
     public String getRealField() {
         return luceneField;
@@ -311,9 +320,14 @@ public final class BLSpanOrQuery extends BLSpanQuery {
         return false;
     }
 
+    @Override
+    public String getNodeName() {
+        return "OR";
+    }
+
     @Override
     public String toString(String field) {
-        return "OR(" + clausesToString(field, inner.getClauses()) + ")";
+        return getNodeName() + "(" + clausesToString(field, inner.getClauses()) + ")";
     }
 
     @Override
@@ -17,6 +17,7 @@ package nl.inl.blacklab.search.lucene;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import org.apache.lucene.index.IndexReader;
@@ -27,10 +28,14 @@ import org.apache.lucene.search.spans.SpanTermQuery;
 
 import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
 import nl.inl.blacklab.requestlogging.LogLevel;
+import nl.inl.blacklab.search.BlackLab;
+import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.BlackLabIndexImpl;
 import nl.inl.blacklab.search.fimatch.ForwardIndexAccessor;
 import nl.inl.blacklab.search.fimatch.Nfa;
 import nl.inl.blacklab.search.fimatch.NfaTwoWay;
 import nl.inl.blacklab.search.indexmetadata.AnnotatedFieldNameUtil;
+import nl.inl.blacklab.search.lucene.optimize.NfaCostModel;
 import nl.inl.blacklab.search.results.QueryInfo;
 
 /**
@@ -374,6 +379,24 @@ public abstract class BLSpanQuery extends SpanQuery {
     }
 
     public abstract String getRealField();
+
+    /**
+     * Get the name of this type of query, e.g. to show in the query plan.
+     *
+     * This is also the start of the query's string representation.
+     *
+     * @return the name, e.g. "SEQ"
+     */
+    public abstract String getNodeName();
+
+    /**
+     * Get the clauses of this query, e.g. to show the query plan.
+     *
+     * @return the clauses, or an empty list if this query has none
+     */
+    public List<BLSpanQuery> getChildClauses() {
+        return Collections.emptyList();
+    }
     
     public void setQueryInfo(QueryInfo queryInfo) {
         this.queryInfo = queryInfo;
@@ -384,4 +407,19 @@ public abstract class BLSpanQuery extends SpanQuery {
             queryInfo.log(level, msg);
     }
 
+    /**
+     * Determine how eagerly to use forward index (NFA) matching while optimizing.
+     *
+     * Uses the query's setting if there is one, otherwise the index's.
+     *
+     * @param reader index reader
+     * @return cost model, or null if this index cannot do NFA matching
+     */
+    protected NfaCostModel nfaCostModel(IndexReader reader) {
+        BlackLabIndex index = BlackLab.fromIndexReader(reader);
+        if (!(index instanceof BlackLabIndexImpl) || !((BlackLabIndexImpl) index).canDoNfaMatching())
+            return null;
+        return queryInfo != null ? queryInfo.nfaCostModel() : NfaCostModel.forIndex(index);
+    }
+
 }
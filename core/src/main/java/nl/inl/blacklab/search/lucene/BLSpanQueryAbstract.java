@@ -19,6 +19,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 import org.apache.lucene.index.IndexReader;
@@ -112,6 +113,11 @@ abstract class BLSpanQueryAbstract extends BLSpanQuery {
         return baseFieldName;
     }
 
+    @Override
+    public List<BLSpanQuery> getChildClauses() {
+        return Collections.unmodifiableList(clauses);
+    }
+
     @Override
     public String getRealField() {
         return luceneFieldName;
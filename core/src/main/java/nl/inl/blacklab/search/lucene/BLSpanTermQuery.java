@@ -123,9 +123,14 @@ public class BLSpanTermQuery extends BLSpanQuery {
         };
     }
 
+    @Override
+    public String getNodeName() {
+        return "TERM";
+    }
+
     @Override
     public String toString(String field) {
-        return "TERM(" + query + ")";
+        return getNodeName() + "(" + query + ")";
     }
 
     @Override
@@ -131,9 +131,14 @@ public class SpanFuzzyQuery extends BLSpanQuery {
      * @param field
      * @return the string representation
      */
+    @Override
+    public String getNodeName() {
+        return "FUZZY";
+    }
+
     @Override
     public String toString(String field) {
-        return "FUZZY(" + term.text() + ")";
+        return getNodeName() + "(" + term.text() + ")";
     }
 
     @Override
@@ -271,6 +271,11 @@ public class SpanQueryAndNot extends BLSpanQuery {
         }
     }
 
+    @Override
+    public String getNodeName() {
+        return exclude.isEmpty() ? "AND" : "ANDNOT";
+    }
+
     @Override
     public String toString(String field) {
         if (exclude.isEmpty())
@@ -287,6 +292,13 @@ public class SpanQueryAndNot extends BLSpanQuery {
         throw new BlackLabRuntimeException("Query has no clauses");
     }
 
+    @Override
+    public List<BLSpanQuery> getChildClauses() {
+        List<BLSpanQuery> result = new ArrayList<>(include);
+        result.addAll(exclude);
+        return result;
+    }
+
     @Override
     public String getRealField() {
         if (!include.isEmpty())
@@ -92,9 +92,14 @@ public class SpanQueryAnyToken extends BLSpanQuery {
         };
     }
 
+    @Override
+    public String getNodeName() {
+        return "ANYTOKEN";
+    }
+
     @Override
     public String toString(String field) {
-        return "ANYTOKEN(" + min + ", " + inf(max) + ")";
+        return getNodeName() + "(" + min + ", " + inf(max) + ")";
     }
 
     @Override
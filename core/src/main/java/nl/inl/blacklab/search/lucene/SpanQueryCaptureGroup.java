@@ -116,10 +116,15 @@ public class SpanQueryCaptureGroup extends BLSpanQueryAbstract {
 
     }
 
+    @Override
+    public String getNodeName() {
+        return "CAPTURE";
+    }
+
     @Override
     public String toString(String field) {
         String adj = (leftAdjust != 0 || rightAdjust != 0 ? ", " + leftAdjust + ", " + rightAdjust : "");
-        return "CAPTURE(" + clausesToString(field) + ", " + name + adj + ")";
+        return getNodeName() + "(" + clausesToString(field) + ", " + name + adj + ")";
     }
 
     @Override
@@ -26,9 +26,14 @@ public class SpanQueryConstrained extends BLSpanQueryAbstract {
         this.fiAccessor = fiAccessor;
     }
 
+    @Override
+    public String getNodeName() {
+        return "CONSTRAINT";
+    }
+
     @Override
     public String toString(String field) {
-        return "CONSTRAINT(" + clauses.get(0) + ", " + constraint + ")";
+        return getNodeName() + "(" + clauses.get(0) + ", " + constraint + ")";
     }
 
     @Override
@@ -89,9 +89,14 @@ public class SpanQueryEdge extends BLSpanQueryAbstract {
 
     }
 
+    @Override
+    public String getNodeName() {
+        return "EDGE";
+    }
+
     @Override
     public String toString(String field) {
-        return "EDGE(" + clausesToString(field) + ", " + (rightEdge ? "R" : "L") + ")";
+        return getNodeName() + "(" + clausesToString(field) + ", " + (rightEdge ? "R" : "L") + ")";
     }
 
     public boolean isRightEdge() {
@@ -161,9 +161,14 @@ public class SpanQueryExpansion extends BLSpanQueryAbstract {
         return h;
     }
 
+    @Override
+    public String getNodeName() {
+        return "EXPAND";
+    }
+
     @Override
     public String toString(String field) {
-        return "EXPAND(" + clauses.get(0) + ", " + direction + ", " + min + ", " + inf(max) + ")";
+        return getNodeName() + "(" + clauses.get(0) + ", " + direction + ", " + min + ", " + inf(max) + ")";
     }
 
     public boolean isExpandToLeft() {
@@ -129,9 +129,14 @@ public class SpanQueryFiSeq extends BLSpanQueryAbstract {
         }
     }
 
+    @Override
+    public String getNodeName() {
+        return "FISEQ";
+    }
+
     @Override
     public String toString(String field) {
-        return "FISEQ(" + clausesToString(field) + ", " + nfa.getNfa() + ", " + direction + ")";
+        return getNodeName() + "(" + clausesToString(field) + ", " + nfa.getNfa() + ", " + direction + ")";
     }
 
     // public SpanQueryFiSeq copy() {
@@ -138,9 +138,14 @@ public class SpanQueryFilterNGrams extends BLSpanQueryAbstract {
         return h;
     }
 
+    @Override
+    public String getNodeName() {
+        return "FILTERNGRAMS";
+    }
+
     @Override
     public String toString(String field) {
-        return "FILTERNGRAMS(" + clauses.get(0) + ", " + op + ", " + min + ", " + inf(max)
+        return getNodeName() + "(" + clauses.get(0) + ", " + op + ", " + min + ", " + inf(max)
                 + ")";
     }
 
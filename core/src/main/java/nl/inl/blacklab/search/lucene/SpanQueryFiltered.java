@@ -159,9 +159,14 @@ public class SpanQueryFiltered extends BLSpanQueryAbstract {
 
     }
 
+    @Override
+    public String getNodeName() {
+        return "FILTER";
+    }
+
     @Override
     public String toString(String field) {
-        return "FILTER(" + clausesToString(field) + ", " + filter + ")";
+        return getNodeName() + "(" + clausesToString(field) + ", " + filter + ")";
     }
 
     @Override
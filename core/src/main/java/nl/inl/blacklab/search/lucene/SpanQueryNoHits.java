@@ -50,9 +50,14 @@ public class SpanQueryNoHits extends BLSpanQuery {
         };
     }
 
+    @Override
+    public String getNodeName() {
+        return "NOTOKENS";
+    }
+
     @Override
     public String toString(String field) {
-        return "NOTOKENS()";
+        return getNodeName() + "()";
     }
 
     @Override
@@ -129,9 +129,14 @@ public class SpanQueryNot extends BLSpanQueryAbstract {
 
     }
 
+    @Override
+    public String getNodeName() {
+        return "NOT";
+    }
+
     @Override
     public String toString(String field) {
-        return "NOT(" + (clauses.get(0) == null ? "" : clausesToString(field)) + ")";
+        return getNodeName() + "(" + (clauses.get(0) == null ? "" : clausesToString(field)) + ")";
     }
 
     @Override
@@ -191,11 +191,16 @@ public class SpanQueryPositionFilter extends BLSpanQueryAbstract {
 
     }
 
+    @Override
+    public String getNodeName() {
+        return "POSFILTER";
+    }
+
     @Override
     public String toString(String field) {
         String not = invert ? "NOT" : "";
         String adj = (leftAdjust != 0 || rightAdjust != 0 ? ", " + leftAdjust + ", " + rightAdjust : "");
-        return "POSFILTER(" + clausesToString(field) + ", " + not + op + adj + ")";
+        return getNodeName() + "(" + clausesToString(field) + ", " + not + op + adj + ")";
     }
 
     public SpanQueryPositionFilter copy() {
@@ -178,9 +178,14 @@ public class SpanQueryRepetition extends BLSpanQueryAbstract {
         return h;
     }
 
+    @Override
+    public String getNodeName() {
+        return "REP";
+    }
+
     @Override
     public String toString(String field) {
-        return "REP(" + clauses.get(0) + ", " + min + ", " + inf(max) + ")";
+        return getNodeName() + "(" + clauses.get(0) + ", " + min + ", " + inf(max) + ")";
     }
 
     public BLSpanQuery getClause() {
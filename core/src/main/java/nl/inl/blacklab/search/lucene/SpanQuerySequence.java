@@ -34,14 +34,13 @@ import org.apache.lucene.search.spans.SpanWeight;
 
 import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
 import nl.inl.blacklab.requestlogging.LogLevel;
-import nl.inl.blacklab.search.BlackLab;
-import nl.inl.blacklab.search.BlackLabIndex;
 import nl.inl.blacklab.search.BlackLabIndexImpl;
 import nl.inl.blacklab.search.fimatch.ForwardIndexAccessor;
 import nl.inl.blacklab.search.fimatch.Nfa;
 import nl.inl.blacklab.search.lucene.SpanQueryExpansion.Direction;
 import nl.inl.blacklab.search.lucene.SpansSequenceWithGap.Gap;
 import nl.inl.blacklab.search.lucene.optimize.ClauseCombiner;
+import nl.inl.blacklab.search.lucene.optimize.NfaCostModel;
 
 /**
  * Combines spans, keeping only combinations of hits that occur one after the
@@ -294,11 +293,7 @@ public class SpanQuerySequence extends BLSpanQueryAbstract {
     @Override
     public BLSpanQuery optimize(IndexReader reader) throws IOException {
         super.optimize(reader);
-        BlackLabIndex index = BlackLab.fromIndexReader(reader);
-        boolean canDoNfaMatching = false;
-        if (index instanceof BlackLabIndexImpl) {
-            canDoNfaMatching = ((BlackLabIndexImpl)index).canDoNfaMatching();
-        }
+        NfaCostModel nfaCostModel = nfaCostModel(reader);
         boolean anyRewritten = false;
 
         // Make a copy, because our methods rewrite things in-place.
@@ -320,7 +315,7 @@ public class SpanQuerySequence extends BLSpanQueryAbstract {
         // By doing it before rewriting, we save the time to expand the regex to all its matching
         // terms, as well
         // as dealing with each of these (sometimes frequent) terms, which can be significant.
-        anyRewritten |= combineAdjacentClauses(cl, reader, getField(), ClauseCombiner.all(canDoNfaMatching));
+        anyRewritten |= combineAdjacentClauses(cl, reader, getField(), ClauseCombiner.all(nfaCostModel));
 
         // Optimize each clause, and flatten again if necessary
         anyRewritten |= optimizeClauses(cl, reader);
@@ -337,11 +332,7 @@ public class SpanQuerySequence extends BLSpanQueryAbstract {
 
     @Override
     public BLSpanQuery rewrite(IndexReader reader) throws IOException {
-        BlackLabIndex index = BlackLab.fromIndexReader(reader);
-        boolean canDoNfaMatching = false;
-        if (index instanceof BlackLabIndexImpl) {
-            canDoNfaMatching = ((BlackLabIndexImpl)index).canDoNfaMatching();
-        }
+        NfaCostModel nfaCostModel = nfaCostModel(reader);
         boolean anyRewritten = false;
 
         // Make a copy, because our methods rewrite things in-place.
@@ -363,7 +354,7 @@ public class SpanQuerySequence extends BLSpanQueryAbstract {
         // By doing it before rewriting, we save the time to expand the regex to all its matching
         // terms, as well
         // as dealing with each of these (sometimes frequent) terms, which can be significant.
-        anyRewritten |= combineAdjacentClauses(cl, reader, getField(), ClauseCombiner.all(canDoNfaMatching));
+        anyRewritten |= combineAdjacentClauses(cl, reader, getField(), ClauseCombiner.all(nfaCostModel));
 
         // Rewrite each clause, and flatten again if necessary
         anyRewritten |= rewriteClauses(cl, reader);
@@ -373,7 +364,7 @@ public class SpanQuerySequence extends BLSpanQueryAbstract {
         // Again, try to combine adjacent clauses into more efficient ones. Rewriting clauses may
         // have
         // generated new opportunities for combining clauses.
-        anyRewritten |= combineAdjacentClauses(cl, reader, getField(), ClauseCombiner.all(canDoNfaMatching));
+        anyRewritten |= combineAdjacentClauses(cl, reader, getField(), ClauseCombiner.all(nfaCostModel));
 
         // If any part of the sequence matches the empty sequence, we must
         // rewrite it to several alternatives combined with OR. Do so now.
@@ -535,21 +526,171 @@ public class SpanQuerySequence extends BLSpanQueryAbstract {
     @Override
     public BLSpanWeight createWeight(IndexSearcher searcher, boolean needsScores) throws IOException {
         List<BLSpanWeight> weights = new ArrayList<>();
-        for (BLSpanQuery clause : clauses) {
+        long[] estimatedHits = new long[clauses.size()];
+        for (int i = 0; i < clauses.size(); i++) {
+            BLSpanQuery clause = clauses.get(i);
             weights.add(clause.createWeight(searcher, needsScores));
+            estimatedHits[i] = clause.reverseMatchingCost(searcher.getIndexReader());
         }
         Map<Term, TermContext> contexts = needsScores ? getTermContexts(weights.toArray(new SpanWeight[0])) : null;
-        return new SpanWeightSequence(weights, searcher, contexts);
+        return new SpanWeightSequence(weights, estimatedHits, searcher, contexts);
+    }
+
+    /**
+     * What we know about the hits of a (possibly already combined) part of the
+     * sequence, used to decide how and in what order to combine parts.
+     */
+    static class SequencePart {
+
+        boolean uniqueStart;
+
+        boolean uniqueEnd;
+
+        boolean startSorted;
+
+        boolean endSorted;
+
+        boolean sameLength;
+
+        /** Estimated number of hits, used to decide what to combine first */
+        long estimatedHits;
+
+        /** First clause in this part (or -1 if unknown) */
+        int firstClause = -1;
+
+        /** Last clause in this part (or -1 if unknown) */
+        int lastClause = -1;
+
+        SequencePart(boolean uniqueStart, boolean uniqueEnd, boolean startSorted, boolean endSorted,
+                boolean sameLength) {
+            this.uniqueStart = uniqueStart;
+            this.uniqueEnd = uniqueEnd;
+            this.startSorted = startSorted;
+            this.endSorted = endSorted;
+            this.sameLength = sameLength;
+        }
+
+        SequencePart(BLSpanQuery q, int clause, long estimatedHits) {
+            if (q != null) {
+                this.uniqueStart = q.hitsHaveUniqueStart();
+                this.uniqueEnd = q.hitsHaveUniqueEnd();
+                this.startSorted = q.hitsStartPointSorted();
+                this.endSorted = q.hitsEndPointSorted();
+                this.sameLength = q.hitsAllSameLength();
+            }
+            this.firstClause = this.lastClause = clause;
+            this.estimatedHits = estimatedHits;
+        }
+
+        /**
+         * Describe the result of combining two adjacent parts using
+         * SpansSequenceSimple.
+         *
+         * @param left left part
+         * @param right right part
+         */
+        SequencePart(SequencePart left, SequencePart right) {
+            this(left.uniqueStart, right.uniqueEnd, left.startSorted, right.sameLength,
+                    left.sameLength && right.sameLength);
+            estimatedHits = Math.min(left.estimatedHits, right.estimatedHits);
+            firstClause = left.firstClause;
+            lastClause = right.lastClause;
+        }
+
+        /**
+         * Can we combine this part with the next using SpansSequenceSimple?
+         *
+         * @param right the next part
+         * @return true if we can
+         */
+        boolean canCombineSimple(SequencePart right) {
+            // We can take a shortcut because of what we know about the Spans we're combining.
+            return uniqueEnd && endSorted && right.startSorted && right.uniqueStart;
+        }
+
+        /** @return clause index, or range of clause indexes, e.g. "1-2" */
+        String clauses() {
+            return firstClause == lastClause ? Integer.toString(firstClause) : firstClause + "-" + lastClause;
+        }
+    }
+
+    /**
+     * Should we combine the first pair of parts before the second pair?
+     *
+     * We prefer the pair containing the rarest part; if that's the same, the pair
+     * whose other part is rarest.
+     */
+    private static boolean rarerPair(SequencePart left, SequencePart right, SequencePart bestLeft, SequencePart bestRight) {
+        long min = Math.min(left.estimatedHits, right.estimatedHits);
+        long bestMin = Math.min(bestLeft.estimatedHits, bestRight.estimatedHits);
+        if (min != bestMin)
+            return min < bestMin;
+        return Math.max(left.estimatedHits, right.estimatedHits) < Math.max(bestLeft.estimatedHits, bestRight.estimatedHits);
+    }
+
+    /**
+     * Choose the next pair of adjacent parts to combine using SpansSequenceSimple.
+     *
+     * @param parts the parts of the sequence
+     * @return index of the right part of the pair, or -1 if no pair can be combined
+     */
+    static int nextSimpleJoin(List<? extends SequencePart> parts) {
+        int best = -1;
+        for (int i = 1; i < parts.size(); i++) {
+            SequencePart left = parts.get(i - 1);
+            SequencePart right = parts.get(i);
+            if (left.canCombineSimple(right)) {
+                if (best < 0 || rarerPair(left, right, parts.get(best - 1), parts.get(best)))
+                    best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Determine the order in which adjacent clauses will be combined into simple
+     * sequences, the way SpanWeightSequence.getSpans() does it.
+     *
+     * Each join is described as "left+right", where left and right are clause
+     * indexes, or ranges of clause indexes that were combined before. For example,
+     * ["1+2", "0+1-2"] means clauses 1 and 2 are combined first, and clause 0 is
+     * combined with the result.
+     *
+     * @param reader index reader, to estimate the number of hits for each clause
+     * @return the joins, in execution order
+     */
+    public List<String> simpleJoinOrder(IndexReader reader) {
+        List<SequencePart> parts = new ArrayList<>();
+        for (int i = 0; i < clauses.size(); i++) {
+            BLSpanQuery clause = clauses.get(i);
+            parts.add(new SequencePart(clause, i, clause.reverseMatchingCost(reader)));
+        }
+        List<String> joins = new ArrayList<>();
+        while (true) {
+            int best = nextSimpleJoin(parts);
+            if (best < 0)
+                break;
+            SequencePart left = parts.get(best - 1);
+            SequencePart right = parts.get(best);
+            joins.add(left.clauses() + "+" + right.clauses());
+            parts.remove(best - 1);
+            parts.set(best - 1, new SequencePart(left, right));
+        }
+        return joins;
     }
 
     class SpanWeightSequence extends BLSpanWeight {
 
         final List<BLSpanWeight> weights;
 
-        public SpanWeightSequence(List<BLSpanWeight> weights, IndexSearcher searcher, Map<Term, TermContext> terms)
-                throws IOException {
+        /** Estimated number of hits for each clause (see reverseMatchingCost()) */
+        final long[] estimatedHits;
+
+        public SpanWeightSequence(List<BLSpanWeight> weights, long[] estimatedHits, IndexSearcher searcher,
+                Map<Term, TermContext> terms) throws IOException {
             super(SpanQuerySequence.this, searcher, terms);
             this.weights = weights;
+            this.estimatedHits = estimatedHits;
         }
 
         @Override
@@ -566,42 +707,26 @@ public class SpanQuerySequence extends BLSpanQueryAbstract {
             }
         }
 
-        class CombiPart {
+        class CombiPart extends SequencePart {
             BLSpans spans;
 
-            boolean uniqueStart;
-
-            boolean uniqueEnd;
-
-            boolean startSorted;
-
-            boolean endSorted;
-
-            boolean sameLength;
-
-            public CombiPart(BLSpanWeight weight, final LeafReaderContext context, Postings requiredPostings)
-                    throws IOException {
+            public CombiPart(BLSpanWeight weight, int clause, long estimatedHits, final LeafReaderContext context,
+                    Postings requiredPostings) throws IOException {
+                super((BLSpanQuery) weight.getQuery(), clause, estimatedHits);
                 this.spans = weight.getSpans(context, requiredPostings);
-                BLSpanQuery q = (BLSpanQuery) weight.getQuery();
-                if (q != null) {
-                    this.uniqueStart = q.hitsHaveUniqueStart();
-                    this.uniqueEnd = q.hitsHaveUniqueEnd();
-                    this.startSorted = q.hitsStartPointSorted();
-                    this.endSorted = q.hitsEndPointSorted();
-                    this.sameLength = q.hitsAllSameLength();
-                }
+            }
+
+            public CombiPart(BLSpans spans, CombiPart left, CombiPart right) {
+                super(left, right);
+                this.spans = spans;
             }
 
             public CombiPart(BLSpans spans, boolean hitsHaveUniqueStart, boolean hitsHaveUniqueEnd,
                     boolean hitsStartPointSorted,
                     boolean hitsEndPointSorted, boolean hitsAllSameLength) {
-                super();
+                super(hitsHaveUniqueStart, hitsHaveUniqueEnd, hitsStartPointSorted, hitsEndPointSorted,
+                        hitsAllSameLength);
                 this.spans = spans;
-                this.uniqueStart = hitsHaveUniqueStart;
-                this.uniqueEnd = hitsHaveUniqueEnd;
-                this.startSorted = hitsStartPointSorted;
-                this.endSorted = hitsEndPointSorted;
-                this.sameLength = hitsAllSameLength;
             }
 
             @Override
@@ -615,7 +740,7 @@ public class SpanQuerySequence extends BLSpanQueryAbstract {
         public BLSpans getSpans(final LeafReaderContext context, Postings requiredPostings) throws IOException {
             List<CombiPart> parts = new ArrayList<>();
             for (int i = 0; i < weights.size(); i++) {
-                CombiPart part = new CombiPart(weights.get(i), context, requiredPostings);
+                CombiPart part = new CombiPart(weights.get(i), i, estimatedHits[i], context, requiredPostings);
                 if (part.spans == null)
                     return null;
                 parts.add(part);
@@ -623,23 +748,17 @@ public class SpanQuerySequence extends BLSpanQueryAbstract {
 
             // First, combine as many clauses as possible into SpansSequenceSimple,
             // which works for simple clauses and is the most efficient to execute.
-            // OPT: it might be even better to favour combining low-frequency terms first,
-            // as that minimizes useless skipping through non-matching docs.
-            for (int i = 1; i < parts.size(); i++) {
-                CombiPart left = parts.get(i - 1);
-                CombiPart right = parts.get(i);
-                CombiPart newPart = null;
-                if (left.uniqueEnd && left.endSorted && right.startSorted && right.uniqueStart) {
-                    // We can take a shortcut because of what we know about the Spans we're
-                    // combining.
-                    SpansSequenceSimple newSpans = new SpansSequenceSimple(left.spans, right.spans);
-                    newPart = new CombiPart(newSpans, left.uniqueStart, right.uniqueEnd, left.startSorted,
-                            right.sameLength,
-                            left.sameLength && right.sameLength);
-                    parts.remove(i - 1);
-                    parts.set(i - 1, newPart);
-                    i--;
-                }
+            // We combine the pair containing the rarest clause first, as that minimizes
+            // useless skipping through non-matching docs. (see simpleJoinOrder())
+            while (true) {
+                int best = nextSimpleJoin(parts);
+                if (best < 0)
+                    break;
+                CombiPart left = parts.get(best - 1);
+                CombiPart right = parts.get(best);
+                SpansSequenceSimple newSpans = new SpansSequenceSimple(left.spans, right.spans);
+                parts.remove(best - 1);
+                parts.set(best - 1, new CombiPart(newSpans, left, right));
             }
 
             // Next, see if we have SpansExpansion that we can resolve using SpansSequenceWithGap.
@@ -736,9 +855,14 @@ public class SpanQuerySequence extends BLSpanQueryAbstract {
 
     }
 
+    @Override
+    public String getNodeName() {
+        return "SEQ";
+    }
+
     @Override
     public String toString(String field) {
-        return "SEQ(" + clausesToString(field) + ")";
+        return getNodeName() + "(" + clausesToString(field) + ")";
     }
 
     @Override
@@ -1,6 +1,8 @@
 package nl.inl.blacklab.search.lucene;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -88,9 +90,14 @@ class SpanQuerySorted extends BLSpanQuery {
         }
     }
 
+    @Override
+    public String getNodeName() {
+        return "SORT";
+    }
+
     @Override
     public String toString(String field) {
-        return "SORT(" + src + ", " + (sortByEndpoint ? "END" : "START") + ", " + eliminateDuplicates + ")";
+        return getNodeName() + "(" + src + ", " + (sortByEndpoint ? "END" : "START") + ", " + eliminateDuplicates + ")";
     }
 
     @Override
@@ -98,6 +105,11 @@ class SpanQuerySorted extends BLSpanQuery {
         return src.getField();
     }
 
+    @Override
+    public List<BLSpanQuery> getChildClauses() {
+        return Arrays.asList(src);
+    }
+
     @Override
     public String getRealField() {
         return src.getRealField();
@@ -17,6 +17,7 @@ package nl.inl.blacklab.search.lucene;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -119,11 +120,16 @@ public class SpanQueryTags extends BLSpanQuery {
         }
     }
 
+    @Override
+    public String getNodeName() {
+        return "TAGS";
+    }
+
     @Override
     public String toString(String field) {
         if (attr != null && !attr.isEmpty())
-            return "TAGS(" + tagName + ", " + attr + ")";
-        return "TAGS(" + tagName + ")";
+            return getNodeName() + "(" + tagName + ", " + attr + ")";
+        return getNodeName() + "(" + tagName + ")";
     }
 
     @Override
@@ -161,6 +167,11 @@ public class SpanQueryTags extends BLSpanQuery {
         return baseFieldName;
     }
 
+    @Override
+    public List<BLSpanQuery> getChildClauses() {
+        return Arrays.asList(clause);
+    }
+
     @Override
     public String getRealField() {
         return startTagFieldName;
@@ -16,6 +16,8 @@
 package nl.inl.blacklab.search.lucene;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -96,9 +98,14 @@ class SpanQueryUnique extends BLSpanQuery {
         }
     }
 
+    @Override
+    public String getNodeName() {
+        return "UNIQ";
+    }
+
     @Override
     public String toString(String field) {
-        return "UNIQ(" + src + ")";
+        return getNodeName() + "(" + src + ")";
     }
 
     @Override
@@ -106,6 +113,11 @@ class SpanQueryUnique extends BLSpanQuery {
         return src.getField();
     }
 
+    @Override
+    public List<BLSpanQuery> getChildClauses() {
+        return Arrays.asList(src);
+    }
+
     @Override
     public String getRealField() {
         return src.getRealField();
@@ -16,14 +16,13 @@
 package nl.inl.blacklab.search.lucene;
 
 import java.io.IOException;
-import java.util.Iterator;
-import java.util.NavigableSet;
 
 import org.apache.lucene.search.spans.SpanCollector;
 
 import nl.inl.blacklab.search.Span;
 import nl.inl.blacklab.search.fimatch.ForwardIndexAccessor.ForwardIndexAccessorLeafReader;
 import nl.inl.blacklab.search.fimatch.ForwardIndexDocument;
+import nl.inl.blacklab.search.fimatch.NfaMatchEnds;
 import nl.inl.blacklab.search.fimatch.NfaState;
 
 /**
@@ -65,8 +64,11 @@ class SpansFiSeq extends BLSpans {
     /** Maps from term strings to term indices for each annotation. */
     private ForwardIndexAccessorLeafReader fiAccessor;
 
-    /** Iterator over NFA-matched endpoints */
-    private Iterator<Integer> matchEndPointIt;
+    /** NFA-matched endpoints for the current anchor (reused for each anchor) */
+    private NfaMatchEnds matchEndPoints = new NfaMatchEnds();
+
+    /** How many of the NFA-matched endpoints we've returned */
+    private int matchEndPointsUsed = 0;
 
     /** Current NFA-matched endpoint */
     private int currentMatchEndPoint = -1;
@@ -140,8 +142,8 @@ class SpansFiSeq extends BLSpans {
         if (anchorStart == NO_MORE_POSITIONS)
             return NO_MORE_POSITIONS;
 
-        if (matchEndPointIt.hasNext()) {
-            currentMatchEndPoint = matchEndPointIt.next();
+        if (matchEndPointsUsed < matchEndPoints.size()) {
+            currentMatchEndPoint = nextMatchEndPoint();
             return startPosition();
         }
 
@@ -222,13 +224,9 @@ class SpansFiSeq extends BLSpans {
             int anchorPos = startOfAnchor ? anchorStart : anchor.endPosition();
             if (direction < 0)
                 anchorPos--;
-            NavigableSet<Integer> setMatchEndpoints = nfa.findMatches(currentFiDoc, anchorPos, direction);
-            if (setMatchEndpoints.size() > 0) {
-                if (direction == 1)
-                    matchEndPointIt = setMatchEndpoints.iterator();
-                else
-                    matchEndPointIt = setMatchEndpoints.descendingSet().iterator();
-                currentMatchEndPoint = matchEndPointIt.next();
+            if (nfa.findMatches(currentFiDoc, anchorPos, direction, matchEndPoints)) {
+                matchEndPointsUsed = 0;
+                currentMatchEndPoint = nextMatchEndPoint();
                 return startPosition();
             }
 
@@ -241,6 +239,18 @@ class SpansFiSeq extends BLSpans {
         return anchorStart;
     }
 
+    /**
+     * Get the next NFA-matched endpoint for the current anchor.
+     *
+     * Endpoints are returned in the matching direction, so hits are still sorted.
+     *
+     * @return next endpoint
+     */
+    private int nextMatchEndPoint() {
+        int i = matchEndPointsUsed++;
+        return matchEndPoints.get(direction == 1 ? i : matchEndPoints.size() - 1 - i);
+    }
+
     @Override
     public int advance(int doc) throws IOException {
         alreadyAtFirstMatch = false;
@@ -19,14 +19,21 @@ public abstract class ClauseCombiner {
         return priority(left, right, reader) != CANNOT_COMBINE;
     }
 
-    public static Set<ClauseCombiner> all(boolean nfa) {
+    /**
+     * Get all clause combiners.
+     *
+     * @param nfaCostModel determines when to use NFA matching, or null if NFA
+     *            matching is not possible
+     * @return the clause combiners
+     */
+    public static Set<ClauseCombiner> all(NfaCostModel nfaCostModel) {
         HashSet<ClauseCombiner> all = new HashSet<>();
         all.add(new ClauseCombinerRepetition());
         all.add(new ClauseCombinerInternalisation());
         all.add(new ClauseCombinerAnyExpansion());
         all.add(new ClauseCombinerNot());
-        if (nfa)
-            all.add(new ClauseCombinerNfa());
+        if (nfaCostModel != null && nfaCostModel.nfaMatchingEnabled())
+            all.add(new ClauseCombinerNfa(nfaCostModel));
         return all;
     }
     
@@ -31,68 +31,25 @@ public class ClauseCombinerNfa extends ClauseCombiner {
      */
     private static final int BACKWARD_PRIORITY = 10_000_001;
 
-    /**
-     * The default value of nfaThreshold.
-     */
-    public static final long DEFAULT_NFA_THRESHOLD = 900;
-
-    /**
-     * The maximum value of nfaFactor, meaning "make as many NFAs as possible".
-     */
-    public static final long MAX_NFA_MATCHING = Long.MAX_VALUE;
-
-    /**
-     * The minimum value of nfaFactor, meaning "make no NFAs".
-     */
-    public static final long NO_NFA_MATCHING = 0;
-
-    /**
-     * Indicates how expensive fetching a lot of term positions from Lucene is; Used
-     * to calculate the cost of "regular" matching.
-     * 
-     * Higher values means "regular" (reverse) matching is considered relatively cheaper.
-     */
-    private static final long TERM_FREQ_DIVIDER = 500;
-
-    /**
-     * What we multiply our calculated cost ratio by to get an integer in a
-     * reasonable range.
-     */
-    private static final long COST_RATIO_CONSTANT_FACTOR = 1000;
-
-    /**
-     * The ratio of estimated numbers of hits that we use to decide whether or not
-     * to try NFA-matching with two clauses / subsequences. The lower the number,
-     * the more we use NFA-matching.
-     */
-    private static long nfaThreshold = DEFAULT_NFA_THRESHOLD;
-
-    public static void setNfaThreshold(long nfaThreshold) {
-        ClauseCombinerNfa.nfaThreshold = nfaThreshold;
-    }
-
-    public static long getNfaThreshold() {
-        return ClauseCombinerNfa.nfaThreshold;
-    }
+    /** Determines how eagerly we use NFA matching */
+    private NfaCostModel costModel;
 
-    public static void setNfaMatchingEnabled(boolean doNfaMatching) {
-        boolean doingNfaMatching = nfaThreshold != NO_NFA_MATCHING;
-        if (doNfaMatching != doingNfaMatching)
-            nfaThreshold = doNfaMatching ? DEFAULT_NFA_THRESHOLD : NO_NFA_MATCHING;
+    public ClauseCombinerNfa(NfaCostModel costModel) {
+        this.costModel = costModel;
     }
 
-    private static long getFactor(BLSpanQuery left, BLSpanQuery right, IndexReader reader) {
-        if (nfaThreshold == NO_NFA_MATCHING)
+    private long getFactor(BLSpanQuery left, BLSpanQuery right, IndexReader reader) {
+        if (!costModel.nfaMatchingEnabled())
             return 0;
         boolean leftEmpty = left.matchesEmptySequence();
         boolean rightEmpty = right.matchesEmptySequence();
         long numLeft = Math.max(1, left.reverseMatchingCost(reader));
         long numRight = Math.max(1, right.reverseMatchingCost(reader));
-        long seqReverseCost = Math.min(numLeft, numRight) + (numLeft + numRight) / TERM_FREQ_DIVIDER;
+        long seqReverseCost = Math.min(numLeft, numRight) + (numLeft + numRight) / costModel.termFreqDivider();
         int fiCostLeft = left.forwardMatchingCost();
         int fiCostRight = right.forwardMatchingCost();
-        long costNfaToReverseForward = COST_RATIO_CONSTANT_FACTOR * numLeft * fiCostRight / seqReverseCost;
-        long costNfaToReverseBackward = COST_RATIO_CONSTANT_FACTOR * numRight * fiCostLeft / seqReverseCost;
+        long costNfaToReverseForward = costModel.costRatioConstantFactor() * numLeft * fiCostRight / seqReverseCost;
+        long costNfaToReverseBackward = costModel.costRatioConstantFactor() * numRight * fiCostLeft / seqReverseCost;
         boolean leftNfa = left.canMakeNfa();
         boolean rightNfa = right.canMakeNfa();
         boolean backwardPossible = leftNfa && !rightEmpty;
@@ -131,7 +88,7 @@ public class ClauseCombinerNfa extends ClauseCombiner {
 
     @Override
     public int priority(BLSpanQuery left, BLSpanQuery right, IndexReader reader) {
-        if (nfaThreshold == NO_NFA_MATCHING) {
+        if (!costModel.nfaMatchingEnabled()) {
             if (BlackLabIndexImpl.traceOptimization())
                 left.log(LogLevel.DETAIL, "(CCNFA: nfa matching switched off)");
             return CANNOT_COMBINE;
@@ -143,6 +100,7 @@ public class ClauseCombinerNfa extends ClauseCombiner {
             return CANNOT_COMBINE;
         }
         long absFactor = Math.abs(factor);
+        long nfaThreshold = costModel.nfaThreshold();
         if (absFactor > nfaThreshold) {
             if (BlackLabIndexImpl.traceOptimization())
                 left.log(LogLevel.DETAIL, "(CCNFA: factor == " + factor + ", abs(factor) > nfaThreshold (" + nfaThreshold + "))");
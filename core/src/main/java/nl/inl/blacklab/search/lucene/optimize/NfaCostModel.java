@@ -0,0 +1,136 @@
+package nl.inl.blacklab.search.lucene.optimize;
+
+import nl.inl.blacklab.search.BlackLabIndex;
+
+/**
+ * Determines how eagerly {@link ClauseCombinerNfa} uses forward index (NFA)
+ * matching instead of regular (reverse index) matching.
+ *
+ * The best values depend on the corpus, so each index has its own cost model
+ * (see {@link BlackLabIndex#nfaCostModel()}), which may be specified in the index
+ * metadata. Queries may override the threshold through their search settings. Use
+ * {@link nl.inl.blacklab.tools.CalibrateNfa} to find good values for an index.
+ *
+ * Instances are immutable.
+ */
+public final class NfaCostModel {
+
+    /**
+     * The default value of nfaThreshold.
+     */
+    public static final long DEFAULT_NFA_THRESHOLD = 900;
+
+    /**
+     * The maximum value of nfaThreshold, meaning "make as many NFAs as possible".
+     */
+    public static final long MAX_NFA_MATCHING = Long.MAX_VALUE;
+
+    /**
+     * The minimum value of nfaThreshold, meaning "make no NFAs".
+     */
+    public static final long NO_NFA_MATCHING = 0;
+
+    /** The default value of termFreqDivider. */
+    public static final long DEFAULT_TERM_FREQ_DIVIDER = 500;
+
+    /** The default value of costRatioConstantFactor. */
+    public static final long DEFAULT_COST_RATIO_CONSTANT_FACTOR = 1000;
+
+    /** The default cost model. */
+    public static final NfaCostModel DEFAULT = new NfaCostModel(DEFAULT_NFA_THRESHOLD, DEFAULT_TERM_FREQ_DIVIDER,
+            DEFAULT_COST_RATIO_CONSTANT_FACTOR);
+
+    public static NfaCostModel get(long nfaThreshold, long termFreqDivider, long costRatioConstantFactor) {
+        return new NfaCostModel(nfaThreshold, termFreqDivider, costRatioConstantFactor);
+    }
+
+    /**
+     * Get the cost model configured for an index.
+     *
+     * @param index the index
+     * @return the index's cost model, or the default if we have no index
+     */
+    public static NfaCostModel forIndex(BlackLabIndex index) {
+        NfaCostModel nfaCostModel = index == null ? null : index.nfaCostModel();
+        return nfaCostModel == null ? DEFAULT : nfaCostModel;
+    }
+
+    /**
+     * The ratio of estimated numbers of hits that we use to decide whether or not
+     * to try NFA-matching with two clauses / subsequences. The lower the number,
+     * the more we use NFA-matching.
+     */
+    private long nfaThreshold;
+
+    /**
+     * Indicates how expensive fetching a lot of term positions from Lucene is; Used
+     * to calculate the cost of "regular" matching.
+     *
+     * Higher values means "regular" (reverse) matching is considered relatively cheaper.
+     */
+    private long termFreqDivider;
+
+    /**
+     * What we multiply our calculated cost ratio by to get an integer in a
+     * reasonable range.
+     */
+    private long costRatioConstantFactor;
+
+    private NfaCostModel(long nfaThreshold, long termFreqDivider, long costRatioConstantFactor) {
+        if (termFreqDivider <= 0 || costRatioConstantFactor <= 0)
+            throw new IllegalArgumentException("NFA cost constants must be positive");
+        this.nfaThreshold = Math.max(NO_NFA_MATCHING, nfaThreshold);
+        this.termFreqDivider = termFreqDivider;
+        this.costRatioConstantFactor = costRatioConstantFactor;
+    }
+
+    public NfaCostModel withNfaThreshold(long nfaThreshold) {
+        return get(nfaThreshold, termFreqDivider, costRatioConstantFactor);
+    }
+
+    public long nfaThreshold() {
+        return nfaThreshold;
+    }
+
+    public long termFreqDivider() {
+        return termFreqDivider;
+    }
+
+    public long costRatioConstantFactor() {
+        return costRatioConstantFactor;
+    }
+
+    /** @return true if we may use NFA matching at all */
+    public boolean nfaMatchingEnabled() {
+        return nfaThreshold != NO_NFA_MATCHING;
+    }
+
+    @Override
+    public String toString() {
+        return "NfaCostModel(" + nfaThreshold + ", " + termFreqDivider + ", " + costRatioConstantFactor + ")";
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + (int) (costRatioConstantFactor ^ (costRatioConstantFactor >>> 32));
+        result = prime * result + (int) (nfaThreshold ^ (nfaThreshold >>> 32));
+        result = prime * result + (int) (termFreqDivider ^ (termFreqDivider >>> 32));
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        NfaCostModel other = (NfaCostModel) obj;
+        return costRatioConstantFactor == other.costRatioConstantFactor && nfaThreshold == other.nfaThreshold
+                && termFreqDivider == other.termFreqDivider;
+    }
+
+}
@@ -4,10 +4,15 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
 
 import org.eclipse.collections.api.map.primitive.MutableIntObjectMap;
 import org.eclipse.collections.impl.factory.primitive.IntObjectMaps;
 
+import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+import nl.inl.blacklab.exceptions.InterruptedSearch;
 import nl.inl.blacklab.search.Concordance;
 import nl.inl.blacklab.search.ConcordanceType;
 import nl.inl.blacklab.search.Doc;
@@ -36,10 +41,10 @@ public class Concordances {
             throw new IllegalArgumentException("contextSize cannot be negative");
         if (type == ConcordanceType.FORWARD_INDEX) {
             kwics = new Kwics(hits, contextSize);
+        } else {
+            // Get the concordances
+            concordances = retrieveConcordancesFromContentStore(hits, contextSize);
         }
-    
-        // Get the concordances
-        concordances = retrieveConcordancesFromContentStore(hits, contextSize);
     }
 
     /**
@@ -70,9 +75,9 @@ public class Concordances {
      * @param field field to make conc for
      * @param wordsAroundHit number of words left and right of hit to fetch
      * @param conc where to add the concordances
-     * @param hl
+     * @param hl highlighter to use (not thread-safe, so use one per thread)
      */
-    private synchronized static void makeConcordancesSingleDocContentStore(Hits hits, ContextSize wordsAroundHit,
+    private static void makeConcordancesSingleDocContentStore(Hits hits, ContextSize wordsAroundHit,
             Map<Hit, Concordance> conc,
             XmlHighlighter hl) {
         if (hits.size() == 0)
@@ -119,14 +124,15 @@ public class Concordances {
     /**
      * Generate concordances from content store (slower).
      *
+     * Documents are processed in parallel using the search executor; each task
+     * uses its own highlighter.
+     *
      * @param hits hits for which to generate concordances
      * @param contextSize how many words around the hit to retrieve
      * @return the concordances
      */
     private static Map<Hit, Concordance> retrieveConcordancesFromContentStore(Hits hits, ContextSize contextSize) {
-        XmlHighlighter hl = new XmlHighlighter(); // used to make fragments well-formed
         QueryInfo queryInfo = hits.queryInfo();
-        hl.setUnbalancedTagsStrategy(queryInfo.index().defaultUnbalancedTagsStrategy());
         // Group hits per document
         MutableIntObjectMap<List<Hit>> hitsPerDocument = IntObjectMaps.mutable.empty();
         for (Hit key: hits) {
@@ -137,10 +143,44 @@ public class Concordances {
             }
             hitsInDoc.add(key);
         }
+        List<List<Hit>> hitsPerDoc = new ArrayList<>(hitsPerDocument.values());
+        int maxThreads = Math.max(1, queryInfo.index().blackLab().maxThreadsPerSearch());
+        int numberOfTasks = Math.min(maxThreads, hitsPerDoc.size());
+        List<FutureTask<Map<Hit, Concordance>>> tasks = new ArrayList<>();
+        for (int i = 0; i < numberOfTasks; i++) {
+            // Each task handles every numberOfTasks'th document
+            int firstDoc = i;
+            tasks.add(new FutureTask<>(() -> {
+                XmlHighlighter hl = new XmlHighlighter(); // used to make fragments well-formed
+                hl.setUnbalancedTagsStrategy(queryInfo.index().defaultUnbalancedTagsStrategy());
+                Map<Hit, Concordance> conc = new HashMap<>();
+                for (int j = firstDoc; j < hitsPerDoc.size(); j += numberOfTasks) {
+                    Hits hitsInThisDoc = Hits.fromList(queryInfo, hitsPerDoc.get(j));
+                    makeConcordancesSingleDocContentStore(hitsInThisDoc, contextSize, conc, hl);
+                }
+                return conc;
+            }));
+        }
+        if (tasks.size() > 1) {
+            ExecutorService executorService = queryInfo.index().blackLab().searchExecutorService();
+            for (FutureTask<Map<Hit, Concordance>> task: tasks.subList(1, tasks.size())) {
+                executorService.execute(task);
+            }
+        }
         Map<Hit, Concordance> conc = new HashMap<>();
-        for (List<Hit> l : hitsPerDocument.values()) {
-            Hits hitsInThisDoc = Hits.fromList(queryInfo, l);
-            Concordances.makeConcordancesSingleDocContentStore(hitsInThisDoc, contextSize, conc, hl);
+        try {
+            for (FutureTask<Map<Hit, Concordance>> task: tasks) {
+                task.run(); // does nothing if already started by the executor
+                conc.putAll(task.get());
+            }
+        } catch (InterruptedException e) {
+            throw new InterruptedSearch(e);
+        } catch (ExecutionException e) {
+            throw BlackLabRuntimeException.wrap(e.getCause());
+        } finally {
+            for (FutureTask<Map<Hit, Concordance>> task: tasks) {
+                task.cancel(true);
+            }
         }
         return conc;
     }
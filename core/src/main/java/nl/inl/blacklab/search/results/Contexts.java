@@ -1,15 +1,20 @@
 package nl.inl.blacklab.search.results;
 
+import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.apache.commons.lang3.StringUtils;
 
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
 import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
 import nl.inl.blacklab.exceptions.InterruptedSearch;
 import nl.inl.blacklab.forwardindex.AnnotationForwardIndex;
@@ -18,6 +23,7 @@ import nl.inl.blacklab.forwardindex.Terms;
 import nl.inl.blacklab.search.Kwic;
 import nl.inl.blacklab.search.indexmetadata.AnnotatedField;
 import nl.inl.blacklab.search.indexmetadata.Annotation;
+import nl.inl.util.ThreadPauser;
 
 public class Contexts implements Iterable<int[]> {
 
@@ -204,20 +210,43 @@ public class Contexts implements Iterable<int[]> {
     }
 
     /**
-     * The hit contexts.
+     * Maximum number of ints in one context buffer.
      *
-     * There may be multiple contexts for each hit. Each
-     * int array starts with three bookkeeping integers, followed by the contexts
+     * If the contexts for all hits don't fit in one buffer, we use several.
+     */
+    private static final int MAX_BUFFER_SIZE = 1 << 28;
+
+    /**
+     * Minimum number of hits before we bother to retrieve the contexts using multiple threads.
+     */
+    private static final int MIN_HITS_PER_THREAD = 10000;
+
+    /**
+     * The hit contexts, stored consecutively in one or more large buffers.
+     *
+     * There may be multiple contexts for each hit. Each hit's context starts
+     * with three bookkeeping integers, followed by the contexts
      * information. The bookkeeping integers are: * 0 = hit start, index of the hit
      * word (and length of the left context), counted from the start the context * 1
      * = right start, start of the right context, counted from the start the context
      * * 2 = context length, length of 1 context. As stated above, there may be
      * multiple contexts.
      *
-     * The first context therefore starts at index 3.
+     * The first context therefore starts at index 3 (relative to the hit's offset).
      *
+     * Storing them like this instead of as a separate array per hit saves a lot of
+     * memory and garbage collection when sorting or grouping many hits.
      */
-    private Map<Hit, int[]> contexts;
+    private int[][] buffers;
+
+    /** Index of the first hit stored in each buffer */
+    private int[] bufferFirstHit;
+
+    /** Offset in its buffer of each hit's context */
+    private int[] offsets;
+
+    /** The hits we have contexts for (in the same order) */
+    private HitsArrays hits;
 
     /**
      * If we have context information, this specifies the annotation(s) (i.e. word,
@@ -228,45 +257,6 @@ public class Contexts implements Iterable<int[]> {
     // Methods that read data
     //------------------------------------------------------------------------------
 
-    /**
-     * Return a new Contexts instance that only includes the specified annotations
-     * in the specified order.
-     * 
-     * @param annotations annotations we want
-     */
-    @SuppressWarnings("unused")
-    private Contexts(Contexts source, List<Annotation> annotations) {
-        // Determine which contexts we want
-        List<Integer> contextsToSelect = new ArrayList<>();
-        for (int i = 0; i < source.annotations.size(); i++) {
-            if (annotations.contains(source.annotations.get(i)))
-                contextsToSelect.add(i);
-        }
-        if (contextsToSelect.size() < annotations.size())
-            throw new BlackLabRuntimeException("Not all requested contexts were present");
-    
-        // Copy only the requested contexts
-        int numberOfHits = source.contexts.size();
-        contexts = new IdentityHashMap<>(numberOfHits);
-        for (Entry<Hit, int[]> e: source.contexts.entrySet()) {
-            int[] context = e.getValue();
-            int hitContextLength = (context.length - NUMBER_OF_BOOKKEEPING_INTS)
-                    / source.annotations.size();
-            int[] result = new int[NUMBER_OF_BOOKKEEPING_INTS + hitContextLength * annotations.size()];
-            System.arraycopy(context, 0, result, 0, NUMBER_OF_BOOKKEEPING_INTS);
-            int resultContextNumber = 0;
-            for (Integer sourceContextNumber: contextsToSelect) {
-                System.arraycopy(context,
-                        NUMBER_OF_BOOKKEEPING_INTS + sourceContextNumber * hitContextLength, result,
-                        NUMBER_OF_BOOKKEEPING_INTS + resultContextNumber * hitContextLength,
-                        NUMBER_OF_BOOKKEEPING_INTS);
-                resultContextNumber++;
-            }
-            contexts.put(e.getKey(), result); 
-        }
-        this.annotations = annotations;
-    }
-
     /**
      * Retrieve context words for the hits.
      * 
@@ -277,56 +267,153 @@ public class Contexts implements Iterable<int[]> {
      */
     public Contexts(Results<Hit> hits, List<Annotation> annotations, ContextSize contextSize, List<FiidLookup> fiidLookups) {
         hits.size(); // make sure all hits have been read
+        this.hits = hits instanceof Hits ? ((Hits) hits).hitsArrays() : HitsArrays.fromList(hits.resultsList());
+        this.annotations = new ArrayList<>(annotations);
 
         List<AnnotationForwardIndex> fis = new ArrayList<>();
         for (Annotation annotation: annotations) {
-            fis.add(hits.index().annotationForwardIndex(annotation));
+            AnnotationForwardIndex forwardIndex = hits.index().annotationForwardIndex(annotation);
+            if (forwardIndex == null)
+                throw new BlackLabRuntimeException("Cannot get context without a forward index");
+            fis.add(forwardIndex);
         }
 
-        // Get the context
-        // Group hits per document
-        List<Hit> hitsInSameDoc = new ArrayList<>();
+        // Determine where each hit's context goes, and find the runs of hits in the same document
+        int n = this.hits.size();
+        int contextSz = contextSize.left();
+        offsets = new int[n];
+        List<int[]> bufferList = new ArrayList<>();
+        IntArrayList firstHitList = new IntArrayList();
+        IntArrayList runStarts = new IntArrayList();
+        int bufferSize = 0;
         int currentDoc = -1;
-        contexts = new IdentityHashMap<>(hits.size());
-        for (Hit hit: hits) {
-            if (hit.doc() != currentDoc) {
-                if (currentDoc >= 0) {
-                    try {
-                        hits.threadPauser().waitIfPaused();
-                    } catch (InterruptedException e) {
-                        throw new InterruptedSearch(e);
-                    }
-
-                    // Find context for the hits in the current document
-                    int[][] docContextArray = getContextWordsSingleDocument(hitsInSameDoc, contextSize, fis, fiidLookups);
-
-                    // Copy the contexts from the temporary Hits object to this one
-                    int i = 0;
-                    for (Hit hitInDoc: hitsInSameDoc) {
-                        contexts.put(hitInDoc, docContextArray[i]);
-                        i++;
-                    }
+        for (int i = 0; i < n; i++) {
+            int doc = this.hits.doc(i);
+            if (doc != currentDoc) {
+                runStarts.add(i);
+                currentDoc = doc;
+            }
+            int start = this.hits.start(i);
+            int maxLength = this.hits.end(i) + contextSz - (contextSz >= start ? 0 : start - contextSz);
+            long size = NUMBER_OF_BOOKKEEPING_INTS + (long) maxLength * annotations.size();
+            if (size > MAX_BUFFER_SIZE)
+                throw new BlackLabRuntimeException("Hit context too large: " + size);
+            if (firstHitList.isEmpty() || bufferSize + size > MAX_BUFFER_SIZE) {
+                // Start a new buffer
+                if (!firstHitList.isEmpty())
+                    bufferList.add(new int[bufferSize]);
+                firstHitList.add(i);
+                bufferSize = 0;
+            }
+            offsets[i] = bufferSize;
+            bufferSize += size;
+        }
+        if (!firstHitList.isEmpty())
+            bufferList.add(new int[bufferSize]);
+        runStarts.add(n);
+        buffers = bufferList.toArray(new int[0][]);
+        bufferFirstHit = firstHitList.toIntArray();
 
-                    // Reset hits list for next doc
-                    hitsInSameDoc.clear();
-                }
-                currentDoc = hit.doc(); // start a new document
+        // Look up the forward index ids for each document
+        int numberOfRuns = runStarts.size() - 1;
+        int[][] fiids = new int[annotations.size()][numberOfRuns];
+        for (int j = 0; j < annotations.size(); j++) {
+            FiidLookup fiidLookup = fiidLookups.get(j);
+            for (int r = 0; r < numberOfRuns; r++) {
+                fiids[j][r] = fiidLookup.get(this.hits.doc(runStarts.get(r)));
             }
-            hitsInSameDoc.add(hit);
         }
-        if (!hitsInSameDoc.isEmpty()) {
-            // Find context for the hits in the current document
-            int[][] docContextArray = getContextWordsSingleDocument(hitsInSameDoc, contextSize, fis, fiidLookups);
 
-            // Copy the contexts from the temporary Hits object to this one
-            int i = 0;
-            for (Hit hitInDoc: hitsInSameDoc) {
-                contexts.put(hitInDoc, docContextArray[i]);
-                i++;
+        // Retrieve the contexts, splitting the documents between a number of threads
+        ThreadPauser threadPauser = hits.threadPauser();
+        int maxThreads = Math.max(1, hits.index().blackLab().maxThreadsPerSearch());
+        int numberOfTasks = Math.min(maxThreads, Math.min(numberOfRuns, n / MIN_HITS_PER_THREAD));
+        if (numberOfTasks <= 1) {
+            fillContexts(threadPauser, fis, fiids, runStarts, contextSz, 0, numberOfRuns);
+            return;
+        }
+        ExecutorService executorService = hits.index().blackLab().searchExecutorService();
+        List<Future<?>> futures = new ArrayList<>();
+        int hitsPerTask = (n + numberOfTasks - 1) / numberOfTasks;
+        int firstRun = 0;
+        while (firstRun < numberOfRuns) {
+            // Add runs until we have enough hits for this task
+            int lastRun = firstRun + 1;
+            while (lastRun < numberOfRuns && runStarts.get(lastRun) - runStarts.get(firstRun) < hitsPerTask)
+                lastRun++;
+            final int from = firstRun, to = lastRun;
+            if (to == numberOfRuns) {
+                // Last task; perform it in this thread
+                fillContexts(threadPauser, fis, fiids, runStarts, contextSz, from, to);
+            } else {
+                futures.add(executorService.submit(() -> fillContexts(threadPauser, fis, fiids, runStarts, contextSz, from, to)));
             }
+            firstRun = lastRun;
         }
+        try {
+            for (Future<?> future: futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            for (Future<?> future: futures) {
+                future.cancel(true);
+            }
+            throw new InterruptedSearch(e);
+        } catch (ExecutionException e) {
+            for (Future<?> future: futures) {
+                future.cancel(true);
+            }
+            throw BlackLabRuntimeException.wrap(e.getCause());
+        }
+    }
 
-        this.annotations = new ArrayList<>(annotations);
+    /**
+     * Retrieve the contexts for a range of runs of hits in the same document.
+     *
+     * Different threads may call this for different ranges simultaneously, as they
+     * write to different parts of the buffers.
+     *
+     * @param threadPauser pauser to check between documents
+     * @param fis forward indexes to get context from
+     * @param fiids forward index ids per annotation and run
+     * @param runStarts index of the first hit in each run (and one past the last hit)
+     * @param contextSz number of words of context around each hit
+     * @param firstRun first run to process
+     * @param lastRun one past the last run to process
+     */
+    private void fillContexts(ThreadPauser threadPauser, List<AnnotationForwardIndex> fis, int[][] fiids,
+            IntArrayList runStarts, int contextSz, int firstRun, int lastRun) {
+        for (int r = firstRun; r < lastRun; r++) {
+            try {
+                threadPauser.waitIfPaused();
+            } catch (InterruptedException e) {
+                throw new InterruptedSearch(e);
+            }
+            int runStart = runStarts.get(r);
+            int runEnd = runStarts.get(r + 1);
+            for (int j = 0; j < fis.size(); j++) {
+                IntBuffer tokens = fis.get(j).tokens(fiids[j][r]);
+                if (tokens == null)
+                    throw new BlackLabRuntimeException("Cannot get context from deleted document, fiid = " + fiids[j][r]);
+                int docLength = tokens.limit();
+                for (int i = runStart; i < runEnd; i++) {
+                    int hitStart = hits.start(i);
+                    int hitEnd = hits.end(i);
+                    int snippetStart = contextSz >= hitStart ? 0 : hitStart - contextSz;
+                    int snippetEnd = Math.min(docLength, hitEnd + contextSz);
+                    int snippetLength = snippetEnd - snippetStart;
+                    int[] buffer = buffer(i);
+                    int offset = offsets[i];
+                    if (j == 0) {
+                        buffer[offset + HIT_START_INDEX] = hitStart - snippetStart;
+                        buffer[offset + RIGHT_START_INDEX] = hitEnd - snippetStart;
+                        buffer[offset + LENGTH_INDEX] = snippetLength;
+                    }
+                    tokens.position(snippetStart);
+                    tokens.get(buffer, offset + NUMBER_OF_BOOKKEEPING_INTS + j * snippetLength, snippetLength);
+                }
+            }
+        }
     }
 
     /**
@@ -339,29 +426,80 @@ public class Contexts implements Iterable<int[]> {
     }
 
     /**
-     * Return the context(s) for the specified hit number
-     * 
-     * @param hit which hit we want the context(s) for
+     * Get the buffer containing the context(s) for a hit.
+     *
+     * The context(s) start at {@link #offset(int)} in this buffer. See
+     * {@link #HIT_START_INDEX} etc. for how they are stored.
+     *
+     * The buffer should not be modified.
+     *
+     * @param hitIndex index of the hit
+     * @return the buffer
+     */
+    public int[] buffer(int hitIndex) {
+        if (buffers.length == 1)
+            return buffers[0];
+        int i = Arrays.binarySearch(bufferFirstHit, hitIndex);
+        return buffers[i >= 0 ? i : -i - 2];
+    }
+
+    /**
+     * Get the offset of a hit's context(s) in its buffer.
+     *
+     * @param hitIndex index of the hit
+     * @return the offset
+     */
+    public int offset(int hitIndex) {
+        return offsets[hitIndex];
+    }
+
+    /**
+     * Return a copy of the context(s) for the specified hit number
+     *
+     * @param hitIndex index of the hit we want the context(s) for
      * @return the context(s)
      */
-    public int[] get(Hit hit) {
-        return contexts.get(hit);
+    public int[] get(int hitIndex) {
+        int[] buffer = buffer(hitIndex);
+        int offset = offsets[hitIndex];
+        int length = NUMBER_OF_BOOKKEEPING_INTS + buffer[offset + LENGTH_INDEX] * annotations.size();
+        return Arrays.copyOfRange(buffer, offset, offset + length);
     }
 
+    /**
+     * Number of hits we have contexts for.
+     *
+     * @return number of hits
+     */
     public int size() {
-        return contexts.size();
+        return offsets.length;
     }
 
     /**
-     * Iterate over the context arrays.
+     * Iterate over the context arrays, in hit order.
      * 
-     * Note that the order is unspecified.
+     * Note that this makes a copy of each context. Use {@link #buffer(int)} and
+     * {@link #offset(int)} to read them in place.
      * 
      * @return iterator
      */
     @Override
     public Iterator<int[]> iterator() {
-        return contexts.values().iterator();
+        return new Iterator<int[]>() {
+            int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < size();
+            }
+
+            @Override
+            public int[] next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                return get(index++);
+            }
+        };
     }
     
     @Override
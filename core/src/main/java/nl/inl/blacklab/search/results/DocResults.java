@@ -21,8 +21,6 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.LogManager;
@@ -142,7 +140,7 @@ public class DocResults extends Results<DocResult> implements ResultGroups<Hit>
      * Hits. (or null if we don't have partial doc hits) Pick this up when we
      * continue iterating through it.
      */
-    private List<Hit> partialDocHits;
+    private HitsArrays partialDocHits;
 
     /**
      * id of the partial doc we've done (because we stopped iterating through the
@@ -152,7 +150,7 @@ public class DocResults extends Results<DocResult> implements ResultGroups<Hit>
 
     private HitPropertyDoc groupByDoc;
 
-    Lock ensureResultsReadLock;
+    ResultsReadLock ensureResultsReadLock;
 
     /** Largest number of hits in a single document */
     private int mostHitsInDocument = 0;
@@ -199,7 +197,7 @@ public class DocResults extends Results<DocResult> implements ResultGroups<Hit>
         this.sourceHitsIterator = hits.iterator();
         this.maxHitsToStorePerDoc = maxHitsToStorePerDoc;
         partialDocHits = null;
-        ensureResultsReadLock = new ReentrantLock();
+        ensureResultsReadLock = new ResultsReadLock();
     }
 
     /**
@@ -294,21 +292,16 @@ public class DocResults extends Results<DocResult> implements ResultGroups<Hit>
             if (doneProcessingAndCounting() || (index >= 0 && results.size() > index))
                 return;
 
-            while (!ensureResultsReadLock.tryLock()) {
-                /*
-                * Another thread is already counting, we don't want to straight up block until it's done
-                * as it might be counting/retrieving all results, while we might only want trying to retrieve a small fraction
-                * So instead poll our own state, then if we're still missing results after that just count them ourselves
-                */
-                Thread.sleep(50);
-                if (doneProcessingAndCounting() || (index >= 0 && results.size() >= index))
-                    return;
-            }
+            // If another thread is already reading, wait until it has read enough for us
+            // (or until it stops, after which we'll continue reading ourselves)
+            final int target = index;
+            if (!ensureResultsReadLock.lockOrWait(target, () -> doneProcessingAndCounting() || (target >= 0 && results.size() >= target)))
+                return;
 
             try {
                 // Fill list of document results
                 PropertyValueDoc doc = partialDocId;
-                List<Hit> docHits = partialDocHits;
+                HitsArrays docHits = partialDocHits;
                 partialDocId = null;
                 partialDocHits = null;
 
@@ -322,7 +315,7 @@ public class DocResults extends Results<DocResult> implements ResultGroups<Hit>
                             addDocResultToList(doc, hits, hits.size());
                         }
                         doc = val;
-                        docHits = new ArrayList<>();
+                        docHits = new HitsArrays();
                     }
                     docHits.add(hit);
                 }
@@ -355,6 +348,7 @@ public class DocResults extends Results<DocResult> implements ResultGroups<Hit>
         else
             docResult = DocResult.fromHits(doc, docHits, totalNumberOfHits);
         results.add(docResult);
+        ensureResultsReadLock.produced(results.size());
         if (docHits.size() > mostHitsInDocument)
             mostHitsInDocument = docHits.size();
         totalHits += docHits.size();
@@ -102,14 +102,16 @@ public class HitGroups extends Results<HitGroup> implements ResultGroups<Hit> {
         criteria = criteria.copyWith(hits, requiredContext == null ? null : new Contexts(hits, requiredContext, criteria.needsContextSize(hits.index()), fiidLookups));
         
         //Thread currentThread = Thread.currentThread();
-        Map<PropertyValue, List<Hit>> groupLists = new HashMap<>();
+        Map<PropertyValue, HitsArrays> groupLists = new HashMap<>();
         Map<PropertyValue, Integer> groupSizes = new HashMap<>();
         resultObjects = 0;
+        int hitIndex = 0;
         for (Hit hit: hits) {
-            PropertyValue identity = criteria.get(hit);
-            List<Hit> group = groupLists.get(identity);
+            PropertyValue identity = criteria.get(hitIndex);
+            hitIndex++;
+            HitsArrays group = groupLists.get(identity);
             if (group == null) {
-                group = new ArrayList<>();
+                group = new HitsArrays();
                 groupLists.put(identity, group);
             }
             if (maxResultsToStorePerGroup < 0 || group.size() < maxResultsToStorePerGroup) {
@@ -127,9 +129,10 @@ public class HitGroups extends Results<HitGroup> implements ResultGroups<Hit> {
             totalHits++;
         }
         resultObjects += groupLists.size();
-        for (Map.Entry<PropertyValue, List<Hit>> e : groupLists.entrySet()) {
+        for (Map.Entry<PropertyValue, HitsArrays> e : groupLists.entrySet()) {
             PropertyValue groupId = e.getKey();
-            List<Hit> hitList = e.getValue();
+            HitsArrays hitList = e.getValue();
+            hitList.trimToSize();
             Integer groupSize = groupSizes.get(groupId);
             HitGroup group = HitGroup.fromList(queryInfo(), groupId, hitList, hits.capturedGroups(), groupSize);
             groups.put(groupId, group);
@@ -1,6 +1,6 @@
 package nl.inl.blacklab.search.results;
 
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Random;
 import java.util.Set;
@@ -46,7 +46,8 @@ public abstract class Hits extends Results<Hit> {
     /**
      * Make a wrapper Hits object for a list of Hit objects.
      *
-     * Does not copy the list, but reuses it.
+     * Does not copy the list if it is a {@link HitsArrays}, but reuses it.
+     * Other lists are copied into columnar form.
      * 
      * @param queryInfo information about the original query
      * @param hits the list of hits to wrap, or null for empty Hits object
@@ -59,7 +60,8 @@ public abstract class Hits extends Results<Hit> {
     /**
      * Make a wrapper Hits object for a list of Hit objects.
      *
-     * Does not copy the list, but reuses it.
+     * Does not copy the list if it is a {@link HitsArrays}, but reuses it.
+     * Other lists are copied into columnar form.
      *
      * @param queryInfo information about the original query
      * @param hits the list of hits to wrap, or null for empty Hits object
@@ -73,7 +75,7 @@ public abstract class Hits extends Results<Hit> {
     /**
      * Make a wrapper Hits object for a list of Hit objects.
      *
-     * Will create Hit objects from the arrays. Mainly useful for testing.
+     * Does not copy the arrays, but reuses them. Mainly useful for testing.
      * 
      * @param queryInfo information about the original query
      * @param doc doc ids
@@ -111,7 +113,8 @@ public abstract class Hits extends Results<Hit> {
         // We can later provide an optimized version that uses a HitsSampleCopy or somesuch
         // (this class could save memory by only storing the hits we're interested in)
         
-        List<Hit> results = new ArrayList<>();
+        HitsArrays hitsArrays = hitsArrays();
+        HitsArrays results = new HitsArrays();
         int hitsCounted = 0;
         int docsRetrieved = 0;
         int docsCounted = 0;
@@ -137,15 +140,17 @@ public abstract class Hits extends Results<Hit> {
         if (hasCapturedGroups())
             capturedGroups = new CapturedGroupsImpl(capturedGroups().names());
         for (Integer hitIndex : chosenHitIndices) {
-            Hit hit = get(hitIndex);
-            if (hit.doc() != previousDoc) {
+            int doc = hitsArrays.doc(hitIndex);
+            if (doc != previousDoc) {
                 docsRetrieved++;
                 docsCounted++;
-                previousDoc = hit.doc();
+                previousDoc = doc;
             }
-            results.add(hit);
-            if (capturedGroups != null)
+            results.add(doc, hitsArrays.start(hitIndex), hitsArrays.end(hitIndex));
+            if (capturedGroups != null) {
+                Hit hit = hitsArrays.get(hitIndex);
                 capturedGroups.put(hit, this.capturedGroups.get(hit));
+            }
             hitsCounted++;
         }
         
@@ -227,6 +232,7 @@ public abstract class Hits extends Results<Hit> {
     
     public Hits(QueryInfo queryInfo) {
         super(queryInfo);
+        results = new HitsArrays();
     }
 
     // Inherited from Results
@@ -254,7 +260,7 @@ public abstract class Hits extends Results<Hit> {
         int docsCounted = 0;
 
         // Error if first out of range
-        List<Hit> results = new ArrayList<>();
+        HitsArrays results = new HitsArrays();
         WindowStats windowStats;
         boolean emptyResultSet = !hitsProcessedAtLeast(1);
         if (first < 0 || (emptyResultSet && first > 0) ||
@@ -269,21 +275,24 @@ public abstract class Hits extends Results<Hit> {
             number = size() - first;
 
         // Copy the hits we're interested in.
-        if (hasCapturedGroups())
+        HitsArrays hitsArrays = hitsArrays();
+        results.addAll(hitsArrays, first, first + number);
+        if (hasCapturedGroups()) {
             capturedGroups = new CapturedGroupsImpl(capturedGroups().names());
+            for (int i = first; i < first + number; i++) {
+                Hit hit = hitsArrays.get(i);
+                capturedGroups.put(hit, capturedGroups().get(hit));
+            }
+        }
         int prevDoc = -1;
         hitsCounted = 0;
         for (int i = first; i < first + number; i++) {
-            Hit hit = get(i);
-            results.add(hit);
-            if (capturedGroups != null)
-                capturedGroups.put(hit, capturedGroups().get(hit));
             // OPT: copy context as well..?
-            
-            if (hit.doc() != prevDoc) {
+            int doc = hitsArrays.doc(i);
+            if (doc != prevDoc) {
                 docsRetrieved++;
                 docsCounted++;
-                prevDoc = hit.doc();
+                prevDoc = doc;
             }
         }
         boolean hasNext = hitsProcessedAtLeast(first + windowSize + 1);
@@ -377,13 +386,27 @@ public abstract class Hits extends Results<Hit> {
 
     public Hits getHitsInDoc(int docid) {
         ensureAllResultsRead();
-        List<Hit> hitsInDoc = new ArrayList<>();
-        for (Hit hit : results) {
-            if (hit.doc() == docid)
-                hitsInDoc.add(hit);
+        HitsArrays hitsArrays = hitsArrays();
+        HitsArrays hitsInDoc = new HitsArrays();
+        for (int i = 0; i < hitsArrays.size(); i++) {
+            if (hitsArrays.doc(i) == docid)
+                hitsInDoc.add(docid, hitsArrays.start(i), hitsArrays.end(i));
         }
         return Hits.fromList(queryInfo(), hitsInDoc);
     }
+
+    /**
+     * Get our hits in columnar form.
+     *
+     * Clients shouldn't use this. Used for certain performance-sensitive
+     * operations like sorting and windowing (also by hit properties, which is why
+     * it is public). Only includes hits read so far. Should not be modified.
+     *
+     * @return our hits
+     */
+    public HitsArrays hitsArrays() {
+        return (HitsArrays) results;
+    }
     
     // Stats
     // ---------------------------------------------------------------
@@ -468,8 +491,7 @@ public abstract class Hits extends Results<Hit> {
         if (!(sortProp instanceof HitProperty))
             throw new UnsupportedOperationException("Can only sort Hits by an instance of HitProperty!");
         HitProperty hitProp = (HitProperty)sortProp;
-        
-        List<Hit> sorted = new ArrayList<>(resultsList());
+        ensureAllResultsRead();
 
         // We need a HitProperty with the correct Hits object
         // If we need context, make sure we have it.
@@ -478,8 +500,10 @@ public abstract class Hits extends Results<Hit> {
         hitProp = hitProp.copyWith(this,
                 requiredContext == null ? null : new Contexts(this, requiredContext, hitProp.needsContextSize(index()), fiidLookups));
 
-        // Perform the actual sort.
-        sorted.sort(hitProp);
+        // Perform the actual sort, using multiple threads if there's many hits.
+        // (we sort by hit index, so no Hit objects need to be created)
+        HitProperty prop = hitProp;
+        HitsArrays sorted = hitsArrays().sortedByIndex((a, b) -> prop.compare(a, b), ParallelSort.forResults(this));
 
         CapturedGroupsImpl capturedGroups = capturedGroups();
         int hitsCounted = hitsCountedSoFar();
@@ -511,9 +535,24 @@ public abstract class Hits extends Results<Hit> {
     }
 
     public Kwics kwics(ContextSize contextSize) {
+        return kwics(contextSize, null);
+    }
+
+    /**
+     * Get KWICs containing only the specified annotations.
+     *
+     * Only the forward indexes of these annotations (plus word and punctuation,
+     * which are always included) are read, so if you only display a few
+     * annotations, this is faster than getting KWICs with all annotations.
+     *
+     * @param contextSize how many words around the hit to retrieve, or null for the default
+     * @param annotations annotations to include, or null for all annotations
+     * @return KWICs
+     */
+    public Kwics kwics(ContextSize contextSize, Collection<Annotation> annotations) {
         if (contextSize == null)
             contextSize = index().defaultContextSize();
-        return new Kwics(this, contextSize);
+        return new Kwics(this, contextSize, annotations);
     }
 
     /**
@@ -0,0 +1,284 @@
+package nl.inl.blacklab.search.results;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+import it.unimi.dsi.fastutil.ints.IntComparator;
+
+/**
+ * A list of hits, stored in columnar form (parallel int arrays for doc, start
+ * and end).
+ *
+ * Storing hits this way costs 12 bytes per hit, compared to the object header,
+ * fields and list reference needed for a separate {@link HitImpl} object per hit.
+ * Hit objects are only created when a hit is requested through {@link #get(int)};
+ * performance-sensitive code should use {@link #doc(int)}, {@link #start(int)}
+ * and {@link #end(int)} instead.
+ *
+ * Note that because Hit objects are created on demand, two calls to get() with
+ * the same index will return equal, but not identical, objects. Never use
+ * identity-based collections to store information about hits.
+ *
+ * Appending is not thread-safe and must be done by one thread at a time, but
+ * hits that were added before a call to {@link #size()} may safely be read by
+ * other threads while more hits are being appended. (when the arrays grow, they
+ * are replaced as a whole, through a volatile reference, so readers always see
+ * complete arrays)
+ */
+public class HitsArrays extends AbstractList<Hit> implements RandomAccess {
+
+    /** Initial capacity if none was specified */
+    private static final int DEFAULT_INITIAL_CAPACITY = 16;
+
+    /**
+     * Create a columnar copy of a list of hits.
+     *
+     * If the list already is a HitsArrays instance, it is returned as-is.
+     *
+     * @param hits hits to copy
+     * @return columnar list of hits
+     */
+    public static HitsArrays fromList(List<Hit> hits) {
+        if (hits instanceof HitsArrays)
+            return (HitsArrays) hits;
+        HitsArrays result = new HitsArrays(hits.size());
+        for (Hit hit: hits) {
+            result.add(hit.doc(), hit.start(), hit.end());
+        }
+        return result;
+    }
+
+    /**
+     * Create a list of hits from three arrays.
+     *
+     * The arrays are not copied.
+     *
+     * @param doc document ids
+     * @param start hit starts
+     * @param end hit ends
+     * @return columnar list of hits
+     */
+    public static HitsArrays fromArrays(int[] doc, int[] start, int[] end) {
+        if (doc.length != start.length || doc.length != end.length)
+            throw new IllegalArgumentException("Arrays must be of equal length");
+        HitsArrays result = new HitsArrays(0);
+        result.columns = new Columns(doc, start, end);
+        result.size = doc.length;
+        return result;
+    }
+
+    /** The arrays storing our hits, replaced together when they grow. */
+    private static final class Columns {
+
+        /** Document ids for our hits */
+        final int[] docs;
+
+        /** Start positions for our hits */
+        final int[] starts;
+
+        /** End positions for our hits */
+        final int[] ends;
+
+        Columns(int[] docs, int[] starts, int[] ends) {
+            this.docs = docs;
+            this.starts = starts;
+            this.ends = ends;
+        }
+
+        Columns copyOf(int capacity) {
+            return new Columns(Arrays.copyOf(docs, capacity), Arrays.copyOf(starts, capacity),
+                    Arrays.copyOf(ends, capacity));
+        }
+    }
+
+    /**
+     * Our hit arrays.
+     *
+     * Volatile (and the arrays are final fields of the holder) so a reader never
+     * sees a partially copied array after they've grown.
+     */
+    private volatile Columns columns;
+
+    /**
+     * Number of hits stored.
+     *
+     * Volatile so a reader that checks the size is guaranteed to see the hits added
+     * before it was updated.
+     */
+    private volatile int size;
+
+    public HitsArrays() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    public HitsArrays(int initialCapacity) {
+        columns = new Columns(new int[initialCapacity], new int[initialCapacity], new int[initialCapacity]);
+        size = 0;
+    }
+
+    private Columns ensureCapacity(int capacity) {
+        Columns c = columns;
+        if (capacity > c.docs.length) {
+            int newCapacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(capacity, c.docs.length * 3L / 2 + 1));
+            c = c.copyOf(newCapacity);
+            columns = c;
+        }
+        return c;
+    }
+
+    /**
+     * Add a hit.
+     *
+     * @param doc document id
+     * @param start hit start
+     * @param end hit end
+     */
+    public void add(int doc, int start, int end) {
+        int n = size;
+        Columns c = ensureCapacity(n + 1);
+        c.docs[n] = doc;
+        c.starts[n] = start;
+        c.ends[n] = end;
+        size = n + 1;
+    }
+
+    /**
+     * Add a range of hits from another list.
+     *
+     * @param source list to copy hits from
+     * @param fromIndex first hit to copy
+     * @param toIndex one past the last hit to copy
+     */
+    public void addAll(HitsArrays source, int fromIndex, int toIndex) {
+        int n = size;
+        int number = toIndex - fromIndex;
+        if (number <= 0)
+            return;
+        Columns c = ensureCapacity(n + number);
+        Columns src = source.columns;
+        System.arraycopy(src.docs, fromIndex, c.docs, n, number);
+        System.arraycopy(src.starts, fromIndex, c.starts, n, number);
+        System.arraycopy(src.ends, fromIndex, c.ends, n, number);
+        size = n + number;
+    }
+
+    @Override
+    public boolean add(Hit hit) {
+        add(hit.doc(), hit.start(), hit.end());
+        return true;
+    }
+
+    @Override
+    public Hit get(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        Columns c = columns;
+        return Hit.create(c.docs[index], c.starts[index], c.ends[index]);
+    }
+
+    /**
+     * Get the document id for a hit.
+     *
+     * @param index hit index
+     * @return document id
+     */
+    public int doc(int index) {
+        return columns.docs[index];
+    }
+
+    /**
+     * Get the start position for a hit.
+     *
+     * @param index hit index
+     * @return start position
+     */
+    public int start(int index) {
+        return columns.starts[index];
+    }
+
+    /**
+     * Get the end position for a hit.
+     *
+     * @param index hit index
+     * @return end position
+     */
+    public int end(int index) {
+        return columns.ends[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if (!(o instanceof Hit))
+            return -1;
+        Hit hit = (Hit) o;
+        int n = size;
+        Columns c = columns;
+        for (int i = 0; i < n; i++) {
+            if (c.docs[i] == hit.doc() && c.starts[i] == hit.start() && c.ends[i] == hit.end())
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Return a copy of this list, sorted by comparing hit indexes.
+     *
+     * This is useful if information needed for sorting is stored by hit index (e.g.
+     * {@link Contexts}), and doesn't create any Hit objects. The sort is stable.
+     *
+     * @param comparator how to compare two hits, given their indexes in this list
+     * @return sorted copy
+     */
+    public HitsArrays sortedByIndex(IntComparator comparator) {
+        return sortedByIndex(comparator, ParallelSort.SEQUENTIAL);
+    }
+
+    /**
+     * Return a copy of this list, sorted by comparing hit indexes.
+     *
+     * This is useful if information needed for sorting is stored by hit index (e.g.
+     * {@link Contexts}), and doesn't create any Hit objects. The sort is stable.
+     *
+     * @param comparator how to compare two hits, given their indexes in this list
+     *            (must be thread-safe if the sort uses multiple threads)
+     * @param sort how to sort (e.g. using multiple threads)
+     * @return sorted copy
+     */
+    public HitsArrays sortedByIndex(IntComparator comparator, ParallelSort sort) {
+        int n = size;
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        sort.sort(order, comparator);
+        HitsArrays result = new HitsArrays(n);
+        Columns c = columns;
+        for (int i: order) {
+            result.add(c.docs[i], c.starts[i], c.ends[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Trim the arrays to the number of hits stored.
+     */
+    public void trimToSize() {
+        int n = size;
+        Columns c = columns;
+        if (n < c.docs.length)
+            columns = c.copyOf(n);
+    }
+
+}
@@ -0,0 +1,318 @@
+package nl.inl.blacklab.search.results;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.spans.SpanWeight.Postings;
+import org.apache.lucene.search.spans.Spans;
+import org.apache.lucene.util.Bits;
+
+import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+import nl.inl.blacklab.exceptions.InterruptedSearch;
+import nl.inl.blacklab.exceptions.WildcardTermTooBroad;
+import nl.inl.blacklab.requestlogging.LogLevel;
+import nl.inl.blacklab.search.lucene.BLSpanQuery;
+import nl.inl.blacklab.search.lucene.BLSpanWeight;
+import nl.inl.blacklab.search.lucene.BLSpans;
+import nl.inl.blacklab.search.lucene.HitQueryContext;
+import nl.inl.util.ThreadPauser;
+
+/**
+ * Counts the hits and documents matching a BLSpanQuery, without storing the
+ * hits.
+ *
+ * Use this if you only need the totals; it takes almost no memory, no matter
+ * how many hits there are. Segments are counted in parallel using the search
+ * executor, and the counts so far can be queried while counting continues, like
+ * with {@link Hits}.
+ *
+ * Because segments are counted in parallel, the number of hits and docs
+ * processed (the ones that would have been stored by a regular search, see
+ * {@link SearchSettings#maxHitsToProcess()}) is determined by the order in
+ * which hits were counted, not the order of the documents.
+ */
+public class HitsCountFromQuery implements SearchResult {
+
+    private QueryInfo queryInfo;
+
+    /** Maximum number of hits to process (-1 for no limit) */
+    private int maxHitsToProcess;
+
+    /** Maximum number of hits to count (-1 for no limit) */
+    private int maxHitsToCount;
+
+    /** Hits counted so far (may exceed maxHitsToCount; see hitsCountedSoFar()) */
+    private AtomicInteger hitsCounted = new AtomicInteger();
+
+    /** Documents counted so far */
+    private AtomicInteger docsCounted = new AtomicInteger();
+
+    /** Documents containing one of the first maxHitsToProcess hits counted */
+    private AtomicInteger docsProcessed = new AtomicInteger();
+
+    /** Set when we should stop counting (maximum reached or cancelled) */
+    private volatile boolean stopCounting = false;
+
+    /** Set if we were cancelled */
+    private volatile boolean cancelled = false;
+
+    /** Counting tasks, one per group of segments */
+    private List<FutureTask<Void>> tasks = new ArrayList<>();
+
+    /** Used to pause the counting tasks */
+    private ThreadPauser threadPauser = ThreadPauser.create();
+
+    private ResultsStats hitsStats = new Stats(true);
+
+    private ResultsStats docsStats = new Stats(false);
+
+    /**
+     * Count hits for a query.
+     *
+     * Counting starts immediately in the background.
+     *
+     * @param queryInfo query info
+     * @param sourceQuery the query to count the hits for
+     * @param searchSettings search settings
+     * @throws WildcardTermTooBroad if the query is overly broad (expands to too many terms)
+     */
+    public HitsCountFromQuery(QueryInfo queryInfo, BLSpanQuery sourceQuery, SearchSettings searchSettings) throws WildcardTermTooBroad {
+        this.queryInfo = queryInfo;
+        maxHitsToProcess = searchSettings.maxHitsToProcess();
+        maxHitsToCount = searchSettings.maxHitsToCount();
+        try {
+            BLSpanWeight weight = HitsFromQueryParallel.createWeight(queryInfo, sourceQuery, searchSettings);
+            List<BLSpans> spansPerSegment = new ArrayList<>();
+            List<Bits> liveDocsPerSegment = new ArrayList<>();
+            HitQueryContext hitQueryContext = new HitQueryContext();
+            for (LeafReaderContext context: queryInfo.index().reader().leaves()) {
+                BLSpans spans = weight.getSpans(context, Postings.OFFSETS);
+                if (spans != null) {
+                    // Captured groups and constraints need a hit query context, even though
+                    // we don't store them (see SpansReader)
+                    spans.setHitQueryContext(hitQueryContext.copyWith(spans));
+                    spansPerSegment.add(spans);
+                    liveDocsPerSegment.add(context.reader().getLiveDocs());
+                }
+            }
+            int maxThreads = Math.max(1, queryInfo.index().blackLab().maxThreadsPerSearch());
+            int numberOfTasks = Math.min(maxThreads, spansPerSegment.size());
+            for (int i = 0; i < numberOfTasks; i++) {
+                // Each task counts every numberOfTasks'th segment, to balance the load a bit
+                int firstSegment = i;
+                tasks.add(new FutureTask<>(() -> {
+                    for (int j = firstSegment; j < spansPerSegment.size() && !stopCounting; j += numberOfTasks) {
+                        countSegment(spansPerSegment.get(j), liveDocsPerSegment.get(j));
+                    }
+                    return null;
+                }));
+            }
+            ExecutorService executorService = queryInfo.index().blackLab().searchExecutorService();
+            for (FutureTask<Void> task: tasks) {
+                executorService.execute(task);
+            }
+            queryInfo.log(LogLevel.BASIC, "counting hits using " + tasks.size() + " tasks");
+        } catch (IOException e) {
+            throw BlackLabRuntimeException.wrap(e);
+        }
+    }
+
+    private void countSegment(BLSpans spans, Bits liveDocs) throws IOException, InterruptedException {
+        while (spans.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
+            if (liveDocs != null && !liveDocs.get(spans.docID()))
+                continue;
+            threadPauser.waitIfPaused();
+            if (cancelled || Thread.currentThread().isInterrupted())
+                throw new InterruptedException();
+            if (stopCounting)
+                return;
+
+            int hitsInDoc = 0;
+            while (spans.nextStartPosition() != Spans.NO_MORE_POSITIONS) {
+                hitsInDoc++;
+            }
+            if (hitsInDoc == 0)
+                continue;
+            int before = hitsCounted.getAndAdd(hitsInDoc);
+            if (maxHitsToCount >= 0 && before >= maxHitsToCount) {
+                // Another thread reached the maximum
+                stopCounting = true;
+                return;
+            }
+            docsCounted.incrementAndGet();
+            if (maxHitsToProcess < 0 || before < maxHitsToProcess)
+                docsProcessed.incrementAndGet();
+            if (maxHitsToCount >= 0 && before + hitsInDoc >= maxHitsToCount) {
+                stopCounting = true;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Wait until counting is done, or until enough hits or docs have been counted.
+     *
+     * @param hits count hits (true) or docs (false)
+     * @param lowerBound how many we need, or -1 to wait until done
+     */
+    private void waitFor(boolean hits, int lowerBound) {
+        try {
+            for (FutureTask<Void> task: tasks) {
+                if (lowerBound >= 0 && (hits ? hitsProcessedSoFar() : docsProcessed.get()) >= lowerBound)
+                    return;
+                task.run(); // does nothing if already started by the executor
+                task.get();
+            }
+        } catch (InterruptedException e) {
+            cancel();
+            throw new InterruptedSearch(e);
+        } catch (CancellationException e) {
+            throw new InterruptedSearch("Count was cancelled");
+        } catch (ExecutionException e) {
+            cancel();
+            if (e.getCause() instanceof InterruptedException)
+                throw new InterruptedSearch((InterruptedException) e.getCause());
+            throw BlackLabRuntimeException.wrap(e.getCause());
+        }
+    }
+
+    /**
+     * Was counting cancelled?
+     *
+     * @return true if cancel() was called (the counts are incomplete)
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Stop counting.
+     */
+    public void cancel() {
+        cancelled = stopCounting = true;
+        for (FutureTask<Void> task: tasks) {
+            task.cancel(true);
+        }
+    }
+
+    private boolean done() {
+        for (FutureTask<Void> task: tasks) {
+            if (!task.isDone())
+                return false;
+        }
+        return true;
+    }
+
+    private int hitsCountedSoFar() {
+        int n = hitsCounted.get();
+        return maxHitsToCount >= 0 ? Math.min(n, maxHitsToCount) : n;
+    }
+
+    private int hitsProcessedSoFar() {
+        int n = hitsCountedSoFar();
+        return maxHitsToProcess >= 0 ? Math.min(n, maxHitsToProcess) : n;
+    }
+
+    /**
+     * Get the current maximum stats.
+     *
+     * Like {@link Hits}, we consider a maximum exceeded when it has been reached.
+     *
+     * @return maximum stats
+     */
+    public MaxStats maxStats() {
+        int n = hitsCounted.get();
+        boolean processedExceeded = maxHitsToProcess >= 0 && n >= maxHitsToProcess;
+        boolean countedExceeded = maxHitsToCount >= 0 && n >= maxHitsToCount;
+        return new MaxStats(processedExceeded, countedExceeded);
+    }
+
+    public ResultsStats hitsStats() {
+        return hitsStats;
+    }
+
+    public ResultsStats docsStats() {
+        return docsStats;
+    }
+
+    public ThreadPauser threadPauser() {
+        return threadPauser;
+    }
+
+    public QueryInfo queryInfo() {
+        return queryInfo;
+    }
+
+    @Override
+    public int numberOfResultObjects() {
+        return 1;
+    }
+
+    @Override
+    public String toString() {
+        return "HitsCountFromQuery(hitsCounted=" + hitsCountedSoFar() + ", docsCounted=" + docsCounted.get() + ", done=" + done() + ")";
+    }
+
+    /** Hits or docs stats */
+    private class Stats extends ResultsStats {
+
+        private boolean hits;
+
+        Stats(boolean hits) {
+            this.hits = hits;
+        }
+
+        @Override
+        public boolean processedAtLeast(int lowerBound) {
+            waitFor(hits, lowerBound);
+            return processedSoFar() >= lowerBound;
+        }
+
+        @Override
+        public int processedTotal() {
+            waitFor(hits, -1);
+            return processedSoFar();
+        }
+
+        @Override
+        public int processedSoFar() {
+            return hits ? hitsProcessedSoFar() : docsProcessed.get();
+        }
+
+        @Override
+        public int countedSoFar() {
+            return hits ? hitsCountedSoFar() : docsCounted.get();
+        }
+
+        @Override
+        public int countedTotal() {
+            waitFor(hits, -1);
+            return countedSoFar();
+        }
+
+        @Override
+        public boolean done() {
+            return HitsCountFromQuery.this.done();
+        }
+
+        @Override
+        public MaxStats maxStats() {
+            return HitsCountFromQuery.this.maxStats();
+        }
+
+        @Override
+        public boolean wasInterrupted() {
+            return cancelled;
+        }
+
+    }
+
+}
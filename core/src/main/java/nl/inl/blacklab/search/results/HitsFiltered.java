@@ -1,8 +1,6 @@
 package nl.inl.blacklab.search.results;
 
 import java.util.List;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 import nl.inl.blacklab.exceptions.InterruptedSearch;
 import nl.inl.blacklab.forwardindex.FiidLookup;
@@ -15,7 +13,7 @@ import nl.inl.blacklab.search.indexmetadata.Annotation;
  */
 public class HitsFiltered extends Hits {
 
-    private Lock ensureHitsReadLock = new ReentrantLock();
+    private ResultsReadLock ensureHitsReadLock = new ResultsReadLock();
     
     /**
      * Document the previous hit was in, so we can count separate documents.
@@ -76,16 +74,11 @@ public class HitsFiltered extends Hits {
             if (number >= 0 && number - results.size() < FETCH_HITS_MIN)
                 number = results.size() + FETCH_HITS_MIN;
     
-            while (!ensureHitsReadLock.tryLock()) {
-                /*
-                 * Another thread is already counting, we don't want to straight up block until it's done
-                 * as it might be counting/retrieving all results, while we might only want trying to retrieve a small fraction
-                 * So instead poll our own state, then if we're still missing results after that just count them ourselves
-                 */
-                Thread.sleep(50);
-                if (doneFiltering || number >= 0 && results.size() >= number)
-                    return;
-            }
+            // If another thread is already reading, wait until it has read enough for us
+            // (or until it stops, after which we'll continue reading ourselves)
+            final int target = number;
+            if (!ensureHitsReadLock.lockOrWait(target, () -> doneFiltering || target >= 0 && results.size() >= target))
+                return;
             try {
                 boolean readAllHits = number < 0;
                 while (!doneFiltering && (readAllHits || results.size() < number)) {
@@ -96,9 +89,10 @@ public class HitsFiltered extends Hits {
                     indexInSource++;
                     if (source.hitsProcessedAtLeast(indexInSource + 1)) {
                         Hit hit = source.get(indexInSource);
-                        if (filterProperty.get(hit).equals(filterValue)) {
+                        if (filterProperty.get(indexInSource).equals(filterValue)) {
                             // Yes, keep this hit
                             results.add(hit);
+                            ensureHitsReadLock.produced(results.size());
                             hitsCounted++;
                             if (hit.doc() != previousHitDoc) {
                                 docsCounted++;
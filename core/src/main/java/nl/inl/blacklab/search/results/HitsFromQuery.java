@@ -6,8 +6,6 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.LeafReaderContext;
@@ -28,7 +26,7 @@ import nl.inl.blacklab.search.Span;
 import nl.inl.blacklab.search.lucene.BLSpanQuery;
 import nl.inl.blacklab.search.lucene.BLSpans;
 import nl.inl.blacklab.search.lucene.HitQueryContext;
-import nl.inl.blacklab.search.lucene.optimize.ClauseCombinerNfa;
+import nl.inl.blacklab.search.lucene.optimize.NfaCostModel;
 
 /**
  * A Hits object that is filled from a BLSpanQuery.
@@ -77,7 +75,7 @@ public class HitsFromQuery extends Hits {
      */
     private boolean sourceSpansFullyRead = true;
 
-    private Lock ensureHitsReadLock = new ReentrantLock();
+    private ResultsReadLock ensureHitsReadLock = new ResultsReadLock();
     
     /** Context of our query; mostly used to keep track of captured groups. */
     private HitQueryContext hitQueryContext;
@@ -107,26 +105,23 @@ public class HitsFromQuery extends Hits {
             BlackLabIndex index = queryInfo.index();
             IndexReader reader = index.reader();
             
-            // Override FI match threshold? (debug use only!)
-            long oldFiMatchValue = ClauseCombinerNfa.getNfaThreshold();
+            // Override forward index matching cost model for this query?
+            QueryInfo optimizeQueryInfo = queryInfo;
             if (searchSettings.fiMatchFactor() != -1) {
-                queryInfo.log(LogLevel.OPT, "setting NFA threshold for this query to " + searchSettings.fiMatchFactor());
-                ClauseCombinerNfa.setNfaThreshold(searchSettings.fiMatchFactor());
+                NfaCostModel nfaCostModel = searchSettings.nfaCostModel(NfaCostModel.forIndex(queryInfo.index()));
+                queryInfo.log(LogLevel.OPT, "using NFA cost model for this query: " + nfaCostModel);
+                optimizeQueryInfo = queryInfo.withNfaCostModel(nfaCostModel);
             }
             
-            sourceQuery.setQueryInfo(queryInfo);
+            sourceQuery.setQueryInfo(optimizeQueryInfo);
             queryInfo.log(LogLevel.EXPLAIN, "Query before optimize()/rewrite(): " + sourceQuery);
             
             BLSpanQuery optimize = sourceQuery.optimize(reader);
             queryInfo.log(LogLevel.EXPLAIN, "Query after optimize(): " + optimize);
+            optimize.setQueryInfo(optimizeQueryInfo); // (optimize() may have created new query objects)
 
             BLSpanQuery spanQuery = optimize.rewrite(reader);
             queryInfo.log(LogLevel.EXPLAIN, "Query after rewrite(): " + spanQuery);
-            
-            // Restore previous FI match threshold
-            if (searchSettings.fiMatchFactor() != -1) {
-                ClauseCombinerNfa.setNfaThreshold(oldFiMatchValue);
-            }
 
             //System.err.println(spanQuery);
             termContexts = new HashMap<>();
@@ -178,16 +173,11 @@ public class HitsFromQuery extends Hits {
             if (number >= 0 && number - results.size() < FETCH_HITS_MIN)
                 number = results.size() + FETCH_HITS_MIN;
     
-            while (!ensureHitsReadLock.tryLock()) {
-                /*
-                 * Another thread is already counting, we don't want to straight up block until it's done
-                 * as it might be counting/retrieving all results, while we might only want trying to retrieve a small fraction
-                 * So instead poll our own state, then if we're still missing results after that just count them ourselves
-                 */
-                Thread.sleep(50);
-                if (sourceSpansFullyRead || (number >= 0 && results.size() >= number))
-                    return;
-            }
+            // If another thread is already reading, wait until it has read enough for us
+            // (or until it stops, after which we'll continue reading ourselves)
+            final int target = number;
+            if (!ensureHitsReadLock.lockOrWait(target, () -> sourceSpansFullyRead || (target >= 0 && results.size() >= target)))
+                return;
             try {
                 boolean readAllHits = number < 0;
                 int maxHitsToCount = searchSettings.maxHitsToCount();
@@ -278,13 +268,13 @@ public class HitsFromQuery extends Hits {
                         previousHitDoc = hitDoc;
                     }
                     if (!maxHitsProcessed) {
-                        Hit hit = Hit.create(currentSourceSpans.docID() + currentDocBase, currentSourceSpans.startPosition(), currentSourceSpans.endPosition());
                         if (capturedGroups != null) {
                             Span[] groups = new Span[hitQueryContext.numberOfCapturedGroups()];
                             hitQueryContext.getCapturedGroups(groups);
-                            capturedGroups.put(hit, groups);
+                            capturedGroups.put(Hit.create(hitDoc, currentSourceSpans.startPosition(), currentSourceSpans.endPosition()), groups);
                         }
-                        results.add(hit);
+                        hitsArrays().add(hitDoc, currentSourceSpans.startPosition(), currentSourceSpans.endPosition());
+                        ensureHitsReadLock.produced(results.size());
                         if (maxHitsToProcess >= 0 && results.size() >= maxHitsToProcess) {
                             maxStats.setHitsProcessedExceededMaximum();
                         }
@@ -10,8 +10,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.LeafReaderContext;
@@ -27,9 +26,10 @@ import nl.inl.blacklab.requestlogging.LogLevel;
 import nl.inl.blacklab.search.BlackLabIndex;
 import nl.inl.blacklab.search.Span;
 import nl.inl.blacklab.search.lucene.BLSpanQuery;
+import nl.inl.blacklab.search.lucene.BLSpanWeight;
 import nl.inl.blacklab.search.lucene.BLSpans;
 import nl.inl.blacklab.search.lucene.HitQueryContext;
-import nl.inl.blacklab.search.lucene.optimize.ClauseCombinerNfa;
+import nl.inl.blacklab.search.lucene.optimize.NfaCostModel;
 
 /**
  * A Hits object that is filled from a BLSpanQuery.
@@ -38,6 +38,15 @@ public class HitsFromQueryParallel extends Hits {
 
     private static final boolean DO_PARALLEL = true;
 
+    /** Don't divide segments into ranges smaller than this number of documents */
+    private static final int MIN_DOCS_PER_RANGE = 1000;
+
+    /**
+     * How many ranges of documents to create per thread (more ranges means better load
+     * balancing, but more overhead)
+     */
+    private static final int RANGES_PER_THREAD = 4;
+
     /** Settings such as max. hits to process/count. */
     private SearchSettings searchSettings;
     
@@ -77,7 +86,7 @@ public class HitsFromQueryParallel extends Hits {
      */
     private boolean allSourceSpansFullyRead = true;
 
-    private Lock ensureHitsReadLock = new ReentrantLock();
+    private ResultsReadLock ensureHitsReadLock = new ResultsReadLock();
     
     /** Context of our query; mostly used to keep track of captured groups. */
     private HitQueryContext hitQueryContext;
@@ -101,7 +110,23 @@ public class HitsFromQueryParallel extends Hits {
      * @throws WildcardTermTooBroad if the query is overly broad (expands to too many terms)
      */
     protected HitsFromQueryParallel(QueryInfo queryInfo, BLSpanQuery sourceQuery, SearchSettings searchSettings) throws WildcardTermTooBroad {
+        this(queryInfo, sourceQuery, searchSettings, defaultDocsPerRange(queryInfo.index()));
+    }
+
+    /**
+     * Construct a Hits object from a SpanQuery.
+     *
+     * @param queryInfo query info
+     * @param sourceQuery the query to execute to get the hits
+     * @param searchSettings search settings
+     * @param docsPerRange divide segments into ranges of this many documents, so
+     *            the work can be divided between threads
+     * @throws WildcardTermTooBroad if the query is overly broad (expands to too many terms)
+     */
+    protected HitsFromQueryParallel(QueryInfo queryInfo, BLSpanQuery sourceQuery, SearchSettings searchSettings, int docsPerRange) throws WildcardTermTooBroad {
         super(queryInfo);
+        if (docsPerRange <= 0)
+            throw new IllegalArgumentException("docsPerRange must be positive");
         this.searchSettings = searchSettings;
         this.maxStats = new MaxStats();
         hitsCounted = 0;
@@ -110,32 +135,9 @@ public class HitsFromQueryParallel extends Hits {
             BlackLabIndex index = queryInfo.index();
             IndexReader reader = index.reader();
             
-            // Override FI match threshold? (debug use only!)
-            long oldFiMatchValue = ClauseCombinerNfa.getNfaThreshold();
-            if (searchSettings.fiMatchFactor() != -1) {
-                queryInfo.log(LogLevel.OPT, "setting NFA threshold for this query to " + searchSettings.fiMatchFactor());
-                ClauseCombinerNfa.setNfaThreshold(searchSettings.fiMatchFactor());
-            }
-            
-            sourceQuery.setQueryInfo(queryInfo);
-            queryInfo.log(LogLevel.EXPLAIN, "Query before optimize()/rewrite(): " + sourceQuery);
-            
-            BLSpanQuery optimize = sourceQuery.optimize(reader);
-            queryInfo.log(LogLevel.EXPLAIN, "Query after optimize(): " + optimize);
-
-            BLSpanQuery spanQuery = optimize.rewrite(reader);
-            queryInfo.log(LogLevel.EXPLAIN, "Query after rewrite(): " + spanQuery);
-            
-            // Restore previous FI match threshold
-            if (searchSettings.fiMatchFactor() != -1) {
-                ClauseCombinerNfa.setNfaThreshold(oldFiMatchValue);
-            }
-
-            //System.err.println(spanQuery);
+            weight = createWeight(queryInfo, sourceQuery, searchSettings);
             termContexts = new HashMap<>();
             Set<Term> terms = new HashSet<>();
-            spanQuery = BLSpanQuery.ensureSortedUnique(spanQuery);
-            weight = spanQuery.createWeight(index.searcher(), false);
             weight.extractTerms(terms);
             for (Term term : terms) {
                 try {
@@ -146,17 +148,25 @@ public class HitsFromQueryParallel extends Hits {
                 termContexts.put(term, TermContext.build(reader.getContext(), term));
             }
 
+            // Divide large segments into ranges of documents, so the work can be divided
+            // evenly between threads. (The SpansReaders are in document order, so we can
+            // still merge their hits in order)
             boolean loggedSpans = false;
             atomicReaderContexts = reader.leaves();
             spansReaders = new ArrayList<>(atomicReaderContexts.size());
             for (LeafReaderContext context: atomicReaderContexts) {
-                BLSpans spans = (BLSpans) weight.getSpans(context, Postings.OFFSETS);
-                if (!loggedSpans) {
-                    queryInfo().log(LogLevel.EXPLAIN, "got Spans: " + spans);
-                    loggedSpans = true;
+                int maxDoc = context.reader().maxDoc();
+                for (int startDoc = 0; startDoc < maxDoc; startDoc += docsPerRange) {
+                    BLSpans spans = (BLSpans) weight.getSpans(context, Postings.OFFSETS);
+                    if (!loggedSpans) {
+                        queryInfo().log(LogLevel.EXPLAIN, "got Spans: " + spans);
+                        loggedSpans = true;
+                    }
+                    if (spans == null)
+                        break; // no hits in this segment
+                    int endDoc = maxDoc - startDoc <= docsPerRange ? maxDoc : startDoc + docsPerRange;
+                    spansReaders.add(new SpansReader(spans, context, hitQueryContext, startDoc, endDoc));
                 }
-                if (spans != null)
-                    spansReaders.add(new SpansReader(spans, context, hitQueryContext));
             }
             currentSpansReader = null;
             itSpansReader = spansReaders.iterator();
@@ -172,6 +182,54 @@ public class HitsFromQueryParallel extends Hits {
         allSourceSpansFullyRead = false;
     }
     
+    /**
+     * Determine how many documents to put in each range by default.
+     *
+     * Large enough to keep the overhead low, small enough to divide the index
+     * into several ranges per thread, for load balancing.
+     *
+     * @param index index to search
+     * @return number of documents per range
+     */
+    static int defaultDocsPerRange(BlackLabIndex index) {
+        int maxThreads = Math.max(1, index.blackLab().maxThreadsPerSearch());
+        return Math.max(MIN_DOCS_PER_RANGE, index.reader().maxDoc() / (maxThreads * RANGES_PER_THREAD));
+    }
+
+    /**
+     * Optimize and rewrite a query, and create the weight to execute it with.
+     *
+     * @param queryInfo query info
+     * @param sourceQuery the query to execute
+     * @param searchSettings search settings
+     * @return the weight
+     * @throws IOException on error
+     */
+    static BLSpanWeight createWeight(QueryInfo queryInfo, BLSpanQuery sourceQuery, SearchSettings searchSettings) throws IOException {
+        IndexReader reader = queryInfo.index().reader();
+
+        // Override forward index matching cost model for this query?
+        QueryInfo optimizeQueryInfo = queryInfo;
+        if (searchSettings.fiMatchFactor() != -1) {
+            NfaCostModel nfaCostModel = searchSettings.nfaCostModel(NfaCostModel.forIndex(queryInfo.index()));
+            queryInfo.log(LogLevel.OPT, "using NFA cost model for this query: " + nfaCostModel);
+            optimizeQueryInfo = queryInfo.withNfaCostModel(nfaCostModel);
+        }
+
+        sourceQuery.setQueryInfo(optimizeQueryInfo);
+        queryInfo.log(LogLevel.EXPLAIN, "Query before optimize()/rewrite(): " + sourceQuery);
+
+        BLSpanQuery optimize = sourceQuery.optimize(reader);
+        queryInfo.log(LogLevel.EXPLAIN, "Query after optimize(): " + optimize);
+        optimize.setQueryInfo(optimizeQueryInfo); // (optimize() may have created new query objects)
+
+        BLSpanQuery spanQuery = optimize.rewrite(reader);
+        queryInfo.log(LogLevel.EXPLAIN, "Query after rewrite(): " + spanQuery);
+
+        spanQuery = BLSpanQuery.ensureSortedUnique(spanQuery);
+        return spanQuery.createWeight(queryInfo.index().searcher(), false);
+    }
+
     @Override
     public String toString() {
         return "Hits#" + hitsObjId + " (fullyRead=" + allSourceSpansFullyRead + ", hitsSoFar=" + results.size() + ")";
@@ -204,16 +262,11 @@ public class HitsFromQueryParallel extends Hits {
             if (number >= 0 && number - results.size() < FETCH_HITS_MIN)
                 number = results.size() + FETCH_HITS_MIN;
     
-            while (!ensureHitsReadLock.tryLock()) {
-                /*
-                 * Another thread is already counting, we don't want to straight up block until it's done
-                 * as it might be counting/retrieving all results, while we might only want trying to retrieve a small fraction
-                 * So instead poll our own state, then if we're still missing results after that just count them ourselves
-                 */
-                Thread.sleep(50);
-                if (allSourceSpansFullyRead || (number >= 0 && results.size() >= number))
-                    return;
-            }
+            // If another thread is already reading, wait until it has read enough for us
+            // (or until it stops, after which we'll continue reading ourselves)
+            final int target = number;
+            if (!ensureHitsReadLock.lockOrWait(target, () -> allSourceSpansFullyRead || (target >= 0 && results.size() >= target)))
+                return;
             try {
                 boolean readAllHits = number < 0;
                 int maxHitsToCount = searchSettings.maxHitsToCount();
@@ -231,7 +284,7 @@ public class HitsFromQueryParallel extends Hits {
     
                     // Get the next hit from the spans, moving to the next
                     // segment when necessary.
-                    Hit hit = null;
+                    HitsArrays spansResults = null;
                     Span[] capturedGroupsForHit = null;
                     while (true) {
                         
@@ -252,15 +305,14 @@ public class HitsFromQueryParallel extends Hits {
                         // Advance to next hit
                         hitIndexInCurrentSpansReader++;
                         currentSpansReader.ensureResultsRead(hitIndexInCurrentSpansReader + 1);
-                        List<Hit> spansResults = currentSpansReader.resultsList();
+                        spansResults = currentSpansReader.resultsList();
                         if (spansResults.size() <= hitIndexInCurrentSpansReader) {
                             // Done with this one.
                             currentSpansReader = null;
                         } else {
                             // We're at the next hit
-                            hit = spansResults.get(hitIndexInCurrentSpansReader);
                             if (currentSpansReader.capturedGroups() != null) {
-                                capturedGroupsForHit = currentSpansReader.capturedGroups().get(hit);
+                                capturedGroupsForHit = currentSpansReader.capturedGroups().get(spansResults.get(hitIndexInCurrentSpansReader));
                             }
                             break;
                         }
@@ -273,17 +325,19 @@ public class HitsFromQueryParallel extends Hits {
                     // want)
                     hitsCounted++;
                     boolean maxHitsProcessed = maxStats.hitsProcessedExceededMaximum();
-                    if (hit.doc() != previousHitDoc) {
+                    int hitDoc = spansResults.doc(hitIndexInCurrentSpansReader);
+                    if (hitDoc != previousHitDoc) {
                         docsCounted++;
                         if (!maxHitsProcessed)
                             docsRetrieved++;
-                        previousHitDoc = hit.doc();
+                        previousHitDoc = hitDoc;
                     }
                     if (!maxHitsProcessed) {
                         if (capturedGroups != null && capturedGroupsForHit != null) {
-                            capturedGroups.put(hit, capturedGroupsForHit);
+                            capturedGroups.put(spansResults.get(hitIndexInCurrentSpansReader), capturedGroupsForHit);
                         }
-                        results.add(hit);
+                        hitsArrays().add(hitDoc, spansResults.start(hitIndexInCurrentSpansReader), spansResults.end(hitIndexInCurrentSpansReader));
+                        ensureHitsReadLock.produced(results.size());
                         if (maxHitsToProcess >= 0 && results.size() >= maxHitsToProcess) {
                             maxStats.setHitsProcessedExceededMaximum();
                         }
@@ -309,18 +363,28 @@ public class HitsFromQueryParallel extends Hits {
         }
     }
     
-    /** Read all hits in a number of SpansReaders. */
+    /**
+     * Read all hits in SpansReaders.
+     *
+     * Each task takes the next unread SpansReader when it's done with the previous one,
+     * so the work is divided evenly, and the first SpansReaders (which are needed first)
+     * are read first.
+     */
     private static final class ReadSpansReaders implements Runnable {
         private List<SpansReader> readers;
 
-        public ReadSpansReaders(List<SpansReader> readers) {
+        private AtomicInteger nextReader;
+
+        public ReadSpansReaders(List<SpansReader> readers, AtomicInteger nextReader) {
             this.readers = readers;
+            this.nextReader = nextReader;
         }
         
         @Override
         public void run() {
-            for (SpansReader reader: readers) {
-                reader.ensureResultsRead(-1);
+            int i;
+            while ((i = nextReader.getAndIncrement()) < readers.size()) {
+                readers.get(i).ensureResultsRead(-1);
             }
         }
     }
@@ -330,22 +394,14 @@ public class HitsFromQueryParallel extends Hits {
             int maxTasksPerSearch = queryInfo().index().blackLab().maxThreadsPerSearch();
             int tasksToStart = Math.min(maxTasksPerSearch, spansReaders.size());
             if (tasksToStart == 0)
-                return; // No spansReaders or maxTasksPerSearch == 0 (!?), avoid divide by zero
-            int spansReadersPerTask = (spansReaders.size() + tasksToStart - 1) / tasksToStart;
-            int currentSpansReader = 0;
+                return; // No spansReaders or maxTasksPerSearch == 0 (!?)
+            AtomicInteger nextReader = new AtomicInteger();
             ExecutorService executorService = queryInfo().index().blackLab().searchExecutorService();
             for (int i = 0; i < tasksToStart; i++) {
-                List<SpansReader> readers = new ArrayList<>();
-                for (int j = 0; j < spansReadersPerTask && currentSpansReader < spansReaders.size(); j++) {
-                    readers.add(spansReaders.get(currentSpansReader));
-                    currentSpansReader++;
-                }
-                if (!readers.isEmpty()) {
-                    ReadSpansReaders task = new ReadSpansReaders(readers);
-                    futures.add(executorService.submit(task));
-                }
+                ReadSpansReaders task = new ReadSpansReaders(spansReaders, nextReader);
+                futures.add(executorService.submit(task));
             }
-            System.err.println("PARALLEL: Started " + tasksToStart + " tasks with " + spansReadersPerTask + " spansReaders each (total " + spansReaders.size() + " readers)");
+            queryInfo().log(LogLevel.BASIC, "started " + tasksToStart + " tasks to read " + spansReaders.size() + " segments / document ranges");
         }
     }
 
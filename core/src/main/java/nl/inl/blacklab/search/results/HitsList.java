@@ -1,21 +1,12 @@
 package nl.inl.blacklab.search.results;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
- * A basic Hits object implemented with a list.
+ * A basic Hits object implemented with a (columnar) list.
  */
 public class HitsList extends Hits {
 
-    private static List<Hit> createHitList(int[] doc, int[] start, int[] end) {
-        List<Hit> hits = new ArrayList<>();
-        for (int i = 0; i < doc.length; i++) {
-            hits.add(Hit.create(doc[i], start[i], end[i]));
-        }
-        return hits;
-    }
-
     /** Our window stats, if this is a window; null otherwise. */
     private WindowStats windowStats;
     
@@ -24,21 +15,23 @@ public class HitsList extends Hits {
     /**
      * Make a wrapper Hits object for a list of Hit objects.
      *
-     * Does not copy the list, but reuses it.
+     * Does not copy the list if it is a {@link HitsArrays}, but reuses it.
      *
      * @param queryInfo query info
      * @param hits the list of hits to wrap, or null for a new list
      */
     protected HitsList(QueryInfo queryInfo, List<Hit> hits) {
         super(queryInfo);
-        this.results = hits == null ? new ArrayList<>() : hits;
-        hitsCounted = this.results.size();
+        HitsArrays hitsArrays = hits == null ? new HitsArrays() : HitsArrays.fromList(hits);
+        this.results = hitsArrays;
+        hitsCounted = hitsArrays.size();
         int prevDoc = -1;
-        for (Hit h : this.results) {
-            if (h.doc() != prevDoc) {
+        for (int i = 0; i < hitsArrays.size(); i++) {
+            int doc = hitsArrays.doc(i);
+            if (doc != prevDoc) {
                 docsRetrieved++;
                 docsCounted++;
-                prevDoc = h.doc();
+                prevDoc = doc;
             }
         }
     }
@@ -46,7 +39,7 @@ public class HitsList extends Hits {
     /**
      * Make a wrapper Hits object for a list of Hit objects.
      *
-     * Does not copy the list, but reuses it.
+     * Does not copy the list if it is a {@link HitsArrays}, but reuses it.
      *
      * @param queryInfo query info
      * @param hits the list of hits to wrap, or null for a new list
@@ -60,7 +53,7 @@ public class HitsList extends Hits {
     /**
      * Create a list of hits from three arrays.
      *
-     * Mainly useful for testing.
+     * Does not copy the arrays. Mainly useful for testing.
      *
      * @param queryInfo query info
      * @param doc document ids
@@ -68,7 +61,7 @@ public class HitsList extends Hits {
      * @param end hit ends
      */
     protected HitsList(QueryInfo queryInfo, int[] doc, int[] start, int[] end) {
-        this(queryInfo, createHitList(doc, start, end));
+        this(queryInfo, HitsArrays.fromArrays(doc, start, end));
     }
 
     /**
@@ -88,7 +81,7 @@ public class HitsList extends Hits {
     protected HitsList(QueryInfo queryInfo, List<Hit> results, WindowStats windowStats, SampleParameters sampleParameters,
             int hitsCounted, int docsRetrieved, int docsCounted, CapturedGroupsImpl capturedGroups) {
         super(queryInfo);
-        this.results = results;
+        this.results = HitsArrays.fromList(results);
         this.windowStats = windowStats;
         this.sampleParameters = sampleParameters;
         
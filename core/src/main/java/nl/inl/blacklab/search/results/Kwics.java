@@ -1,6 +1,7 @@
 package nl.inl.blacklab.search.results;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -30,11 +31,26 @@ public class Kwics {
      * @param hits
      */
     protected Kwics(Hits hits, ContextSize contextSize) {
+        this(hits, contextSize, null);
+    }
+
+    /**
+     * Construct KWICs containing only some annotations.
+     *
+     * Word and punctuation are always included, as they're needed to display
+     * the KWIC. Annotations that aren't in the hits' field or don't have a
+     * forward index are ignored.
+     *
+     * @param hits hits to get KWICs for
+     * @param contextSize how many words around the hit to retrieve
+     * @param annotations annotations to include, or null for all annotations
+     */
+    protected Kwics(Hits hits, ContextSize contextSize, Collection<Annotation> annotations) {
         if (contextSize.left() < 0)
             throw new IllegalArgumentException("contextSize cannot be negative");
     
         // Get the concordances
-        kwics = retrieveKwics(hits, contextSize, hits.field());
+        kwics = retrieveKwics(hits, contextSize, hits.field(), annotations);
     }
 
     /**
@@ -61,10 +77,11 @@ public class Kwics {
      *
      * @param contextSize how many words around the hit to retrieve
      * @param fieldName field to use for building KWICs
+     * @param annotations annotations to include besides word and punct, or null for all
      *
      * @return the KWICs
      */
-    private static Map<Hit, Kwic> retrieveKwics(Hits hits, ContextSize contextSize, AnnotatedField field) {
+    private static Map<Hit, Kwic> retrieveKwics(Hits hits, ContextSize contextSize, AnnotatedField field, Collection<Annotation> annotations) {
         // Group hits per document
         MutableIntObjectMap<List<Hit>> hitsPerDocument = IntObjectMaps.mutable.empty();
         for (Hit key: hits) {
@@ -76,10 +93,12 @@ public class Kwics {
             hitsInDoc.add(key);
         }
 
-        // All FIs except word and punct are attributes
+        // All (requested) FIs except word and punct are attributes
         Map<Annotation, AnnotationForwardIndex> attrForwardIndices = new HashMap<>();
         BlackLabIndex index = hits.index();
         for (Annotation annotation: field.annotations()) {
+            if (annotations != null && !annotations.contains(annotation))
+                continue; // not requested; don't read its forward index
             if (annotation.hasForwardIndex() && !annotation.name().equals(Kwic.DEFAULT_CONC_WORD_PROP) && !annotation.name().equals(Kwic.DEFAULT_CONC_PUNCT_PROP)) {
                 attrForwardIndices.put(annotation, index.annotationForwardIndex(annotation));
             }
@@ -0,0 +1,276 @@
+package nl.inl.blacklab.search.results;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.ints.IntComparator;
+import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+import nl.inl.blacklab.exceptions.InterruptedSearch;
+import nl.inl.blacklab.search.BlackLabEngine;
+import nl.inl.util.ThreadPauser;
+
+/**
+ * Sorts arrays using several threads from the search executor.
+ *
+ * The array is divided into parts that are sorted simultaneously, after which
+ * adjacent sorted parts are merged in pairs (also simultaneously) until a single
+ * sorted part remains. The sort is stable.
+ *
+ * The number of threads is limited by maxThreadsPerSearch. Between steps, the
+ * sort waits if the search is paused and aborts if it was interrupted. Small
+ * arrays are just sorted on the calling thread.
+ *
+ * The comparator may be called from several threads simultaneously, so it must
+ * be thread-safe.
+ */
+public class ParallelSort {
+
+    /** Only use a separate thread if it can sort at least this many elements */
+    static final int MIN_ELEMENTS_PER_TASK = 10000;
+
+    /** Sorts on the calling thread only */
+    public static final ParallelSort SEQUENTIAL = new ParallelSort(null, 1, null);
+
+    /**
+     * Get a sorter for (data derived from) a results object.
+     *
+     * Uses the search executor and thread limit of the BlackLab engine and the
+     * results object's thread pauser.
+     *
+     * @param results results we're sorting
+     * @return sorter
+     */
+    public static ParallelSort forResults(Results<?> results) {
+        BlackLabEngine engine = results.index().blackLab();
+        if (engine == null)
+            return SEQUENTIAL;
+        return new ParallelSort(engine.searchExecutorService(), engine.maxThreadsPerSearch(), results.threadPauser());
+    }
+
+    private ExecutorService executorService;
+
+    private int maxThreads;
+
+    private ThreadPauser threadPauser;
+
+    /**
+     * Construct a sorter.
+     *
+     * @param executorService executor to run sorting tasks on
+     * @param maxThreads maximum number of threads to use (including the calling thread)
+     * @param threadPauser used to check for pausing between steps (may be null)
+     */
+    public ParallelSort(ExecutorService executorService, int maxThreads, ThreadPauser threadPauser) {
+        this.executorService = executorService;
+        this.maxThreads = executorService == null ? 1 : Math.max(1, maxThreads);
+        this.threadPauser = threadPauser;
+    }
+
+    /**
+     * Sort an array of ints.
+     *
+     * @param a array to sort
+     * @param comparator how to compare the elements
+     */
+    public void sort(int[] a, IntComparator comparator) {
+        int numberOfTasks = numberOfTasks(a.length);
+        if (numberOfTasks <= 1) {
+            IntArrays.mergeSort(a, comparator);
+            return;
+        }
+
+        // Sort each part
+        int[] bounds = partBounds(a.length, numberOfTasks);
+        List<Runnable> tasks = new ArrayList<>();
+        for (int i = 0; i < numberOfTasks; i++) {
+            int from = bounds[i], to = bounds[i + 1];
+            tasks.add(() -> IntArrays.mergeSort(a, from, to, comparator));
+        }
+        run(tasks);
+
+        // Merge pairs of adjacent parts until we have a single sorted part
+        int[] src = a, dest = new int[a.length];
+        while (bounds.length > 2) {
+            int[] s = src, d = dest;
+            int[] b = bounds;
+            int numberOfParts = b.length - 1;
+            tasks.clear();
+            for (int i = 0; i < numberOfParts; i += 2) {
+                int from = b[i], mid = b[i + 1], to = i + 2 <= numberOfParts ? b[i + 2] : mid;
+                tasks.add(() -> merge(s, d, from, mid, to, comparator));
+            }
+            run(tasks);
+            bounds = mergedBounds(b);
+            src = d;
+            dest = s;
+        }
+        if (src != a)
+            System.arraycopy(src, 0, a, 0, a.length);
+    }
+
+    /**
+     * Sort an array of objects.
+     *
+     * @param a array to sort
+     * @param comparator how to compare the elements
+     * @param <T> element type
+     */
+    public <T> void sort(T[] a, Comparator<? super T> comparator) {
+        int numberOfTasks = numberOfTasks(a.length);
+        if (numberOfTasks <= 1) {
+            Arrays.sort(a, comparator);
+            return;
+        }
+
+        // Sort each part
+        int[] bounds = partBounds(a.length, numberOfTasks);
+        List<Runnable> tasks = new ArrayList<>();
+        for (int i = 0; i < numberOfTasks; i++) {
+            int from = bounds[i], to = bounds[i + 1];
+            tasks.add(() -> Arrays.sort(a, from, to, comparator));
+        }
+        run(tasks);
+
+        // Merge pairs of adjacent parts until we have a single sorted part
+        @SuppressWarnings("unchecked")
+        T[] tmp = (T[]) new Object[a.length];
+        T[] src = a, dest = tmp;
+        while (bounds.length > 2) {
+            T[] s = src, d = dest;
+            int[] b = bounds;
+            int numberOfParts = b.length - 1;
+            tasks.clear();
+            for (int i = 0; i < numberOfParts; i += 2) {
+                int from = b[i], mid = b[i + 1], to = i + 2 <= numberOfParts ? b[i + 2] : mid;
+                tasks.add(() -> merge(s, d, from, mid, to, comparator));
+            }
+            run(tasks);
+            bounds = mergedBounds(b);
+            src = d;
+            dest = s;
+        }
+        if (src != a)
+            System.arraycopy(src, 0, a, 0, a.length);
+    }
+
+    private int numberOfTasks(int n) {
+        return Math.min(maxThreads, n / MIN_ELEMENTS_PER_TASK);
+    }
+
+    /**
+     * Divide a number of elements into parts of (nearly) equal size.
+     *
+     * @param n number of elements
+     * @param numberOfParts number of parts
+     * @return start of each part, followed by n
+     */
+    private static int[] partBounds(int n, int numberOfParts) {
+        int[] bounds = new int[numberOfParts + 1];
+        for (int i = 0; i <= numberOfParts; i++) {
+            bounds[i] = (int) ((long) n * i / numberOfParts);
+        }
+        return bounds;
+    }
+
+    /**
+     * Determine the part bounds after merging pairs of adjacent parts.
+     *
+     * @param bounds current part bounds
+     * @return bounds after merging
+     */
+    private static int[] mergedBounds(int[] bounds) {
+        int numberOfParts = bounds.length - 1;
+        int[] result = new int[(numberOfParts + 1) / 2 + 1];
+        for (int i = 0; i < result.length - 1; i++) {
+            result[i] = bounds[i * 2];
+        }
+        result[result.length - 1] = bounds[numberOfParts];
+        return result;
+    }
+
+    /**
+     * Merge two adjacent sorted ranges of src into the same range of dest.
+     *
+     * If the second range is empty, the first is simply copied.
+     */
+    private static void merge(int[] src, int[] dest, int from, int mid, int to, IntComparator comparator) {
+        int i = from, j = mid, k = from;
+        while (i < mid && j < to) {
+            // Only take from the right range if strictly smaller, to keep the sort stable
+            dest[k++] = comparator.compare(src[j], src[i]) < 0 ? src[j++] : src[i++];
+        }
+        System.arraycopy(src, i, dest, k, mid - i);
+        System.arraycopy(src, j, dest, k + mid - i, to - j);
+    }
+
+    /**
+     * Merge two adjacent sorted ranges of src into the same range of dest.
+     *
+     * If the second range is empty, the first is simply copied.
+     */
+    private static <T> void merge(T[] src, T[] dest, int from, int mid, int to, Comparator<? super T> comparator) {
+        int i = from, j = mid, k = from;
+        while (i < mid && j < to) {
+            // Only take from the right range if strictly smaller, to keep the sort stable
+            dest[k++] = comparator.compare(src[j], src[i]) < 0 ? src[j++] : src[i++];
+        }
+        System.arraycopy(src, i, dest, k, mid - i);
+        System.arraycopy(src, j, dest, k + mid - i, to - j);
+    }
+
+    /**
+     * Run a number of tasks and wait for them to finish.
+     *
+     * The last task is run on the calling thread. While waiting, the calling thread
+     * also runs any tasks no executor thread has started yet, so we never wait for
+     * tasks queued behind other (possibly waiting) searches.
+     *
+     * @param tasks tasks to run
+     */
+    private void run(List<Runnable> tasks) {
+        if (threadPauser != null) {
+            try {
+                threadPauser.waitIfPaused();
+            } catch (InterruptedException e) {
+                throw new InterruptedSearch(e);
+            }
+        }
+        if (Thread.currentThread().isInterrupted())
+            throw new InterruptedSearch();
+        List<FutureTask<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < tasks.size() - 1; i++) {
+            FutureTask<Void> future = new FutureTask<>(tasks.get(i), null);
+            futures.add(future);
+            executorService.execute(future);
+        }
+        try {
+            tasks.get(tasks.size() - 1).run();
+            for (FutureTask<Void> future: futures) {
+                future.run(); // does nothing if already started elsewhere
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            cancel(futures);
+            throw new InterruptedSearch(e);
+        } catch (ExecutionException e) {
+            cancel(futures);
+            throw BlackLabRuntimeException.wrap(e.getCause());
+        } catch (RuntimeException e) {
+            cancel(futures);
+            throw e;
+        }
+    }
+
+    private static void cancel(List<FutureTask<Void>> futures) {
+        for (FutureTask<Void> future: futures) {
+            future.cancel(true);
+        }
+    }
+
+}
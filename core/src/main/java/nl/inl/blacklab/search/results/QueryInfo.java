@@ -1,9 +1,12 @@
 package nl.inl.blacklab.search.results;
 
+import java.util.Objects;
+
 import nl.inl.blacklab.requestlogging.LogLevel;
 import nl.inl.blacklab.requestlogging.SearchLogger;
 import nl.inl.blacklab.search.BlackLabIndex;
 import nl.inl.blacklab.search.indexmetadata.AnnotatedField;
+import nl.inl.blacklab.search.lucene.optimize.NfaCostModel;
 
 /**
  * Information about the original query.
@@ -40,12 +43,20 @@ public final class QueryInfo {
     /** Where we can log details about how the search is executed, or null to skip this logging (or once the search is done) */
     private SearchLogger searchLogger;
 
+    /** How eagerly to use forward index matching for this query, or null to use the index's setting */
+    private NfaCostModel nfaCostModel;
+
     private QueryInfo(BlackLabIndex index, AnnotatedField field, boolean useCache, SearchLogger searchLogger) {
+        this(index, field, useCache, searchLogger, null);
+    }
+
+    private QueryInfo(BlackLabIndex index, AnnotatedField field, boolean useCache, SearchLogger searchLogger, NfaCostModel nfaCostModel) {
         super();
         this.index = index;
         this.field = field == null ? index.mainAnnotatedField() : field;
         this.useCache = useCache;
         this.searchLogger = searchLogger;
+        this.nfaCostModel = nfaCostModel;
     }
     
     /**
@@ -59,7 +70,20 @@ public final class QueryInfo {
     public QueryInfo withIndex(BlackLabIndex newIndex) {
         if (this.index == newIndex)
             return this;
-        return new QueryInfo(newIndex, field, useCache, searchLogger);
+        return new QueryInfo(newIndex, field, useCache, searchLogger, nfaCostModel);
+    }
+
+    /**
+     * Return a copy with a different NFA cost model.
+     *
+     * @param nfaCostModel how eagerly to use forward index matching for this
+     *            query, or null to use the index's setting
+     * @return QueryInfo with the specified cost model
+     */
+    public QueryInfo withNfaCostModel(NfaCostModel nfaCostModel) {
+        if (Objects.equals(this.nfaCostModel, nfaCostModel))
+            return this;
+        return new QueryInfo(index, field, useCache, searchLogger, nfaCostModel);
     }
     
     /**
@@ -83,6 +107,11 @@ public final class QueryInfo {
         return field;
     }
 
+    /** @return how eagerly to use forward index matching for this query */
+    public NfaCostModel nfaCostModel() {
+        return nfaCostModel == null ? NfaCostModel.forIndex(index) : nfaCostModel;
+    }
+
     /** @return should we use the cache for this query, or bypass it? */
     public boolean useCache() {
         return useCache;
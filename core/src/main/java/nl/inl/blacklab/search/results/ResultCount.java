@@ -1,6 +1,7 @@
 package nl.inl.blacklab.search.results;
 
 import nl.inl.blacklab.exceptions.InterruptedSearch;
+import nl.inl.util.ThreadPauser;
 
 public class ResultCount extends ResultsStats implements SearchResult {
     
@@ -14,6 +15,12 @@ public class ResultCount extends ResultsStats implements SearchResult {
 
     private boolean wasInterrupted = false;
 
+    /** Pauses the count, if it's counted separately (see HitsCountFromQuery), or null */
+    private ThreadPauser threadPauser = null;
+
+    /** The count, if it's counted separately (see HitsCountFromQuery), or null */
+    private HitsCountFromQuery hitsCount = null;
+
     public ResultCount(Results<?> count, CountType type) {
         switch (type) {
         case RESULTS:
@@ -48,10 +55,24 @@ public class ResultCount extends ResultsStats implements SearchResult {
         update();
     }
 
+    /**
+     * Get a count from a hits count (that doesn't store hits).
+     *
+     * @param count the hits count
+     * @param type what to count: HITS (or RESULTS) or DOCS
+     */
+    public ResultCount(HitsCountFromQuery count, CountType type) {
+        this.count = type == CountType.DOCS ? count.docsStats() : count.hitsStats();
+        threadPauser = count.threadPauser();
+        hitsCount = count;
+        update();
+    }
+
     private void update() {
-        if (!count.isStatic() && count.done()) {
+        if (!count.isStatic() && count.done() && !count.wasInterrupted()) {
             // Disengage from the search object and save the totals.
             count = count.save();
+            hitsCount = null;
         }
     }
     
@@ -132,6 +153,37 @@ public class ResultCount extends ResultsStats implements SearchResult {
         }
     }
 
+    /**
+     * Stop the count, if it's counted separately.
+     *
+     * Counts that come from other results are stopped by interrupting the
+     * thread that is fetching the results.
+     */
+    public void cancel() {
+        HitsCountFromQuery theCount = hitsCount;
+        if (theCount != null)
+            theCount.cancel();
+    }
+
+    /**
+     * Was the separate count cancelled?
+     *
+     * @return true if the count was cancelled, so it will never complete
+     */
+    public boolean isCancelled() {
+        HitsCountFromQuery theCount = hitsCount;
+        return theCount != null && theCount.isCancelled();
+    }
+
+    /**
+     * Get the thread pauser for the count.
+     *
+     * @return thread pauser, or null if the count is paused through the results it came from
+     */
+    public ThreadPauser threadPauser() {
+        return threadPauser;
+    }
+
     @Override
     public int numberOfResultObjects() {
         return 1;
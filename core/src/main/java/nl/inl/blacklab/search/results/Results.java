@@ -1,6 +1,7 @@
 package nl.inl.blacklab.search.results;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -86,9 +87,10 @@ public abstract class Results<T> implements SearchResult, Iterable<T> {
 
     protected static <P extends ResultProperty<T>, T> List<T> doSort(Results<T> results, P sortProp) {
         results.ensureAllResultsRead();
-        List<T> sorted = new ArrayList<>(results.resultsList());
-        sorted.sort(sortProp);
-        return sorted;
+        @SuppressWarnings("unchecked")
+        T[] sorted = (T[]) results.resultsList().toArray();
+        ParallelSort.forResults(results).sort(sorted, sortProp);
+        return new ArrayList<>(Arrays.asList(sorted));
     }
 
     /** Unique id of this Hits instance (for debugging) */
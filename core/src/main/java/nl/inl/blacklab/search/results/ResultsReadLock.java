@@ -0,0 +1,88 @@
+package nl.inl.blacklab.search.results;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Makes sure only one thread at a time reads results, while other threads that
+ * need results wait until enough of them are available.
+ *
+ * Waiting threads are woken up as soon as the reading thread has produced the
+ * number of results they asked for, or when it stops reading (after which one
+ * of them may continue reading). The reading thread reports its progress
+ * using {@link #produced(int)}, which is cheap unless someone is waiting for
+ * that many results.
+ */
+class ResultsReadLock {
+
+    /** Held by the thread that is reading results */
+    private final ReentrantLock readLock = new ReentrantLock();
+
+    /** Guards waiting for progress */
+    private final ReentrantLock waitLock = new ReentrantLock();
+
+    /** Signalled when enough results were produced, or the reading thread stopped */
+    private final Condition progress = waitLock.newCondition();
+
+    /** Lowest number of results a waiting thread needs (MAX_VALUE if none) */
+    private volatile int lowestTarget = Integer.MAX_VALUE;
+
+    /**
+     * Become the thread that reads results, or wait until another thread has
+     * read enough results.
+     *
+     * @param target number of results we need, or negative if we need all results
+     * @param satisfied returns true if we have enough results (or all results were read)
+     * @return true if we now hold the lock and should read results ourselves (call
+     *         {@link #unlock()} when done), false if we have enough results
+     * @throws InterruptedException if we were interrupted while waiting
+     */
+    boolean lockOrWait(int target, BooleanSupplier satisfied) throws InterruptedException {
+        while (!readLock.tryLock()) {
+            waitLock.lock();
+            try {
+                if (target >= 0 && target < lowestTarget)
+                    lowestTarget = target;
+                if (readLock.isLocked() && !satisfied.getAsBoolean())
+                    progress.await();
+            } finally {
+                waitLock.unlock();
+            }
+            if (satisfied.getAsBoolean())
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Report the number of results read so far.
+     *
+     * Should be called by the reading thread after adding results.
+     *
+     * @param numberOfResults number of results available now
+     */
+    void produced(int numberOfResults) {
+        if (numberOfResults >= lowestTarget)
+            signalWaiting();
+    }
+
+    /**
+     * Stop reading results, waking up any waiting threads.
+     */
+    void unlock() {
+        readLock.unlock();
+        signalWaiting();
+    }
+
+    private void signalWaiting() {
+        waitLock.lock();
+        try {
+            lowestTarget = Integer.MAX_VALUE;
+            progress.signalAll();
+        } finally {
+            waitLock.unlock();
+        }
+    }
+
+}
@@ -1,8 +1,19 @@
 package nl.inl.blacklab.search.results;
 
+import nl.inl.blacklab.search.lucene.optimize.NfaCostModel;
+
 /** Settings for our initial search, including how many hits we want to process/count at most. */
 public final class SearchSettings {
     
+    /**
+     * Get settings.
+     *
+     * @param maxHitsToProcess how many hits to process at most
+     * @param maxHitsToCount how many hits to count at most
+     * @param fiMatchFactor NFA threshold to use instead of the index's, or -1 to
+     *            use the index's cost model as-is
+     * @return settings
+     */
     public static SearchSettings get(int maxHitsToProcess, int maxHitsToCount, long fiMatchFactor) {
         return new SearchSettings(maxHitsToProcess, maxHitsToCount, fiMatchFactor);
     }
@@ -34,7 +45,7 @@ public final class SearchSettings {
      */
     private int maxHitsToCount;
     
-    /** Override FI match NFA factor, or -1 for default */
+    /** Override the NFA threshold of the index's cost model, or -1 for no override */
     private long fiMatchFactor;
 
     /**
@@ -56,7 +67,7 @@ public final class SearchSettings {
         return get(maxHitsToProcess, n, fiMatchFactor);
     }
 
-    public SearchSettings withFiMatchFactor(int n) {
+    public SearchSettings withFiMatchFactor(long n) {
         return get(maxHitsToProcess, maxHitsToCount, n);
     }
 
@@ -70,10 +81,21 @@ public final class SearchSettings {
         return maxHitsToCount;
     }
 
+    /** @return NFA threshold to use instead of the index's, or -1 for no override */
     public long fiMatchFactor() {
         return fiMatchFactor;
     }
 
+    /**
+     * Determine the NFA cost model for a query on an index.
+     *
+     * @param indexModel the index's cost model
+     * @return the index's cost model, with our threshold if we override it
+     */
+    public NfaCostModel nfaCostModel(NfaCostModel indexModel) {
+        return fiMatchFactor == -1 ? indexModel : indexModel.withNfaThreshold(fiMatchFactor);
+    }
+
     @Override
     public String toString() {
         return "SearchSettings(" + maxHitsToProcess + ", " + maxHitsToCount + ", " + fiMatchFactor + ")";
@@ -1,13 +1,8 @@
 package nl.inl.blacklab.search.results;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.lucene.index.LeafReaderContext;
-import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.spans.Spans;
 import org.apache.lucene.util.Bits;
 
@@ -32,7 +27,16 @@ public class SpansReader {
     /** liveDocs of the segment we're currently in */
     private Bits liveDocs;
 
-    private List<Hit> results = new ArrayList<>();
+    /** First doc id (in the segment) of the range we read */
+    private int startDoc;
+
+    /** First doc id (in the segment) after the range we read */
+    private int endDoc;
+
+    /** Have we positioned our spans at the first document in our range yet? */
+    private boolean positioned = false;
+
+    private HitsArrays results = new HitsArrays();
 
     /** Our captured groups, or null if we have none. */
     private CapturedGroupsImpl capturedGroups = null;
@@ -40,7 +44,7 @@ public class SpansReader {
     /** Did we completely read our Spans object? */
     private boolean spansFullyRead = true;
 
-    private Lock ensureHitsReadLock = new ReentrantLock();
+    private ResultsReadLock ensureHitsReadLock = new ResultsReadLock();
     
     /** Context of our query; mostly used to keep track of captured groups. */
     private HitQueryContext hitQueryContext;
@@ -52,16 +56,32 @@ public class SpansReader {
     private boolean shouldCancel = false;
 
     /**
-     * Construct a Hits object from a SpanQuery.
+     * Construct a SpansReader that reads all hits in a segment.
      *
-     * @param queryInfo query info
-     * @param sourceQuery the query to execute to get the hits
-     * @param searchSettings search settings
-     * @throws WildcardTermTooBroad if the query is overly broad (expands to too many terms)
+     * @param spans spans for the segment
+     * @param leafReaderContext the segment
+     * @param hitQueryContext query context, for captured groups
      */
     protected SpansReader(BLSpans spans, LeafReaderContext leafReaderContext, HitQueryContext hitQueryContext) {
+        this(spans, leafReaderContext, hitQueryContext, 0, leafReaderContext.reader().maxDoc());
+    }
+
+    /**
+     * Construct a SpansReader that reads the hits in a range of documents in a segment.
+     *
+     * Used to divide a large segment between several threads.
+     *
+     * @param spans spans for the segment (not used by any other SpansReader)
+     * @param leafReaderContext the segment
+     * @param hitQueryContext query context, for captured groups
+     * @param startDoc first doc id (in the segment) to read hits from
+     * @param endDoc first doc id (in the segment) after the range to read hits from
+     */
+    protected SpansReader(BLSpans spans, LeafReaderContext leafReaderContext, HitQueryContext hitQueryContext, int startDoc, int endDoc) {
         this.liveDocs = leafReaderContext.reader().getLiveDocs();
         this.docBase = leafReaderContext.docBase;
+        this.startDoc = startDoc;
+        this.endDoc = endDoc;
         this.spans = spans;
         
         // Update the hit query context with our new spans,
@@ -71,17 +91,25 @@ public class SpansReader {
         if (hitQueryContext.numberOfCapturedGroups() > 0) {
             capturedGroups = new CapturedGroupsImpl(hitQueryContext.getCapturedGroupNames());
         }
+        spansFullyRead = false;
+    }
 
+    /**
+     * Position our spans at the first live document in our range.
+     *
+     * Not done in the constructor, because finding the first document may take a
+     * while, and should be done by whoever reads the hits (e.g. a parallel task).
+     *
+     * @throws IOException on error
+     */
+    private void positionAtFirstDoc() throws IOException {
+        positioned = true;
         boolean alive = false;
-        spansFullyRead = false;
+        boolean first = true;
         do {
-            int doc;
-            try {
-                doc = spans.nextDoc();
-            } catch (IOException e) {
-                throw BlackLabRuntimeException.wrap(e);
-            }
-            if (doc == DocIdSetIterator.NO_MORE_DOCS)
+            int doc = first && startDoc > 0 ? spans.advance(startDoc) : spans.nextDoc();
+            first = false;
+            if (doc >= endDoc) // (also true for NO_MORE_DOCS)
                 spansFullyRead = true;
             else
                 alive = liveDocs == null ? true : liveDocs.get(doc);
@@ -115,7 +143,7 @@ public class SpansReader {
         return spansFullyRead;
     }
     
-    public List<Hit> resultsList() {
+    public HitsArrays resultsList() {
         return results;
     }
 
@@ -137,17 +165,14 @@ public class SpansReader {
             if (number >= 0 && number - results.size() < Hits.FETCH_HITS_MIN)
                 number = results.size() + Hits.FETCH_HITS_MIN;
     
-            while (!ensureHitsReadLock.tryLock()) {
-                /*
-                 * Another thread is already counting, we don't want to straight up block until it's done
-                 * as it might be counting/retrieving all results, while we might only want trying to retrieve a small fraction
-                 * So instead poll our own state, then if we're still missing results after that just count them ourselves
-                 */
-                Thread.sleep(50);
-                if (spansFullyRead || (number >= 0 && results.size() >= number))
-                    return;
-            }
+            // If another thread is already reading, wait until it has read enough for us
+            // (or until it stops, after which we'll continue reading ourselves)
+            final int target = number;
+            if (!ensureHitsReadLock.lockOrWait(target, () -> spansFullyRead || (target >= 0 && results.size() >= target)))
+                return;
             try {
+                if (!positioned)
+                    positionAtFirstDoc();
                 boolean readAllHits = number < 0;
                 while (!spansFullyRead && (readAllHits || results.size() < number)) {
     
@@ -166,14 +191,14 @@ public class SpansReader {
                         boolean alive = false;
                         do {
                             int doc = spans.nextDoc();
-                            if (doc != DocIdSetIterator.NO_MORE_DOCS) {
+                            if (doc < endDoc) { // (NO_MORE_DOCS is never smaller)
                                 alive = liveDocs == null ? true : liveDocs.get(doc);
                                 if (alive) {
                                     // Go to first hit in doc
                                     start = spans.nextStartPosition();
                                 }
                             } else {
-                                // Spans exhausted
+                                // Spans exhausted (or end of our range reached)
                                 spansFullyRead = true;
                             }
                         } while (!spansFullyRead && !alive);
@@ -181,13 +206,14 @@ public class SpansReader {
 
                     if (!spansFullyRead) {
                         // Count the hit and add it (unless we've reached the maximum number of hits we want)
-                        Hit hit = Hit.create(spans.docID() + docBase, spans.startPosition(), spans.endPosition());
+                        int doc = spans.docID() + docBase;
                         if (capturedGroups != null) {
                             Span[] groups = new Span[hitQueryContext.numberOfCapturedGroups()];
                             hitQueryContext.getCapturedGroups(groups);
-                            capturedGroups.put(hit, groups);
+                            capturedGroups.put(Hit.create(doc, spans.startPosition(), spans.endPosition()), groups);
                         }
-                        results.add(hit);
+                        results.add(doc, spans.startPosition(), spans.endPosition());
+                        ensureHitsReadLock.produced(results.size());
                     }
                 }
             } catch (InterruptedException e) {
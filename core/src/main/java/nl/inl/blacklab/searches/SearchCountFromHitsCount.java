@@ -0,0 +1,65 @@
+package nl.inl.blacklab.searches;
+
+import nl.inl.blacklab.exceptions.InvalidQuery;
+import nl.inl.blacklab.search.results.QueryInfo;
+import nl.inl.blacklab.search.results.ResultCount;
+import nl.inl.blacklab.search.results.ResultCount.CountType;
+
+/**
+ * A search operation that yields a count of hits or docs, without storing the hits.
+ */
+public class SearchCountFromHitsCount extends SearchCount {
+
+    private SearchHitsCountFromPattern source;
+    private CountType type;
+
+    public SearchCountFromHitsCount(QueryInfo queryInfo, SearchHitsCountFromPattern source, CountType type) {
+        super(queryInfo);
+        this.source = source;
+        this.type = type;
+    }
+
+    @Override
+    protected ResultCount executeInternal() throws InvalidQuery {
+        return new ResultCount(source.execute(), type);
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = super.hashCode();
+        result = prime * result + ((source == null) ? 0 : source.hashCode());
+        result = prime * result + ((type == null) ? 0 : type.hashCode());
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (!super.equals(obj))
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        SearchCountFromHitsCount other = (SearchCountFromHitsCount) obj;
+        if (source == null) {
+            if (other.source != null)
+                return false;
+        } else if (!source.equals(other.source))
+            return false;
+        if (type != other.type)
+            return false;
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return toString("count", source, type);
+    }
+
+    @Override
+    public boolean fetchAllResults() {
+        return true;
+    }
+
+}
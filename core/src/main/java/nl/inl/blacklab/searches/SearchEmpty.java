@@ -1,9 +1,12 @@
 package nl.inl.blacklab.searches;
 
+import java.util.Set;
+
 import org.apache.lucene.search.Query;
 
 import nl.inl.blacklab.exceptions.InvalidQuery;
 import nl.inl.blacklab.queryParser.corpusql.CorpusQueryLanguageParser;
+import nl.inl.blacklab.search.indexmetadata.AnnotationSensitivity;
 import nl.inl.blacklab.search.results.SearchSettings;
 import nl.inl.blacklab.search.results.QueryInfo;
 import nl.inl.blacklab.search.results.SearchResult;
@@ -35,6 +38,10 @@ public class SearchEmpty extends AbstractSearch<SearchResult> {
     public SearchDocs find(Query documentQuery) {
         return new SearchDocsFromQuery(queryInfo(), documentQuery);
     }
+
+    public SearchTermFrequencies termFrequencies(AnnotationSensitivity annotSensitivity, Query filterQuery, Set<String> terms) {
+        return new SearchTermFrequencies(queryInfo(), annotSensitivity, filterQuery, terms);
+    }
     
     @Override
     public String toString() {
@@ -16,6 +16,29 @@ public abstract class SearchHits extends SearchResults<Hits> {
         super(queryInfo);
     }
     
+    /**
+     * Count hits, if possible without storing them.
+     *
+     * Use this if you don't need all the hits themselves, e.g. when you only
+     * show a window of hits, or only the totals. If the hits have to be stored
+     * anyway (e.g. to sort or filter them), this is the same as hitCount().
+     *
+     * @return resulting operation
+     */
+    public SearchCount hitCountOnly() {
+        return hitCount();
+    }
+
+    /**
+     * Count docs, if possible without storing the hits.
+     *
+     * @return resulting operation
+     * @see #hitCountOnly()
+     */
+    public SearchCount docCountOnly() {
+        return docCount();
+    }
+
     /**
      * Group hits by document.
      * 
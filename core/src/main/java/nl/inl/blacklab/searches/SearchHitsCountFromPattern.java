@@ -0,0 +1,82 @@
+package nl.inl.blacklab.searches;
+
+import org.apache.lucene.search.Query;
+
+import nl.inl.blacklab.exceptions.InvalidQuery;
+import nl.inl.blacklab.search.results.HitsCountFromQuery;
+import nl.inl.blacklab.search.results.QueryInfo;
+import nl.inl.blacklab.search.results.SearchSettings;
+import nl.inl.blacklab.search.textpattern.TextPattern;
+
+/**
+ * A search that counts hits and documents without storing the hits.
+ *
+ * Used by {@link SearchCountFromHitsCount}, so the hits and docs counts for a
+ * pattern share the same (cached) count.
+ */
+public class SearchHitsCountFromPattern extends AbstractSearch<HitsCountFromQuery> {
+
+    private TextPattern pattern;
+
+    private Query filter;
+
+    private SearchSettings searchSettings;
+
+    SearchHitsCountFromPattern(QueryInfo queryInfo, TextPattern pattern, Query filter, SearchSettings searchSettings) {
+        super(queryInfo);
+        if (pattern == null)
+            throw new IllegalArgumentException("Must specify a pattern");
+        this.pattern = pattern;
+        this.filter = filter;
+        this.searchSettings = searchSettings;
+    }
+
+    @Override
+    protected HitsCountFromQuery executeInternal() throws InvalidQuery {
+        return queryInfo().index().countHits(queryInfo(), pattern, filter, searchSettings);
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = super.hashCode();
+        result = prime * result + ((filter == null) ? 0 : filter.hashCode());
+        result = prime * result + ((pattern == null) ? 0 : pattern.hashCode());
+        result = prime * result + ((searchSettings == null) ? 0 : searchSettings.hashCode());
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (!super.equals(obj))
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        SearchHitsCountFromPattern other = (SearchHitsCountFromPattern) obj;
+        if (filter == null) {
+            if (other.filter != null)
+                return false;
+        } else if (!filter.equals(other.filter))
+            return false;
+        if (pattern == null) {
+            if (other.pattern != null)
+                return false;
+        } else if (!pattern.equals(other.pattern))
+            return false;
+        if (searchSettings == null) {
+            if (other.searchSettings != null)
+                return false;
+        } else if (!searchSettings.equals(other.searchSettings))
+            return false;
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        if (filter == null)
+            return toString("hitsCount", pattern);
+        return toString("hitsCount", pattern, filter);
+    }
+}
@@ -7,6 +7,7 @@ import nl.inl.blacklab.exceptions.RegexpTooLarge;
 import nl.inl.blacklab.exceptions.WildcardTermTooBroad;
 import nl.inl.blacklab.search.results.Hits;
 import nl.inl.blacklab.search.results.QueryInfo;
+import nl.inl.blacklab.search.results.ResultCount.CountType;
 import nl.inl.blacklab.search.results.SearchSettings;
 import nl.inl.blacklab.search.textpattern.TextPattern;
 
@@ -40,6 +41,20 @@ public class SearchHitsFromPattern extends SearchHits {
         return queryInfo().index().find(queryInfo(), pattern, filter, searchSettings);
     }
     
+    @Override
+    public SearchCount hitCountOnly() {
+        return new SearchCountFromHitsCount(queryInfo(), hitsCount(), CountType.HITS);
+    }
+
+    @Override
+    public SearchCount docCountOnly() {
+        return new SearchCountFromHitsCount(queryInfo(), hitsCount(), CountType.DOCS);
+    }
+
+    private SearchHitsCountFromPattern hitsCount() {
+        return new SearchHitsCountFromPattern(queryInfo(), pattern, filter, searchSettings);
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
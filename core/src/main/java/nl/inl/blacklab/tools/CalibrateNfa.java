@@ -0,0 +1,187 @@
+package nl.inl.blacklab.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import nl.inl.blacklab.exceptions.ErrorOpeningIndex;
+import nl.inl.blacklab.exceptions.InvalidQuery;
+import nl.inl.blacklab.queryParser.corpusql.CorpusQueryLanguageParser;
+import nl.inl.blacklab.search.BlackLab;
+import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.lucene.optimize.NfaCostModel;
+import nl.inl.blacklab.search.results.QueryInfo;
+import nl.inl.blacklab.search.results.Results;
+import nl.inl.blacklab.search.results.SearchSettings;
+import nl.inl.blacklab.search.textpattern.TextPattern;
+import nl.inl.util.LogUtil;
+
+/**
+ * Determine a good NFA threshold (fiMatchFactor) for an index.
+ *
+ * Executes a sample of queries with a range of thresholds, from reverse index
+ * matching only to as much forward index matching as possible, and measures how
+ * long each takes. The threshold with the lowest total time is recommended, and
+ * can be written to a file as a snippet for the index metadata file
+ * (indexmetadata.yaml), so it applies to this index only.
+ *
+ * The sample queries should resemble the queries your users actually run.
+ */
+public class CalibrateNfa {
+
+    /** Thresholds to try */
+    private static final long[] THRESHOLDS = { NfaCostModel.NO_NFA_MATCHING, 100, 300, 900, 3000, 10_000, 30_000,
+            100_000, NfaCostModel.MAX_NFA_MATCHING };
+
+    /** How many times to time each query with each threshold (we keep the fastest time) */
+    private static final int DEFAULT_REPETITIONS = 3;
+
+    private static void usage() {
+        System.err.println("Usage: CalibrateNfa [-r repetitions] <indexDir> <queryFile> [outputFile]");
+        System.err.println();
+        System.err.println("  queryFile:  file with sample Corpus Query Language queries, one per line");
+        System.err.println("              (empty lines and lines starting with # are skipped)");
+        System.err.println("  outputFile: where to write the recommended index metadata snippet (optional)");
+    }
+
+    public static void main(String[] args) throws ErrorOpeningIndex, IOException {
+        BlackLab.setConfigFromFile(); // read blacklab.yaml if exists and set config from that
+
+        LogUtil.setupBasicLoggingConfig();
+
+        // Parse command line
+        int repetitions = DEFAULT_REPETITIONS;
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i].trim();
+            if (arg.equals("-r")) {
+                if (i + 1 == args.length) {
+                    System.err.println("-r option needs argument");
+                    usage();
+                    return;
+                }
+                repetitions = Integer.parseInt(args[i + 1]);
+                i++;
+            } else if (arg.startsWith("-")) {
+                System.err.println("Unknown option: " + arg);
+                usage();
+                return;
+            } else {
+                files.add(arg);
+            }
+        }
+        if (files.size() < 2 || files.size() > 3 || repetitions < 1) {
+            usage();
+            return;
+        }
+        File indexDir = new File(files.get(0));
+        List<TextPattern> queries = readQueries(new File(files.get(1)));
+        if (queries.isEmpty()) {
+            System.err.println("No queries found in " + files.get(1));
+            return;
+        }
+
+        NfaCostModel recommended;
+        try (BlackLabIndex index = BlackLab.open(indexDir)) {
+            recommended = index.nfaCostModel().withNfaThreshold(calibrate(index, queries, repetitions));
+        }
+        System.out.println("Recommended fiMatchFactor: " + recommended.nfaThreshold());
+
+        if (files.size() == 3) {
+            File outputFile = new File(files.get(2));
+            try (PrintWriter out = new PrintWriter(outputFile, StandardCharsets.UTF_8.name())) {
+                out.println("# Recommended by CalibrateNfa for " + indexDir);
+                out.println("# (add to the index metadata file in that directory)");
+                out.println("nfaCostModel:");
+                out.println("    fiMatchFactor: " + recommended.nfaThreshold());
+                out.println("    fiMatchTermFreqDivider: " + recommended.termFreqDivider());
+                out.println("    fiMatchCostRatioFactor: " + recommended.costRatioConstantFactor());
+            }
+            System.out.println("Written to " + outputFile);
+        }
+    }
+
+    private static List<TextPattern> readQueries(File queryFile) throws IOException {
+        List<TextPattern> queries = new ArrayList<>();
+        for (String line: Files.readAllLines(queryFile.toPath(), StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+            try {
+                queries.add(CorpusQueryLanguageParser.parse(line));
+            } catch (InvalidQuery e) {
+                System.err.println("Skipping invalid query " + line + ": " + e.getMessage());
+            }
+        }
+        return queries;
+    }
+
+    /**
+     * Measure the time needed to execute queries for each threshold and determine
+     * the best threshold.
+     *
+     * The other constants of the index's cost model are kept as they are.
+     *
+     * @param index index to search
+     * @param queries sample queries
+     * @param repetitions how many times to time each query with each threshold
+     * @return the threshold with the lowest total time
+     */
+    public static long calibrate(BlackLabIndex index, List<TextPattern> queries, int repetitions) {
+        SearchSettings baseSettings = SearchSettings.get(Results.NO_LIMIT, Results.NO_LIMIT);
+        long[] totalTimeMs = new long[THRESHOLDS.length];
+        for (TextPattern query: queries) {
+            System.out.println(query);
+            long hitsWithoutNfa = -1;
+            for (int i = 0; i < THRESHOLDS.length; i++) {
+                SearchSettings settings = baseSettings.withFiMatchFactor(THRESHOLDS[i]);
+                long fastest = Long.MAX_VALUE;
+                long numberOfHits = -1;
+                for (int j = 0; j <= repetitions; j++) {
+                    long start = System.nanoTime();
+                    numberOfHits = execute(index, query, settings);
+                    long timeMs = (System.nanoTime() - start) / 1_000_000;
+                    if (j > 0) // first run is warm-up
+                        fastest = Math.min(fastest, timeMs);
+                }
+                if (i == 0)
+                    hitsWithoutNfa = numberOfHits;
+                else if (numberOfHits != hitsWithoutNfa)
+                    System.out.println("  WARNING: different number of hits with threshold " + thresholdName(THRESHOLDS[i]));
+                totalTimeMs[i] += fastest;
+                System.out.println(String.format("  %-12s %8d ms  (%d hits)", thresholdName(THRESHOLDS[i]), fastest, numberOfHits));
+            }
+        }
+
+        System.out.println();
+        System.out.println("Total time per threshold:");
+        int best = 0;
+        for (int i = 0; i < THRESHOLDS.length; i++) {
+            System.out.println(String.format("  %-12s %8d ms", thresholdName(THRESHOLDS[i]), totalTimeMs[i]));
+            if (totalTimeMs[i] < totalTimeMs[best])
+                best = i;
+        }
+        return THRESHOLDS[best];
+    }
+
+    private static long execute(BlackLabIndex index, TextPattern query, SearchSettings settings) {
+        try {
+            return index.find(QueryInfo.create(index, null, false), query, null, settings).size();
+        } catch (InvalidQuery e) {
+            throw new IllegalArgumentException("Invalid query: " + query, e);
+        }
+    }
+
+    private static String thresholdName(long threshold) {
+        if (threshold == NfaCostModel.NO_NFA_MATCHING)
+            return "none";
+        if (threshold == NfaCostModel.MAX_NFA_MATCHING)
+            return "max";
+        return Long.toString(threshold);
+    }
+
+}
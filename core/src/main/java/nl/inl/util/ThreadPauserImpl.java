@@ -17,6 +17,11 @@ public class ThreadPauserImpl implements ThreadPauser {
         ThreadPauserImpl.enabled = enabled;
     }
 
+    /** @return is pausing threads enabled? */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
     private static long now() {
         return System.currentTimeMillis();
     }
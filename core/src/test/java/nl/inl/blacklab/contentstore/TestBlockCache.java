@@ -0,0 +1,94 @@
+package nl.inl.blacklab.contentstore;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestBlockCache {
+
+    @Test
+    public void testGetPut() {
+        BlockCache cache = BlockCache.get();
+        cache.put(-1, 1, "block one");
+        cache.put(-2, 1, "other store");
+        long hits = cache.hits();
+        long misses = cache.misses();
+        Assert.assertEquals("block one", cache.get(-1, 1));
+        Assert.assertEquals("other store", cache.get(-2, 1));
+        Assert.assertNull(cache.get(-1, 2));
+        Assert.assertEquals(hits + 2, cache.hits());
+        Assert.assertEquals(misses + 1, cache.misses());
+    }
+
+    @Test
+    public void testEvictionUnderSizeBound() {
+        // 16 segments of 100 chars each
+        BlockCache cache = new BlockCache(16 * 100 * 2);
+        Assert.assertEquals(16 * 100 * 2, cache.maxSizeBytes());
+        String block = "0123456789";
+        for (int i = 0; i < 1000; i++) {
+            cache.put(1, i, block + i);
+            Assert.assertTrue(cache.sizeBytes() <= cache.maxSizeBytes());
+            Assert.assertEquals(block + i, cache.get(1, i)); // (most recently added is never evicted)
+        }
+        // Many blocks were evicted, but the cache is not empty
+        int cached = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (cache.get(1, i) != null)
+                cached++;
+        }
+        Assert.assertTrue(cached > 0 && cached < 16 * 10);
+        Assert.assertNull(cache.get(1, 0));
+
+        // A block that is too large for a segment is not cached, and doesn't evict anything
+        long size = cache.sizeBytes();
+        cache.put(2, 0, new String(new char[101]));
+        Assert.assertNull(cache.get(2, 0));
+        Assert.assertEquals(size, cache.sizeBytes());
+
+        // Setting the size to 0 disables and clears the cache
+        cache.setMaxSizeBytes(0);
+        Assert.assertEquals(0, cache.sizeBytes());
+        cache.put(1, 0, block);
+        Assert.assertNull(cache.get(1, 0));
+    }
+
+    @Test
+    public void testContentStoresIsolated() {
+        BlockCache cache = new BlockCache(BlockCache.DEFAULT_MAX_SIZE_BYTES);
+        int[] values = { 0, 1, -1, 2, Integer.MAX_VALUE, Integer.MIN_VALUE };
+        for (int id: values) {
+            for (int blockNumber: values) {
+                cache.put(id, blockNumber, id + "/" + blockNumber);
+            }
+        }
+        for (int id: values) {
+            for (int blockNumber: values) {
+                Assert.assertEquals(id + "/" + blockNumber, cache.get(id, blockNumber));
+            }
+        }
+
+        // Replacing a block of one content store doesn't affect the others
+        cache.put(1, 1, "replaced");
+        Assert.assertEquals("replaced", cache.get(1, 1));
+        Assert.assertEquals("2/1", cache.get(2, 1));
+        Assert.assertEquals("-1/1", cache.get(-1, 1));
+        Assert.assertNull(cache.get(3, 1));
+    }
+
+    @Test
+    public void testRemoveContentStore() {
+        BlockCache cache = new BlockCache(BlockCache.DEFAULT_MAX_SIZE_BYTES);
+        for (int blockNumber = 0; blockNumber < 100; blockNumber++) {
+            cache.put(-1, blockNumber, "closed");
+            cache.put(1, blockNumber, "opened");
+        }
+        long size = cache.sizeBytes();
+        cache.removeContentStore(-1);
+        Assert.assertEquals(size / 2, cache.sizeBytes());
+        for (int blockNumber = 0; blockNumber < 100; blockNumber++) {
+            Assert.assertNull(cache.get(-1, blockNumber));
+            Assert.assertEquals("opened", cache.get(1, blockNumber));
+        }
+    }
+
+}
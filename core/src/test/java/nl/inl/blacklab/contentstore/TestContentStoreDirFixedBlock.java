@@ -23,6 +23,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -111,6 +115,66 @@ public class TestContentStoreDirFixedBlock {
         Assert.assertEquals(doc[1].substring(15, 18), parts[1]);
     }
 
+    @Test
+    public void testRetrievePartsMultipleBlocks() {
+        // Store a document that spans many blocks
+        Random random = new Random(12_345);
+        StringBuilder b = new StringBuilder();
+        while (b.length() < 200_000) {
+            b.append(doc[random.nextInt(doc.length)]).append(random.nextInt(1000));
+        }
+        String longDoc = b.toString();
+        int key = store.store(longDoc);
+        ensureMode(false);
+
+        // Retrieve many (overlapping, unsorted) parts at once
+        int n = 100;
+        int[] starts = new int[n];
+        int[] ends = new int[n];
+        for (int i = 0; i < n; i++) {
+            starts[i] = random.nextInt(longDoc.length() - 20_000);
+            ends[i] = starts[i] + 1 + random.nextInt(20_000);
+        }
+        String[] parts = store.retrieveParts(key, starts, ends);
+        for (int i = 0; i < n; i++) {
+            Assert.assertEquals(longDoc.substring(starts[i], ends[i]), parts[i]);
+        }
+    }
+
+    @Test
+    public void testRetrievePartsConcurrently() throws Exception {
+        // Several threads use a newly opened (not yet initialized) store at the same time
+        ensureMode(false);
+        int numberOfThreads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        ExecutorService executorService = Executors.newFixedThreadPool(numberOfThreads);
+        try {
+            for (int t = 0; t < numberOfThreads; t++) {
+                Random random = new Random(t);
+                futures.add(executorService.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 200; i++) {
+                        int key = random.nextInt(doc.length) + 1;
+                        String docContents = doc[key - 1];
+                        int startPos = random.nextInt(docContents.length() - 10);
+                        int endPos = startPos + 1 + random.nextInt(docContents.length() - startPos);
+                        String[] parts = store.retrieveParts(key, new int[] { startPos, 0 }, new int[] { endPos, 5 });
+                        Assert.assertEquals(docContents.substring(startPos, endPos), parts[0]);
+                        Assert.assertEquals(docContents.substring(0, 5), parts[1]);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future: futures) {
+                future.get(); // rethrows assertion errors
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
     @Test
     public void testDelete() {
         store.delete(2);
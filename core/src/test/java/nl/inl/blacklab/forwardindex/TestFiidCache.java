@@ -0,0 +1,149 @@
+package nl.inl.blacklab.forwardindex;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import nl.inl.blacklab.mocks.MockAnnotatedField;
+import nl.inl.blacklab.mocks.MockAnnotation;
+import nl.inl.blacklab.search.indexmetadata.Annotation;
+
+public class TestFiidCache {
+
+    /** Number of documents in each segment of our test index */
+    private static final int[] SEGMENT_SIZES = { 3, 1, 4 };
+
+    private Annotation annotation;
+
+    private Directory dir;
+
+    private IndexWriter writer;
+
+    /** Number of documents added so far */
+    private int numberOfDocs;
+
+    @Before
+    public void setUp() throws IOException {
+        annotation = new MockAnnotation("word");
+        new MockAnnotatedField("contents", Arrays.asList(annotation));
+        dir = new RAMDirectory();
+        IndexWriterConfig config = new IndexWriterConfig(new KeywordAnalyzer());
+        config.setMergePolicy(NoMergePolicy.INSTANCE); // keep our segments
+        writer = new IndexWriter(dir, config);
+        for (int segmentSize: SEGMENT_SIZES) {
+            addSegment(segmentSize);
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        writer.close();
+        dir.close();
+    }
+
+    /** The fiid we store for a document (different from the doc id, and never 0) */
+    private static int fiid(int docId) {
+        return 1000 - docId * 7;
+    }
+
+    private void addSegment(int numberOfDocsToAdd) throws IOException {
+        String fiidField = annotation.forwardIndexIdField();
+        for (int i = 0; i < numberOfDocsToAdd; i++) {
+            Document doc = new Document();
+            doc.add(new NumericDocValuesField(fiidField, fiid(numberOfDocs)));
+            doc.add(new StoredField(fiidField, fiid(numberOfDocs)));
+            writer.addDocument(doc);
+            numberOfDocs++;
+        }
+        writer.commit();
+    }
+
+    private static List<Object> coreCacheKeys(DirectoryReader reader) {
+        List<Object> keys = new ArrayList<>();
+        for (LeafReaderContext rc: reader.leaves()) {
+            keys.add(rc.reader().getCoreCacheKey());
+        }
+        return keys;
+    }
+
+    @Test
+    public void testMultipleSegments() throws IOException {
+        try (DirectoryReader reader = DirectoryReader.open(dir)) {
+            Assert.assertEquals(SEGMENT_SIZES.length, reader.leaves().size());
+            FiidLookup fiidLookup = new FiidLookup(reader, annotation);
+            for (int docId = 0; docId < numberOfDocs; docId++) {
+                Assert.assertEquals(fiid(docId), fiidLookup.get(docId));
+            }
+        }
+    }
+
+    @Test
+    public void testCacheHitsAcrossInstances() throws IOException {
+        String fiidField = annotation.forwardIndexIdField();
+        try (DirectoryReader reader = DirectoryReader.open(dir)) {
+            new FiidLookup(reader, annotation);
+            for (LeafReaderContext rc: reader.leaves()) {
+                Assert.assertTrue(FiidCache.isCached(rc.reader().getCoreCacheKey()));
+                Assert.assertSame(FiidCache.get(rc.reader(), fiidField), FiidCache.get(rc.reader(), fiidField));
+            }
+
+            // After reopening, existing segments are shared and don't have to be read again
+            addSegment(2);
+            try (DirectoryReader newReader = DirectoryReader.openIfChanged(reader)) {
+                Assert.assertEquals(SEGMENT_SIZES.length + 1, newReader.leaves().size());
+                for (int i = 0; i < reader.leaves().size(); i++) {
+                    Assert.assertSame(FiidCache.get(reader.leaves().get(i).reader(), fiidField),
+                            FiidCache.get(newReader.leaves().get(i).reader(), fiidField));
+                }
+                FiidLookup fiidLookup = new FiidLookup(newReader, annotation);
+                for (int docId = 0; docId < numberOfDocs; docId++) {
+                    Assert.assertEquals(fiid(docId), fiidLookup.get(docId));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testEvictionOnClose() throws IOException {
+        DirectoryReader reader = DirectoryReader.open(dir);
+        FiidCache.warmUp(reader, annotation);
+        List<Object> keys = coreCacheKeys(reader);
+        for (Object key: keys) {
+            Assert.assertTrue(FiidCache.isCached(key));
+        }
+
+        // Reopen; the old segments are still in use by the new reader, so they should stay cached
+        addSegment(2);
+        DirectoryReader newReader = DirectoryReader.openIfChanged(reader);
+        FiidCache.warmUp(newReader, annotation);
+        List<Object> newKeys = coreCacheKeys(newReader);
+        reader.close();
+        for (Object key: newKeys) {
+            Assert.assertTrue(FiidCache.isCached(key));
+        }
+
+        // Once no reader uses the segments anymore, they are evicted
+        newReader.close();
+        for (Object key: newKeys) {
+            Assert.assertFalse(FiidCache.isCached(key));
+        }
+    }
+
+}
@@ -16,6 +16,7 @@
 package nl.inl.blacklab.forwardindex;
 
 import java.io.File;
+import java.nio.IntBuffer;
 import java.text.Collator;
 import java.util.Arrays;
 
@@ -80,4 +81,21 @@ public class TestForwardIndexPosIncr {
         }
     }
 
+    @Test
+    public void testRetrieveWithoutCopying() {
+        setUpForwardIndex();
+
+        String[] expected = { "How", "much", "", "", "wood" };
+        IntBuffer tokens = fi.tokens(0);
+        Assert.assertEquals(fi.docLength(0), tokens.remaining());
+        int[] buffer = new int[3];
+        Assert.assertEquals(3, fi.retrievePart(0, 1, 4, buffer));
+        for (int j = 0; j < expected.length; j++) {
+            Assert.assertEquals(expected[j], fi.terms().get(tokens.get(j)));
+            Assert.assertEquals(tokens.get(j), fi.getToken(0, j));
+            if (j >= 1 && j < 4)
+                Assert.assertEquals(tokens.get(j), buffer[j - 1]);
+        }
+    }
+
 }
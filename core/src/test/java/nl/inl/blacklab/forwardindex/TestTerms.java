@@ -16,6 +16,8 @@
 package nl.inl.blacklab.forwardindex;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.text.Collator;
 import java.util.Locale;
 
@@ -35,8 +37,13 @@ public class TestTerms {
 
     private File dir;
 
+    private Collators colls;
+
     String[] str = { "the", "quick", "brown", "fox", "jumps", "over", "the", "lazy", "dog" };
 
+    /** Terms with several case variants, to test case-insensitive lookups */
+    String[] caseVariants = { "banana", "Apple", "apple", "cherry", "APPLE" };
+
     @Before
     public void setUp() {
 
@@ -48,7 +55,7 @@ public class TestTerms {
 
         // Store some terms
         Collator coll = Collator.getInstance(new Locale("en", "GB"));
-        Collators colls = new Collators(coll, CollatorVersion.V2);
+        colls = new Collators(coll, CollatorVersion.V2);
         t = Terms.openForWriting(colls, null, true);
         if (t instanceof TermsWriter)
             ((TermsWriter) t).setMaxBlockSize(10);
@@ -139,4 +146,172 @@ public class TestTerms {
             Assert.assertEquals(expected[i], results.intIterator().next());
         }
     }
+
+    /**
+     * Test if all case variants are found when looking up a term insensitively.
+     */
+    @Test
+    public void testIndexOfInsensitiveMultiple() {
+        Terms r = Terms.openForReading(colls, writeTerms("terms2.dat", caseVariants), true, false);
+
+        MutableIntSet results = new IntHashSet();
+        r.indexOf(results, "aPPle", MatchSensitivity.INSENSITIVE);
+        Assert.assertEquals(3, results.size());
+        Assert.assertTrue(results.containsAll(1, 2, 4));
+        Assert.assertEquals(2, r.indexOf("apple"));
+        Assert.assertEquals(Terms.NO_TERM, r.indexOf("durian"));
+        results.clear();
+        r.indexOf(results, "durian", MatchSensitivity.INSENSITIVE);
+        Assert.assertTrue(results.isEmpty());
+    }
+
+    /**
+     * Test finding case variants if neither the term itself nor its lowercase
+     * version occurs, so we have to search the terms in sort order.
+     */
+    @Test
+    public void testIndexOfInsensitiveNoLowercase() {
+        Terms r = Terms.openForReading(colls, writeTerms("terms6.dat", "Banana", "Apple", "Cherry", "APPLE"), true, false);
+
+        MutableIntSet results = new IntHashSet();
+        r.indexOf(results, "aPPle", MatchSensitivity.INSENSITIVE);
+        Assert.assertEquals(2, results.size());
+        Assert.assertTrue(results.containsAll(1, 3));
+        results.clear();
+        r.indexOf(results, "cherry", MatchSensitivity.INSENSITIVE);
+        Assert.assertTrue(results.containsAll(2));
+        Assert.assertEquals(1, results.size());
+        results.clear();
+        r.indexOf(results, "apples", MatchSensitivity.INSENSITIVE);
+        Assert.assertTrue(results.isEmpty());
+    }
+
+    /**
+     * Write a terms file.
+     *
+     * @param fileName name of the file in the test dir
+     * @param words terms to add
+     * @return the terms file
+     */
+    private File writeTerms(String fileName, String... words) {
+        return writeTerms(fileName, 0, words);
+    }
+
+    /**
+     * Write a terms file.
+     *
+     * @param fileName name of the file in the test dir
+     * @param maxBlockSize maximum block size for term strings, or 0 for the default
+     * @param words terms to add
+     * @return the terms file
+     */
+    private File writeTerms(String fileName, int maxBlockSize, String... words) {
+        Terms w = Terms.openForWriting(colls, null, true);
+        if (maxBlockSize > 0)
+            ((TermsWriter) w).setMaxBlockSize(maxBlockSize);
+        for (String word: words) {
+            w.indexOf(word);
+        }
+        File f = new File(dir, fileName);
+        w.write(f);
+        return f;
+    }
+
+    /**
+     * Make a terms file look like one written by an older version: remove the
+     * term hash table and zero out the inverted sort arrays.
+     *
+     * @param f terms file
+     * @param numberOfTerms number of terms in the file
+     */
+    private static void convertToOldFormat(File f, int numberOfTerms) throws IOException {
+        // The file ends with 4 arrays: [inverted][sensitive][inverted][insensitive],
+        // followed by the hash table section: [marker][size][table]
+        int arrayBytes = numberOfTerms * Integer.BYTES;
+        long hashTableBytes = (2L + Terms.termHashTableSize(numberOfTerms)) * Integer.BYTES;
+        try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+            raf.setLength(raf.length() - hashTableBytes);
+            long start = raf.length() - 4L * arrayBytes;
+            raf.seek(start);
+            raf.write(new byte[arrayBytes]);
+            raf.seek(start + 2L * arrayBytes);
+            raf.write(new byte[arrayBytes]);
+        }
+    }
+
+    /**
+     * Test if terms files without the inverted sort arrays and hash table (written
+     * by older versions) can still be searched.
+     */
+    @Test
+    public void testIndexOfOldFormat() throws IOException {
+        File f = writeTerms("terms3.dat", caseVariants);
+        convertToOldFormat(f, caseVariants.length);
+        Terms r = Terms.openForReading(colls, f, true, false);
+
+        MutableIntSet results = new IntHashSet();
+        r.indexOf(results, "aPPle", MatchSensitivity.INSENSITIVE);
+        Assert.assertEquals(3, results.size());
+        Assert.assertTrue(results.containsAll(1, 2, 4));
+        Assert.assertEquals(3, r.indexOf("cherry"));
+    }
+
+    /**
+     * Test that prefetching the terms (also when the term indexes still have to be
+     * built) doesn't change them.
+     */
+    @Test
+    public void testPrefetch() {
+        t.prefetch();
+        testRetrieve();
+        testReverseOrder();
+        testIndexOf();
+    }
+
+    @Test
+    public void testPrefetchOldFormat() throws IOException {
+        File f = writeTerms("terms4.dat", caseVariants);
+        convertToOldFormat(f, caseVariants.length);
+        Terms r = Terms.openForReading(colls, f, true, false);
+        r.prefetch();
+
+        for (int i = 0; i < caseVariants.length; i++) {
+            Assert.assertEquals(caseVariants[i], r.get(i));
+            Assert.assertEquals(i, r.indexOf(caseVariants[i]));
+        }
+        MutableIntSet results = new IntHashSet();
+        r.indexOf(results, "aPPle", MatchSensitivity.INSENSITIVE);
+        Assert.assertEquals(3, results.size());
+    }
+
+    /**
+     * Test looking up many terms, stored in multiple blocks, with and without
+     * the term hash table in the terms file.
+     */
+    @Test
+    public void testLookupMany() throws IOException {
+        int n = 100_000;
+        String[] words = new String[n];
+        for (int i = 0; i < n; i++) {
+            words[i] = "w" + Integer.toString(i * 7919, 36) + (i % 3 == 0 ? "é" : "");
+        }
+        File f = writeTerms("terms5.dat", 100_000, words); // make sure we have multiple blocks
+        checkLookups(Terms.openForReading(colls, f, true, false), words);
+
+        convertToOldFormat(f, n);
+        checkLookups(Terms.openForReading(colls, f, true, false), words);
+
+        // Older terms files with too many terms to hash are searched in sort order
+        TermsReader r = (TermsReader) Terms.openForReading(colls, f, true, false);
+        r.setMaxHashedTerms(n - 1);
+        checkLookups(r, words);
+    }
+
+    private static void checkLookups(Terms r, String[] words) {
+        for (int i = 0; i < words.length; i++) {
+            Assert.assertEquals(words[i], r.get(i));
+            Assert.assertEquals(i, r.indexOf(words[i]));
+        }
+        Assert.assertEquals(Terms.NO_TERM, r.indexOf("notaterm"));
+    }
 }
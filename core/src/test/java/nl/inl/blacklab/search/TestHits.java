@@ -47,6 +47,22 @@ public class TestHits {
         }
     }
 
+    @Test
+    public void testHitsWindow() {
+        int[] aDoc = { 1, 1, 2, 3 };
+        int[] aStart = { 1, 4, 2, 0 };
+        int[] aEnd = { 2, 5, 3, 1 };
+        try (MockBlackLabIndex index = new MockBlackLabIndex()) {
+            Hits hits = Hits.fromArrays(index.createDefaultQueryInfo(), aDoc, aStart, aEnd);
+            Hits window = hits.window(1, 2);
+            Assert.assertEquals(2, window.size());
+            Assert.assertEquals(2, window.docsStats().processedTotal());
+            Assert.assertEquals(Hit.create(1, 4, 5), window.get(0));
+            Assert.assertEquals(Hit.create(2, 2, 3), window.get(1));
+            Assert.assertTrue(window.windowStats().hasNext());
+        }
+    }
+
     @Test
     public void testMockSpans() throws IOException {
         int[] aDoc = { 1, 2 };
@@ -0,0 +1,75 @@
+package nl.inl.blacklab.search;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import nl.inl.blacklab.search.results.ParallelSort;
+
+public class TestParallelSort {
+
+    private static final int N = 123457;
+
+    private static ExecutorService executorService;
+
+    @BeforeClass
+    public static void setUp() {
+        executorService = Executors.newFixedThreadPool(3);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    private static int[] values() {
+        Random random = new Random(42);
+        int[] values = new int[N];
+        for (int i = 0; i < N; i++) {
+            values[i] = random.nextInt(1000);
+        }
+        return values;
+    }
+
+    private static int[] indexes() {
+        int[] indexes = new int[N];
+        for (int i = 0; i < N; i++) {
+            indexes[i] = i;
+        }
+        return indexes;
+    }
+
+    @Test
+    public void testSortInts() {
+        int[] values = values();
+        for (int maxThreads = 1; maxThreads <= 5; maxThreads++) {
+            int[] indexes = indexes();
+            new ParallelSort(executorService, maxThreads, null).sort(indexes, (a, b) -> values[a] - values[b]);
+            for (int i = 1; i < N; i++) {
+                int a = indexes[i - 1], b = indexes[i];
+                Assert.assertTrue(values[a] < values[b] || values[a] == values[b] && a < b); // sorted and stable
+            }
+        }
+    }
+
+    @Test
+    public void testSortObjects() {
+        int[] values = values();
+        Integer[] expected = Arrays.stream(indexes()).boxed().toArray(Integer[]::new);
+        Comparator<Integer> comparator = (a, b) -> values[a] - values[b];
+        Arrays.sort(expected, comparator);
+        for (int maxThreads = 1; maxThreads <= 5; maxThreads++) {
+            Integer[] indexes = Arrays.stream(indexes()).boxed().toArray(Integer[]::new);
+            new ParallelSort(executorService, maxThreads, null).sort(indexes, comparator);
+            Assert.assertArrayEquals(expected, indexes);
+        }
+    }
+
+}
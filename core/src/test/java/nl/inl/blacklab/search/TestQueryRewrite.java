@@ -25,7 +25,7 @@ import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
 import nl.inl.blacklab.exceptions.InvalidQuery;
 import nl.inl.blacklab.queryParser.corpusql.CorpusQueryLanguageParser;
 import nl.inl.blacklab.search.lucene.BLSpanQuery;
-import nl.inl.blacklab.search.lucene.optimize.ClauseCombinerNfa;
+import nl.inl.blacklab.search.lucene.optimize.NfaCostModel;
 import nl.inl.blacklab.search.results.QueryInfo;
 import nl.inl.blacklab.search.textpattern.TextPattern;
 
@@ -39,12 +39,11 @@ public class TestQueryRewrite {
     public static void setUp() {
         testIndex = new TestIndex();
         index = testIndex.index();
-        ClauseCombinerNfa.setNfaMatchingEnabled(false);
+        index.setNfaCostModel(NfaCostModel.DEFAULT.withNfaThreshold(NfaCostModel.NO_NFA_MATCHING));
     }
 
     @AfterClass
     public static void tearDown() {
-        ClauseCombinerNfa.setNfaMatchingEnabled(true);
         if (index != null)
             index.close();
         if (testIndex != null)
@@ -335,4 +334,18 @@ public class TestQueryRewrite {
         //TODO: assertRewriteResult("[lemma='.*' & word='.*']", "ANYTOKEN(1, 1)");
     }
 
+    @Test
+    public void testExplainPlan() throws InvalidQuery {
+        QueryExplanation explanation = index.explain(QueryInfo.create(index), getPatternFromCql("'the' 'quick'"), null);
+        QueryExplanation.PlanNode plan = explanation.plan();
+        Assert.assertNotNull(plan);
+        Assert.assertEquals("SEQ", plan.description());
+        Assert.assertEquals(2, plan.children().size());
+        Assert.assertEquals("TERM(contents%word@i:the)", plan.children().get(0).description());
+        long theHits = plan.children().get(0).estimatedHits();
+        long quickHits = plan.children().get(1).estimatedHits();
+        Assert.assertTrue(theHits > quickHits && quickHits > 0);
+        Assert.assertEquals(explanation.estimatedHits(), plan.estimatedHits());
+    }
+
 }
@@ -1,9 +1,17 @@
 package nl.inl.blacklab.search;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.lucene.index.Term;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TermQuery;
 import org.junit.AfterClass;
 import org.junit.Assert;
@@ -12,17 +20,31 @@ import org.junit.Ignore;
 import org.junit.Test;
 
 import nl.inl.blacklab.TestIndex;
+import nl.inl.blacklab.exceptions.InvalidQuery;
 import nl.inl.blacklab.forwardindex.Terms;
+import nl.inl.blacklab.queryParser.corpusql.CorpusQueryLanguageParser;
+import nl.inl.blacklab.resultproperty.DocPropertyAnnotatedFieldLength;
+import nl.inl.blacklab.resultproperty.DocPropertyStoredField;
 import nl.inl.blacklab.resultproperty.HitProperty;
 import nl.inl.blacklab.resultproperty.HitPropertyHitText;
 import nl.inl.blacklab.resultproperty.HitPropertyLeftContext;
 import nl.inl.blacklab.resultproperty.HitPropertyMultiple;
 import nl.inl.blacklab.resultproperty.PropertyValue;
 import nl.inl.blacklab.resultproperty.PropertyValueContextWords;
+import nl.inl.blacklab.search.indexmetadata.AnnotatedField;
 import nl.inl.blacklab.search.indexmetadata.Annotation;
+import nl.inl.blacklab.search.indexmetadata.AnnotationSensitivity;
 import nl.inl.blacklab.search.indexmetadata.MatchSensitivity;
 import nl.inl.blacklab.search.lucene.BLSpanTermQuery;
 import nl.inl.blacklab.search.lucene.SpanQueryFiltered;
+import nl.inl.blacklab.search.results.Concordances;
+import nl.inl.blacklab.search.results.ContextSize;
+import nl.inl.blacklab.search.results.Hit;
+import nl.inl.blacklab.search.results.Hits;
+import nl.inl.blacklab.search.results.HitsCountFromQuery;
+import nl.inl.blacklab.search.results.Kwics;
+import nl.inl.blacklab.search.results.QueryInfo;
+import nl.inl.blacklab.search.results.SearchSettings;
 
 public class TestSearches {
 
@@ -415,6 +437,151 @@ public class TestSearches {
         Assert.assertEquals(expected, testIndex.findConc("'noot'+ [word != 'noot']+ group:('aap')+", prop, value));
     }
 
+    @Test
+    public void testCollocations() {
+        Hits hits = testIndex.find(" 'the' ");
+        Annotation annotation = testIndex.index().mainAnnotatedField().mainAnnotation();
+        TermFrequencyList coll = hits.collocations(annotation, ContextSize.get(1), MatchSensitivity.INSENSITIVE, true);
+        Assert.assertEquals(7, coll.size());
+        for (String word: Arrays.asList("quick", "over", "lazy", "may", "force", "is", "question")) {
+            Assert.assertEquals(word, 1, coll.frequency(word));
+        }
+        coll = hits.collocations(annotation, ContextSize.get(1), MatchSensitivity.SENSITIVE, true);
+        Assert.assertEquals(1, coll.frequency("May"));
+        Assert.assertEquals(0, coll.frequency("may"));
+    }
+
+    @Test
+    public void testTermFrequencies() {
+        BlackLabIndex index = testIndex.index();
+        Annotation annotation = index.mainAnnotatedField().mainAnnotation();
+        for (MatchSensitivity sensitivity: Arrays.asList(MatchSensitivity.SENSITIVE, MatchSensitivity.INSENSITIVE)) {
+            AnnotationSensitivity annotSensitivity = annotation.sensitivity(sensitivity);
+            // Forward index (with filter) and Lucene terms (without filter) should agree
+            TermFrequencyList all = index.termFrequencies(annotSensitivity, null, null);
+            TermFrequencyList filtered = index.termFrequencies(annotSensitivity, new MatchAllDocsQuery(), null);
+            Assert.assertEquals(all.size(), filtered.size());
+            for (TermFrequency tf: all) {
+                Assert.assertEquals(tf.term, tf.frequency, filtered.frequency(tf.term));
+            }
+        }
+        AnnotationSensitivity insensitive = annotation.sensitivity(MatchSensitivity.INSENSITIVE);
+        // Only the second document contains "force"
+        Query filter = new TermQuery(new Term(insensitive.luceneField(), "force"));
+        TermFrequencyList doc1 = index.termFrequencies(insensitive, filter, new HashSet<>(Arrays.asList("may", "the", "dog")));
+        Assert.assertEquals(3, doc1.size());
+        Assert.assertEquals(1, doc1.frequency("may"));
+        Assert.assertEquals(1, doc1.frequency("the"));
+        Assert.assertEquals(0, doc1.frequency("dog"));
+    }
+
+    @Test
+    public void testCountHits() throws InvalidQuery {
+        BlackLabIndex index = testIndex.index();
+        for (String cql: Arrays.asList(" 'the' ", " [pos='nou'] [] ", " 'nonexistent' ")) {
+            Hits hits = testIndex.find(cql);
+            HitsCountFromQuery count = index.countHits(QueryInfo.create(index), CorpusQueryLanguageParser.parse(cql), null, null);
+            Assert.assertEquals(cql, hits.hitsStats().countedTotal(), count.hitsStats().countedTotal());
+            Assert.assertEquals(cql, hits.docsStats().countedTotal(), count.docsStats().countedTotal());
+            Assert.assertEquals(cql, hits.hitsStats().processedTotal(), count.hitsStats().processedTotal());
+            Assert.assertTrue(count.hitsStats().done());
+        }
+
+        // Queries with captured groups and global constraints need a hit query context
+        for (String cql: Arrays.asList(" a:'the' b:[] ", " a:[] 'aap' b:[] :: a.word = b.word ")) {
+            Hits hits = testIndex.find(cql);
+            HitsCountFromQuery count = index.countHits(QueryInfo.create(index), CorpusQueryLanguageParser.parse(cql), null, null);
+            Assert.assertEquals(cql, hits.size(), count.hitsStats().countedTotal());
+            Assert.assertEquals(cql, hits.docsStats().countedTotal(), count.docsStats().countedTotal());
+        }
+
+        // Respect maximum number of hits to count
+        SearchSettings settings = SearchSettings.get(2, 3);
+        HitsCountFromQuery count = index.countHits(QueryInfo.create(index), CorpusQueryLanguageParser.parse(" [] "), null, settings);
+        Assert.assertEquals(3, count.hitsStats().countedTotal());
+        Assert.assertEquals(2, count.hitsStats().processedTotal());
+        Assert.assertTrue(count.maxStats().hitsCountedExceededMaximum());
+    }
+
+    @Test
+    public void testConcordancesFromContentStore() {
+        Hits hits = testIndex.find(" 'the' ");
+        Concordances concordances = hits.concordances(ContextSize.get(1), ConcordanceType.CONTENT_STORE);
+        for (Hit hit: hits) {
+            // Content store concordances contain the original XML
+            Assert.assertTrue(concordances.get(hit).match().toLowerCase().endsWith(">the</w>"));
+        }
+    }
+
+    @Test
+    public void testKwicsSelectedAnnotations() {
+        Hits hits = testIndex.find(" 'the' ");
+        AnnotatedField field = testIndex.index().mainAnnotatedField();
+        Annotation word = field.annotation("word");
+        Annotation lemma = field.annotation("lemma");
+        Annotation pos = field.annotation("pos");
+        Kwics allKwics = hits.kwics(ContextSize.get(1));
+        Kwics kwics = hits.kwics(ContextSize.get(1), Arrays.asList(lemma));
+        for (Hit hit: hits) {
+            Kwic kwic = kwics.get(hit);
+            // Word and punct are always included, other annotations only if requested
+            Assert.assertTrue(kwic.annotations().contains(word));
+            Assert.assertTrue(kwic.annotations().contains(lemma));
+            Assert.assertFalse(kwic.annotations().contains(pos));
+            Assert.assertEquals(allKwics.get(hit).tokens(word), kwic.tokens(word));
+            Assert.assertEquals(allKwics.get(hit).tokens(lemma), kwic.tokens(lemma));
+        }
+    }
+
+    @Test
+    public void testWarmUp() {
+        // Warming up (more than once) shouldn't change search results
+        testIndex.index().warmUp(true);
+        testIndex.index().warmUp(false);
+        expected = Arrays.asList(
+                "[The] quick",
+                "over [the] lazy",
+                "May [the] Force",
+                "is [the] question");
+        Assert.assertEquals(expected, testIndex.findConc(" 'the' "));
+    }
+
+    @Test
+    public void testDocPropertiesConcurrently() throws Exception {
+        BlackLabIndex index = testIndex.index();
+        DocPropertyStoredField storedField = new DocPropertyStoredField(index, "fromInputFile");
+        DocPropertyAnnotatedFieldLength fieldLength = new DocPropertyAnnotatedFieldLength(index, index.mainAnnotatedField().tokenLengthField());
+        int maxDoc = index.reader().maxDoc();
+        List<String> expectedValues = new ArrayList<>();
+        for (int docId = 0; docId < maxDoc; docId++) {
+            expectedValues.add(storedField.get(docId) + "/" + fieldLength.get(docId));
+        }
+
+        // (Parallel) sorts call these from several threads at once; each should get the right values
+        int numberOfThreads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<List<String>>> futures = new ArrayList<>();
+            for (int i = 0; i < numberOfThreads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    List<String> values = new ArrayList<>();
+                    for (int docId = 0; docId < maxDoc; docId++) {
+                        values.add(storedField.get(docId) + "/" + fieldLength.get(docId));
+                    }
+                    return values;
+                }));
+            }
+            start.countDown();
+            for (Future<List<String>> future: futures) {
+                Assert.assertEquals(expectedValues, future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     // Backreferences not implemented yet
     @Ignore
     @Test
@@ -145,4 +145,30 @@ public class TestNfa {
         Assert.assertTrue(start.matches(new ForwardIndexDocumentString("ideaal"), 3, -1));
     }
 
+    @Test
+    public void testNfaFindMatches() {
+        // Test finding all match ends for (a|ab) and (a|ab)&ab
+        NfaState a = NfaState.token("contents%word@i", "a", null);
+        NfaState ab = NfaState.token("contents%word@i", "a", NfaState.token("contents%word@i", "b", null));
+        NfaState or = NfaState.or(false, Arrays.asList(a, ab), false);
+        or.finish(new HashSet<NfaState>());
+        or.lookupPropertyNumbers(new MockFiAccessor(), new IdentityHashMap<NfaState, Boolean>());
+        NfaState ab2 = NfaState.token("contents%word@i", "a", NfaState.token("contents%word@i", "b", null));
+        NfaState and = NfaState.and(false, Arrays.asList(or, ab2));
+        and.finish(new HashSet<NfaState>());
+        and.lookupPropertyNumbers(new MockFiAccessor(), new IdentityHashMap<NfaState, Boolean>());
+
+        ForwardIndexDocumentString fiDoc = new ForwardIndexDocumentString("abab");
+        NfaMatchEnds matchEnds = new NfaMatchEnds();
+        Assert.assertTrue(or.findMatches(fiDoc, 2, 1, matchEnds));
+        Assert.assertEquals(2, matchEnds.size());
+        Assert.assertEquals(3, matchEnds.get(0));
+        Assert.assertEquals(4, matchEnds.get(1));
+        Assert.assertTrue(and.findMatches(fiDoc, 0, 1, matchEnds));
+        Assert.assertEquals(1, matchEnds.size());
+        Assert.assertEquals(2, matchEnds.get(0));
+        Assert.assertFalse(and.findMatches(fiDoc, 1, 1, matchEnds));
+        Assert.assertTrue(matchEnds.isEmpty());
+    }
+
 }
@@ -0,0 +1,54 @@
+package nl.inl.blacklab.search.fimatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import nl.inl.blacklab.mocks.MockBlackLabIndex;
+import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.lucene.optimize.NfaCostModel;
+import nl.inl.blacklab.search.results.QueryInfo;
+import nl.inl.blacklab.search.results.SearchSettings;
+
+public class TestNfaCostModel {
+
+    @Test
+    public void testSeparateModelPerIndex() {
+        BlackLabIndex indexA = new MockBlackLabIndex();
+        BlackLabIndex indexB = new MockBlackLabIndex();
+        NfaCostModel modelA = NfaCostModel.get(100, 200, 300);
+        NfaCostModel modelB = NfaCostModel.get(5000, 50, 10);
+        indexA.setNfaCostModel(modelA);
+        indexB.setNfaCostModel(modelB);
+
+        Assert.assertEquals(modelA, QueryInfo.create(indexA).nfaCostModel());
+        Assert.assertEquals(modelB, QueryInfo.create(indexB).nfaCostModel());
+        Assert.assertEquals(NfaCostModel.DEFAULT, new MockBlackLabIndex().nfaCostModel());
+    }
+
+    @Test
+    public void testQueryOverridesThresholdOnly() {
+        BlackLabIndex indexA = new MockBlackLabIndex();
+        BlackLabIndex indexB = new MockBlackLabIndex();
+        NfaCostModel modelA = NfaCostModel.get(100, 200, 300);
+        NfaCostModel modelB = NfaCostModel.get(5000, 50, 10);
+        indexA.setNfaCostModel(modelA);
+        indexB.setNfaCostModel(modelB);
+
+        // No override: use the index's model as-is
+        SearchSettings settings = SearchSettings.defaults();
+        Assert.assertEquals(modelA, settings.nfaCostModel(indexA.nfaCostModel()));
+
+        // Override: same settings give a different model for each index, keeping its constants
+        settings = settings.withFiMatchFactor(3000);
+        Assert.assertEquals(NfaCostModel.get(3000, 200, 300), settings.nfaCostModel(indexA.nfaCostModel()));
+        Assert.assertEquals(NfaCostModel.get(3000, 50, 10), settings.nfaCostModel(indexB.nfaCostModel()));
+
+        // A query's model doesn't affect the index or other queries
+        QueryInfo queryInfo = QueryInfo.create(indexA);
+        QueryInfo overridden = queryInfo.withNfaCostModel(settings.nfaCostModel(indexA.nfaCostModel()));
+        Assert.assertEquals(NfaCostModel.get(3000, 200, 300), overridden.nfaCostModel());
+        Assert.assertEquals(modelA, queryInfo.nfaCostModel());
+        Assert.assertEquals(modelA, indexA.nfaCostModel());
+    }
+
+}
@@ -0,0 +1,72 @@
+package nl.inl.blacklab.search.fimatch;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestNfaMatchEnds {
+
+    private static void assertSame(TreeSet<Integer> expected, NfaMatchEnds actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        int i = 0;
+        for (int pos: expected) {
+            Assert.assertEquals(pos, actual.get(i));
+            i++;
+        }
+    }
+
+    private static void addAndCompare(int... positions) {
+        TreeSet<Integer> expected = new TreeSet<>();
+        NfaMatchEnds matchEnds = new NfaMatchEnds(2);
+        for (int pos: positions) {
+            Assert.assertEquals(expected.add(pos), matchEnds.add(pos));
+        }
+        assertSame(expected, matchEnds);
+    }
+
+    @Test
+    public void testAscending() {
+        addAndCompare(1, 2, 3, 5, 8, 13);
+    }
+
+    @Test
+    public void testDescending() {
+        // (matching backward)
+        addAndCompare(13, 8, 5, 3, 2, 1);
+        addAndCompare(13, 8, 8, 5, 13, 1);
+    }
+
+    @Test
+    public void testOutOfOrder() {
+        addAndCompare(5, 8, 3, 8, 13, 1, 2);
+        addAndCompare(5, 3, 8, 1, 3, 13);
+        addAndCompare(5, 5, 3);
+        Random random = new Random(42);
+        int[] positions = new int[100];
+        for (int i = 0; i < positions.length; i++)
+            positions[i] = random.nextInt(50);
+        addAndCompare(positions);
+    }
+
+    @Test
+    public void testAddAllRetainAll() {
+        NfaMatchEnds a = new NfaMatchEnds();
+        NfaMatchEnds b = new NfaMatchEnds();
+        for (int pos: new int[] { 9, 7, 5, 3 })
+            a.add(pos);
+        for (int pos: new int[] { 8, 7, 3, 2 })
+            b.add(pos);
+        a.retainAll(b);
+        Assert.assertEquals("[3, 7]", a.toString());
+
+        a.clear();
+        Assert.assertTrue(a.isEmpty());
+        a.add(6);
+        a.add(4);
+        a.addAll(b);
+        Assert.assertEquals("[2, 3, 4, 6, 7, 8]", a.toString());
+    }
+
+}
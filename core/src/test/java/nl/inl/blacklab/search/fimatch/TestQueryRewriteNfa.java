@@ -28,7 +28,7 @@ import nl.inl.blacklab.queryParser.corpusql.CorpusQueryLanguageParser;
 import nl.inl.blacklab.search.BlackLabIndex;
 import nl.inl.blacklab.search.QueryExplanation;
 import nl.inl.blacklab.search.lucene.BLSpanQuery;
-import nl.inl.blacklab.search.lucene.optimize.ClauseCombinerNfa;
+import nl.inl.blacklab.search.lucene.optimize.NfaCostModel;
 import nl.inl.blacklab.search.results.QueryInfo;
 import nl.inl.blacklab.search.textpattern.TextPattern;
 
@@ -42,12 +42,11 @@ public class TestQueryRewriteNfa {
     public static void setUp() {
         testIndex = new TestIndex();
         index = testIndex.index();
-        ClauseCombinerNfa.setNfaThreshold(ClauseCombinerNfa.MAX_NFA_MATCHING);
+        index.setNfaCostModel(NfaCostModel.DEFAULT.withNfaThreshold(NfaCostModel.MAX_NFA_MATCHING));
     }
 
     @AfterClass
     public static void tearDown() {
-        ClauseCombinerNfa.setNfaThreshold(ClauseCombinerNfa.DEFAULT_NFA_THRESHOLD);
         if (index != null)
             index.close();
         if (testIndex != null)
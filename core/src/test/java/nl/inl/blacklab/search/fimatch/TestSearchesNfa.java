@@ -10,7 +10,8 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import nl.inl.blacklab.TestIndex;
-import nl.inl.blacklab.search.lucene.optimize.ClauseCombinerNfa;
+import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.lucene.optimize.NfaCostModel;
 
 public class TestSearchesNfa {
 
@@ -23,15 +24,15 @@ public class TestSearchesNfa {
 
     @BeforeClass
     public static void setUp() {
-        ClauseCombinerNfa.setNfaThreshold(ClauseCombinerNfa.MAX_NFA_MATCHING);
         testIndex = new TestIndex();
+        BlackLabIndex index = testIndex.index();
+        index.setNfaCostModel(NfaCostModel.DEFAULT.withNfaThreshold(NfaCostModel.MAX_NFA_MATCHING));
     }
 
     @AfterClass
     public static void tearDown() {
         if (testIndex != null)
             testIndex.close();
-        ClauseCombinerNfa.setNfaThreshold(ClauseCombinerNfa.DEFAULT_NFA_THRESHOLD);
     }
 
     @Test
@@ -1,20 +1,28 @@
 package nl.inl.blacklab.search.grouping;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 import nl.inl.blacklab.TestIndex;
+import nl.inl.blacklab.forwardindex.FiidLookup;
 import nl.inl.blacklab.forwardindex.Terms;
 import nl.inl.blacklab.mocks.MockTerms;
 import nl.inl.blacklab.resultproperty.HitProperty;
 import nl.inl.blacklab.resultproperty.HitPropertyContextWords;
+import nl.inl.blacklab.resultproperty.HitPropertyHitPosition;
 import nl.inl.blacklab.resultproperty.HitPropertyHitText;
 import nl.inl.blacklab.resultproperty.PropertyValueContextWords;
 import nl.inl.blacklab.search.BlackLabIndex;
 import nl.inl.blacklab.search.indexmetadata.Annotation;
 import nl.inl.blacklab.search.indexmetadata.MatchSensitivity;
+import nl.inl.blacklab.search.results.ContextSize;
+import nl.inl.blacklab.search.results.Contexts;
 import nl.inl.blacklab.search.results.HitGroup;
 import nl.inl.blacklab.search.results.HitGroups;
 import nl.inl.blacklab.search.results.Hits;
@@ -94,6 +102,47 @@ public class TestHitProperties {
         Assert.assertEquals(1, group.size());
     }
 
+    @Test
+    public void testSortContextWords() {
+        HitProperty p = new HitPropertyContextWords(index, wordAnnotation, MatchSensitivity.INSENSITIVE, "L1");
+        List<String> expected = Arrays.asList(
+                "[The] quick",
+                "is [the] question",
+                "May [the] Force",
+                "over [the] lazy");
+        Assert.assertEquals(expected, testIndex.findConc(" 'the' ", p));
+        Collections.reverse(expected);
+        Assert.assertEquals(expected, testIndex.findConc(" 'the' ", p.reverse()));
+    }
+
+    @Test
+    public void testSortHitPosition() {
+        List<String> expected = Arrays.asList(
+                "is [the] question",
+                "over [the] lazy",
+                "May [the] Force",
+                "[The] quick");
+        Assert.assertEquals(expected, testIndex.findConc(" 'the' ", new HitPropertyHitPosition().reverse()));
+    }
+
+    @Test
+    public void testContexts() {
+        Hits hits = testIndex.find(" 'the' ");
+        List<Annotation> annotations = Arrays.asList(wordAnnotation);
+        Contexts contexts = new Contexts(hits, annotations, ContextSize.get(1), FiidLookup.getList(annotations, index.reader()));
+        Assert.assertEquals(hits.size(), contexts.size());
+        for (int i = 0; i < hits.size(); i++) {
+            int[] buffer = contexts.buffer(i);
+            int offset = contexts.offset(i);
+            int hitStart = buffer[offset + Contexts.HIT_START_INDEX];
+            Assert.assertEquals(1, buffer[offset + Contexts.RIGHT_START_INDEX] - hitStart);
+            int word = buffer[offset + Contexts.NUMBER_OF_BOOKKEEPING_INTS + hitStart];
+            Assert.assertTrue(word == term("the") || word == term("The"));
+            int[] context = contexts.get(i);
+            Assert.assertArrayEquals(context, Arrays.copyOfRange(buffer, offset, offset + context.length));
+        }
+    }
+
     @Test
     public void testTermSerialization() {
         String[] words = { "aap", "~", "~~", "" };
@@ -0,0 +1,153 @@
+package nl.inl.blacklab.search.lucene;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.spans.SpanWeight.Postings;
+import org.apache.lucene.search.spans.Spans;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import nl.inl.blacklab.TestIndex;
+import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.QueryExplanation;
+import nl.inl.blacklab.search.QueryExplanation.PlanNode;
+import nl.inl.blacklab.search.indexmetadata.AnnotatedFieldNameUtil;
+
+/**
+ * Test that the order in which SpanQuerySequence combines its clauses (rarest
+ * pair first) doesn't change the results.
+ */
+public class TestSpanQuerySequence {
+
+    private static TestIndex testIndex;
+
+    private static BlackLabIndex index;
+
+    @BeforeClass
+    public static void setUp() {
+        testIndex = new TestIndex();
+        index = testIndex.index();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        if (testIndex != null)
+            testIndex.close();
+    }
+
+    private static BLSpanQuery[] terms(String... words) {
+        String field = AnnotatedFieldNameUtil.annotationField("contents", "word", "i");
+        BLSpanQuery[] clauses = new BLSpanQuery[words.length];
+        for (int i = 0; i < words.length; i++) {
+            clauses[i] = new BLSpanTermQuery(new Term(field, words[i]));
+        }
+        return clauses;
+    }
+
+    private static void addHits(List<String> hits, Spans spans, int docBase) throws IOException {
+        if (spans == null)
+            return;
+        while (spans.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
+            while (spans.nextStartPosition() != Spans.NO_MORE_POSITIONS) {
+                hits.add((docBase + spans.docID()) + ":" + spans.startPosition() + "-" + spans.endPosition());
+            }
+        }
+    }
+
+    /** Find hits for the sequence, combining clauses in whatever order SpanQuerySequence chooses. */
+    private static List<String> hits(BLSpanQuery... clauses) throws IOException {
+        IndexSearcher searcher = index.searcher();
+        BLSpanWeight weight = new SpanQuerySequence(clauses).createWeight(searcher, false);
+        List<String> hits = new ArrayList<>();
+        for (LeafReaderContext context: index.reader().leaves()) {
+            addHits(hits, weight.getSpans(context, Postings.POSITIONS), context.docBase);
+        }
+        return hits;
+    }
+
+    /** Find hits for the sequence, combining clauses from left to right. */
+    private static List<String> hitsLeftToRight(BLSpanQuery... clauses) throws IOException {
+        IndexSearcher searcher = index.searcher();
+        List<BLSpanWeight> weights = new ArrayList<>();
+        for (BLSpanQuery clause: clauses) {
+            weights.add(clause.createWeight(searcher, false));
+        }
+        List<String> hits = new ArrayList<>();
+        for (LeafReaderContext context: index.reader().leaves()) {
+            BLSpans spans = null;
+            for (BLSpanWeight weight: weights) {
+                BLSpans clauseSpans = weight.getSpans(context, Postings.POSITIONS);
+                if (clauseSpans == null) {
+                    spans = null;
+                    break;
+                }
+                spans = spans == null ? clauseSpans : new SpansSequenceSimple(spans, clauseSpans);
+            }
+            addHits(hits, spans, context.docBase);
+        }
+        return hits;
+    }
+
+    private static void assertSameAsLeftToRight(int expectedNumberOfHits, String... words) throws IOException {
+        BLSpanQuery[] clauses = terms(words);
+        List<String> expected = hitsLeftToRight(clauses);
+        Assert.assertEquals(expectedNumberOfHits, expected.size());
+        Assert.assertEquals(expected, hits(clauses));
+    }
+
+    @Test
+    public void testRarestPairInMiddle() throws IOException {
+        BLSpanQuery[] clauses = terms("mier", "noot", "noot", "aap");
+        // Make sure the frequencies are skewed, so the rarest pair isn't the leftmost one
+        Assert.assertTrue(clauses[1].reverseMatchingCost(index.reader()) < clauses[0].reverseMatchingCost(index.reader()));
+        Assert.assertTrue(clauses[1].reverseMatchingCost(index.reader()) < clauses[3].reverseMatchingCost(index.reader()));
+        assertSameAsLeftToRight(1, "mier", "noot", "noot", "aap");
+    }
+
+    @Test
+    public void testJoinOrder() {
+        BLSpanQuery[] clauses = terms("mier", "noot", "noot", "aap");
+        long mier = clauses[0].reverseMatchingCost(index.reader());
+        long aap = clauses[3].reverseMatchingCost(index.reader());
+        // The pair with the rarest clause (noot) and the rarest other clause goes first;
+        // then the combined part is joined with the rarer of its neighbours.
+        List<String> expected = mier <= aap ? Arrays.asList("1+2", "0+1-2", "0-2+3")
+                : Arrays.asList("1+2", "1-2+3", "0+1-3");
+        SpanQuerySequence sequence = new SpanQuerySequence(clauses);
+        Assert.assertEquals(expected, sequence.simpleJoinOrder(index.reader()));
+
+        // The explain plan shows the same order
+        PlanNode plan = new QueryExplanation(sequence, sequence, index.reader()).plan();
+        Assert.assertEquals(expected, plan.joinOrder());
+    }
+
+    @Test
+    public void testSkewedFrequencies() throws IOException {
+        assertSameAsLeftToRight(1, "the", "quick", "brown");
+        assertSameAsLeftToRight(1, "aap", "mier", "mier", "mier", "noot");
+        assertSameAsLeftToRight(1, "the", "force", "be", "with");
+    }
+
+    @Test
+    public void testOverlappingHits() throws IOException {
+        assertSameAsLeftToRight(1, "mier", "mier", "mier");
+        assertSameAsLeftToRight(2, "aap", "aap", "aap");
+        assertSameAsLeftToRight(1, "noot", "aap", "aap", "aap", "aap");
+    }
+
+    @Test
+    public void testNoHits() throws IOException {
+        assertSameAsLeftToRight(0, "the", "noot", "aap");
+        assertSameAsLeftToRight(0, "aap", "aap", "noot");
+    }
+
+}
@@ -0,0 +1,86 @@
+package nl.inl.blacklab.search.results;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import nl.inl.blacklab.TestIndex;
+import nl.inl.blacklab.exceptions.InvalidQuery;
+import nl.inl.blacklab.queryParser.corpusql.CorpusQueryLanguageParser;
+import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.lucene.BLSpanQuery;
+
+public class TestHitsFromQueryParallel {
+
+    private static TestIndex testIndex;
+
+    private static BlackLabIndex index;
+
+    @BeforeClass
+    public static void setUp() {
+        testIndex = new TestIndex();
+        index = testIndex.index();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        if (testIndex != null)
+            testIndex.close();
+    }
+
+    private static Hits find(String cql, int docsPerRange) throws InvalidQuery {
+        QueryInfo queryInfo = QueryInfo.create(index);
+        BLSpanQuery query = CorpusQueryLanguageParser.parse(cql).translate(index.defaultExecutionContext(queryInfo.field()));
+        return new HitsFromQueryParallel(queryInfo, query, index.searchSettings(), docsPerRange);
+    }
+
+    /**
+     * Describe the hits (and their captured groups, if any) in the order we got them.
+     *
+     * @param hits hits to describe
+     * @param readAll whether to read all hits at once (in parallel), or one by one
+     * @return descriptions of the hits
+     */
+    private static List<String> describe(Hits hits, boolean readAll) {
+        if (readAll)
+            hits.size();
+        List<String> result = new ArrayList<>();
+        for (int i = 0; hits.hitsStats().processedAtLeast(i + 1); i++) {
+            Hit hit = hits.get(i);
+            String desc = hit.doc() + ":" + hit.start() + "-" + hit.end();
+            if (hits.hasCapturedGroups())
+                desc += " " + Arrays.toString(hits.capturedGroups().get(hit));
+            result.add(desc);
+        }
+        return result;
+    }
+
+    private static void assertSameHits(String cql) throws InvalidQuery {
+        // Our test index is small enough to fit in one range by default
+        List<String> expected = describe(find(cql, HitsFromQueryParallel.defaultDocsPerRange(index)), false);
+        Assert.assertFalse(expected.isEmpty());
+        for (int docsPerRange: new int[] { 1, 2, 3 }) {
+            Assert.assertEquals("one by one, docsPerRange " + docsPerRange, expected, describe(find(cql, docsPerRange), false));
+            Assert.assertEquals("all at once, docsPerRange " + docsPerRange, expected, describe(find(cql, docsPerRange), true));
+        }
+    }
+
+    @Test
+    public void testSplitRangesSameHits() throws InvalidQuery {
+        assertSameHits(" 'the' ");
+        assertSameHits(" [] ");
+        assertSameHits(" 'noot' | 'be' ");
+    }
+
+    @Test
+    public void testSplitRangesSameCapturedGroups() throws InvalidQuery {
+        assertSameHits(" a:[] 'aap' b:[] ");
+        assertSameHits(" a:'the' b:[] ");
+    }
+
+}
@@ -0,0 +1,165 @@
+package nl.inl.blacklab.search.results;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestResultsReadLock {
+
+    /** Total number of results our producer will produce */
+    private static final int TOTAL_RESULTS = 100;
+
+    private ExecutorService executorService;
+
+    private ResultsReadLock lock;
+
+    /** Number of results produced so far */
+    private AtomicInteger produced;
+
+    /** Have all results been produced? */
+    private volatile boolean finished;
+
+    @Before
+    public void setUp() {
+        executorService = Executors.newCachedThreadPool();
+        lock = new ResultsReadLock();
+        produced = new AtomicInteger();
+        finished = false;
+    }
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    private BooleanSupplier satisfied(int target) {
+        return () -> finished || target >= 0 && produced.get() >= target;
+    }
+
+    /** Produce results (while holding the lock) until we have the specified number. */
+    private void produceUpTo(int numberOfResults) {
+        for (int i = produced.get() + 1; i <= numberOfResults; i++) {
+            produced.set(i);
+            lock.produced(i);
+        }
+        if (numberOfResults == TOTAL_RESULTS)
+            finished = true;
+    }
+
+    /**
+     * Start a thread that needs a number of results, reading them itself if it
+     * gets the lock.
+     *
+     * @param target number of results needed, or -1 for all
+     * @return whether the thread got the lock
+     */
+    private Future<Boolean> startWaiter(int target) {
+        return executorService.submit(() -> {
+            boolean gotLock = lock.lockOrWait(target, satisfied(target));
+            if (gotLock) {
+                try {
+                    produceUpTo(TOTAL_RESULTS);
+                } finally {
+                    lock.unlock();
+                }
+            }
+            Assert.assertTrue(satisfied(target).getAsBoolean());
+            return gotLock;
+        });
+    }
+
+    /**
+     * Start a thread that gets the lock and produces results, stopping halfway to
+     * wait for a signal.
+     *
+     * @param locked counted down when the producer has the lock
+     * @param resume the producer waits for this halfway
+     * @param fail if true, throw an exception instead of resuming
+     * @return the producer's future
+     */
+    private Future<?> startProducer(CountDownLatch locked, CountDownLatch resume, boolean fail) {
+        return executorService.submit(() -> {
+            Assert.assertTrue(lock.lockOrWait(-1, satisfied(-1)));
+            try {
+                locked.countDown();
+                produceUpTo(TOTAL_RESULTS / 2);
+                resume.await();
+                if (fail)
+                    throw new IllegalStateException("Producer failed");
+                produceUpTo(TOTAL_RESULTS);
+            } finally {
+                lock.unlock();
+            }
+            return null;
+        });
+    }
+
+    @Test(timeout = 10000)
+    public void testWaitersWakeAtTarget() throws Exception {
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch resume = new CountDownLatch(1);
+        Future<?> producer = startProducer(locked, resume, false);
+        locked.await();
+
+        // Waiters whose target is reached wake up while the producer still holds the lock
+        List<Future<Boolean>> reached = new ArrayList<>();
+        for (int target: new int[] { 1, 10, 30, 50 })
+            reached.add(startWaiter(target));
+        Future<Boolean> later = startWaiter(80);
+        Future<Boolean> all = startWaiter(-1);
+        for (Future<Boolean> waiter: reached)
+            Assert.assertFalse(waiter.get(5, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        Assert.assertFalse(later.isDone());
+        Assert.assertFalse(all.isDone());
+
+        // The others wake up when the producer is done
+        resume.countDown();
+        producer.get(5, TimeUnit.SECONDS);
+        Assert.assertFalse(later.get(5, TimeUnit.SECONDS));
+        Assert.assertFalse(all.get(5, TimeUnit.SECONDS));
+        Assert.assertEquals(TOTAL_RESULTS, produced.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testProducerThrows() throws Exception {
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch resume = new CountDownLatch(1);
+        Future<?> producer = startProducer(locked, resume, true);
+        locked.await();
+
+        List<Future<Boolean>> waiters = new ArrayList<>();
+        for (int target: new int[] { 60, 80, -1, -1 })
+            waiters.add(startWaiter(target));
+        Thread.sleep(50); // (give the waiters a chance to start waiting)
+        resume.countDown();
+        try {
+            producer.get(5, TimeUnit.SECONDS);
+            Assert.fail("Expected the producer to fail");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+
+        // No waiter hangs: one of them takes over reading, the others wait for it
+        int tookOver = 0;
+        for (Future<Boolean> waiter: waiters) {
+            if (waiter.get(5, TimeUnit.SECONDS))
+                tookOver++;
+        }
+        Assert.assertTrue(tookOver >= 1);
+        Assert.assertEquals(TOTAL_RESULTS, produced.get());
+    }
+
+}
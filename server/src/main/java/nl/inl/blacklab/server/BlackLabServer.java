@@ -24,6 +24,7 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 
 import nl.inl.blacklab.exceptions.InsufficientMemoryAvailable;
 import nl.inl.blacklab.exceptions.InterruptedSearch;
+import nl.inl.blacklab.exceptions.TooManySearches;
 import nl.inl.blacklab.search.BlackLab;
 import nl.inl.blacklab.server.config.BLSConfig;
 import nl.inl.blacklab.server.config.OldBlsConfig;
@@ -55,6 +56,14 @@ public class BlackLabServer extends HttpServlet {
 
     static final Charset OUTPUT_ENCODING = Charset.forName("utf-8");
 
+    /**
+     * Size of the response buffer (bytes).
+     *
+     * Responses are streamed to the client, but until this much has been written,
+     * we can still change the HTTP status or replace the response with an error.
+     */
+    static final int RESPONSE_BUFFER_SIZE = 65536;
+
     /** Manages all our searches */
     private SearchManager searchManager;
 
@@ -250,9 +259,28 @@ public class BlackLabServer extends HttpServlet {
 
         String rootEl = requestHandler.omitBlackLabResponseRootElement() ? null : BLACKLAB_RESPONSE_ROOT_ELEMENT;
 
-        // === Handle the request
-        StringWriter buf = new StringWriter();
-        PrintWriter out = new PrintWriter(buf);
+        // === Write the response headers
+        // (before handling the request, so we can stream the response. Until the response buffer
+        //  fills up and is sent to the client, we can still change the status code, see below)
+        responseObject.setBufferSize(RESPONSE_BUFFER_SIZE);
+        responseObject.setStatus(HttpServletResponse.SC_OK);
+        responseObject.setCharacterEncoding(OUTPUT_ENCODING.name().toLowerCase());
+        responseObject.setContentType(ServletUtil.getContentType(outputType));
+        String allowOrigin = searchManager.config().getProtocol().getAccessControlAllowOrigin();
+        if (allowOrigin != null)
+            responseObject.addHeader("Access-Control-Allow-Origin", allowOrigin);
+        ServletUtil.writeCacheHeaders(responseObject, cacheTime);
+
+        // === Handle the request, streaming the response
+        PrintWriter out;
+        try {
+            out = createResponseWriter(responseObject);
+        } catch (IOException e) {
+            // Client cancelled the request midway through.
+            // This is okay, don't raise the alarm.
+            logger.debug("(couldn't send response, client probably cancelled the request)");
+            return;
+        }
         DataStream ds = DataStream.create(outputType, out, prettyPrint, callbackFunction);
         ds.setOmitEmptyProperties(searchManager.config().getProtocol().isOmitEmptyProperties());
         ds.startDocument(rootEl);
@@ -279,41 +307,61 @@ public class BlackLabServer extends HttpServlet {
                 httpCode = Response.error(es, "INTERRUPTED", "Search was interrupted", HttpServletResponse.SC_SERVICE_UNAVAILABLE);
             } catch (InsufficientMemoryAvailable e) {
                 httpCode = Response.error(es, "INSUFFICIENT_MEMORY", e.getMessage(), HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            } catch (TooManySearches e) {
+                httpCode = Response.error(es, "SERVER_BUSY", e.getMessage(), HttpServletResponse.SC_SERVICE_UNAVAILABLE);
             } catch (RuntimeException e) {
                 httpCode = Response.internalError(es, e, debugMode, "INTERR_HANDLING_REQUEST");
             } finally {
                 requestHandler.cleanup(); // close logger
             }
         }
-        ds.endDocument(rootEl);
 
-        // === Write the response headers
-
-        // Write HTTP headers (status code, encoding, content type and cache)
-        if (!isJsonp) // JSONP request always returns 200 OK because otherwise script doesn't load
-            responseObject.setStatus(httpCode);
-        responseObject.setCharacterEncoding(OUTPUT_ENCODING.name().toLowerCase());
-        responseObject.setContentType(ServletUtil.getContentType(outputType));
-        String allowOrigin = searchManager.config().getProtocol().getAccessControlAllowOrigin();
-        if (allowOrigin != null)
-            responseObject.addHeader("Access-Control-Allow-Origin", allowOrigin);
-        ServletUtil.writeCacheHeaders(responseObject, cacheTime);
-
-        // === Write the response that was captured in buf
+        // === Finish the response
         try {
-            Writer realOut = new OutputStreamWriter(responseObject.getOutputStream(), OUTPUT_ENCODING);
             boolean errorOccurred = errorBuf.getBuffer().length() > errorBufLengthBefore;
-            StringWriter writeWhat = errorOccurred ? errorBuf : buf;
-            realOut.write(writeWhat.toString());
-            realOut.flush();
+            if (!errorOccurred) {
+                ds.endDocument(rootEl);
+            } else if (!responseObject.isCommitted()) {
+                // Nothing was sent yet. Discard the partial response (by abandoning its writer
+                // without flushing it) and send the error response instead.
+                responseObject.resetBuffer();
+                out = createResponseWriter(responseObject);
+                out.write(errorBuf.toString());
+            } else {
+                // Part of the response was already sent; mark it as incomplete.
+                logger.warn("Error after response was partially sent: " + errorBuf.toString().trim());
+                ds.streamingError(errorBuf.toString());
+            }
+            if (!responseObject.isCommitted()) {
+                if (!isJsonp) // JSONP request always returns 200 OK because otherwise script doesn't load
+                    responseObject.setStatus(httpCode);
+            } else if (httpCode != HttpServletResponse.SC_OK && !errorOccurred) {
+                logger.warn("Couldn't set HTTP status " + httpCode + ", response was already partially sent");
+            }
+            out.flush();
+            if (out.checkError())
+                throw new IOException("Error writing response");
         } catch (IOException e) {
             // Client cancelled the request midway through.
             // This is okay, don't raise the alarm.
             logger.debug("(couldn't send response, client probably cancelled the request)");
-            return;
         }
     }
 
+    /**
+     * Create a writer for the response.
+     *
+     * The writer doesn't flush until it's full or it is flushed explicitly, so
+     * output that hasn't been flushed yet is discarded if we abandon it.
+     *
+     * @param responseObject response to write to
+     * @return the writer
+     * @throws IOException if the output stream could not be opened
+     */
+    private static PrintWriter createResponseWriter(HttpServletResponse responseObject) throws IOException {
+        return new PrintWriter(new OutputStreamWriter(responseObject.getOutputStream(), OUTPUT_ENCODING));
+    }
+
     @Override
     public void destroy() {
 
@@ -19,11 +19,17 @@ public class BLSConfigPerformance {
     
     int maxPausedSearches = 6;
     
+    int maxQueuedSearches = 100;
+    
     int abandonedCountPauseTimeSec = 10;
     
     int abandonedCountAbortTimeSec = 30;
     
     int maxRunningJobsPerUser = 10;
+    
+    String warmUpIndexes = "none";
+    
+    int warmUpThreads = -1;
 
     public int getMaxConcurrentSearches() {
         return maxConcurrentSearches;
@@ -54,6 +60,14 @@ public class BLSConfigPerformance {
         this.maxPausedSearches = maxPausedSearches;
     }
 
+    public int getMaxQueuedSearches() {
+        return maxQueuedSearches;
+    }
+
+    public void setMaxQueuedSearches(int maxQueuedSearches) {
+        this.maxQueuedSearches = maxQueuedSearches;
+    }
+
     public int getMaxRunningJobsPerUser() {
         return maxRunningJobsPerUser;
     }
@@ -83,6 +97,24 @@ public class BLSConfigPerformance {
         }
     }
 
+    public String getWarmUpIndexes() {
+        return warmUpIndexes;
+    }
+
+    public void setWarmUpIndexes(String warmUpIndexes) {
+        this.warmUpIndexes = warmUpIndexes;
+    }
+
+    public int getWarmUpThreads() {
+        return warmUpThreads;
+    }
+
+    public void setWarmUpThreads(int warmUpThreads) {
+        this.warmUpThreads = warmUpThreads;
+        if (warmUpThreads <= 0)
+            this.warmUpThreads = -1; // autodetect
+    }
+
     public int getAbandonedCountPauseTimeSec() {
         return abandonedCountPauseTimeSec;
     }
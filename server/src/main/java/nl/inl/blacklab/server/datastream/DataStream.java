@@ -109,6 +109,28 @@ public abstract class DataStream {
         error("INTERNAL_ERROR", ServletUtil.internalErrorMessage(code));
     }
 
+    /**
+     * Marks a response as incomplete because an error occurred after part of it was sent.
+     *
+     * The marker is written on a line by itself, followed by the error response.
+     */
+    public static final String STREAMING_ERROR_MARKER = "#BLACKLAB_ERROR";
+
+    /**
+     * Report an error that occurred after part of the response was sent.
+     *
+     * We can't replace the response with an error response anymore, or change the
+     * HTTP status, so we end the (incomplete) response with
+     * {@link #STREAMING_ERROR_MARKER} and the error response. Clients that
+     * receive a response that isn't well-formed should check for this.
+     *
+     * @param errorResponse the error response
+     */
+    public void streamingError(String errorResponse) {
+        out.print("\n" + STREAMING_ERROR_MARKER + "\n");
+        out.print(errorResponse);
+    }
+
     protected final PrintWriter out;
 
     private int indent = 0;
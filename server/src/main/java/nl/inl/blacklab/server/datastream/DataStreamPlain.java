@@ -18,6 +18,18 @@ public class DataStreamPlain extends DataStream {
         super(out, prettyPrint);
     }
 
+    /**
+     * Get the writer we write to.
+     *
+     * Useful to write output such as CSV records directly, instead of building it
+     * in memory first.
+     *
+     * @return the writer
+     */
+    public PrintWriter writer() {
+        return out;
+    }
+
     @Override
     public DataStream startDocument(String rootEl) {
         return this;
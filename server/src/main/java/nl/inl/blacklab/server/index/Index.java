@@ -16,6 +16,8 @@ import java.util.stream.Collectors;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 import nl.inl.blacklab.exceptions.ErrorOpeningIndex;
 import nl.inl.blacklab.exceptions.IndexTooOld;
@@ -49,7 +51,7 @@ import nl.inl.blacklab.server.search.SearchManager;
  */
 public class Index {
 
-    //private static final Logger logger = LogManager.getLogger(Index.class);
+    private static final Logger logger = LogManager.getLogger(Index.class);
 
     private static final String SHARE_WITH_USERS_FILENAME = ".shareWithUsers";
 
@@ -64,6 +66,20 @@ public class Index {
         }
     }
 
+    /** How far along opening this index for searching is */
+    public enum Readiness {
+        CLOSED, // not opened yet, will be opened when first used
+        OPENING, // being opened
+        OPEN, // opened; forward indexes and content stores are initialized in the background or when first used
+        WARMING_UP, // opened; forward indexes and content stores are being initialized
+        READY; // opened and warmed up
+
+        @Override
+        public String toString() {
+            return name().toLowerCase();
+        }
+    }
+
     /**
      * Sort all public indices first, then sort alphabetically within all public and
      * private indices.
@@ -96,6 +112,10 @@ public class Index {
      * addition, while an index is still running, no new Indexers can be created.
      */
     private BlackLabIndex index;
+
+    /** How far along opening this index is (may be read without locking this Index) */
+    private volatile Readiness readiness = Readiness.CLOSED;
+
     private Indexer indexer;
 
     /** List of users who may access this index (read-only). */
@@ -255,6 +275,7 @@ public class Index {
             return;
 
         //logger.debug("    Opening index '" + id + "', dir = " + dir);
+        readiness = Readiness.OPENING;
         try {
             index = searchMan.blackLabInstance().open(this.dir);
             if (BlsCache.ENABLE_NEW_CACHE)
@@ -264,9 +285,61 @@ public class Index {
             throw e;
         } catch (ErrorOpeningIndex e) {
             throw new InternalServerError("Error opening index: " + dir, "INTERR_OPENING_INDEX", e);
+        } finally {
+            readiness = index == null ? Readiness.CLOSED : Readiness.OPEN;
         }
     }
 
+    /**
+     * Open this index and initialize its forward indexes and content stores, so
+     * the first search doesn't have to wait for this.
+     *
+     * Only opening the index locks this Index; initialization happens
+     * afterwards, so the index can be searched and its status can be reported
+     * in the meantime. Errors are logged, not thrown; they will be reported
+     * again when the index is used.
+     *
+     * @param prefetch also load the forward index files into memory
+     */
+    public void warmUp(boolean prefetch) {
+        BlackLabIndex blIndex;
+        synchronized (this) {
+            try {
+                blIndex = blIndex();
+            } catch (BlsException e) {
+                logger.error("Could not warm up index '" + id + "': " + e.getMessage());
+                return;
+            }
+            readiness = Readiness.WARMING_UP;
+        }
+        boolean warmedUp = false;
+        try {
+            long start = System.currentTimeMillis();
+            blIndex.warmUp(prefetch);
+            warmedUp = true;
+            logger.info("Warmed up index '" + id + "' in " + (System.currentTimeMillis() - start) + "ms");
+        } catch (RuntimeException e) {
+            logger.error("Error warming up index '" + id + "'", e);
+        } finally {
+            synchronized (this) {
+                if (index == blIndex) // (not closed in the meantime)
+                    readiness = warmedUp ? Readiness.READY : Readiness.OPEN;
+            }
+        }
+    }
+
+    /**
+     * How far along opening this index is.
+     *
+     * Doesn't lock this Index, so it can be called while the index is being
+     * opened.
+     *
+     * @return the readiness
+     */
+    public Readiness getReadiness() {
+        return readiness;
+    }
+
     /**
      * Get an Indexer that can be used to add new data to this Index. Only one
      * indexer may be obtained at a time, meaning until the previous indexer can
@@ -318,6 +391,7 @@ public class Index {
             this.index.close();
             this.index = null;
         }
+        readiness = Readiness.CLOSED;
 
         // if we're currently indexing, force close the indexer
         if (this.indexer != null && this.indexer.isOpen()) {
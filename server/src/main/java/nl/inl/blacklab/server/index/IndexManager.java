@@ -11,6 +11,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.filefilter.FalseFileFilter;
@@ -75,6 +77,9 @@ public class IndexManager {
 
     private Map<String, Index> indices = new HashMap<>();
 
+    /** Opens indexes at startup (if configured), or null if not used */
+    private ExecutorService warmUpExecutorService = null;
+
     public IndexManager(SearchManager searchMan, BLSConfig blsConfig) throws ConfigurationException {
         this.searchMan = searchMan;
 
@@ -126,6 +131,53 @@ public class IndexManager {
         }
 
         checkAnyIndexesAvailable();
+
+        // Open the public indexes in the background, if configured
+        String warmUp = blsConfig.getPerformance().getWarmUpIndexes();
+        if (warmUp != null && !warmUp.equals("none")) {
+            if (warmUp.equals("open") || warmUp.equals("prefetch"))
+                startWarmUp(warmUp.equals("prefetch"), blsConfig.getPerformance().getWarmUpThreads());
+            else
+                logger.warn("Unknown value for warmUpIndexes: " + warmUp + " (should be none, open or prefetch)");
+        }
+    }
+
+    /**
+     * Open and warm up all public indexes in the background.
+     *
+     * Indexes are opened in parallel, each in its own thread, so one slow index
+     * doesn't hold up the others. Each Index reports its progress (see
+     * {@link Index#getReadiness()}).
+     *
+     * @param prefetch also load the forward index files into memory
+     * @param numberOfThreads how many indexes to open at the same time (-1 for the number of processors)
+     */
+    private void startWarmUp(boolean prefetch, int numberOfThreads) {
+        Collection<Index> publicIndices = getAvailablePublicIndices();
+        if (publicIndices.isEmpty())
+            return;
+        if (numberOfThreads <= 0)
+            numberOfThreads = Runtime.getRuntime().availableProcessors();
+        numberOfThreads = Math.min(numberOfThreads, publicIndices.size());
+        logger.info("Warming up " + publicIndices.size() + " indexes using " + numberOfThreads + " threads"
+                + (prefetch ? " (prefetching forward indexes)" : ""));
+        warmUpExecutorService = Executors.newFixedThreadPool(numberOfThreads);
+        for (Index index: publicIndices) {
+            warmUpExecutorService.execute(() -> index.warmUp(prefetch));
+        }
+        warmUpExecutorService.shutdown(); // threads end when all indexes have been warmed up
+    }
+
+    /**
+     * Clean up resources.
+     *
+     * Stops warming up indexes, if we were still doing that.
+     */
+    public void cleanup() {
+        if (warmUpExecutorService != null) {
+            warmUpExecutorService.shutdownNow();
+            warmUpExecutorService = null;
+        }
     }
 
     private void checkAnyIndexesAvailable() throws ConfigurationException {
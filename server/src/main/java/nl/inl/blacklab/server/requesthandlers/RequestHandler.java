@@ -25,6 +25,7 @@ import org.apache.lucene.document.Document;
 import nl.inl.blacklab.exceptions.BlackLabException;
 import nl.inl.blacklab.exceptions.InsufficientMemoryAvailable;
 import nl.inl.blacklab.exceptions.InterruptedSearch;
+import nl.inl.blacklab.exceptions.TooManySearches;
 import nl.inl.blacklab.requestlogging.SearchLogger;
 import nl.inl.blacklab.resultproperty.DocGroupProperty;
 import nl.inl.blacklab.resultproperty.DocProperty;
@@ -338,6 +339,8 @@ public abstract class RequestHandler {
                         return errorObj.error(e.getBlsErrorCode(), e.getMessage(), e.getHttpStatusCode());
                     } catch (InsufficientMemoryAvailable e) {
                         return errorObj.error("OUT_OF_MEMORY", e.getMessage(), HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                    } catch (TooManySearches e) {
+                        return errorObj.error("SERVER_BUSY", e.getMessage(), HttpServletResponse.SC_SERVICE_UNAVAILABLE);
                     } catch (ReflectiveOperationException e) {
                         // (can only happen if the required constructor is not available in the RequestHandler subclass)
                         logger.error("Could not get constructor to create request handler", e);
@@ -852,19 +855,17 @@ public abstract class RequestHandler {
         return user;
     }
 
-    private static ArrayList<String> temp = new ArrayList<>();
-
-    private static synchronized void writeRow(CSVPrinter printer, int numColumns, Object... values) {
+    private static void writeRow(CSVPrinter printer, int numColumns, Object... values) {
+        List<String> row = new ArrayList<>(Math.max(numColumns, values.length));
         for (Object o : values)
-            temp.add(o.toString());
-        for (int i = temp.size(); i < numColumns; ++i)
-            temp.add("");
+            row.add(o.toString());
+        for (int i = row.size(); i < numColumns; ++i)
+            row.add("");
         try {
-            printer.printRecord(temp);
+            printer.printRecord(row);
         } catch (IOException e) {
             throw new RuntimeException("Cannot write response");
         }
-        temp.clear();
     }
 
     /**
@@ -125,7 +125,7 @@ public class RequestHandlerDocSnippet extends RequestHandler {
                 ds.plain(c.match());
             }
         } else {
-            Kwics kwics = singleHit.kwics(wordsAroundHit);
+            Kwics kwics = singleHit.kwics(wordsAroundHit, annotationsTolist);
             Kwic c = kwics.get(hit);
             if (!isFragment) {
                 ds.startEntry("left").contextList(c.annotations(), annotationsTolist, c.left()).endEntry()
@@ -139,12 +139,14 @@ public class RequestHandlerDocsCsv extends RequestHandler {
         return searchParam.getBoolean("csvsepline");
     }
 
-    private CSVPrinter createHeader(List<String> row) throws IOException {
-        // Create the header, then explicitly declare the separator, as excel normally uses a locale-dependent CSV-separator...
+    private CSVPrinter createHeader(List<String> row, DataStreamPlain ds) throws IOException {
+        // Explicitly declare the separator, as excel normally uses a locale-dependent CSV-separator...
+        if (declareSeparator())
+            ds.plain("sep=,\r\n");
+        // Create the header. Records are printed straight to the response, so large exports are
+        // streamed to the client instead of being built in memory first.
         CSVFormat format = CSVFormat.EXCEL.withHeader(row.toArray(new String[0]));
-        CSVPrinter printer = format.print(new StringBuilder(declareSeparator() ? "sep=,\r\n" : ""));
-
-        return printer;
+        return format.print(ds.writer());
     }
 
     private void writeGroups(DocResults inputDocsForGroups, DocGroups groups, DocResults subcorpusResults, DataStreamPlain ds) throws BlsException {
@@ -164,7 +166,7 @@ public class RequestHandlerDocsCsv extends RequestHandler {
                 row.add("subcorpusSize.documents");
             }
 
-            CSVPrinter printer = createHeader(row);
+            CSVPrinter printer = createHeader(row, ds);
             if (includeSearchParameters()) {
                 addSummaryCsvDocs(printer, row.size(), inputDocsForGroups, groups, subcorpusResults.subcorpusSize());
             }
@@ -190,9 +192,6 @@ public class RequestHandlerDocsCsv extends RequestHandler {
 
                 printer.printRecord(row);
             }
-
-            printer.flush();
-            ds.plain(printer.getOut().toString());
         } catch (IOException e) {
             throw new InternalServerError("Cannot write response: " + e.getMessage(), "INTERR_WRITING_DOCS_CSV1");
         }
@@ -222,7 +221,7 @@ public class RequestHandlerDocsCsv extends RequestHandler {
 
             row.addAll(metadataFieldIds); // NOTE: use the raw field IDs for headers, not the display names, CSVPrinter can't handle duplicate names
 
-            CSVPrinter printer = createHeader(row);
+            CSVPrinter printer = createHeader(row, ds);
             addSummaryCsvDocs(printer, row.size(), docs, fromGroups, globalSubcorpusSize.subcorpusSize());
 
             StringBuilder sb = new StringBuilder();
@@ -291,9 +290,6 @@ public class RequestHandlerDocsCsv extends RequestHandler {
                 }
                 printer.println();
             }
-
-            printer.flush();
-            ds.plain(printer.getOut().toString());
         } catch (IOException e) {
             throw new InternalServerError("Cannot write response: " + e.getMessage(), "INTERR_WRITING_DOCS_CSV2");
         }
@@ -8,6 +8,7 @@ import nl.inl.blacklab.exceptions.InvalidQuery;
 import nl.inl.blacklab.queryParser.corpusql.CorpusQueryLanguageParser;
 import nl.inl.blacklab.search.BlackLabIndex;
 import nl.inl.blacklab.search.QueryExplanation;
+import nl.inl.blacklab.search.QueryExplanation.PlanNode;
 import nl.inl.blacklab.search.results.QueryInfo;
 import nl.inl.blacklab.server.BlackLabServer;
 import nl.inl.blacklab.server.datastream.DataStream;
@@ -41,6 +42,12 @@ public class RequestHandlerExplain extends RequestHandler {
                     .entry("textPattern", patt)
                     .entry("originalQuery", explanation.originalQuery())
                     .entry("rewrittenQuery", explanation.rewrittenQuery());
+            if (explanation.plan() != null) {
+                ds.entry("estimatedHits", explanation.estimatedHits());
+                ds.startEntry("plan");
+                dataStreamPlanNode(ds, explanation.plan());
+                ds.endEntry();
+            }
             ds.endMap();
         } catch (TooManyClauses e) {
             return Response.badRequest(ds, "QUERY_TOO_BROAD",
@@ -53,4 +60,29 @@ public class RequestHandlerExplain extends RequestHandler {
         return HTTP_OK;
     }
 
+    private static void dataStreamPlanNode(DataStream ds, PlanNode node) {
+        ds.startMap()
+                .entry("query", node.description())
+                .entry("estimatedHits", node.estimatedHits())
+                .entry("forwardMatchingCost", node.forwardMatchingCost())
+                .entry("canMakeNfa", node.canMakeNfa());
+        if (!node.children().isEmpty()) {
+            ds.startEntry("clauses").startList();
+            for (PlanNode child: node.children()) {
+                ds.startItem("clause");
+                dataStreamPlanNode(ds, child);
+                ds.endItem();
+            }
+            ds.endList().endEntry();
+        }
+        if (!node.joinOrder().isEmpty()) {
+            ds.startEntry("joinOrder").startList();
+            for (String join: node.joinOrder()) {
+                ds.item("join", join);
+            }
+            ds.endList().endEntry();
+        }
+        ds.endMap();
+    }
+
 }
@@ -128,9 +128,11 @@ public class RequestHandlerHits extends RequestHandler {
 
             // Since we're going to always launch a totals count anyway, just do it right away
             // then construct a window on top of the total
+            // If we only need a window of hits, count the totals without storing all the hits
+            boolean countOnly = !searchParam.getString("calc").equals("colloc") && !searchParam.getBoolean("includetokencount");
             hits = searchMan.search(user, searchParam.hitsSample());
-            job = searchMan.searchNonBlocking(user, searchParam.hitsCount()); // always launch totals nonblocking!
-            docsCount = searchMan.search(user, searchParam.docsCount());
+            job = searchMan.searchNonBlocking(user, searchParam.hitsCount(countOnly)); // always launch totals nonblocking!
+            docsCount = searchMan.search(user, searchParam.docsCount(countOnly));
             try {
                 hitsCount = (ResultCount) job.get();
             } catch (InterruptedException | ExecutionException e) {
@@ -231,7 +233,7 @@ public class RequestHandlerHits extends RequestHandler {
         if (contextSettings.concType() == ConcordanceType.CONTENT_STORE)
             concordances = window.concordances(contextSettings.size(), ConcordanceType.CONTENT_STORE);
         else
-            kwics = window.kwics(contextSettings.size());
+            kwics = window.kwics(contextSettings.size(), annotationsToList);
 
         Set<MetadataField> metadataFieldsTolist = new HashSet<>(this.getMetadataToWrite());
         for (Hit hit : window) {
@@ -1,13 +1,19 @@
 package nl.inl.blacklab.server.requesthandlers;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
 import javax.servlet.http.HttpServletRequest;
 
 import org.apache.commons.csv.CSVFormat;
@@ -21,6 +27,7 @@ import nl.inl.blacklab.resultproperty.PropertyValue;
 import nl.inl.blacklab.search.Kwic;
 import nl.inl.blacklab.search.indexmetadata.Annotation;
 import nl.inl.blacklab.search.indexmetadata.MetadataField;
+import nl.inl.blacklab.search.results.ContextSize;
 import nl.inl.blacklab.search.results.CorpusSize;
 import nl.inl.blacklab.search.results.DocResults;
 import nl.inl.blacklab.search.results.Hit;
@@ -42,6 +49,10 @@ import nl.inl.blacklab.server.search.BlsCacheEntry;
  * Request handler for hit results.
  */
 public class RequestHandlerHitsCsv extends RequestHandler {
+
+    /** How many hits to render per batch when exporting hits */
+    private static final int EXPORT_BATCH_SIZE = 1000;
+
     private static class Result {
         public final Hits hits;
         public final HitGroups groups;
@@ -127,17 +138,21 @@ public class RequestHandlerHitsCsv extends RequestHandler {
 
         // apply window settings
         // Different from the regular results, if no window settings are provided, we export the maximum amount automatically
-        // The max for CSV exports is also different from the default pagesize maximum.
+        // The max for CSV exports is the maximum number of hits to process, not the default pagesize maximum.
         if (hits != null) {
             int first = Math.max(0, searchParam.getInteger("first")); // Defaults to 0
             if (!hits.hitsStats().processedAtLeast(first))
                 first = 0;
 
-            int number = searchMan.config().getParameters().getPageSize().getMax();
+            int number = searchMan.config().getParameters().getProcessHits().getMax();
+            if (number < 0)
+                number = Integer.MAX_VALUE;
             if (searchParam.containsKey("number"))
                 number = Math.min(Math.max(0, searchParam.getInteger("number")), number);
 
-            hits = hits.window(first, number);
+            // (if we export all hits, don't make a copy of them)
+            if (first > 0 || (number < Integer.MAX_VALUE && hits.hitsStats().processedAtLeast(number + 1)))
+                hits = hits.window(first, number);
         }
 
         return new Result(hits, groups, subcorpus, viewGroup != null);
@@ -164,7 +179,7 @@ public class RequestHandlerHitsCsv extends RequestHandler {
                 row.add("subcorpusSize.tokens");
             }
 
-            CSVPrinter printer = createHeader(row);
+            CSVPrinter printer = createHeader(row, ds);
             if (this.includeSearchParameters()) {
                 addSummaryCsvHits(printer, row.size(), inputHitsForGroups, groups, subcorpusResults.subcorpusSize());
             }
@@ -188,19 +203,19 @@ public class RequestHandlerHitsCsv extends RequestHandler {
 
                 printer.printRecord(row);
             }
-
-            printer.flush();
-            ds.plain(printer.getOut().toString());
         } catch (IOException e) {
             throw new InternalServerError("Cannot write response: " + e.getMessage(), "INTERR_WRITING_HITS_CSV1");
         }
     }
 
-    private CSVPrinter createHeader(List<String> row) throws IOException {
-        // Create the header, then explicitly declare the separator, as excel normally uses a locale-dependent CSV-separator...
+    private CSVPrinter createHeader(List<String> row, DataStreamPlain ds) throws IOException {
+        // Explicitly declare the separator, as excel normally uses a locale-dependent CSV-separator...
+        if (declareSeparator())
+            ds.plain("sep=,\r\n");
+        // Create the header. Records are printed straight to the response, so large exports are
+        // streamed to the client instead of being built in memory first.
         CSVFormat format = CSVFormat.EXCEL.withHeader(row.toArray(new String[0]));
-        CSVPrinter printer = format.print(new StringBuilder(declareSeparator() ? "sep=,\r\n" : ""));
-        return printer;
+        return format.print(ds.writer());
     }
 
     private boolean includeSearchParameters() {
@@ -272,25 +287,43 @@ public class RequestHandlerHitsCsv extends RequestHandler {
                  row.add(f.name());
             }
 
-            CSVPrinter printer = createHeader(row);
+            CSVPrinter printer = createHeader(row, ds);
             if (includeSearchParameters()) {
                 hits.hitsStats().countedTotal(); // block for a bit
                 addSummaryCsvHits(printer, row.size(), hits, groups, subcorpusResults.subcorpusSize());
             }
 
-            Map<Integer, Document> luceneDocs = new HashMap<>();
-            Kwics kwics = hits.kwics(blIndex().defaultContextSize());
-            for (Hit hit : hits) {
-                Document doc = luceneDocs.get(hit.doc());
-                if (doc == null) {
-                    doc = blIndex().doc(hit.doc()).luceneDoc();
-                    luceneDocs.put(hit.doc(), doc);
+            // Render the rows in batches on the search executor. Only a few batches are in progress
+            // at a time, so memory use doesn't depend on the number of hits exported. Batches are
+            // written in order as soon as they're ready.
+            ContextSize contextSize = blIndex().defaultContextSize();
+            ExecutorService executorService = blIndex().blackLab().searchExecutorService();
+            int maxBatchesInProgress = Math.max(1, blIndex().blackLab().maxThreadsPerSearch()) + 1;
+            Deque<FutureTask<String>> batches = new ArrayDeque<>();
+            try {
+                int nextBatchStart = 0;
+                while (true) {
+                    while (batches.size() < maxBatchesInProgress && hits.hitsStats().processedAtLeast(nextBatchStart + 1)) {
+                        Hits batch = hits.window(nextBatchStart, EXPORT_BATCH_SIZE);
+                        FutureTask<String> task = new FutureTask<>(() -> renderHits(batch, contextSize,
+                                mainTokenProperty, annotationsToWrite, metadataFieldsToWrite));
+                        executorService.execute(task);
+                        batches.add(task);
+                        nextBatchStart += EXPORT_BATCH_SIZE;
+                    }
+                    if (batches.isEmpty())
+                        break;
+                    FutureTask<String> task = batches.remove();
+                    task.run(); // does nothing if already started by the executor
+                    ds.plain(task.get());
+                }
+            } catch (InterruptedException | ExecutionException e) {
+                throw RequestHandler.translateSearchException(e);
+            } finally {
+                for (FutureTask<String> task: batches) {
+                    task.cancel(true);
                 }
-                writeHit(kwics.get(hit), doc, mainTokenProperty, annotationsToWrite, getDocumentPid(blIndex(), hit.doc(), doc), metadataFieldsToWrite, row);
-                printer.printRecord(row);
             }
-            printer.flush();
-            ds.plain(printer.getOut().toString());
         } catch (IOException e) {
             throw new InternalServerError("Cannot write response: " + e.getMessage(), "INTERR_WRITING_HITS_CSV2");
         } catch (BlsException e) {
@@ -298,6 +331,36 @@ public class RequestHandlerHitsCsv extends RequestHandler {
         }
     }
 
+    /**
+     * Render CSV rows for a batch of hits.
+     *
+     * KWICs are retrieved for the whole batch at once (per document), and each
+     * document's stored fields are read only once.
+     *
+     * @return the rendered rows
+     */
+    private String renderHits(Hits hits, ContextSize contextSize, Annotation mainTokenProperty,
+            List<Annotation> annotationsToWrite, List<MetadataField> metadataFieldsToWrite) throws IOException, BlsException {
+        StringBuilder rows = new StringBuilder();
+        CSVPrinter printer = CSVFormat.EXCEL.print(rows);
+        ArrayList<String> row = new ArrayList<>();
+        Map<Integer, Document> luceneDocs = new HashMap<>();
+        // Only read the forward indexes of the annotations we export
+        Set<Annotation> kwicAnnotations = new HashSet<>(annotationsToWrite);
+        kwicAnnotations.add(mainTokenProperty);
+        Kwics kwics = hits.kwics(contextSize, kwicAnnotations);
+        for (Hit hit : hits) {
+            Document doc = luceneDocs.get(hit.doc());
+            if (doc == null) {
+                doc = blIndex().doc(hit.doc()).luceneDoc();
+                luceneDocs.put(hit.doc(), doc);
+            }
+            writeHit(kwics.get(hit), doc, mainTokenProperty, annotationsToWrite, getDocumentPid(blIndex(), hit.doc(), doc), metadataFieldsToWrite, row);
+            printer.printRecord(row);
+        }
+        return rows.toString();
+    }
+
     @Override
     public int handle(DataStream ds) throws BlsException {
         Result result = getHits();
@@ -10,6 +10,7 @@ import nl.inl.blacklab.server.datastream.DataStream;
 import nl.inl.blacklab.server.exceptions.BlsException;
 import nl.inl.blacklab.server.index.Index;
 import nl.inl.blacklab.server.index.Index.IndexStatus;
+import nl.inl.blacklab.server.index.Index.Readiness;
 import nl.inl.blacklab.server.jobs.User;
 
 /**
@@ -30,6 +31,14 @@ public class RequestHandlerIndexStatus extends RequestHandler {
     @Override
     public int handle(DataStream ds) throws BlsException {
         Index index = indexMan.getIndex(indexName);
+        if (index.getReadiness() == Readiness.OPENING) {
+            // Don't wait for the index to be opened (e.g. during warm-up at startup)
+            ds.startMap()
+                    .entry("indexName", indexName)
+                    .entry("readiness", Readiness.OPENING)
+                    .endMap();
+            return HTTP_OK;
+        }
         synchronized (index) {
             IndexStatus status = index.getStatus();
             IndexMetadata indexMetadata;
@@ -44,7 +53,8 @@ public class RequestHandlerIndexStatus extends RequestHandler {
                     .entry("indexName", indexName)
                     .entry("displayName", indexMetadata.displayName())
                     .entry("description", indexMetadata.description())
-                    .entry("status", status);
+                    .entry("status", status)
+                    .entry("readiness", index.getReadiness());
 
             String formatIdentifier = indexMetadata.documentFormat();
             if (formatIdentifier != null && formatIdentifier.length() > 0)
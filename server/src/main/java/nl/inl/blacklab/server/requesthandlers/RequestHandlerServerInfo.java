@@ -13,6 +13,7 @@ import nl.inl.blacklab.server.datastream.DataStream;
 import nl.inl.blacklab.server.exceptions.BlsException;
 import nl.inl.blacklab.server.index.Index;
 import nl.inl.blacklab.server.index.Index.IndexStatus;
+import nl.inl.blacklab.server.index.Index.Readiness;
 import nl.inl.blacklab.server.jobs.User;
 
 /**
@@ -44,6 +45,13 @@ public class RequestHandlerServerInfo extends RequestHandler {
             ds.startAttrEntry("index", "name", index.getId());
             ds.startMap();
 
+            if (index.getReadiness() == Readiness.OPENING) {
+                // Don't wait for the index to be opened; report what we know
+                ds.entry("readiness", Readiness.OPENING);
+                ds.endMap();
+                ds.endAttrEntry();
+                continue;
+            }
             try {
                 synchronized (index) {
                     IndexMetadata indexMetadata = index.getIndexMetadata();
@@ -52,6 +60,7 @@ public class RequestHandlerServerInfo extends RequestHandler {
                     ds.entry("displayName", indexMetadata.displayName());
                     ds.entry("description", indexMetadata.description());
                     ds.entry("status", status);
+                    ds.entry("readiness", index.getReadiness());
 
                     if (status.equals(IndexStatus.INDEXING)) {
                         IndexListener indexProgress = index.getIndexerListener();
@@ -6,8 +6,6 @@ import java.util.Set;
 
 import javax.servlet.http.HttpServletRequest;
 
-import org.apache.lucene.search.Query;
-
 import nl.inl.blacklab.search.BlackLabIndex;
 import nl.inl.blacklab.search.TermFrequency;
 import nl.inl.blacklab.search.TermFrequencyList;
@@ -33,8 +31,6 @@ public class RequestHandlerTermFreq extends RequestHandler {
 
     @Override
     public int handle(DataStream ds) throws BlsException {
-        //TODO: use background job?
-
         BlackLabIndex blIndex = blIndex();
         AnnotatedField cfd = blIndex.mainAnnotatedField();
         String propName = searchParam.getString("annotation");
@@ -44,12 +40,11 @@ public class RequestHandlerTermFreq extends RequestHandler {
         MatchSensitivity sensitive = MatchSensitivity.caseAndDiacriticsSensitive(searchParam.getBoolean("sensitive"));
         AnnotationSensitivity sensitivity = annotation.sensitivity(sensitive);
 
-        // May be null!
-        Query q = searchParam.getFilterQuery();
         // May also null/empty to retrieve all terms!
         Set<String> terms = searchParam.getString("terms") != null ? new HashSet<>(Arrays.asList(searchParam.getString("terms").trim().split("\\s*,\\s*"))) : null;
-         
-        TermFrequencyList tfl = blIndex.termFrequencies(sensitivity, q, terms);
+
+        // (runs as a cached search, so repeated requests, e.g. for other pages, are fast)
+        TermFrequencyList tfl = searchMan.search(user, searchParam.termFrequencies(sensitivity, terms));
         searchLogger.setResultsFound(tfl.size());
 
         if (terms == null || terms.isEmpty()) { // apply pagination only when requesting all terms
@@ -33,6 +33,7 @@ import nl.inl.blacklab.resultproperty.PropertyValue;
 import nl.inl.blacklab.search.BlackLabIndex;
 import nl.inl.blacklab.search.ConcordanceType;
 import nl.inl.blacklab.search.SingleDocIdFilter;
+import nl.inl.blacklab.search.indexmetadata.AnnotationSensitivity;
 import nl.inl.blacklab.search.results.ContextSize;
 import nl.inl.blacklab.search.results.Results;
 import nl.inl.blacklab.search.results.SampleParameters;
@@ -45,6 +46,7 @@ import nl.inl.blacklab.searches.SearchEmpty;
 import nl.inl.blacklab.searches.SearchFacets;
 import nl.inl.blacklab.searches.SearchHitGroups;
 import nl.inl.blacklab.searches.SearchHits;
+import nl.inl.blacklab.searches.SearchTermFrequencies;
 import nl.inl.blacklab.server.datastream.DataStream;
 import nl.inl.blacklab.server.exceptions.BadRequest;
 import nl.inl.blacklab.server.exceptions.BlsException;
@@ -566,7 +568,19 @@ public class SearchParameters {
     }
 
     public SearchCount hitsCount() throws BlsException {
-        return hitsSample().hitCount();
+        return hitsCount(false);
+    }
+
+    /**
+     * Count hits.
+     *
+     * @param countOnly if true, we don't need all the hits, so count them without
+     *            storing them if possible
+     * @return the count search
+     * @throws BlsException on error
+     */
+    public SearchCount hitsCount(boolean countOnly) throws BlsException {
+        return countOnly ? hitsSample().hitCountOnly() : hitsSample().hitCount();
     }
 
     public SearchHits hitsFiltered() throws BlsException {
@@ -598,8 +612,20 @@ public class SearchParameters {
     }
 
     public SearchCount docsCount() throws BlsException {
+        return docsCount(false);
+    }
+
+    /**
+     * Count docs.
+     *
+     * @param countOnly if true, we don't need all the hits, so count them without
+     *            storing them if possible
+     * @return the count search
+     * @throws BlsException on error
+     */
+    public SearchCount docsCount(boolean countOnly) throws BlsException {
         if (getPattern() != null)
-            return hitsSample().docCount();
+            return countOnly ? hitsSample().docCountOnly() : hitsSample().docCount();
         return docs().count();
     }
 
@@ -633,6 +659,22 @@ public class SearchParameters {
         return search.find(docFilterQuery);
     }
 
+    /**
+     * Return our term frequencies search.
+     *
+     * Term frequencies are determined for the documents matching our filter query,
+     * or for all documents if there is none.
+     *
+     * @param annotSensitivity annotation and sensitivity to get term frequencies for
+     * @param terms terms to get frequencies for, or null/empty for all terms
+     * @return term frequencies search
+     * @throws BlsException
+     */
+    public SearchTermFrequencies termFrequencies(AnnotationSensitivity annotSensitivity, Set<String> terms) throws BlsException {
+        SearchEmpty search = blIndex().search(null, getUseCache(), searchLogger);
+        return search.termFrequencies(annotSensitivity, getFilterQuery(), terms);
+    }
+
     public SearchHitGroups hitsGrouped() throws BlsException {
         String groupBy = hitGroupSettings().groupBy();
         HitProperty prop = HitProperty.deserialize(blIndex(), blIndex().mainAnnotatedField(), groupBy);
@@ -9,13 +9,16 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.function.Supplier;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import nl.inl.blacklab.contentstore.BlockCache;
 import nl.inl.blacklab.exceptions.InsufficientMemoryAvailable;
 import nl.inl.blacklab.exceptions.InterruptedSearch;
+import nl.inl.blacklab.exceptions.TooManySearches;
 import nl.inl.blacklab.requestlogging.LogLevel;
 import nl.inl.blacklab.search.BlackLabIndex;
 import nl.inl.blacklab.search.results.SearchResult;
@@ -39,7 +42,8 @@ public class BlsCache implements SearchCache {
     
     public static final boolean ENABLE_NEW_CACHE = true;
 
-    /** Very rough measure of how large result objects are, based on a Hit (3 ints + 12 bytes object overhead) */
+    /** Very rough measure of how large result objects are. Hits are stored in columnar form (3 ints, plus
+     *  array growth slack); other result objects such as groups and doc results are larger. */
     public static final int SIZE_OF_HIT = 24;
 
     protected Map<Search<?>, BlsCacheEntry<? extends SearchResult>> searches = new HashMap<>();
@@ -50,9 +54,15 @@ public class BlsCache implements SearchCache {
     
     private LogDatabase logDatabase = null;
 
-    public BlsCache(BLSConfig config) {
+    /** Decides when our searches may start running */
+    private SearchScheduler scheduler;
+
+    public BlsCache(BLSConfig config, ExecutorService searchExecutorService) {
         BLSConfigCache cacheConfig = config.getCache();
-        initLoadManagement(cacheConfig, config.getPerformance());
+        BLSConfigPerformance perf = config.getPerformance();
+        scheduler = new SearchScheduler(searchExecutorService, perf.getMaxConcurrentSearches(),
+                perf.getMaxQueuedSearches(), perf.getMaxRunningJobsPerUser());
+        initLoadManagement(cacheConfig, perf);
         this.trace = config.getLog().getTrace().isCache();
         cacheDisabled = cacheConfig.getMaxNumberOfJobs() == 0 || cacheConfig.getMaxJobAgeSec() == 0 || cacheConfig.getMaxSizeMegs() == 0;
     }
@@ -136,6 +146,11 @@ public class BlsCache implements SearchCache {
         boolean useCache = search.queryInfo().useCache();
         synchronized (this) {
             future = useCache ? (BlsCacheEntry<R>) searches.get(search) : null;
+            if (future != null && future.hasCancelledCount()) {
+                // The count was stopped (e.g. by load management) and will never complete; start a new one
+                searches.remove(search);
+                future = null;
+            }
             if (future == null) {
                 search.log(LogLevel.BASIC, "not found in cache, starting search: " + search);
                 try {
@@ -149,7 +164,7 @@ public class BlsCache implements SearchCache {
                 if (!cacheDisabled && useCache)
                     searches.put(search, future);
                 if (!block)
-                    future.start(false);
+                    startOrRemove(future, false);
             } else {
                 search.log(LogLevel.BASIC, "found in cache (" + future.status() + "): " + search);
             }
@@ -158,7 +173,7 @@ public class BlsCache implements SearchCache {
             if (trace)
                 logger.info("-- ADDED: " + search);
             if (block)
-                future.start(true);
+                startOrRemove(future, true);
         } else {
             if (trace)
                 logger.info("-- FOUND: " + search);
@@ -167,6 +182,26 @@ public class BlsCache implements SearchCache {
         return future;
     }
     
+    /**
+     * Start a new entry's search, removing the entry from the cache if it was refused.
+     *
+     * @param entry the entry
+     * @param block wait until the result is available?
+     * @throws TooManySearches if the search queue is full
+     */
+    private void startOrRemove(BlsCacheEntry<?> entry, boolean block) {
+        try {
+            entry.start(scheduler, block);
+        } catch (TooManySearches e) {
+            // Don't leave an entry in the cache that will never run
+            synchronized (this) {
+                if (searches.get(entry.search()) == entry)
+                    searches.remove(entry.search());
+            }
+            throw e;
+        }
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public <R extends SearchResult> BlsCacheEntry<R> remove(Search<R> search) {
@@ -410,7 +445,9 @@ public class BlsCache implements SearchCache {
         int coresLeft = perfConfig.getMaxConcurrentSearches();
         int pauseSlotsLeft = perfConfig.getMaxPausedSearches();
         for (BlsCacheEntry<?> search : searches) {
-            if (search.isDone()) {
+            if (search.isQueued()) {
+                // Waiting for the scheduler to start it; doesn't use any resources yet.
+            } else if (search.isDone()) {
                 // Finished search. Keep in cache?
 
                 // NOTE: we'll leave this to removeOldSearches() for now.
@@ -460,14 +497,14 @@ public class BlsCache implements SearchCache {
             if (threadPauser.isPaused()) {
                 if (trace)
                     logger.debug("LOADMGR: Resuming search: " + search + " (" + reason + ")");
-                threadPauser.pause(false);
+                search.pause(false);
             }
             break;
         case PAUSE:
             if (!threadPauser.isPaused()) {
                 if (trace)
                     logger.debug("LOADMGR: Pausing search: " + search + " (" + reason + ")");
-                threadPauser.pause(true);
+                search.pause(true);
             }
             break;
         case ABORT:
@@ -509,8 +546,18 @@ public class BlsCache implements SearchCache {
                 .entry("maxSearchAgeSec", config.getMaxJobAgeSec())
                 .entry("sizeBytes", resultsObjectsInCache * SIZE_OF_HIT)
                 .entry("numberOfSearches", searches.size())
-                .entry("freeMemory", MemoryUtil.getFree())
-                .endMap();
+                .entry("freeMemory", MemoryUtil.getFree());
+        ds.startEntry("searchQueue");
+        scheduler.dataStream(ds);
+        ds.endEntry();
+        BlockCache blockCache = BlockCache.get();
+        ds.startEntry("contentStoreBlockCache").startMap()
+                .entry("maxSizeBytes", blockCache.maxSizeBytes())
+                .entry("sizeBytes", blockCache.sizeBytes())
+                .entry("hits", blockCache.hits())
+                .entry("misses", blockCache.misses())
+                .endMap().endEntry();
+        ds.endMap();
     }
     
     /**
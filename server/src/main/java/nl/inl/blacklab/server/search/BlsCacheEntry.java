@@ -9,13 +9,17 @@ import java.util.concurrent.TimeoutException;
 import java.util.function.Supplier;
 
 import nl.inl.blacklab.exceptions.InterruptedSearch;
+import nl.inl.blacklab.exceptions.TooManySearches;
+import nl.inl.blacklab.search.results.HitsCountFromQuery;
 import nl.inl.blacklab.search.results.ResultCount;
 import nl.inl.blacklab.search.results.Results;
 import nl.inl.blacklab.search.results.SearchResult;
 import nl.inl.blacklab.searches.Search;
 import nl.inl.blacklab.searches.SearchCount;
 import nl.inl.blacklab.server.datastream.DataStream;
+import nl.inl.blacklab.server.search.SearchScheduler.Priority;
 import nl.inl.util.ThreadPauser;
+import nl.inl.util.ThreadPauserImpl;
 
 public class BlsCacheEntry<T extends SearchResult> implements Future<T> {
     
@@ -61,6 +65,7 @@ public class BlsCacheEntry<T extends SearchResult> implements Future<T> {
          */
         @Override
         public void run() {
+            taskStartTime = now();
             try {
                 boolean isResultsInstance = false;
                 try {
@@ -71,11 +76,16 @@ public class BlsCacheEntry<T extends SearchResult> implements Future<T> {
                     if (isResultsInstance) {
                         // Make sure our results object can be paused
                         pausing.setThreadPauser(((Results<?>)result).threadPauser());
+                    } else if (result instanceof ResultCount && ((ResultCount) result).threadPauser() != null) {
+                        // Make sure our (separately running) count can be paused
+                        pausing.setThreadPauser(((ResultCount) result).threadPauser());
                     }
                 } finally {
                     initialSearchDone = true;
                 }
                 if (fetchAllResults) {
+                    // Our result is available; do the rest of the work in the background
+                    scheduler.continueInBackground();
                     if (isResultsInstance) {
                         // Fetch all results from the result object
                         ((Results<?>) result).resultsStats().processedTotal();
@@ -120,7 +130,7 @@ public class BlsCacheEntry<T extends SearchResult> implements Future<T> {
     private Throwable exceptionThrown = null;
     
     /** True if this search was canceled, false if not */
-    private boolean cancelled = false;
+    private volatile boolean cancelled = false;
     
     
     // TIMING
@@ -131,6 +141,9 @@ public class BlsCacheEntry<T extends SearchResult> implements Future<T> {
     /** When was this entry last accessed (ms) */
     private long lastAccessTime;
     
+    /** When did our task start running, after waiting in the queue? (ms; 0 if not yet; set by thread, read by others) */
+    private volatile long taskStartTime = 0;
+
     /** Did the initial search finish, succesfully or otherwise? (set by thread) */
     private boolean initialSearchDone = false;
 
@@ -148,6 +161,9 @@ public class BlsCacheEntry<T extends SearchResult> implements Future<T> {
 
     private Future<?> future;
 
+    /** Scheduler our task was submitted to */
+    private SearchScheduler scheduler;
+
     /**
      * Construct a cache entry.
      * 
@@ -164,12 +180,27 @@ public class BlsCacheEntry<T extends SearchResult> implements Future<T> {
     /**
      * Start performing the task.
      * 
+     * Counts and other searches that fetch all results are run in the background.
+     * If someone waits for such a search, it becomes interactive until its result
+     * is available (see get()); fetching the rest happens in the background.
+     * 
+     * @param scheduler scheduler to submit our task to
      * @param block if true, blocks until the result is available
      */
-    public void start(boolean block) {
+    public void start(SearchScheduler scheduler, boolean block) {
+        this.scheduler = scheduler;
         SearchTask runnable = new SearchTask(search.fetchAllResults());
-        future = search.queryInfo().index().blackLab().searchExecutorService().submit(runnable);
+        boolean isBackground = search instanceof SearchCount || search.fetchAllResults();
+        try {
+            future = scheduler.submit(runnable, isBackground ? Priority.BACKGROUND : Priority.INTERACTIVE,
+                    search.queryInfo().index().name());
+        } catch (TooManySearches e) {
+            // We'll never run; make sure no one waits for us
+            cancelled = true;
+            throw e;
+        }
         if (block) {
+            prepareToWait();
             try {
                 // Wait until result available
                 while (!initialSearchDone && !futureDone() && !cancelled) {
@@ -199,6 +230,21 @@ public class BlsCacheEntry<T extends SearchResult> implements Future<T> {
         return pausing;
     }
 
+    /**
+     * Pause or resume our search.
+     *
+     * While paused, our task doesn't occupy a scheduler slot (unless pausing is
+     * disabled, in which case the task keeps running).
+     *
+     * @param paused true to pause, false to resume
+     */
+    public void pause(boolean paused) {
+        pausing.pause(paused);
+        Future<?> theFuture = future; // avoid locking
+        if (ThreadPauserImpl.isEnabled() && scheduler != null && theFuture != null)
+            scheduler.pause(theFuture, paused);
+    }
+
     public Throwable exceptionThrown() {
         return exceptionThrown;
     }
@@ -262,6 +308,25 @@ public class BlsCacheEntry<T extends SearchResult> implements Future<T> {
         return fullSearchDone ? now() - fullSearchDoneTime : 0;
     }
 
+    /**
+     * How long did (or does) our task wait in the queue before it could start?
+     * 
+     * @return queue wait time (ms)
+     */
+    public long timeQueued() {
+        long startTime = taskStartTime;
+        return (startTime == 0 ? now() : startTime) - createTime;
+    }
+
+    /**
+     * Is our task still waiting in the queue?
+     * 
+     * @return true if it hasn't started yet (and wasn't cancelled)
+     */
+    public boolean isQueued() {
+        return taskStartTime == 0 && !cancelled && future != null;
+    }
+
     /**
      * How long has this search been unused?
      * 
@@ -291,12 +356,12 @@ public class BlsCacheEntry<T extends SearchResult> implements Future<T> {
     /**
      * How long has this job actually been running in total?
      *
-     * Running time is the total time minus the paused time.
+     * Running time is the total time minus the time spent in the queue and the paused time.
      *
      * @return how long the search has actually run (ms)
      */
     public long timeRunning() {
-        return timeUserWaited() - pausing.pausedTotal();
+        return timeUserWaited() - timeQueued() - pausing.pausedTotal();
     }
 
     /**
@@ -308,8 +373,27 @@ public class BlsCacheEntry<T extends SearchResult> implements Future<T> {
         return pausing.pausedTotal();
     }
 
+    /**
+     * Make sure our task doesn't wait in the queue needlessly now that someone
+     * waits for it.
+     *
+     * If we're called from a running search task, start our task right away, or
+     * we might deadlock. Otherwise, a client is waiting for us, so make our task
+     * interactive if it was queued as a background task.
+     */
+    private void prepareToWait() {
+        Future<?> theFuture = future; // avoid locking
+        if (scheduler == null || theFuture == null || taskStartTime != 0)
+            return;
+        if (SearchScheduler.isInTask())
+            scheduler.startNow(theFuture);
+        else
+            scheduler.promote(theFuture);
+    }
+
     @Override
     public T get() throws InterruptedException, ExecutionException {
+        prepareToWait();
         // Wait until result available
         while (!initialSearchDone && !futureDone() && !cancelled) {
             Thread.sleep(100);
@@ -331,6 +415,7 @@ public class BlsCacheEntry<T extends SearchResult> implements Future<T> {
 
     @Override
     public T get(long time, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        prepareToWait();
         // Wait until result available
         long ms = unit.toMillis(time);
         while (ms > 0 && !initialSearchDone && !futureDone() && !cancelled) {
@@ -417,6 +502,31 @@ public class BlsCacheEntry<T extends SearchResult> implements Future<T> {
         }
     }
 
+    /**
+     * Stop a count that runs separately from our task (see HitsCountFromQuery).
+     */
+    private void cancelSeparateCount() {
+        T theResult = result;
+        if (theResult instanceof ResultCount)
+            ((ResultCount) theResult).cancel();
+        else if (theResult instanceof HitsCountFromQuery)
+            ((HitsCountFromQuery) theResult).cancel();
+    }
+
+    /**
+     * Is our result a separate count that was cancelled?
+     *
+     * Such a count will never complete, so the entry shouldn't be reused.
+     *
+     * @return true if our result is a cancelled count
+     */
+    public boolean hasCancelledCount() {
+        T theResult = result;
+        if (theResult instanceof ResultCount)
+            return ((ResultCount) theResult).isCancelled();
+        return theResult instanceof HitsCountFromQuery && ((HitsCountFromQuery) theResult).isCancelled();
+    }
+
     @Override
     public boolean cancel(boolean interrupt) {
         if (initialSearchDone)
@@ -474,6 +584,7 @@ public class BlsCacheEntry<T extends SearchResult> implements Future<T> {
             theFuture.cancel(true);
             future = null;
         }
+        cancelSeparateCount(); // its tasks don't run in our thread, so interrupting doesn't stop them
         return true;
     }
 
@@ -492,6 +603,8 @@ public class BlsCacheEntry<T extends SearchResult> implements Future<T> {
             return "finished";
         if (isDone())
             return "counting";
+        if (isQueued())
+            return "queued";
         return pausing.isPaused() ? "paused" : "running";
     }
     
@@ -509,6 +622,7 @@ public class BlsCacheEntry<T extends SearchResult> implements Future<T> {
                 .entry("futureStatus", futureStatus())
                 .entry("exceptionThrown", exceptionThrown == null ? "" : exceptionThrown.getClass().getSimpleName())
                 .entry("sizeBytes", numberOfStoredHits() * BlsCache.SIZE_OF_HIT)
+                .entry("queueWaitTime", timeQueued() / 1000.0)
                 .entry("userWaitTime", timeUserWaited() / 1000.0)
                 .entry("totalExecTime", timeRunning() / 1000.0)
                 .entry("notAccessedFor", timeSinceLastAccess() / 1000.0)
@@ -47,7 +47,7 @@ public class SearchManager {
         blackLab = BlackLab.createEngine(numberOfSearchThreads, maxThreadsPerSearch);
 
         // Create the cache
-        newCache = new BlsCache(config);
+        newCache = new BlsCache(config, blackLab.searchExecutorService());
 
         // Find the indices
         indexMan = new IndexManager(this, config);
@@ -71,6 +71,9 @@ public class SearchManager {
      * searches.
      */
     public synchronized void cleanup() {
+        // Stop warming up indexes
+        indexMan.cleanup();
+
         // Stop any running searches
         newCache.cleanup();
         newCache = null;
@@ -104,15 +107,23 @@ public class SearchManager {
     }
 
     public <T extends SearchResult> T search(User user, Search<T> search) throws BlsException {
+        SearchScheduler.setCurrentUser(user == null ? null : user.uniqueId());
         try {
             return search.execute();
         } catch (InvalidQuery e) {
             throw new BadRequest("INVALID_QUERY", "Invalid query: " + e.getMessage());
+        } finally {
+            SearchScheduler.setCurrentUser(null);
         }
     }
     
     public <T extends SearchResult> BlsCacheEntry<T> searchNonBlocking(User user, Search<T> search) {
-        return (BlsCacheEntry<T>)search.executeAsync();
+        SearchScheduler.setCurrentUser(user == null ? null : user.uniqueId());
+        try {
+            return (BlsCacheEntry<T>)search.executeAsync();
+        } finally {
+            SearchScheduler.setCurrentUser(null);
+        }
     }
 
     public void setLogDatabase(LogDatabase logDatabase) {
@@ -0,0 +1,463 @@
+package nl.inl.blacklab.server.search;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import nl.inl.blacklab.exceptions.TooManySearches;
+import nl.inl.blacklab.server.datastream.DataStream;
+
+/**
+ * Decides when search tasks may start running on the search executor.
+ *
+ * Only a limited number of tasks run at the same time. Other tasks wait in a
+ * queue. When a slot becomes available, the next task is chosen as follows:
+ * interactive tasks (that a client is waiting for) go before background tasks
+ * (such as total counts), and within those, the task whose user and index have
+ * the fewest running tasks goes first. If that's equal, users take turns, and
+ * finally the task that has waited longest goes first. Background
+ * tasks may only use half of the slots, so there's always room for interactive
+ * tasks, and a user may not run more than maxRunningJobsPerUser tasks at the
+ * same time.
+ *
+ * A task that has produced its result but still has work to do (e.g. fetching
+ * all hits for a total count) gives up its slot and waits for a background slot
+ * before continuing (see {@link #continueInBackground()}). A task that the load
+ * management pauses gives up its slot while paused (see
+ * {@link #pause(Future, boolean)}).
+ *
+ * If the queue is full, new searches are refused, so clients can back off and try
+ * again later.
+ *
+ * Tasks started from within a running task (e.g. a sort that needs the unsorted
+ * hits) are part of that task and start immediately; making them wait for a slot
+ * could cause a deadlock. For the same reason, a queued task that a running task
+ * waits for is started immediately as well (see {@link #startNow(Future)}). A
+ * queued background task that a client waits for becomes interactive until it
+ * has produced its result (see {@link #promote(Future)}).
+ *
+ * This doesn't replace the load management in {@link BlsCache}, which may still
+ * pause or abort running searches.
+ */
+public class SearchScheduler {
+
+    private static final Logger logger = LogManager.getLogger(SearchScheduler.class);
+
+    /** Priority classes, from highest to lowest */
+    public enum Priority {
+        /** A client is waiting for this result (e.g. the first page of hits) */
+        INTERACTIVE,
+
+        /** Result that may be computed in the background (e.g. a total count) */
+        BACKGROUND
+    }
+
+    /** Current user per request thread, so we can share fairly between users */
+    private static final ThreadLocal<String> currentUser = new ThreadLocal<>();
+
+    /** Task each thread is running, if it's running a task we started */
+    private static final ThreadLocal<Task> currentTask = new ThreadLocal<>();
+
+    /**
+     * Set the user for searches started from this thread.
+     *
+     * @param userId user id, or null to clear
+     */
+    public static void setCurrentUser(String userId) {
+        if (userId == null)
+            currentUser.remove();
+        else
+            currentUser.set(userId);
+    }
+
+    /**
+     * Is the current thread running a task we started?
+     *
+     * @return true if it is
+     */
+    static boolean isInTask() {
+        return currentTask.get() != null;
+    }
+
+    /** A task waiting for or using a slot */
+    private class Task {
+
+        FutureTask<?> future;
+
+        Priority priority;
+
+        String user;
+
+        String index;
+
+        long queuedTime = System.currentTimeMillis();
+
+        /** Does this task occupy a slot? (false for tasks started from within a running task) */
+        boolean usesSlot = false;
+
+        /** Was this task started through the queue? (false for tasks started from within a running task) */
+        boolean scheduled = false;
+
+        /** Is this task waiting in the queue to continue in the background? */
+        boolean continuing = false;
+
+        /** Has load management paused this task? Paused tasks don't use or get a slot. */
+        boolean paused = false;
+
+        Task(FutureTask<?> future, Priority priority, String user, String index) {
+            this.future = future;
+            this.priority = priority;
+            this.user = user;
+            this.index = index;
+        }
+
+        void run() {
+            Task outerTask = currentTask.get();
+            currentTask.set(this);
+            try {
+                future.run();
+            } finally {
+                if (outerTask == null)
+                    currentTask.remove();
+                else
+                    currentTask.set(outerTask);
+                finished(this);
+            }
+        }
+    }
+
+    /** Queue wait time statistics for one priority class */
+    private static class WaitStats {
+
+        long started;
+
+        long totalWaitMs;
+
+        long maxWaitMs;
+
+        void add(long waitMs) {
+            started++;
+            totalWaitMs += waitMs;
+            maxWaitMs = Math.max(maxWaitMs, waitMs);
+        }
+
+        void dataStream(DataStream ds) {
+            ds.startMap()
+                    .entry("started", started)
+                    .entry("averageWaitMs", started == 0 ? 0 : totalWaitMs / started)
+                    .entry("maxWaitMs", maxWaitMs)
+                    .endMap();
+        }
+    }
+
+    private ExecutorService executorService;
+
+    /** How many tasks may run at the same time */
+    private int maxRunning;
+
+    /** How many queued tasks we accept before refusing new ones */
+    private int maxQueued;
+
+    /** How many tasks a single user may run at the same time */
+    private int maxRunningPerUser;
+
+    /** Tasks waiting for a slot, in order of arrival */
+    private List<Task> queue = new ArrayList<>();
+
+    /** Tasks started through the queue that haven't finished yet */
+    private Map<Future<?>, Task> started = new HashMap<>();
+
+    /** Number of running tasks */
+    private int running = 0;
+
+    /** Number of running tasks per priority */
+    private int[] runningPerPriority = new int[Priority.values().length];
+
+    /** Number of running tasks per user */
+    private Map<String, Integer> runningPerUser = new HashMap<>();
+
+    /** Number of running tasks per index */
+    private Map<String, Integer> runningPerIndex = new HashMap<>();
+
+    /** When each active user last got a slot (sequence number), so users can take turns */
+    private Map<String, Long> lastStartPerUser = new HashMap<>();
+
+    /** Sequence number of the last task that got a slot */
+    private long startSequence = 0;
+
+    /** Queue wait time statistics per priority */
+    private WaitStats[] waitStats = new WaitStats[Priority.values().length];
+
+    /** How many tasks were refused because the queue was full */
+    private long refused = 0;
+
+    /**
+     * Create a scheduler.
+     *
+     * @param executorService executor to run tasks on
+     * @param maxRunning how many tasks may run at the same time
+     * @param maxQueued how many tasks may wait for a slot (-1 for no limit)
+     * @param maxRunningPerUser how many tasks a user may run at the same time (-1 for no limit)
+     */
+    public SearchScheduler(ExecutorService executorService, int maxRunning, int maxQueued, int maxRunningPerUser) {
+        this.executorService = executorService;
+        this.maxRunning = Math.max(1, maxRunning);
+        this.maxQueued = maxQueued;
+        this.maxRunningPerUser = maxRunningPerUser;
+        for (int i = 0; i < waitStats.length; i++)
+            waitStats[i] = new WaitStats();
+    }
+
+    /**
+     * Submit a task.
+     *
+     * @param runnable the task
+     * @param priority priority class
+     * @param index name of the index the task searches
+     * @return future for the task; cancelling it removes the task from the queue
+     * @throws TooManySearches if too many tasks are queued already
+     */
+    public synchronized Future<?> submit(Runnable runnable, Priority priority, String index) {
+        FutureTask<?> future = new FutureTask<>(runnable, null);
+        String user = currentUser.get();
+        Task task = new Task(future, priority, user == null ? "" : user, index);
+        if (isInTask()) {
+            // Part of a task that is already running; don't make it wait.
+            executorService.execute(task::run);
+            return future;
+        }
+        removeCancelled();
+        long queued = queue.stream().filter(t -> !t.continuing).count();
+        if (maxQueued >= 0 && queued >= maxQueued) {
+            refused++;
+            logger.warn("Search queue full (" + queued + " queued), refusing new search");
+            throw new TooManySearches("The server is too busy to start a new search. Please try again later. (search queue is full)");
+        }
+        queue.add(task);
+        startQueuedTasks();
+        return future;
+    }
+
+    /**
+     * Start a task right away if it is still queued.
+     *
+     * Should be called when a running task is about to wait for this task,
+     * to avoid deadlock.
+     *
+     * @param future the task's future as returned by submit()
+     */
+    public synchronized void startNow(Future<?> future) {
+        for (Iterator<Task> it = queue.iterator(); it.hasNext(); ) {
+            Task task = it.next();
+            if (task.future == future) {
+                it.remove();
+                start(task);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Make a queued background task interactive.
+     *
+     * Should be called when a client is about to wait for this task, so it
+     * doesn't have to wait for a background slot. Any work the task does after
+     * producing its result still happens in the background.
+     *
+     * @param future the task's future as returned by submit()
+     */
+    public synchronized void promote(Future<?> future) {
+        for (Task task: queue) {
+            if (task.future == future && !task.continuing) {
+                if (task.priority != Priority.INTERACTIVE) {
+                    task.priority = Priority.INTERACTIVE;
+                    startQueuedTasks();
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Let the current task continue as a background task.
+     *
+     * Should be called by a task that has produced the result a client was
+     * waiting for, but still has work to do (e.g. a total count). The task gives
+     * up its slot and waits until it gets a background slot. Tasks that wait
+     * like this don't count towards the maximum queue size.
+     *
+     * Does nothing if the current thread isn't running a task started through
+     * the queue.
+     *
+     * @throws InterruptedException if interrupted while waiting for a slot
+     */
+    public synchronized void continueInBackground() throws InterruptedException {
+        Task task = currentTask.get();
+        if (task == null || !task.scheduled || task.continuing)
+            return;
+        if (task.usesSlot)
+            releaseSlot(task);
+        task.priority = Priority.BACKGROUND;
+        task.queuedTime = System.currentTimeMillis();
+        task.continuing = true;
+        queue.add(task);
+        startQueuedTasks();
+        try {
+            while (task.continuing)
+                wait();
+        } catch (InterruptedException e) {
+            if (task.continuing) {
+                queue.remove(task);
+                task.continuing = false;
+            }
+            startQueuedTasks();
+            throw e;
+        }
+    }
+
+    /**
+     * Pause or resume a task.
+     *
+     * Should be called when load management pauses or resumes a task. A paused
+     * task gives up its slot, so other tasks may start. When it's resumed, it
+     * takes back its slot right away, even if that means we run more tasks than
+     * the maximum for a while: the load management decided it may use the CPU.
+     * A paused task in the queue isn't started until it is resumed.
+     *
+     * @param future the task's future as returned by submit()
+     * @param paused true to pause, false to resume
+     */
+    public synchronized void pause(Future<?> future, boolean paused) {
+        Task task = started.get(future);
+        if (task == null || task.paused == paused)
+            return;
+        task.paused = paused;
+        if (paused) {
+            if (task.usesSlot)
+                releaseSlot(task);
+        } else if (!task.usesSlot && !task.continuing) {
+            takeSlot(task);
+        }
+        startQueuedTasks();
+    }
+
+    private void removeCancelled() {
+        queue.removeIf(task -> task.future.isCancelled());
+    }
+
+    /** Start queued tasks while slots are available. */
+    private void startQueuedTasks() {
+        removeCancelled();
+        while (running < maxRunning && !queue.isEmpty()) {
+            Task next = chooseNext();
+            if (next == null)
+                break; // all queued tasks are blocked by a per-user or background limit
+            queue.remove(next);
+            start(next);
+        }
+    }
+
+    /**
+     * Choose the next task to start.
+     *
+     * @return the task, or null if no queued task may start now
+     */
+    private Task chooseNext() {
+        int maxBackground = Math.max(1, maxRunning / 2);
+        Task best = null;
+        for (Task task: queue) {
+            if (task.paused)
+                continue;
+            if (maxRunningPerUser >= 0 && runningPerUser.getOrDefault(task.user, 0) >= maxRunningPerUser)
+                continue;
+            if (task.priority == Priority.BACKGROUND && runningPerPriority[Priority.BACKGROUND.ordinal()] >= maxBackground)
+                continue;
+            if (best == null || isFairerThan(task, best))
+                best = task;
+        }
+        return best;
+    }
+
+    private boolean isFairerThan(Task a, Task b) {
+        if (a.priority != b.priority)
+            return a.priority.ordinal() < b.priority.ordinal();
+        int cmp = Integer.compare(runningPerUser.getOrDefault(a.user, 0), runningPerUser.getOrDefault(b.user, 0));
+        if (cmp == 0)
+            cmp = Integer.compare(runningPerIndex.getOrDefault(a.index, 0), runningPerIndex.getOrDefault(b.index, 0));
+        if (cmp == 0)
+            cmp = Long.compare(lastStartPerUser.getOrDefault(a.user, 0L), lastStartPerUser.getOrDefault(b.user, 0L));
+        return cmp < 0; // if equal, keep the one that was queued first
+    }
+
+    private void start(Task task) {
+        takeSlot(task);
+        lastStartPerUser.put(task.user, ++startSequence);
+        waitStats[task.priority.ordinal()].add(System.currentTimeMillis() - task.queuedTime);
+        if (task.continuing) {
+            // Its thread is waiting in continueInBackground()
+            task.continuing = false;
+            notifyAll();
+        } else {
+            task.scheduled = true;
+            started.put(task.future, task);
+            executorService.execute(task::run);
+        }
+    }
+
+    private void takeSlot(Task task) {
+        task.usesSlot = true;
+        running++;
+        runningPerPriority[task.priority.ordinal()]++;
+        runningPerUser.merge(task.user, 1, Integer::sum);
+        runningPerIndex.merge(task.index, 1, Integer::sum);
+    }
+
+    private void releaseSlot(Task task) {
+        task.usesSlot = false;
+        running--;
+        runningPerPriority[task.priority.ordinal()]--;
+        runningPerUser.computeIfPresent(task.user, (k, n) -> n == 1 ? null : n - 1);
+        runningPerIndex.computeIfPresent(task.index, (k, n) -> n == 1 ? null : n - 1);
+    }
+
+    private synchronized void finished(Task task) {
+        if (task.scheduled) {
+            started.remove(task.future);
+            if (task.usesSlot)
+                releaseSlot(task);
+            if (!runningPerUser.containsKey(task.user) && queue.stream().noneMatch(t -> t.user.equals(task.user)))
+                lastStartPerUser.remove(task.user); // user is no longer active
+        }
+        startQueuedTasks();
+    }
+
+    /**
+     * Dump information about the scheduler status.
+     *
+     * @param ds where to write information to
+     */
+    public synchronized void dataStream(DataStream ds) {
+        removeCancelled();
+        ds.startMap()
+                .entry("maxRunning", maxRunning)
+                .entry("running", running)
+                .entry("maxQueued", maxQueued)
+                .entry("queued", queue.size())
+                .entry("refused", refused);
+        for (Priority priority: Priority.values()) {
+            ds.startEntry(priority.name().toLowerCase());
+            waitStats[priority.ordinal()].dataStream(ds);
+            ds.endEntry();
+        }
+        ds.endMap();
+    }
+
+}
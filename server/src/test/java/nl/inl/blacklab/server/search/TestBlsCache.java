@@ -0,0 +1,257 @@
+package nl.inl.blacklab.server.search;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import nl.inl.blacklab.exceptions.InterruptedSearch;
+import nl.inl.blacklab.exceptions.TooManySearches;
+import nl.inl.blacklab.mocks.MockBlackLabIndex;
+import nl.inl.blacklab.search.results.Hits;
+import nl.inl.blacklab.search.results.QueryInfo;
+import nl.inl.blacklab.search.results.ResultCount;
+import nl.inl.blacklab.search.results.SearchResult;
+import nl.inl.blacklab.searches.AbstractSearch;
+import nl.inl.blacklab.searches.SearchCount;
+import nl.inl.blacklab.server.config.BLSConfig;
+
+public class TestBlsCache {
+
+    /** A result that takes up (almost) no space */
+    private static class TestResult implements SearchResult {
+        @Override
+        public int numberOfResultObjects() {
+            return 1;
+        }
+    }
+
+    /** A search that is identified by name; its task is passed to the cache directly */
+    private static class TestSearch extends AbstractSearch<TestResult> {
+
+        private String name;
+
+        TestSearch(QueryInfo queryInfo, String name) {
+            super(queryInfo);
+            this.name = name;
+        }
+
+        @Override
+        protected TestResult executeInternal() {
+            return new TestResult();
+        }
+
+        @Override
+        public int hashCode() {
+            return super.hashCode() * 31 + name.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return super.equals(obj) && name.equals(((TestSearch) obj).name);
+        }
+
+        @Override
+        public String toString() {
+            return toString("test", name);
+        }
+    }
+
+    /** A search that fetches all its results, so it runs in the background unless waited for */
+    private static class TestBackgroundSearch extends TestSearch {
+
+        TestBackgroundSearch(QueryInfo queryInfo, String name) {
+            super(queryInfo, name);
+        }
+
+        @Override
+        public boolean fetchAllResults() {
+            return true;
+        }
+    }
+
+    /** A count that isn't complete until released */
+    private static class TestCount extends ResultCount {
+
+        private CountDownLatch release;
+
+        TestCount(QueryInfo queryInfo, CountDownLatch release) {
+            super(Hits.emptyList(queryInfo), CountType.HITS);
+            this.release = release;
+        }
+
+        @Override
+        public int processedTotal() {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new InterruptedSearch(e);
+            }
+            return 0;
+        }
+    }
+
+    /** A total count that is identified by name; its task is passed to the cache directly */
+    private static class TestCountSearch extends SearchCount {
+
+        private String name;
+
+        TestCountSearch(QueryInfo queryInfo, String name) {
+            super(queryInfo);
+            this.name = name;
+        }
+
+        @Override
+        protected ResultCount executeInternal() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean fetchAllResults() {
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return super.hashCode() * 31 + name.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return super.equals(obj) && name.equals(((TestCountSearch) obj).name);
+        }
+
+        @Override
+        public String toString() {
+            return toString("testcount", name);
+        }
+    }
+
+    private ExecutorService executorService;
+
+    private BlsCache cache;
+
+    private QueryInfo queryInfo;
+
+    private CountDownLatch release;
+
+    @Before
+    public void setUp() {
+        executorService = Executors.newCachedThreadPool();
+        BLSConfig config = new BLSConfig();
+        config.getPerformance().setMaxConcurrentSearches(1);
+        config.getPerformance().setMaxQueuedSearches(1);
+        cache = new BlsCache(config, executorService);
+        queryInfo = QueryInfo.create(new MockBlackLabIndex() {
+            @Override
+            public String name() {
+                return "test";
+            }
+        });
+        release = new CountDownLatch(1);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        cache.cleanup();
+        executorService.shutdownNow();
+    }
+
+    private BlsCacheEntry<TestResult> startSearch(String name, boolean blockUntilReleased) {
+        return cache.getAsync(new TestSearch(queryInfo, name), () -> {
+            if (blockUntilReleased) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return new TestResult();
+        });
+    }
+
+    @Test(timeout = 10000)
+    public void testRefusedSearchIsNotCached() throws Exception {
+        startSearch("running", true); // takes the only slot
+        startSearch("queued", false); // fills the queue
+        for (int i = 0; i < 2; i++) {
+            // Refused, also when repeated (a refused entry that stayed in the cache would never run)
+            try {
+                startSearch("refused", false);
+                Assert.fail("Expected TooManySearches");
+            } catch (TooManySearches e) {
+                // OK
+            }
+        }
+
+        // Once there's room again, the search runs normally
+        release.countDown();
+        BlsCacheEntry<TestResult> entry = null;
+        while (entry == null) {
+            try {
+                entry = startSearch("refused", false);
+            } catch (TooManySearches e) {
+                Thread.sleep(10); // queue not empty yet
+            }
+        }
+        Assert.assertNotNull(entry.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test(timeout = 10000)
+    public void testWaitingPromotesBackgroundSearch() throws Exception {
+        BLSConfig config = new BLSConfig();
+        config.getPerformance().setMaxConcurrentSearches(2); // (1 background slot)
+        BlsCache cache2 = new BlsCache(config, executorService);
+        try {
+            // Takes the only background slot
+            cache2.getAsync(new TestBackgroundSearch(queryInfo, "running"), () -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return new TestResult();
+            });
+            BlsCacheEntry<TestResult> queued = cache2.getAsync(new TestBackgroundSearch(queryInfo, "queued"), TestResult::new);
+            Assert.assertTrue(queued.isQueued());
+
+            // We're not in a search task, but a client waiting for the search shouldn't
+            // have to wait for the background search to finish
+            Assert.assertNotNull(queued.get(5, TimeUnit.SECONDS));
+            Assert.assertEquals(1, release.getCount());
+        } finally {
+            release.countDown();
+            cache2.cleanup();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testLongCountsLeaveRoomForInteractiveSearch() throws Exception {
+        BLSConfig config = new BLSConfig();
+        config.getPerformance().setMaxConcurrentSearches(2); // (1 background slot)
+        BlsCache cache2 = new BlsCache(config, executorService);
+        try {
+            // Clients wait for two counts (like the docs count in a hits request). Each count
+            // keeps counting until released, but only until its result is available does a
+            // client wait for it.
+            for (String name: Arrays.asList("count1", "count2")) {
+                Assert.assertNotNull(cache2.get(new TestCountSearch(queryInfo, name), () -> new TestCount(queryInfo, release)));
+            }
+
+            // The counts continue in the background, so a new first page search still gets a slot
+            Assert.assertNotNull(cache2.get(new TestSearch(queryInfo, "firstPage"), TestResult::new));
+            Assert.assertEquals(1, release.getCount());
+        } finally {
+            release.countDown();
+            cache2.cleanup();
+        }
+    }
+
+}
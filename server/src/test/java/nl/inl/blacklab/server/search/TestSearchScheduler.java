@@ -0,0 +1,172 @@
+package nl.inl.blacklab.server.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import nl.inl.blacklab.exceptions.TooManySearches;
+import nl.inl.blacklab.server.search.SearchScheduler.Priority;
+
+public class TestSearchScheduler {
+
+    private ExecutorService executorService;
+
+    private List<String> started;
+
+    private CountDownLatch release;
+
+    @Before
+    public void setUp() {
+        executorService = Executors.newCachedThreadPool();
+        started = Collections.synchronizedList(new ArrayList<>());
+        release = new CountDownLatch(1);
+    }
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+        SearchScheduler.setCurrentUser(null);
+    }
+
+    private Future<?> submit(SearchScheduler scheduler, String user, String name, Priority priority) {
+        SearchScheduler.setCurrentUser(user);
+        return scheduler.submit(() -> started.add(name), priority, "index");
+    }
+
+    private Future<?> submit(SearchScheduler scheduler, String user, Runnable runnable) {
+        SearchScheduler.setCurrentUser(user);
+        return scheduler.submit(runnable, Priority.INTERACTIVE, "index");
+    }
+
+    private Future<?> submitBlocker(SearchScheduler scheduler, String user) {
+        SearchScheduler.setCurrentUser(user);
+        return scheduler.submit(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, Priority.INTERACTIVE, "index");
+    }
+
+    @Test
+    public void testPriorityAndFairness() throws Exception {
+        SearchScheduler scheduler = new SearchScheduler(executorService, 1, -1, -1);
+        Future<?> blocker = submitBlocker(scheduler, "heavyUser");
+        Future<?> count = submit(scheduler, "otherUser", "count", Priority.BACKGROUND);
+        Future<?> heavy = submit(scheduler, "heavyUser", "heavy", Priority.INTERACTIVE);
+        Future<?> other = submit(scheduler, "otherUser", "other", Priority.INTERACTIVE);
+        Assert.assertTrue(started.isEmpty());
+        release.countDown();
+        blocker.get(10, TimeUnit.SECONDS);
+        count.get(10, TimeUnit.SECONDS);
+        heavy.get(10, TimeUnit.SECONDS);
+        other.get(10, TimeUnit.SECONDS);
+        // While heavyUser was running, otherUser's interactive search was fairer than heavyUser's,
+        // and both interactive searches go before the background count.
+        Assert.assertEquals("other", started.get(0));
+        Assert.assertEquals("count", started.get(2));
+    }
+
+    @Test
+    public void testQueueFull() throws Exception {
+        SearchScheduler scheduler = new SearchScheduler(executorService, 1, 1, -1);
+        Future<?> blocker = submitBlocker(scheduler, "user");
+        Future<?> queued = submit(scheduler, "user", "queued", Priority.INTERACTIVE);
+        try {
+            submit(scheduler, "user", "refused", Priority.INTERACTIVE);
+            Assert.fail("Expected TooManySearches");
+        } catch (TooManySearches e) {
+            // expected
+        }
+        release.countDown();
+        blocker.get(10, TimeUnit.SECONDS);
+        queued.get(10, TimeUnit.SECONDS);
+        Assert.assertEquals(Collections.singletonList("queued"), started);
+    }
+
+    @Test
+    public void testStartNow() throws Exception {
+        SearchScheduler scheduler = new SearchScheduler(executorService, 1, -1, -1);
+        Future<?> blocker = submitBlocker(scheduler, "user");
+        Future<?> queued = submit(scheduler, "user", "queued", Priority.BACKGROUND);
+        scheduler.startNow(queued);
+        queued.get(10, TimeUnit.SECONDS);
+        Assert.assertFalse(blocker.isDone());
+        release.countDown();
+        blocker.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testPromote() throws Exception {
+        SearchScheduler scheduler = new SearchScheduler(executorService, 2, -1, -1);
+        SearchScheduler.setCurrentUser("user");
+        Future<?> blocker = scheduler.submit(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, Priority.BACKGROUND, "index"); // takes the only background slot
+        Future<?> queued = submit(scheduler, "user", "queued", Priority.BACKGROUND);
+        Assert.assertTrue(started.isEmpty());
+        scheduler.promote(queued); // (not called from a task)
+        queued.get(10, TimeUnit.SECONDS);
+        Assert.assertFalse(blocker.isDone());
+        release.countDown();
+        blocker.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testContinueInBackground() throws Exception {
+        SearchScheduler scheduler = new SearchScheduler(executorService, 2, 1, -1); // (1 background slot)
+        CountDownLatch continuing = new CountDownLatch(2);
+        List<Future<?>> counts = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            // Interactive until its result is available, then counts in the background until released
+            counts.add(submit(scheduler, "user" + i, () -> {
+                try {
+                    continuing.countDown();
+                    scheduler.continueInBackground();
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+        Assert.assertTrue(continuing.await(10, TimeUnit.SECONDS));
+
+        // Only one count uses a slot; the other waits without filling the queue,
+        // and a new interactive search doesn't have to wait for either.
+        Future<?> firstPage = submit(scheduler, "otherUser", "firstPage", Priority.INTERACTIVE);
+        firstPage.get(10, TimeUnit.SECONDS);
+        Assert.assertFalse(counts.get(0).isDone() || counts.get(1).isDone());
+        release.countDown();
+        for (Future<?> count: counts)
+            count.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testPauseReleasesSlot() throws Exception {
+        SearchScheduler scheduler = new SearchScheduler(executorService, 1, -1, -1);
+        Future<?> blocker = submitBlocker(scheduler, "user");
+        Future<?> queued = submit(scheduler, "otherUser", "queued", Priority.INTERACTIVE);
+        Assert.assertTrue(started.isEmpty());
+        scheduler.pause(blocker, true);
+        queued.get(10, TimeUnit.SECONDS);
+        scheduler.pause(blocker, false);
+        release.countDown();
+        blocker.get(10, TimeUnit.SECONDS);
+    }
+
+}